@@ -1174,19 +1174,19 @@ public class DOMNormalizer implements XMLDocumentHandler {
             return;      
         }
         
-        char [] dataarray = datavalue.toCharArray(); 
-        int datalength = dataarray.length;
+        // read the characters in place rather than copying them
+        int datalength = datavalue.length();
         
         // version of the document is XML 1.1
         if(isXML11Version){                    
             //we need to check all characters as per production rules of XML11
             int i = 0 ;
             while (i < datalength) {                            
-                if(XML11Char.isXML11Invalid(dataarray[i++])){
+                if(XML11Char.isXML11Invalid(datavalue.charAt(i++))){
                     // check if this is a supplemental character
-                    char ch = dataarray[i-1];
+                    char ch = datavalue.charAt(i-1);
                     if (XMLChar.isHighSurrogate(ch) && i < datalength) {
-                        char ch2 = dataarray[i++];
+                        char ch2 = datavalue.charAt(i++);
                         if (XMLChar.isLowSurrogate(ch2) && 
                             XMLChar.isSupplemental(XMLChar.supplemental(ch, ch2))) {
                             continue;
@@ -1194,7 +1194,7 @@ public class DOMNormalizer implements XMLDocumentHandler {
                     }
                     String msg = DOMMessageFormatter.formatMessage(
                         DOMMessageFormatter.DOM_DOMAIN, "InvalidXMLCharInDOM", 
-                        new Object[]{Integer.toString(dataarray[i-1], 16)});
+                        new Object[]{Integer.toString(datavalue.charAt(i-1), 16)});
                     reportDOMError(errorHandler, error, locator, msg, DOMError.SEVERITY_ERROR, 
                     "wf-invalid-character");
                 }
@@ -1204,11 +1204,11 @@ public class DOMNormalizer implements XMLDocumentHandler {
             // we need to check all characters as per production rules of XML 1.0
             int i = 0 ;
             while (i < datalength) {                            
-                if( XMLChar.isInvalid(dataarray[i++]) ) {
+                if( XMLChar.isInvalid(datavalue.charAt(i++)) ) {
                     // check if this is a supplemental character
-                    char ch = dataarray[i-1];
+                    char ch = datavalue.charAt(i-1);
                     if (XMLChar.isHighSurrogate(ch) && i < datalength) {
-                        char ch2 = dataarray[i++];
+                        char ch2 = datavalue.charAt(i++);
                         if (XMLChar.isLowSurrogate(ch2) && 
                             XMLChar.isSupplemental(XMLChar.supplemental(ch, ch2))) {
                             continue;
@@ -1216,7 +1216,7 @@ public class DOMNormalizer implements XMLDocumentHandler {
                     }
                     String msg = DOMMessageFormatter.formatMessage(
                         DOMMessageFormatter.DOM_DOMAIN, "InvalidXMLCharInDOM", 
-                        new Object[]{Integer.toString(dataarray[i-1], 16)});
+                        new Object[]{Integer.toString(datavalue.charAt(i-1), 16)});
                     reportDOMError(errorHandler, error, locator, msg, DOMError.SEVERITY_ERROR, 
                     "wf-invalid-character");
                 }
@@ -57,6 +57,7 @@ public class DOMOutputImpl implements LSOutput {
         protected OutputStream fByteStream = null;
         protected String fSystemId = null;
         protected String fEncoding = null;
+        protected boolean fCompressed = false;
 
    /**
     * Default Constructor
@@ -167,4 +168,23 @@ public class DOMOutputImpl implements LSOutput {
         fEncoding = encoding;
     };
 
+   /**
+    * Returns whether the bytes written to the byte stream or the system
+    * identifier are compressed in the gzip format.
+    */
+
+    public boolean getCompressed(){
+        return fCompressed;
+    };
+
+   /**
+    * Sets whether the bytes written to the byte stream or the system
+    * identifier are compressed in the gzip format. This attribute has no
+    * effect when the application provides a character stream.
+    */
+
+    public void setCompressed(boolean compressed){
+        fCompressed = compressed;
+    };
+
 }//DOMOutputImpl
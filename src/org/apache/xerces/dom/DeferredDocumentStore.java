@@ -0,0 +1,524 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.dom;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.xerces.xs.XSModel;
+import org.apache.xerces.xs.XSTypeDefinition;
+
+/**
+ * Stores the node tables of a {@link DeferredDocumentImpl} in a binary
+ * image and reads them back, so that a large document which is used
+ * repeatedly only needs to be scanned (and validated) once. Reading an
+ * image maps the file into memory, in windows of at most 2 GB, and
+ * copies the tables in bulk; the resulting document expands its nodes
+ * on demand exactly like one that was just produced by the parser.
+ * <p>
+ * An image can only be written for a document whose nodes have not
+ * been expanded yet, i.e. directly after the parse and before the
+ * document is navigated. Schema type annotations are stored by name;
+ * they are restored when the schema is supplied as an {@link XSModel}
+ * on reading. Annotations referring to anonymous types are dropped.
+ * <p>
+ * The image consists of a header, a string table, a table of type
+ * references, one column of integers per node table and the
+ * identifier table. All values are big-endian.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public final class DeferredDocumentStore {
+
+    //
+    // Constants
+    //
+
+    /** Magic number at the start of an image ("XDOM"). */
+    private static final int MAGIC = 0x58444F4D;
+
+    /** Version of the image format. */
+    private static final int VERSION = 1;
+
+    /** Flag: namespaces enabled. */
+    private static final int FLAG_NAMESPACES = 0x01;
+
+    /** Flag: grammar access allowed. */
+    private static final int FLAG_GRAMMAR_ACCESS = 0x02;
+
+    /** Flag: standalone document. */
+    private static final int FLAG_STANDALONE = 0x04;
+
+    /** Encoded index of a null value. */
+    private static final int NULL = -1;
+
+    private static final int CHUNK_SHIFT = DeferredDocumentImpl.CHUNK_SHIFT;
+    private static final int CHUNK_SIZE = DeferredDocumentImpl.CHUNK_SIZE;
+    private static final int CHUNK_MASK = DeferredDocumentImpl.CHUNK_MASK;
+
+    /** Maximum number of bytes of an image mapped at once. */
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    //
+    // Constructors
+    //
+
+    private DeferredDocumentStore() {}
+
+    //
+    // Public static methods
+    //
+
+    /**
+     * Writes an image of the given document to an output stream.
+     *
+     * @param document the document, which must not have been navigated
+     * @param output   the output stream, which is not closed
+     * @throws IOException if the output stream throws an exception
+     * @throws IllegalStateException if nodes of the document have
+     *         already been expanded
+     */
+    public static void write(DeferredDocumentImpl document, OutputStream output)
+        throws IOException {
+
+        if (!document.needsSyncData() || !document.needsSyncChildren()) {
+            throw new IllegalStateException("The document has already been expanded.");
+        }
+
+        final int nodeCount = document.fNodeCount;
+        HashMap stringIndexes = new HashMap();
+        ArrayList strings = new ArrayList();
+        ArrayList types = new ArrayList();
+
+        // string indexes of the document properties
+        int version = encode(document.version, stringIndexes, strings, null);
+        int encoding = encode(document.encoding, stringIndexes, strings, null);
+        int actualEncoding = encode(document.actualEncoding, stringIndexes, strings, null);
+        int documentURI = encode(document.fDocumentURI, stringIndexes, strings, null);
+
+        // encode object columns as indexes
+        int[] names = encode(document.fNodeName, nodeCount, stringIndexes, strings, null);
+        int[] values = encode(document.fNodeValue, nodeCount, stringIndexes, strings, types);
+        int[] uris = encode(document.fNodeURI, nodeCount, stringIndexes, strings, null);
+        int idCount = document.fIdName != null ? document.fIdCount : 0;
+        int[] idNames = new int[idCount];
+        for (int i = 0; i < idCount; i++) {
+            idNames[i] = encode(document.fIdName[i], stringIndexes, strings, null);
+        }
+        int[] typeNames = new int[types.size() * 2];
+        for (int i = 0; i < types.size(); i++) {
+            XSTypeDefinition type = (XSTypeDefinition) types.get(i);
+            typeNames[i * 2] = encode(type.getNamespace(), stringIndexes, strings, null);
+            typeNames[i * 2 + 1] = encode(type.getName(), stringIndexes, strings, null);
+        }
+
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(output, 8192));
+
+        // header
+        int flags = 0;
+        if (document.fNamespacesEnabled) {
+            flags |= FLAG_NAMESPACES;
+        }
+        if (document.allowGrammarAccess) {
+            flags |= FLAG_GRAMMAR_ACCESS;
+        }
+        if (document.standalone) {
+            flags |= FLAG_STANDALONE;
+        }
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(flags);
+        out.writeInt(nodeCount);
+        out.writeInt(version);
+        out.writeInt(encoding);
+        out.writeInt(actualEncoding);
+        out.writeInt(documentURI);
+
+        // string table
+        final int stringCount = strings.size();
+        out.writeInt(stringCount);
+        for (int i = 0; i < stringCount; i++) {
+            out.writeInt(((String) strings.get(i)).length());
+        }
+        for (int i = 0; i < stringCount; i++) {
+            out.writeChars((String) strings.get(i));
+        }
+
+        // type references
+        out.writeInt(types.size());
+        write(out, typeNames);
+
+        // node tables
+        write(out, document.fNodeType, nodeCount);
+        write(out, document.fNodeParent, nodeCount);
+        write(out, document.fNodeLastChild, nodeCount);
+        write(out, document.fNodePrevSib, nodeCount);
+        write(out, document.fNodeExtra, nodeCount);
+        write(out, names);
+        write(out, values);
+        write(out, uris);
+
+        // identifiers
+        out.writeInt(idCount);
+        write(out, idNames);
+        for (int i = 0; i < idCount; i++) {
+            out.writeInt(document.fIdElement[i]);
+        }
+        out.flush();
+
+    } // write(DeferredDocumentImpl,OutputStream)
+
+    /**
+     * Reads a document from an image file. Type annotations are
+     * not restored.
+     */
+    public static DeferredDocumentImpl read(File file) throws IOException {
+        return read(file, null);
+    } // read(File):DeferredDocumentImpl
+
+    /**
+     * Reads a document from an image file.
+     *
+     * @param file  the image file
+     * @param model the schema used to restore type annotations; may
+     *              be null
+     * @throws IOException if the file cannot be read or is not an image
+     */
+    public static DeferredDocumentImpl read(File file, XSModel model)
+        throws IOException {
+
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            return read(new ImageInput(stream.getChannel()), model);
+        }
+        finally {
+            stream.close();
+        }
+
+    } // read(File,XSModel):DeferredDocumentImpl
+
+    //
+    // Private static methods
+    //
+
+    /** Reads a document from an image. */
+    private static DeferredDocumentImpl read(ImageInput in, XSModel model)
+        throws IOException {
+
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a document image.");
+            }
+            final int flags = in.getInt();
+            final int nodeCount = in.getInt();
+            final int version = in.getInt();
+            final int encoding = in.getInt();
+            final int actualEncoding = in.getInt();
+            final int documentURI = in.getInt();
+
+            // string table
+            final int stringCount = in.getInt();
+            int[] lengths = new int[stringCount];
+            in.getInts(lengths, 0, stringCount);
+            String[] strings = new String[stringCount];
+            char[] ch = new char[256];
+            for (int i = 0; i < stringCount; i++) {
+                int length = lengths[i];
+                if (length > ch.length) {
+                    ch = new char[Math.max(length, ch.length * 2)];
+                }
+                in.getChars(ch, 0, length);
+                strings[i] = new String(ch, 0, length);
+            }
+
+            // type references
+            final int typeCount = in.getInt();
+            Object[] types = new Object[typeCount];
+            for (int i = 0; i < typeCount; i++) {
+                String namespace = decode(in.getInt(), strings);
+                String name = decode(in.getInt(), strings);
+                if (model != null) {
+                    types[i] = model.getTypeDefinition(name, namespace);
+                }
+            }
+
+            DeferredDocumentImpl document = new DeferredDocumentImpl(
+                (flags & FLAG_NAMESPACES) != 0,
+                (flags & FLAG_GRAMMAR_ACCESS) != 0);
+            if (version != NULL) {
+                // also switches the document to the XML 1.1 rules
+                document.setXmlVersion(strings[version]);
+            }
+            document.encoding = decode(encoding, strings);
+            document.actualEncoding = decode(actualEncoding, strings);
+            document.fDocumentURI = decode(documentURI, strings);
+            document.standalone = (flags & FLAG_STANDALONE) != 0;
+
+            // node tables
+            final int chunkCount = (nodeCount + CHUNK_MASK) >> CHUNK_SHIFT;
+            final int tableSize = Math.max(DeferredDocumentImpl.INITIAL_CHUNK_COUNT,
+                                           chunkCount + 1);
+            document.fNodeCount = nodeCount;
+            document.fNodeType = read(in, nodeCount, chunkCount, tableSize);
+            document.fNodeParent = read(in, nodeCount, chunkCount, tableSize);
+            document.fNodeLastChild = read(in, nodeCount, chunkCount, tableSize);
+            document.fNodePrevSib = read(in, nodeCount, chunkCount, tableSize);
+            document.fNodeExtra = read(in, nodeCount, chunkCount, tableSize);
+            // names and namespace URIs are symbols; the parser interns
+            // them through its symbol table and the DOM compares them by
+            // reference
+            boolean[] interned = new boolean[stringCount];
+            document.fNodeName = read(in, nodeCount, chunkCount, tableSize, strings, null, interned);
+            document.fNodeValue = read(in, nodeCount, chunkCount, tableSize, strings, types, null);
+            document.fNodeURI = read(in, nodeCount, chunkCount, tableSize, strings, null, interned);
+
+            // identifiers
+            final int idCount = in.getInt();
+            if (idCount > 0) {
+                document.fIdCount = idCount;
+                document.fIdName = new String[idCount];
+                document.fIdElement = new int[idCount];
+                for (int i = 0; i < idCount; i++) {
+                    document.fIdName[i] = decode(in.getInt(), strings);
+                }
+                in.getInts(document.fIdElement, 0, idCount);
+            }
+            return document;
+        }
+        catch (RuntimeException e) {
+            // BufferUnderflowException, IndexOutOfBoundsException, ...
+            throw new IOException("Invalid document image: " + e);
+        }
+
+    } // read(ImageInput,XSModel):DeferredDocumentImpl
+
+    /**
+     * Returns the index of a string, adding it to the table if needed.
+     * Type definitions are added to the table of type references and
+     * encoded as <code>-2 - index</code>.
+     */
+    private static int encode(Object value, HashMap indexes,
+                              ArrayList strings, ArrayList types) {
+        if (value == null) {
+            return NULL;
+        }
+        if (!(value instanceof String)) {
+            if (types == null || !(value instanceof XSTypeDefinition)
+                || ((XSTypeDefinition) value).getAnonymous()) {
+                return NULL;
+            }
+            Integer index = (Integer) indexes.get(value);
+            if (index == null) {
+                index = new Integer(-2 - types.size());
+                indexes.put(value, index);
+                types.add(value);
+            }
+            return index.intValue();
+        }
+        Integer index = (Integer) indexes.get(value);
+        if (index == null) {
+            index = new Integer(strings.size());
+            indexes.put(value, index);
+            strings.add(value);
+        }
+        return index.intValue();
+    }
+
+    /** Encodes a column of objects as indexes. */
+    private static int[] encode(Object[][] data, int count, HashMap indexes,
+                                ArrayList strings, ArrayList types) {
+        int[] column = new int[count];
+        for (int i = 0; i < count; i++) {
+            Object[] chunk = data[i >> CHUNK_SHIFT];
+            column[i] = chunk != null
+                      ? encode(chunk[i & CHUNK_MASK], indexes, strings, types)
+                      : NULL;
+        }
+        return column;
+    }
+
+    /** Returns the string for an index. */
+    private static String decode(int index, String[] strings) {
+        return index >= 0 ? strings[index] : null;
+    }
+
+    /** Writes a chunked column of integers. */
+    private static void write(DataOutputStream out, int[][] data, int count)
+        throws IOException {
+        for (int i = 0; i < count; i++) {
+            int[] chunk = data[i >> CHUNK_SHIFT];
+            out.writeInt(chunk != null ? chunk[i & CHUNK_MASK] : -1);
+        }
+    }
+
+    /** Writes a column of integers. */
+    private static void write(DataOutputStream out, int[] column)
+        throws IOException {
+        for (int i = 0; i < column.length; i++) {
+            out.writeInt(column[i]);
+        }
+    }
+
+    /** Reads a column of integers into chunks. */
+    private static int[][] read(ImageInput in, int count,
+                                int chunkCount, int tableSize) throws IOException {
+        int[][] data = new int[tableSize][];
+        for (int c = 0; c < chunkCount; c++) {
+            int[] chunk = new int[CHUNK_SIZE + 1];
+            int length = Math.min(CHUNK_SIZE, count - (c << CHUNK_SHIFT));
+            in.getInts(chunk, 0, length);
+            int used = 0;
+            for (int i = 0; i < length; i++) {
+                if (chunk[i] != -1) {
+                    used++;
+                }
+            }
+            for (int i = length; i < CHUNK_SIZE; i++) {
+                chunk[i] = -1;
+            }
+            chunk[CHUNK_SIZE] = used;
+            data[c] = chunk;
+        }
+        return data;
+    }
+
+    /** 
+     * Reads a column of indexes into chunks of objects. If an array of
+     * flags is given, the strings of the column are interned.
+     */
+    private static Object[][] read(ImageInput in, int count, int chunkCount,
+                                   int tableSize, String[] strings,
+                                   Object[] types, boolean[] interned) 
+        throws IOException {
+        Object[][] data = new Object[tableSize][];
+        int[] column = new int[CHUNK_SIZE];
+        for (int c = 0; c < chunkCount; c++) {
+            Object[] chunk = new Object[CHUNK_SIZE + 1];
+            DeferredDocumentImpl.RefCount refCount = new DeferredDocumentImpl.RefCount();
+            int length = Math.min(CHUNK_SIZE, count - (c << CHUNK_SHIFT));
+            in.getInts(column, 0, length);
+            for (int i = 0; i < length; i++) {
+                int index = column[i];
+                if (interned != null && index >= 0 && !interned[index]) {
+                    strings[index] = strings[index].intern();
+                    interned[index] = true;
+                }
+                Object value = index >= 0 ? strings[index]
+                             : index < NULL && types != null ? types[-2 - index]
+                             : null;
+                if (value != null) {
+                    chunk[i] = value;
+                    refCount.fCount++;
+                }
+            }
+            chunk[CHUNK_SIZE] = refCount;
+            data[c] = chunk;
+        }
+        return data;
+    }
+
+    //
+    // Classes
+    //
+
+    /**
+     * Reads the values of an image file in sequence, through windows of
+     * the file mapped into memory. A window is mapped again from the 
+     * current position whenever the next value does not fit in it, so 
+     * images larger than a single buffer can hold are read as well.
+     */
+    private static final class ImageInput {
+
+        /** The channel of the image file. */
+        private final FileChannel fChannel;
+
+        /** The size of the image file. */
+        private final long fSize;
+
+        /** Position in the file of the start of the current window. */
+        private long fWindowStart;
+
+        /** The current window; null before the first value is read. */
+        private ByteBuffer fWindow;
+
+        public ImageInput(FileChannel channel) throws IOException {
+            fChannel = channel;
+            fSize = channel.size();
+        }
+
+        /** Reads an integer. */
+        public int getInt() throws IOException {
+            ensure(4);
+            return fWindow.getInt();
+        }
+
+        /** Reads integers into an array. */
+        public void getInts(int[] dest, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(4);
+                int count = Math.min(length, fWindow.remaining() / 4);
+                fWindow.asIntBuffer().get(dest, offset, count);
+                fWindow.position(fWindow.position() + count * 4);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        /** Reads characters into an array. */
+        public void getChars(char[] dest, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(2);
+                int count = Math.min(length, fWindow.remaining() / 2);
+                fWindow.asCharBuffer().get(dest, offset, count);
+                fWindow.position(fWindow.position() + count * 2);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        /** 
+         * Maps a new window if less than the given number of bytes
+         * remain in the current one. 
+         */
+        private void ensure(int bytes) throws IOException {
+            if (fWindow != null && fWindow.remaining() >= bytes) {
+                return;
+            }
+            long position = fWindow != null ? fWindowStart + fWindow.position() : 0;
+            long size = Math.min(MAX_WINDOW_SIZE, fSize - position);
+            if (size < bytes) {
+                throw new IOException("Invalid document image: unexpected end of file.");
+            }
+            fWindow = fChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            fWindowStart = position;
+        }
+
+    } // class ImageInput
+
+} // class DeferredDocumentStore
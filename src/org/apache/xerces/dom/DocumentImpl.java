@@ -22,9 +22,9 @@ import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Vector;
 
@@ -115,6 +115,12 @@ public class DocumentImpl
     /** Table for event listeners registered to this document nodes. */
     protected Hashtable eventListeners;
 
+    /**
+     * Listener counts (LCount), keyed by event type, for all the listeners
+     * registered to this document nodes. Null when no listener is registered.
+     */
+    protected HashMap listenerCounts;
+
     /** Bypass mutation events firing. */
     protected boolean mutationEvents = false;
 
@@ -237,7 +243,7 @@ public class DocumentImpl
                                                      filter,
                                                      entityReferenceExpansion);
         if (iterators == null) {
-            iterators = new LinkedList();
+            iterators = new ArrayList();
             iteratorReferenceQueue = new ReferenceQueue();
         }
 
@@ -323,27 +329,30 @@ public class DocumentImpl
     }
     
     /**
-     * Remove stale references from the given list.
+     * Remove stale references from the given list. The list is only
+     * visited when the queue reports cleared references, and is then
+     * compacted in a single pass. Notification loops simply skip the
+     * cleared references they encounter and leave them to this method.
      */
     private void removeStaleReferences(ReferenceQueue queue, List list) {
-        Reference ref = queue.poll();
-        int count = 0;
-        while (ref != null) {
-            ++count;
-            ref = queue.poll();
-        }
-        if (count > 0) {
-            final Iterator i = list.iterator();
-            while (i.hasNext()) {
-                Object o = ((Reference) i.next()).get();
-                if (o == null) {
-                    i.remove();
-                    if (--count <= 0) {
-                        return;
-                    }
+        if (queue.poll() == null) {
+            return;
+        }
+        while (queue.poll() != null) {}
+        final int size = list.size();
+        int live = 0;
+        for (int i = 0; i < size; ++i) {
+            Reference ref = (Reference) list.get(i);
+            if (ref.get() != null) {
+                if (live != i) {
+                    list.set(live, ref);
                 }
+                ++live;
             }
         }
+        if (live < size) {
+            list.subList(live, size).clear();
+        }
     }
 
     //
@@ -354,7 +363,7 @@ public class DocumentImpl
     public Range createRange() {
 
         if (ranges == null) {
-            ranges = new LinkedList();
+            ranges = new ArrayList();
             rangeReferenceQueue = new ReferenceQueue();
         }
 
@@ -404,16 +413,12 @@ public class DocumentImpl
     
     private void notifyRangesReplacedText(CharacterDataImpl node) {
         removeStaleRangeReferences();
-        final Iterator i = ranges.iterator();
-        while (i.hasNext()) {
-            RangeImpl range = (RangeImpl) ((Reference) i.next()).get();
+        final List list = ranges;
+        for (int i = 0, size = list.size(); i < size; ++i) {
+            RangeImpl range = (RangeImpl) ((Reference) list.get(i)).get();
             if (range != null) {
                 range.receiveReplacedText(node);
             }
-            // Remove stale reference from the list.
-            else {
-                i.remove();
-            }
         }
     }
 
@@ -430,16 +435,12 @@ public class DocumentImpl
     
     private void notifyRangesDeletedText(CharacterDataImpl node, int offset, int count) {
         removeStaleRangeReferences();
-        final Iterator i = ranges.iterator();
-        while (i.hasNext()) {
-            RangeImpl range = (RangeImpl) ((Reference) i.next()).get();
+        final List list = ranges;
+        for (int i = 0, size = list.size(); i < size; ++i) {
+            RangeImpl range = (RangeImpl) ((Reference) list.get(i)).get();
             if (range != null) {
                 range.receiveDeletedText(node, offset, count);
             }
-            // Remove stale reference from the list.
-            else {
-                i.remove();
-            }
         }
     }
 
@@ -456,16 +457,12 @@ public class DocumentImpl
     
     private void notifyRangesInsertedText(CharacterDataImpl node, int offset, int count) {
         removeStaleRangeReferences();
-        final Iterator i = ranges.iterator();
-        while (i.hasNext()) {
-            RangeImpl range = (RangeImpl) ((Reference) i.next()).get();
+        final List list = ranges;
+        for (int i = 0, size = list.size(); i < size; ++i) {
+            RangeImpl range = (RangeImpl) ((Reference) list.get(i)).get();
             if (range != null) {
                 range.receiveInsertedText(node, offset, count);
             }
-            // Remove stale reference from the list.
-            else {
-                i.remove();
-            }
         }
     }
 
@@ -482,16 +479,12 @@ public class DocumentImpl
     
     private void notifyRangesSplitData(Node node, Node newNode, int offset) {
         removeStaleRangeReferences();
-        final Iterator i = ranges.iterator();
-        while (i.hasNext()) {
-            RangeImpl range = (RangeImpl) ((Reference) i.next()).get();
+        final List list = ranges;
+        for (int i = 0, size = list.size(); i < size; ++i) {
+            RangeImpl range = (RangeImpl) ((Reference) list.get(i)).get();
             if (range != null) {
                 range.receiveSplitData(node, newNode, offset);
             }
-            // Remove stale reference from the list.
-            else {
-                i.remove();
-            }
         }
     }
     
@@ -596,6 +589,59 @@ public class DocumentImpl
         return (Vector) eventListeners.get(n);
     }
 
+    /**
+     * NON-DOM INTERNAL: Returns the listener count for the given event
+     * type, or null if no listener for that type is registered on any
+     * node of this document.
+     */
+    LCount getListenerCount(String type) {
+        if (listenerCounts == null) {
+            return null;
+        }
+        return (LCount) listenerCounts.get(type);
+    }
+
+    /**
+     * NON-DOM INTERNAL: Returns true if at least one listener for the
+     * given event type is registered on a node of this document.
+     */
+    boolean hasListeners(String type) {
+        if (listenerCounts == null) {
+            return false;
+        }
+        LCount lc = (LCount) listenerCounts.get(type);
+        return lc != null && lc.total > 0;
+    }
+
+    /**
+     * NON-DOM INTERNAL: Records the registration (delta == 1) or the
+     * removal (delta == -1) of a listener in the listener counts.
+     */
+    private void updateListenerCount(String type, boolean useCapture, int delta) {
+        if (listenerCounts == null) {
+            listenerCounts = new HashMap();
+        }
+        LCount lc = (LCount) listenerCounts.get(type);
+        if (lc == null) {
+            lc = new LCount();
+            listenerCounts.put(type, lc);
+        }
+        if (useCapture) {
+            lc.captures += delta;
+        }
+        else {
+            lc.bubbles += delta;
+        }
+        lc.total += delta;
+        // Storage management: Discard unused counts
+        if (lc.total <= 0) {
+            listenerCounts.remove(type);
+            if (listenerCounts.isEmpty()) {
+                listenerCounts = null;
+            }
+        }
+    }
+
     //
     // EventTarget support (public and internal)
     //
@@ -620,6 +666,11 @@ public class DocumentImpl
         String type;
         EventListener listener;
         boolean useCapture;
+        /** 
+         * Set once the entry has been deregistered, so that snapshots
+         * taken by an ongoing dispatch don't invoke it anymore.
+         */
+        transient boolean removed;
 	    
         /** NON-DOM INTERNAL: Constructor for Listener list Entry 
          * @param type Event name (NOT event group!) to listen for.
@@ -667,15 +718,7 @@ public class DocumentImpl
         nodeListeners.addElement(new LEntry(type, listener, useCapture));
 	    
         // Record active listener
-        LCount lc = LCount.lookup(type);
-        if (useCapture) {
-            ++lc.captures;
-            ++lc.total;
-        }
-        else {
-            ++lc.bubbles;
-            ++lc.total;
-        }
+        updateListenerCount(type, useCapture, 1);
 
     } // addEventListener(NodeImpl,String,EventListener,boolean) :void
 	
@@ -709,20 +752,13 @@ public class DocumentImpl
             if (le.useCapture == useCapture && le.listener == listener && 
                 le.type.equals(type)) {
                 nodeListeners.removeElementAt(i);
+                le.removed = true;
                 // Storage management: Discard empty listener lists
                 if (nodeListeners.size() == 0)
                     setEventListeners(node, null);
 
                 // Remove active listener
-                LCount lc = LCount.lookup(type);
-                if (useCapture) {
-                    --lc.captures;
-                    --lc.total;
-                }
-                else {
-                    --lc.bubbles;
-                    --lc.total;
-                }
+                updateListenerCount(type, useCapture, -1);
 
                 break;  // Found it; no need to loop farther.
             }
@@ -734,7 +770,14 @@ public class DocumentImpl
         if (nodeListeners == null) {
             return;
         }
-        setEventListeners(tgt, (Vector) nodeListeners.clone());
+        final int size = nodeListeners.size();
+        Vector copy = new Vector(size);
+        for (int i = 0; i < size; ++i) {
+            LEntry le = (LEntry) nodeListeners.elementAt(i);
+            copy.addElement(new LEntry(le.type, le.listener, le.useCapture));
+            updateListenerCount(le.type, le.useCapture, 1);
+        }
+        setEventListeners(tgt, copy);
     }
 
     /**
@@ -802,8 +845,8 @@ public class DocumentImpl
         }
         
         // If nobody is listening for this event, discard immediately
-        LCount lc = LCount.lookup(evt.getType());
-        if (lc.total == 0)
+        LCount lc = getListenerCount(evt.type);
+        if (lc == null || lc.total == 0)
             return evt.preventDefault;
 
         // INITIALIZE THE EVENT'S DISPATCH STATUS
@@ -844,24 +887,7 @@ public class DocumentImpl
                 // Handle all capturing listeners on this node
                 NodeImpl nn = (NodeImpl) pv.get(j);
                 evt.currentTarget = nn;
-                Vector nodeListeners = getEventListeners(nn);
-                if (nodeListeners != null) {
-                    Vector nl = (Vector) nodeListeners.clone();
-                    // call listeners in the order in which they got registered
-                    int nlsize = nl.size();
-                    for (int i = 0; i < nlsize; i++) {
-                        LEntry le = (LEntry) nl.elementAt(i);
-                        if (le.useCapture && le.type.equals(evt.type) &&
-                            nodeListeners.contains(le)) {
-                            try {
-                                le.listener.handleEvent(evt);
-                            }
-                            catch (Exception e) {
-                                // All exceptions are ignored.
-                            }
-                        }
-                    }
-                }
+                invokeListeners(nn, evt, true);
             }
         }
         
@@ -873,23 +899,8 @@ public class DocumentImpl
             // node are _not_ invoked, even during the capture phase.
             evt.eventPhase = Event.AT_TARGET;
             evt.currentTarget = node;
-            Vector nodeListeners = getEventListeners(node);
-            if (!evt.stopPropagation && nodeListeners != null) {
-                Vector nl = (Vector) nodeListeners.clone();
-                // call listeners in the order in which they got registered
-                int nlsize = nl.size();
-                for (int i = 0; i < nlsize; i++) {
-                    LEntry le = (LEntry) nl.elementAt(i);
-                    if (!le.useCapture && le.type.equals(evt.type) &&
-                        nodeListeners.contains(le)) {
-                        try {
-                            le.listener.handleEvent(evt);
-                        }
-                        catch (Exception e) {
-                            // All exceptions are ignored.
-                        }
-                    }
-                }
+            if (!evt.stopPropagation) {
+                invokeListeners(node, evt, false);
             }
             // BUBBLING_PHASE: Ancestors are scanned, target to root, for
             // non-capturing listeners. If the event's preventBubbling flag
@@ -906,25 +917,7 @@ public class DocumentImpl
                     // Handle all bubbling listeners on this node
                     NodeImpl nn = (NodeImpl) pv.get(j);
                     evt.currentTarget = nn;
-                    nodeListeners = getEventListeners(nn);
-                    if (nodeListeners != null) {
-                        Vector nl = (Vector) nodeListeners.clone();
-                        // call listeners in the order in which they got
-                        // registered
-                        int nlsize = nl.size();
-                        for (int i = 0; i < nlsize; i++) {
-                            LEntry le = (LEntry) nl.elementAt(i);
-                            if (!le.useCapture && le.type.equals(evt.type) &&
-                                nodeListeners.contains(le)) {
-                                try {
-                                    le.listener.handleEvent(evt);
-                                }
-                                catch (Exception e) {
-                                    // All exceptions are ignored.
-                                }
-                            }
-                        }
-                    }
+                    invokeListeners(nn, evt, false);
                 }
             }
         }
@@ -943,6 +936,39 @@ public class DocumentImpl
         return evt.preventDefault;        
     } // dispatchEvent(NodeImpl,Event) :boolean
 
+    /**
+     * NON-DOM INTERNAL: Invokes the listeners registered on the given node
+     * for the given event in the given role (capturing or not).
+     * <p>
+     * Listeners are called in the order in which they got registered, from
+     * a snapshot of the node's listener list: registrations made by a
+     * listener don't take effect for this node, whereas removals take effect
+     * immediately.
+     * @param node node whose listeners are to be invoked
+     * @param evt event to be handed to the listeners
+     * @param useCapture true to invoke capturing listeners, false to invoke
+     *  at-target and bubbling ones
+     */
+    private void invokeListeners(NodeImpl node, EventImpl evt, boolean useCapture) {
+        Vector nodeListeners = getEventListeners(node);
+        if (nodeListeners == null) {
+            return;
+        }
+        Object[] nl = nodeListeners.toArray();
+        for (int i = 0; i < nl.length; i++) {
+            LEntry le = (LEntry) nl[i];
+            if (le.useCapture == useCapture && !le.removed &&
+                le.type.equals(evt.type)) {
+                try {
+                    le.listener.handleEvent(evt);
+                }
+                catch (Exception e) {
+                    // All exceptions are ignored.
+                }
+            }
+        }
+    } // invokeListeners(NodeImpl,EventImpl,boolean) :void
+
     /**
      * NON-DOM INTERNAL: DOMNodeInsertedIntoDocument and ...RemovedFrom...
      * are dispatched to an entire subtree. This is the distribution code
@@ -951,16 +977,18 @@ public class DocumentImpl
      * Similar to code in dispatchingEventToSubtree however this method
      * is only used on the target node and does not start a dispatching chain
      * on the sibling of the target node as this is not part of the subtree 
-     * ***** At the moment I'm being sloppy and using the normal
-     * capture dispatcher on every node. This could be optimized hugely
-     * by writing a capture engine that tracks our position in the tree to
-     * update the capture chain without repeated chases up to root.
+     * <p>
+     * Since these events don't bubble, a node only needs to be visited by
+     * the regular dispatcher when capturing listeners exist for the event
+     * or when the node itself has listeners. All other nodes are skipped,
+     * which avoids rebuilding the capture chain for every node of large
+     * subtrees.
      * @param n target node (that was directly inserted or removed)
      * @param e event to be sent to that node and its subtree
      */
     protected void dispatchEventToSubtree(Node n, Event e) {
         
-        ((NodeImpl) n).dispatchEvent(e);
+        dispatchToSubtreeNode(n, e);
         if (n.getNodeType() == Node.ELEMENT_NODE) {
             NamedNodeMap a = n.getAttributes();
             for (int i = a.getLength() - 1; i >= 0; --i)
@@ -978,20 +1006,31 @@ public class DocumentImpl
      * @param e event to be sent to that node and its subtree
      */
     protected void dispatchingEventToSubtree(Node n, Event e) {
-    	if (n==null) 
-    		return;
-    	
-    	// ***** Recursive implementation. This is excessively expensive,
-        // and should be replaced in conjunction with optimization
-        // mentioned above.
-    	((NodeImpl) n).dispatchEvent(e);
-        if (n.getNodeType() == Node.ELEMENT_NODE) {
-            NamedNodeMap a = n.getAttributes();
-            for (int i = a.getLength() - 1; i >= 0; --i)
-                dispatchingEventToSubtree(a.item(i), e);
+        // Siblings are visited iteratively; recursion is limited to the
+        // depth of the subtree.
+        for (; n != null; n = n.getNextSibling()) {
+            dispatchToSubtreeNode(n, e);
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                NamedNodeMap a = n.getAttributes();
+                for (int i = a.getLength() - 1; i >= 0; --i)
+                    dispatchingEventToSubtree(a.item(i), e);
+            }
+            dispatchingEventToSubtree(n.getFirstChild(), e);
+        }
+    }
+
+    /**
+     * Dispatches a non-bubbling subtree event to the given node, unless
+     * no listener could possibly receive it there.
+     */
+    private void dispatchToSubtreeNode(Node n, Event e) {
+        LCount lc = getListenerCount(e.getType());
+        if (lc == null) {
+            return;
+        }
+        if (lc.captures > 0 || getEventListeners((NodeImpl) n) != null) {
+            ((NodeImpl) n).dispatchEvent(e);
         }
-        dispatchingEventToSubtree(n.getFirstChild(), e);   
-        dispatchingEventToSubtree(n.getNextSibling(), e);
     }
     
     /**
@@ -1053,9 +1092,8 @@ public class DocumentImpl
         // We have to send DOMAttrModified.
         NodeImpl owner = null;
         if (enclosingAttr != null) {
-            LCount lc = LCount.lookup(MutationEventImpl.DOM_ATTR_MODIFIED);
             owner = (NodeImpl) enclosingAttr.getOwnerElement();
-            if (lc.total > 0) {
+            if (hasListeners(MutationEventImpl.DOM_ATTR_MODIFIED)) {
                 if (owner != null) {
                     MutationEventImpl me =  new MutationEventImpl();
                     me.initMutationEvent(MutationEventImpl.DOM_ATTR_MODIFIED,
@@ -1072,8 +1110,7 @@ public class DocumentImpl
         // set of changes. 
         // "This event is dispatched after all other events caused by the
         // mutation have been fired."
-        LCount lc = LCount.lookup(MutationEventImpl.DOM_SUBTREE_MODIFIED);
-        if (lc.total > 0) {
+        if (hasListeners(MutationEventImpl.DOM_SUBTREE_MODIFIED)) {
             MutationEvent me =  new MutationEventImpl();
             me.initMutationEvent(MutationEventImpl.DOM_SUBTREE_MODIFIED,
                                  true, false, null, null,
@@ -1104,8 +1141,7 @@ public class DocumentImpl
         // If we're within the scope of an Attr and DOMAttrModified 
         // was requested, we need to preserve its previous value for
         // that event.
-        LCount lc = LCount.lookup(MutationEventImpl.DOM_ATTR_MODIFIED);
-        if (lc.total > 0) {
+        if (hasListeners(MutationEventImpl.DOM_ATTR_MODIFIED)) {
             NodeImpl eventAncestor = node;
             while (true) {
                 if (eventAncestor == null)
@@ -1152,9 +1188,7 @@ public class DocumentImpl
     private void mutationEventsModifiedCharacterData(NodeImpl node, String oldvalue, String value, boolean replace) {
         if (!replace) {
             // MUTATION POST-EVENTS:
-            LCount lc =
-                LCount.lookup(MutationEventImpl.DOM_CHARACTER_DATA_MODIFIED);
-            if (lc.total > 0) {
+            if (hasListeners(MutationEventImpl.DOM_CHARACTER_DATA_MODIFIED)) {
                 MutationEvent me = new MutationEventImpl();
                 me.initMutationEvent(
                                 MutationEventImpl.DOM_CHARACTER_DATA_MODIFIED,
@@ -1209,8 +1243,7 @@ public class DocumentImpl
         // MUTATION POST-EVENTS:
         // "Local" events (non-aggregated)
         // New child is told it was inserted, and where
-        LCount lc = LCount.lookup(MutationEventImpl.DOM_NODE_INSERTED);
-        if (lc.total > 0) {
+        if (hasListeners(MutationEventImpl.DOM_NODE_INSERTED)) {
             MutationEventImpl me = new MutationEventImpl();
             me.initMutationEvent(MutationEventImpl.DOM_NODE_INSERTED,
                                  true, false, node,
@@ -1220,9 +1253,7 @@ public class DocumentImpl
 
         // If within the Document, tell the subtree it's been added
         // to the Doc.
-        lc = LCount.lookup(
-                        MutationEventImpl.DOM_NODE_INSERTED_INTO_DOCUMENT);
-        if (lc.total > 0) {
+        if (hasListeners(MutationEventImpl.DOM_NODE_INSERTED_INTO_DOCUMENT)) {
             NodeImpl eventAncestor = node;
             if (savedEnclosingAttr != null)
                 eventAncestor = (NodeImpl)
@@ -1259,16 +1290,12 @@ public class DocumentImpl
     
     private void notifyRangesInsertedNode(NodeImpl newInternal) {
         removeStaleRangeReferences();
-        final Iterator i = ranges.iterator();
-        while (i.hasNext()) {
-            RangeImpl range = (RangeImpl) ((Reference) i.next()).get();
+        final List list = ranges;
+        for (int i = 0, size = list.size(); i < size; ++i) {
+            RangeImpl range = (RangeImpl) ((Reference) list.get(i)).get();
             if (range != null) {
                 range.insertedNodeFromDOM(newInternal);
             }
-            // Remove stale reference from the list.
-            else {
-                i.remove();
-            }
         }
     }
 
@@ -1295,31 +1322,23 @@ public class DocumentImpl
     
     private void notifyIteratorsRemovingNode(NodeImpl oldChild) {
         removeStaleIteratorReferences();
-        final Iterator i = iterators.iterator();
-        while (i.hasNext()) {
-            NodeIteratorImpl iterator = (NodeIteratorImpl) ((Reference) i.next()).get();
+        final List list = iterators;
+        for (int i = 0, size = list.size(); i < size; ++i) {
+            NodeIteratorImpl iterator = (NodeIteratorImpl) ((Reference) list.get(i)).get();
             if (iterator != null) {
                 iterator.removeNode(oldChild);
             }
-            // Remove stale reference from the list.
-            else {
-                i.remove();
-            }
         }
     }
     
     private void notifyRangesRemovingNode(NodeImpl oldChild) {
         removeStaleRangeReferences();
-        final Iterator i = ranges.iterator();
-        while (i.hasNext()) {
-            RangeImpl range = (RangeImpl) ((Reference) i.next()).get();
+        final List list = ranges;
+        for (int i = 0, size = list.size(); i < size; ++i) {
+            RangeImpl range = (RangeImpl) ((Reference) list.get(i)).get();
             if (range != null) {
                 range.removeNode(oldChild);
             }
-            // Remove stale reference from the list.
-            else {
-                i.remove();
-            }
         }
     }
     
@@ -1332,8 +1351,7 @@ public class DocumentImpl
             saveEnclosingAttr(node);
         }
         // Child is told that it is about to be removed
-        LCount lc = LCount.lookup(MutationEventImpl.DOM_NODE_REMOVED);
-        if (lc.total > 0) {
+        if (hasListeners(MutationEventImpl.DOM_NODE_REMOVED)) {
             MutationEventImpl me= new MutationEventImpl();
             me.initMutationEvent(MutationEventImpl.DOM_NODE_REMOVED,
                                  true, false, node, null,
@@ -1343,9 +1361,7 @@ public class DocumentImpl
 
         // If within Document, child's subtree is informed that it's
         // losing that status
-        lc = LCount.lookup(
-                         MutationEventImpl.DOM_NODE_REMOVED_FROM_DOCUMENT);
-        if (lc.total > 0) {
+        if (hasListeners(MutationEventImpl.DOM_NODE_REMOVED_FROM_DOCUMENT)) {
             NodeImpl eventAncestor = this;
             if(savedEnclosingAttr != null)
                 eventAncestor = (NodeImpl)
@@ -1453,8 +1469,7 @@ public class DocumentImpl
     private void mutationEventsRemovedAttrNode(AttrImpl attr, NodeImpl oldOwner, String name) {
         // If we have to send DOMAttrModified (determined earlier),
         // do so.
-        LCount lc = LCount.lookup(MutationEventImpl.DOM_ATTR_MODIFIED);
-        if (lc.total > 0) {
+        if (hasListeners(MutationEventImpl.DOM_ATTR_MODIFIED)) {
             MutationEventImpl me= new MutationEventImpl();
             me.initMutationEvent(MutationEventImpl.DOM_ATTR_MODIFIED,
                                  true, false, attr,
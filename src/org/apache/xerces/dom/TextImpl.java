@@ -17,6 +17,9 @@
 
 package org.apache.xerces.dom;
 
+import java.io.IOException;
+
+import org.apache.xerces.impl.dv.util.BinaryDecoder;
 import org.w3c.dom.CharacterData;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Node;
@@ -581,6 +584,26 @@ public class TextImpl
 
     } // isIgnorableWhitespace():boolean
 
+    /**
+     * NON-DOM: Decodes the binary content of this node, e.g. the value
+     * of an element of type base64Binary or hexBinary, without making
+     * a copy of the whole character data. The decoder is not reset or
+     * ended, so the content of adjacent text nodes can be passed to the
+     * same decoder.
+     * 
+     * @param decoder the decoder to which the data is passed
+     * @return false if the data seen by the decoder is not valid
+     * @throws IOException if the decoder's output stream throws an exception
+     */
+    public boolean decodeBinaryData(BinaryDecoder decoder) throws IOException {
+
+        if (needsSyncData()) {
+            synchronizeData();
+        }
+        return decoder.decode(data);
+
+    } // decodeBinaryData(BinaryDecoder):boolean
+
     
     //
     // Text methods
@@ -247,6 +247,9 @@ public final class Constants {
     /** Include ignorable whitespace feature ("dom/include-ignorable-whitespace"). */
     public static final String INCLUDE_IGNORABLE_WHITESPACE = "dom/include-ignorable-whitespace";
     
+    /** Discard subtree siblings feature ("dom/discard-subtree-siblings"). */
+    public static final String DISCARD_SUBTREE_SIBLINGS_FEATURE = "dom/discard-subtree-siblings";
+    
     /** Default attribute values feature ("validation/default-attribute-values"). */
     public static final String DEFAULT_ATTRIBUTE_VALUES_FEATURE = "validation/default-attribute-values";
     
@@ -259,15 +262,24 @@ public final class Constants {
     /** Balance syntax trees feature ("validation/balance-syntax-trees"). */
     public static final String BALANCE_SYNTAX_TREES = "validation/balance-syntax-trees";
     
+    /** Cache external DTD feature ("validation/cache-external-dtd"). */
+    public static final String CACHE_EXTERNAL_DTD_FEATURE = "validation/cache-external-dtd";
+    
     /** Notify character references feature (scanner/notify-char-refs"). */
     public static final String NOTIFY_CHAR_REFS_FEATURE = "scanner/notify-char-refs";
     
     /** Notify built-in (&amp;amp;, etc.) references feature (scanner/notify-builtin-refs"). */
     public static final String NOTIFY_BUILTIN_REFS_FEATURE = "scanner/notify-builtin-refs";
     
+    /** Coalesce characters feature ("scanner/coalesce-characters"). */
+    public static final String COALESCE_CHARACTERS_FEATURE = "scanner/coalesce-characters";
+    
     /** Standard URI conformant feature ("standard-uri-conformant"). */
     public static final String STANDARD_URI_CONFORMANT_FEATURE = "standard-uri-conformant";
     
+    /** Compressed entities feature ("compressed-entities"). */
+    public static final String COMPRESSED_ENTITIES_FEATURE = "compressed-entities";
+    
     /** Generate synthetic annotations feature ("generate-synthetic-annotations"). */
     public static final String GENERATE_SYNTHETIC_ANNOTATIONS_FEATURE = "generate-synthetic-annotations";
     
@@ -353,6 +365,15 @@ public final class Constants {
     /** Document class name property ("dom/document-class-name"). */
     public static final String DOCUMENT_CLASS_NAME_PROPERTY = "dom/document-class-name";
     
+    /** Subtree handler property ("dom/subtree-handler"). */
+    public static final String SUBTREE_HANDLER_PROPERTY = "dom/subtree-handler";
+    
+    /** Subtree paths property ("dom/subtree-paths"). */
+    public static final String SUBTREE_PATHS_PROPERTY = "dom/subtree-paths";
+    
+    /** Serialization threads property ("dom/serialization-threads"). */
+    public static final String SERIALIZATION_THREADS_PROPERTY = "dom/serialization-threads";
+    
     /** Symbol table property ("internal/symbol-table"). */
     public static final String SYMBOL_TABLE_PROPERTY = "internal/symbol-table";
     
@@ -374,9 +395,21 @@ public final class Constants {
     /** Input buffer size property ("input-buffer-size"). */
     public static final String BUFFER_SIZE_PROPERTY = "input-buffer-size";
     
+    /** Coalesced characters limit property ("scanner/coalesce-characters-limit"). */
+    public static final String COALESCE_CHARACTERS_LIMIT_PROPERTY = "scanner/coalesce-characters-limit";
+    
     /** Security manager property ("security-manager"). */
     public static final String SECURITY_MANAGER_PROPERTY = "security-manager";
     
+    /** Parser metrics property ("parser-metrics"). */
+    public static final String PARSER_METRICS_PROPERTY = "parser-metrics";
+    
+    /** Parser event listener property ("parser-event-listener"). */
+    public static final String PARSER_EVENT_LISTENER_PROPERTY = "parser-event-listener";
+    
+    /** Entity cache property ("entity-cache"). */
+    public static final String ENTITY_CACHE_PROPERTY = "entity-cache";
+    
     /** Locale property ("locale"). */
     public static final String LOCALE_PROPERTY = "locale";
     
@@ -507,15 +540,19 @@ public final class Constants {
             //DEFER_NODE_EXPANSION_FEATURE,
             CREATE_ENTITY_REF_NODES_FEATURE,
             INCLUDE_IGNORABLE_WHITESPACE,
+            DISCARD_SUBTREE_SIBLINGS_FEATURE,
             //GRAMMAR_ACCESS_FEATURE,
             DEFAULT_ATTRIBUTE_VALUES_FEATURE,
             VALIDATE_CONTENT_MODELS_FEATURE,
             VALIDATE_DATATYPES_FEATURE,
             BALANCE_SYNTAX_TREES,
+            CACHE_EXTERNAL_DTD_FEATURE,
             NOTIFY_CHAR_REFS_FEATURE,
             NOTIFY_BUILTIN_REFS_FEATURE,
+            COALESCE_CHARACTERS_FEATURE,
             DISALLOW_DOCTYPE_DECL_FEATURE,
             STANDARD_URI_CONFORMANT_FEATURE,
+            COMPRESSED_ENTITIES_FEATURE,
             GENERATE_SYNTHETIC_ANNOTATIONS_FEATURE,
             VALIDATE_ANNOTATIONS_FEATURE,
             HONOUR_ALL_SCHEMALOCATIONS_FEATURE,
@@ -535,6 +572,9 @@ public final class Constants {
     private static final String[] fgXercesProperties = {
             CURRENT_ELEMENT_NODE_PROPERTY,
             DOCUMENT_CLASS_NAME_PROPERTY,
+            SUBTREE_HANDLER_PROPERTY,
+            SUBTREE_PATHS_PROPERTY,
+            SERIALIZATION_THREADS_PROPERTY,
             SYMBOL_TABLE_PROPERTY,
             ERROR_HANDLER_PROPERTY,
             ERROR_REPORTER_PROPERTY,
@@ -549,7 +589,11 @@ public final class Constants {
             SCHEMA_NONS_LOCATION,
             VALIDATION_MANAGER_PROPERTY,
             BUFFER_SIZE_PROPERTY,
+            COALESCE_CHARACTERS_LIMIT_PROPERTY,
             SECURITY_MANAGER_PROPERTY,
+            PARSER_METRICS_PROPERTY,
+            PARSER_EVENT_LISTENER_PROPERTY,
+            ENTITY_CACHE_PROPERTY,
             LOCALE_PROPERTY,
             ROOT_TYPE_DEFINITION_PROPERTY,
             ROOT_ELEMENT_DECLARATION_PROPERTY,
@@ -99,7 +99,7 @@ public class XML11DocumentScannerImpl
             c = -1;
         }
         if (fDocumentHandler != null && content.length > 0) {
-            fDocumentHandler.characters(content, null);
+            reportCharacters(content);
         }
 
         if (c == ']' && fString.length == 0) {
@@ -123,7 +123,7 @@ public class XML11DocumentScannerImpl
                 }
             }
             if (fDocumentHandler != null && fStringBuffer.length != 0) {
-                fDocumentHandler.characters(fStringBuffer, null);
+                reportCharacters(fStringBuffer);
             }
             fInScanContent = false;
             c = -1;
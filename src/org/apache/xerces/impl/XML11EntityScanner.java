@@ -226,7 +226,7 @@ public class XML11EntityScanner
         // return nmtoken
         String symbol = null;
         if (length > 0) {
-            symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, offset, length);
+            symbol = addSymbol(fCurrentEntity.ch, offset, length);
         }
         return symbol;
 
@@ -264,7 +264,7 @@ public class XML11EntityScanner
                 offset = 0;
                 if (load(1, false)) {
                     fCurrentEntity.columnNumber++;
-                    String symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, 0, 1);
+                    String symbol = addSymbol(fCurrentEntity.ch, 0, 1);
                     return symbol;
                 }
             }
@@ -291,7 +291,7 @@ public class XML11EntityScanner
                 offset = 0;
                 if (load(2, false)) {
                     fCurrentEntity.columnNumber += 2;
-                    String symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, 0, 2);
+                    String symbol = addSymbol(fCurrentEntity.ch, 0, 2);
                     return symbol;
                 }
             }
@@ -380,7 +380,7 @@ public class XML11EntityScanner
         // return name
         String symbol = null;
         if (length > 0) {
-            symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, offset, length);
+            symbol = addSymbol(fCurrentEntity.ch, offset, length);
         }
         return symbol;
 
@@ -419,7 +419,7 @@ public class XML11EntityScanner
                 offset = 0;
                 if (load(1, false)) {
                     fCurrentEntity.columnNumber++;
-                    String symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, 0, 1);
+                    String symbol = addSymbol(fCurrentEntity.ch, 0, 1);
                     return symbol;
                 }
             }
@@ -446,7 +446,7 @@ public class XML11EntityScanner
                 offset = 0;
                 if (load(2, false)) {
                     fCurrentEntity.columnNumber += 2;
-                    String symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, 0, 2);
+                    String symbol = addSymbol(fCurrentEntity.ch, 0, 2);
                     return symbol;
                 }
             }
@@ -535,7 +535,7 @@ public class XML11EntityScanner
         // return name
         String symbol = null;
         if (length > 0) {
-            symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, offset, length);
+            symbol = addSymbol(fCurrentEntity.ch, offset, length);
         }
         return symbol;
 
@@ -580,7 +580,7 @@ public class XML11EntityScanner
                 offset = 0;
                 if (load(1, false)) {
                     fCurrentEntity.columnNumber++;
-                    String name = fSymbolTable.addSymbol(fCurrentEntity.ch, 0, 1);
+                    String name = addSymbol(fCurrentEntity.ch, 0, 1);
                     qname.setValues(null, name, name, null);
                     return true;
                 }
@@ -608,7 +608,7 @@ public class XML11EntityScanner
                 offset = 0;
                 if (load(2, false)) {
                     fCurrentEntity.columnNumber += 2;
-                    String name = fSymbolTable.addSymbol(fCurrentEntity.ch, 0, 2);
+                    String name = addSymbol(fCurrentEntity.ch, 0, 2);
                     qname.setValues(null, name, name, null);
                     return true;
                 }
@@ -717,11 +717,11 @@ public class XML11EntityScanner
         if (length > 0) {
             String prefix = null;
             String localpart = null;
-            String rawname = fSymbolTable.addSymbol(fCurrentEntity.ch,
+            String rawname = addSymbol(fCurrentEntity.ch,
                                                     offset, length);
             if (index != -1) {
                 int prefixLength = index - offset;
-                prefix = fSymbolTable.addSymbol(fCurrentEntity.ch,
+                prefix = addSymbol(fCurrentEntity.ch,
                                                     offset, prefixLength);
                 int len = length - prefixLength - 1;
                 int startLocal = index +1;
@@ -733,7 +733,7 @@ public class XML11EntityScanner
                                                null,
                                                XMLErrorReporter.SEVERITY_FATAL_ERROR);
                 }
-                localpart = fSymbolTable.addSymbol(fCurrentEntity.ch,
+                localpart = addSymbol(fCurrentEntity.ch,
                                                    index + 1, len);
 
             }
@@ -747,6 +747,22 @@ public class XML11EntityScanner
 
     } // scanQName(QName):boolean
 
+    /**
+     * Scans a qualified name from the input. The characters allowed in
+     * XML 1.1 names are not looked up in the cache of qualified names.
+     *
+     * @param qname The qualified name structure to fill.
+     *
+     * @return Returns true if a qualified name appeared immediately on
+     *         the input and was scanned, false otherwise.
+     *
+     * @throws IOException  Thrown if i/o error occurs.
+     * @throws EOFException Thrown on end of file.
+     */
+    public boolean scanCachedQName(QName qname) throws IOException {
+        return scanQName(qname);
+    } // scanCachedQName(QName):boolean
+
     /**
      * Scans a range of parsed character data, setting the fields of the
      * XMLString structure, appropriately.
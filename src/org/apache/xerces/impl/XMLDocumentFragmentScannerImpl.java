@@ -118,6 +118,10 @@ public class XMLDocumentFragmentScannerImpl
     /** Feature identifier: notify built-in refereces. */
     protected static final String NOTIFY_BUILTIN_REFS =
         Constants.XERCES_FEATURE_PREFIX + Constants.NOTIFY_BUILTIN_REFS_FEATURE;
+    
+    /** Feature identifier: coalesce characters. */
+    protected static final String COALESCE_CHARACTERS =
+        Constants.XERCES_FEATURE_PREFIX + Constants.COALESCE_CHARACTERS_FEATURE;
         
     // property identifiers
     
@@ -125,6 +129,10 @@ public class XMLDocumentFragmentScannerImpl
     protected static final String ENTITY_RESOLVER =
         Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_RESOLVER_PROPERTY;
     
+    /** Property identifier: coalesced characters limit. */
+    protected static final String COALESCE_CHARACTERS_LIMIT =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.COALESCE_CHARACTERS_LIMIT_PROPERTY;
+    
     // recognized features and properties
 
     /** Recognized features. */
@@ -133,6 +141,7 @@ public class XMLDocumentFragmentScannerImpl
         VALIDATION, 
         NOTIFY_BUILTIN_REFS,
         NOTIFY_CHAR_REFS, 
+        COALESCE_CHARACTERS,
     };
 
     /** Feature defaults. */
@@ -141,6 +150,7 @@ public class XMLDocumentFragmentScannerImpl
         null,
         Boolean.FALSE,
         Boolean.FALSE,
+        Boolean.FALSE,
     };
 
     /** Recognized properties. */
@@ -149,6 +159,7 @@ public class XMLDocumentFragmentScannerImpl
         ERROR_REPORTER,
         ENTITY_MANAGER,
         ENTITY_RESOLVER,
+        COALESCE_CHARACTERS_LIMIT,
     };
 
     /** Property defaults. */
@@ -157,6 +168,7 @@ public class XMLDocumentFragmentScannerImpl
         null,
         null,
         null,
+        null,
     };
 
     // debugging
@@ -223,6 +235,19 @@ public class XMLDocumentFragmentScannerImpl
     /** Notify built-in references. */
     protected boolean fNotifyBuiltInRefs = false;
 
+    /** 
+     * Coalesce characters. If true, adjacent character content is
+     * collected and reported in a single call to the document handler.
+     */
+    protected boolean fCoalesceCharacters = false;
+
+    /** 
+     * The maximum number of characters coalesced into one call, or zero
+     * if there is no maximum. Content scanned in one piece which is 
+     * longer than this is reported as is.
+     */
+    protected int fCoalesceCharactersLimit = 0;
+
     // dispatchers
 
     /** Active dispatcher. */
@@ -275,6 +300,9 @@ public class XMLDocumentFragmentScannerImpl
     /** Reusable Augmentations. */
     private Augmentations fTempAugmentations = null;
 
+    /** Character content not yet reported, if coalescing characters. */
+    private final XMLStringBuffer fCharacterBuffer = new XMLStringBuffer();
+
     //
     // Constructors
     //
@@ -368,6 +396,7 @@ public class XMLDocumentFragmentScannerImpl
         fStandalone = false;
         fIsEntityDeclaredVC = false;
         fInScanContent = false;
+        fCharacterBuffer.clear();
 
 		// setup dispatcher
 		setScannerState(SCANNER_STATE_CONTENT);
@@ -383,6 +412,11 @@ public class XMLDocumentFragmentScannerImpl
             } catch (XMLConfigurationException e) {
                 fNotifyBuiltInRefs = false;
             }
+            try {
+                fCoalesceCharacters = componentManager.getFeature(COALESCE_CHARACTERS);
+            } catch (XMLConfigurationException e) {
+                fCoalesceCharacters = false;
+            }
             
             // xerces properties
             try {
@@ -393,6 +427,12 @@ public class XMLDocumentFragmentScannerImpl
             catch (XMLConfigurationException e) {
                 fExternalSubsetResolver = null;
             }
+            try {
+                setCoalesceCharactersLimit(componentManager.getProperty(COALESCE_CHARACTERS_LIMIT));
+            }
+            catch (XMLConfigurationException e) {
+                fCoalesceCharactersLimit = 0;
+            }
         }
 
     } // reset(XMLComponentManager)
@@ -433,6 +473,10 @@ public class XMLDocumentFragmentScannerImpl
                 featureId.endsWith(Constants.NOTIFY_BUILTIN_REFS_FEATURE)) {
                 fNotifyBuiltInRefs = state;
             }
+            else if (suffixLength == Constants.COALESCE_CHARACTERS_FEATURE.length() && 
+                featureId.endsWith(Constants.COALESCE_CHARACTERS_FEATURE)) {
+                fCoalesceCharacters = state;
+            }
         }
 
     } // setFeature(String,boolean)
@@ -480,6 +524,11 @@ public class XMLDocumentFragmentScannerImpl
                     (ExternalSubsetResolver) value : null;
                 return;
             }
+            if (suffixLength == Constants.COALESCE_CHARACTERS_LIMIT_PROPERTY.length() && 
+                propertyId.endsWith(Constants.COALESCE_CHARACTERS_LIMIT_PROPERTY)) {
+                setCoalesceCharactersLimit(value);
+                return;
+            }
         }
         
     } // setProperty(String,Object)
@@ -571,6 +620,7 @@ public class XMLDocumentFragmentScannerImpl
         }
         fEntityStack[fEntityDepth] = fMarkupDepth;
 
+        flushCharacters();
         super.startEntity(name, identifier, encoding, augs);
 
         // WFC:  entity declared in external subset in standalone doc
@@ -603,9 +653,10 @@ public class XMLDocumentFragmentScannerImpl
         // flush possible pending output buffer - see scanContent
         if (fInScanContent && fStringBuffer.length != 0
             && fDocumentHandler != null) {
-            fDocumentHandler.characters(fStringBuffer, null);
+            reportCharacters(fStringBuffer);
             fStringBuffer.length = 0; // make sure we know it's been flushed
         }
+        flushCharacters();
 
         super.endEntity(name, augs);
 
@@ -1011,7 +1062,7 @@ public class XMLDocumentFragmentScannerImpl
             c = -1;
         }
         if (fDocumentHandler != null && content.length > 0) {
-            fDocumentHandler.characters(content, null);
+            reportCharacters(content);
         }
 
         if (c == ']' && fTempString.length == 0) {
@@ -1035,7 +1086,7 @@ public class XMLDocumentFragmentScannerImpl
                 }
             }
             if (fDocumentHandler != null && fStringBuffer.length != 0) {
-                fDocumentHandler.characters(fStringBuffer, null);
+                reportCharacters(fStringBuffer);
             }
             fInScanContent = false;
             c = -1;
@@ -1068,7 +1119,7 @@ public class XMLDocumentFragmentScannerImpl
             fStringBuffer.clear();
             if (!fEntityScanner.scanData("]]", fStringBuffer)) {
                 if (fDocumentHandler != null && fStringBuffer.length > 0) {
-                    fDocumentHandler.characters(fStringBuffer, null);
+                    reportCharacters(fStringBuffer);
                 }
                 int brackets = 0;
                 while (fEntityScanner.skipChar(']')) {
@@ -1084,18 +1135,18 @@ public class XMLDocumentFragmentScannerImpl
                             fStringBuffer.append(']');
                         }
                         for (int i = 0; i < chunks; i++) {
-                            fDocumentHandler.characters(fStringBuffer, null);
+                            reportCharacters(fStringBuffer);
                         }
                         if (remainder != 0) {
                             fStringBuffer.length = remainder;
-                            fDocumentHandler.characters(fStringBuffer, null);
+                            reportCharacters(fStringBuffer);
                         }
                     }
                     else {
                     	for (int i = 0; i < brackets; i++) {
                     	    fStringBuffer.append(']');
                     	}
-                       fDocumentHandler.characters(fStringBuffer, null);
+                       reportCharacters(fStringBuffer);
                     }
                 }
                 if (fEntityScanner.skipChar('>')) {
@@ -1104,12 +1155,12 @@ public class XMLDocumentFragmentScannerImpl
                 if (fDocumentHandler != null) {
                     fStringBuffer.clear();
                     fStringBuffer.append("]]");
-                    fDocumentHandler.characters(fStringBuffer, null);
+                    reportCharacters(fStringBuffer);
                 }
             }
             else {
                 if (fDocumentHandler != null) {
-                    fDocumentHandler.characters(fStringBuffer, null);
+                    reportCharacters(fStringBuffer);
                 }
                 int c = fEntityScanner.peekChar();
                 if (c != -1 && isInvalidLiteral(c)) {
@@ -1117,7 +1168,7 @@ public class XMLDocumentFragmentScannerImpl
                         fStringBuffer.clear();
                         scanSurrogates(fStringBuffer);
                         if (fDocumentHandler != null) {
-                            fDocumentHandler.characters(fStringBuffer, null);
+                            reportCharacters(fStringBuffer);
                         }
                     }
                     else {
@@ -1129,6 +1180,7 @@ public class XMLDocumentFragmentScannerImpl
             }
         }
         fMarkupDepth--;
+        flushCharacters();
 
         // call handler
         if (fDocumentHandler != null) {
@@ -1213,6 +1265,12 @@ public class XMLDocumentFragmentScannerImpl
         if (ch != -1) {
             // call handler
             if (fDocumentHandler != null) {
+                if (fCoalesceCharacters && !fNotifyCharRefs && 
+                    !(fValidation && ch <= 0x20)) {
+                    reportCharacters(fStringBuffer2);
+                    return;
+                }
+                flushCharacters();
                 if (fNotifyCharRefs) {
                     fDocumentHandler.startGeneralEntity(fCharRefLiteral, null, null, null);
                 }
@@ -1279,6 +1337,7 @@ public class XMLDocumentFragmentScannerImpl
             reportFatalError("ReferenceToUnparsedEntity", new Object[]{name});
         }
         else {
+            flushCharacters();
             if (!fEntityManager.isDeclaredEntity(name)) {
                 if (fIsEntityDeclaredVC) {
                     if (fValidation)
@@ -1305,20 +1364,70 @@ public class XMLDocumentFragmentScannerImpl
      */
     private void handleCharacter(char c, String entity) throws XNIException {
         if (fDocumentHandler != null) {
-            if (fNotifyBuiltInRefs) {
-                fDocumentHandler.startGeneralEntity(entity, null, null, null);
-            }
-            
             fSingleChar[0] = c;
             fTempString.setValues(fSingleChar, 0, 1);
-            fDocumentHandler.characters(fTempString, null);
-            
-            if (fNotifyBuiltInRefs) {
-                fDocumentHandler.endGeneralEntity(entity, null);
+            if (!fNotifyBuiltInRefs) {
+                reportCharacters(fTempString);
+                return;
             }
+            
+            flushCharacters();
+            fDocumentHandler.startGeneralEntity(entity, null, null, null);
+            fDocumentHandler.characters(fTempString, null);
+            fDocumentHandler.endGeneralEntity(entity, null);
         }
     } // handleCharacter(char)
 
+    /**
+     * Reports character content to the document handler. If characters
+     * are coalesced, the content is appended to the content not yet
+     * reported instead, which must be reported by calling 
+     * {@link #flushCharacters} before any other event.
+     *
+     * @param text The character content.
+     */
+    protected void reportCharacters(XMLString text) throws XNIException {
+        if (!fCoalesceCharacters) {
+            fDocumentHandler.characters(text, null);
+            return;
+        }
+        if (fCoalesceCharactersLimit > 0 && 
+            fCharacterBuffer.length + text.length > fCoalesceCharactersLimit) {
+            flushCharacters();
+            // too long to be coalesced with anything, report it as is
+            if (text.length >= fCoalesceCharactersLimit) {
+                fDocumentHandler.characters(text, null);
+                return;
+            }
+        }
+        fCharacterBuffer.append(text);
+    } // reportCharacters(XMLString)
+
+    /** Reports the coalesced character content not yet reported, if any. */
+    protected void flushCharacters() throws XNIException {
+        if (fCharacterBuffer.length != 0) {
+            if (fDocumentHandler != null) {
+                fDocumentHandler.characters(fCharacterBuffer, null);
+            }
+            fCharacterBuffer.clear();
+        }
+    } // flushCharacters()
+
+    /**
+     * Reports a fatal error after the character content preceding it.
+     */
+    protected void reportFatalError(String msgId, Object[] args)
+        throws XNIException {
+        flushCharacters();
+        super.reportFatalError(msgId, args);
+    } // reportFatalError(String,Object[])
+
+    /** Sets the maximum number of coalesced characters reported in one call. */
+    private void setCoalesceCharactersLimit(Object value) {
+        fCoalesceCharactersLimit = value instanceof Integer && ((Integer) value).intValue() > 0 ?
+            ((Integer) value).intValue() : 0;
+    } // setCoalesceCharactersLimit(Object)
+
     /** 
      * Handles the end element. This method will make sure that
      * the end element name matches the current element and notify
@@ -1624,7 +1733,7 @@ public class XMLDocumentFragmentScannerImpl
                                             if (scanSurrogates(fStringBuffer)) {
                                                 // call handler
                                                 if (fDocumentHandler != null) {
-                                                    fDocumentHandler.characters(fStringBuffer, null);
+                                                    reportCharacters(fStringBuffer);
                                                 }
                                             }
                                         }
@@ -1640,6 +1749,7 @@ public class XMLDocumentFragmentScannerImpl
                             break;
                         }
                         case SCANNER_STATE_START_OF_MARKUP: {
+                            flushCharacters();
                             fMarkupDepth++;
                             if (fEntityScanner.skipChar('/')) {
                                 if (scanEndElement() == 0) {
@@ -1764,14 +1874,17 @@ public class XMLDocumentFragmentScannerImpl
                         }
                     }
                 } while (complete || again);
+                flushCharacters();
             }
             // encoding errors
             catch (MalformedByteSequenceException e) {
+                flushCharacters();
                 fErrorReporter.reportError(e.getDomain(), e.getKey(), 
                     e.getArguments(), XMLErrorReporter.SEVERITY_FATAL_ERROR, e);
                 return false;
             }
             catch (CharConversionException e) {
+                flushCharacters();
                 fErrorReporter.reportError(
                         XMLMessageFormatter.XML_DOMAIN,
                         "CharConversionFailure",
@@ -1781,6 +1894,7 @@ public class XMLDocumentFragmentScannerImpl
             }
             // premature end of file
             catch (EOFException e) {
+                flushCharacters();
                 endOfFileHook(e);
                 return false;
             }
@@ -22,14 +22,16 @@ import java.io.EOFException;
 import java.io.IOException;
 
 import org.apache.xerces.impl.dtd.XMLDTDDescription;
+import org.apache.xerces.impl.dtd.XMLDTDProcessor;
 import org.apache.xerces.impl.io.MalformedByteSequenceException;
 import org.apache.xerces.impl.msg.XMLMessageFormatter;
 import org.apache.xerces.impl.validation.ValidationManager;
-import org.apache.xerces.util.NamespaceSupport;
+import org.apache.xerces.util.IndexedNamespaceSupport;
 import org.apache.xerces.util.XMLChar;
 import org.apache.xerces.util.XMLStringBuffer;
 import org.apache.xerces.xni.Augmentations;
 import org.apache.xerces.xni.NamespaceContext;
+import org.apache.xerces.xni.XMLDTDHandler;
 import org.apache.xerces.xni.XMLResourceIdentifier;
 import org.apache.xerces.xni.XMLString;
 import org.apache.xerces.xni.XNIException;
@@ -175,7 +177,7 @@ public class XMLDocumentScannerImpl
     protected String fDoctypeSystemId;
 
     /** Namespace support. */
-    protected NamespaceContext fNamespaceContext = new NamespaceSupport();
+    protected NamespaceContext fNamespaceContext = new IndexedNamespaceSupport();
 
     // features
 
@@ -313,7 +315,7 @@ public class XMLDocumentScannerImpl
         }
         catch (XMLConfigurationException e) { }
         if (fNamespaceContext == null) {
-            fNamespaceContext = new NamespaceSupport();
+            fNamespaceContext = new IndexedNamespaceSupport();
         }
         fNamespaceContext.reset();
         
@@ -622,6 +624,42 @@ public class XMLDocumentScannerImpl
 
     } // getScannerStateName(int):String
 
+    /**
+     * Reports the external subset of the DTD from the cache of the DTD 
+     * processor instead of scanning it, if the processor has read the 
+     * same external subset for an earlier document. The external subset
+     * is always scanned if the entity resolver supplied a stream.
+     * 
+     * @param xmlInputSource The external subset.
+     * 
+     * @return True if the external subset has been reported.
+     */
+    private boolean replayExternalSubset(XMLInputSource xmlInputSource) 
+        throws IOException, XNIException {
+
+        XMLDTDHandler dtdHandler = fDTDScanner.getDTDHandler();
+        if (!(dtdHandler instanceof XMLDTDProcessor) || 
+            xmlInputSource.getByteStream() != null || 
+            xmlInputSource.getCharacterStream() != null || 
+            xmlInputSource.getEncoding() != null) {
+            return false;
+        }
+
+        // identify the external subset as the entity manager would
+        String literalSystemId = xmlInputSource.getSystemId();
+        String baseSystemId = xmlInputSource.getBaseSystemId();
+        String expandedSystemId = XMLEntityManager.expandSystemId(literalSystemId, 
+            baseSystemId, fEntityManager.fStrictURI);
+        if (baseSystemId == null) {
+            baseSystemId = expandedSystemId;
+        }
+        fResourceIdentifier.setValues(xmlInputSource.getPublicId(), literalSystemId, 
+            baseSystemId, expandedSystemId);
+        return ((XMLDTDProcessor) dtdHandler).replayExternalSubset(fResourceIdentifier, 
+            fEntityManager);
+
+    } // replayExternalSubset(XMLInputSource):boolean
+
     //
     // Classes
     //
@@ -998,6 +1036,13 @@ public class XMLDocumentScannerImpl
                             fDTDDescription.setRootName(fDoctypeName);
                             XMLInputSource xmlInputSource =
                                 fEntityManager.resolveEntity(fDTDDescription);
+                            // reuse the external subset read for an earlier document
+                            if (replayExternalSubset(xmlInputSource)) {
+                                setScannerState(SCANNER_STATE_PROLOG);
+                                setDispatcher(fPrologDispatcher);
+                                fEntityManager.setEntityHandler(XMLDocumentScannerImpl.this);
+                                return true;
+                            }
                             fDTDScanner.setInputSource(xmlInputSource);
                             setScannerState(SCANNER_STATE_DTD_EXTERNAL_DECLS);
                             again = true;
@@ -17,12 +17,14 @@
 
 package org.apache.xerces.impl;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.net.HttpURLConnection;
@@ -36,6 +38,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Stack;
 import java.util.StringTokenizer;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.xerces.impl.io.ASCIIReader;
 import org.apache.xerces.impl.io.Latin1Reader;
@@ -46,7 +49,10 @@ import org.apache.xerces.impl.msg.XMLMessageFormatter;
 import org.apache.xerces.impl.validation.ValidationManager;
 import org.apache.xerces.util.AugmentationsImpl;
 import org.apache.xerces.util.EncodingMap;
+import org.apache.xerces.util.EntityCache;
 import org.apache.xerces.util.HTTPInputSource;
+import org.apache.xerces.util.ParserEventListener;
+import org.apache.xerces.util.ParserMetrics;
 import org.apache.xerces.util.SecurityManager;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.URI;
@@ -130,6 +136,10 @@ public class XMLEntityManager
     protected static final String STANDARD_URI_CONFORMANT =
     Constants.XERCES_FEATURE_PREFIX +Constants.STANDARD_URI_CONFORMANT_FEATURE;
     
+    /** Feature identifier: compressed entities */
+    protected static final String COMPRESSED_ENTITIES =
+        Constants.XERCES_FEATURE_PREFIX + Constants.COMPRESSED_ENTITIES_FEATURE;
+    
 	protected static final String PARSER_SETTINGS = 
 		Constants.XERCES_FEATURE_PREFIX + Constants.PARSER_SETTINGS;	
 
@@ -159,6 +169,18 @@ public class XMLEntityManager
     protected static final String SECURITY_MANAGER =
         Constants.XERCES_PROPERTY_PREFIX + Constants.SECURITY_MANAGER_PROPERTY;
 
+    /** property identifier: parser metrics. */
+    protected static final String PARSER_METRICS =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PARSER_METRICS_PROPERTY;
+
+    /** property identifier: parser event listener. */
+    protected static final String PARSER_EVENT_LISTENER =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PARSER_EVENT_LISTENER_PROPERTY;
+
+    /** property identifier: entity cache. */
+    protected static final String ENTITY_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_CACHE_PROPERTY;
+
     // recognized features and properties
 
     /** Recognized features. */
@@ -168,7 +190,8 @@ public class XMLEntityManager
         EXTERNAL_PARAMETER_ENTITIES,
         ALLOW_JAVA_ENCODINGS,
         WARN_ON_DUPLICATE_ENTITYDEF,
-        STANDARD_URI_CONFORMANT
+        STANDARD_URI_CONFORMANT,
+        COMPRESSED_ENTITIES
     };
 
     /** Feature defaults. */
@@ -178,6 +201,7 @@ public class XMLEntityManager
         Boolean.TRUE,
         Boolean.FALSE,
         Boolean.FALSE,
+        Boolean.FALSE,
         Boolean.FALSE
     };
 
@@ -189,6 +213,9 @@ public class XMLEntityManager
         VALIDATION_MANAGER,
         BUFFER_SIZE,
         SECURITY_MANAGER,
+        PARSER_METRICS,
+        PARSER_EVENT_LISTENER,
+        ENTITY_CACHE,
     };
 
     /** Property defaults. */
@@ -199,6 +226,9 @@ public class XMLEntityManager
         null,
         new Integer(DEFAULT_BUFFER_SIZE),
         null,
+        null,
+        null,
+        null,
     };
 
     private static final String XMLEntity = "[xml]".intern();
@@ -263,6 +293,12 @@ public class XMLEntityManager
      */
     protected boolean fStrictURI;
 
+    /**
+     * Decompress entities in the gzip format.
+     * http://apache.org/xml/features/compressed-entities
+     */
+    protected boolean fCompressedEntities;
+
     // properties
 
     /**
@@ -302,6 +338,21 @@ public class XMLEntityManager
     // been set on the configuration.
     protected SecurityManager fSecurityManager = null;
 
+    // records the bytes read and the time spent resolving
+    // entities if it has been set on the configuration.
+    protected ParserMetrics fMetrics = null;
+
+    // is told of each call to the entity resolver
+    // if it has been set on the configuration.
+    protected ParserEventListener fEventListener = null;
+
+    // holds the content of external entities read before
+    // if it has been set on the configuration.
+    protected EntityCache fEntityCache = null;
+
+    /** The number of bytes read since the last reset. */
+    protected long fBytesRead = 0;
+
     /**
      * True if the document entity is standalone. This should really
      * only be set by the document source (e.g. XMLDocumentScanner).
@@ -419,6 +470,14 @@ public class XMLEntityManager
         return fStandalone;
     } // isStandalone():boolean
     
+    /** 
+     * Returns the number of bytes read from the byte streams of
+     * the entities since the entity manager was last reset.
+     */
+    public long getBytesRead() {
+        return fBytesRead;
+    } // getBytesRead():long
+    
     /** 
      * Notifies the entity manager that the current document 
      * being processed contains parameter entity references.
@@ -692,7 +751,17 @@ public class XMLEntityManager
             }
             resourceIdentifier.setBaseSystemId(baseSystemId);
             resourceIdentifier.setExpandedSystemId(expandedSystemId);
+            final int depth = (fMetrics != null) ? fMetrics.startStage(ParserMetrics.ENTITY_RESOLUTION) : 0;
+            final long start = (fEventListener != null) ? ParserMetrics.nanoTime() : 0;
             xmlInputSource = fEntityResolver.resolveEntity(resourceIdentifier);
+            if (fMetrics != null) {
+                fMetrics.endStage(depth);
+            }
+            if (fEventListener != null) {
+                fEventListener.entityResolved(publicId, expandedSystemId, 
+                        (xmlInputSource != null) ? xmlInputSource.getSystemId() : null, 
+                        ParserMetrics.nanoTime() - start);
+            }
         }
 
         // do default resolution
@@ -960,7 +1029,16 @@ public class XMLEntityManager
         }
         if (reader == null) {
             stream = xmlInputSource.getByteStream();
+            if (stream == null && fEntityCache != null && 
+                !(xmlInputSource instanceof HTTPInputSource)) {
+                byte[] content = fEntityCache.getEntity(expandedSystemId);
+                if (content != null) {
+                    stream = new ByteArrayInputStream(content);
+                }
+            }
             if (stream == null) {
+                final int depth = (fMetrics != null) ? fMetrics.startStage(ParserMetrics.ENTITY_RESOLUTION) : 0;
+                final String requestedSystemId = expandedSystemId;
                 URL location = new URL(expandedSystemId);
                 URLConnection connect = location.openConnection();
                 if (!(connect instanceof HttpURLConnection)) {
@@ -1004,7 +1082,20 @@ public class XMLEntityManager
                         }
                     }
                 }
+                // record the content for the entity cache, unless the 
+                // entity was redirected to another system identifier
+                if (fEntityCache != null && expandedSystemId == requestedSystemId &&
+                    !(xmlInputSource instanceof HTTPInputSource)) {
+                    stream = new CachingInputStream(stream, expandedSystemId, connect);
+                }
+                if (fMetrics != null) {
+                    fMetrics.endStage(depth);
+                }
             }
+            if (fCompressedEntities) {
+                stream = decompress(stream);
+            }
+
             // wrap this stream in RewindableInputStream
             RewindableInputStream rewindableStream = new RewindableInputStream(stream);
             stream = rewindableStream;
@@ -1314,6 +1405,13 @@ public class XMLEntityManager
             fStrictURI = false;
         }
 
+        try {
+            fCompressedEntities = componentManager.getFeature(COMPRESSED_ENTITIES);
+        }
+        catch (XMLConfigurationException e) {
+            fCompressedEntities = false;
+        }
+
         // xerces properties
         fSymbolTable = (SymbolTable)componentManager.getProperty(SYMBOL_TABLE);
         fErrorReporter = (XMLErrorReporter)componentManager.getProperty(ERROR_REPORTER);
@@ -1335,6 +1433,24 @@ public class XMLEntityManager
         catch (XMLConfigurationException e) {
             fSecurityManager = null;
         }
+        try {
+            fMetrics = (ParserMetrics)componentManager.getProperty(PARSER_METRICS);
+        }
+        catch (XMLConfigurationException e) {
+            fMetrics = null;
+        }
+        try {
+            fEventListener = (ParserEventListener)componentManager.getProperty(PARSER_EVENT_LISTENER);
+        }
+        catch (XMLConfigurationException e) {
+            fEventListener = null;
+        }
+        try {
+            fEntityCache = (EntityCache)componentManager.getProperty(ENTITY_CACHE);
+        }
+        catch (XMLConfigurationException e) {
+            fEntityCache = null;
+        }
 
         // reset general state
         reset();
@@ -1353,6 +1469,7 @@ public class XMLEntityManager
         fEntities.clear();
         fEntityStack.removeAllElements();
         fEntityExpansionCount = 0;
+        fBytesRead = 0;
 
         fCurrentEntity = null;
         // reset scanner
@@ -1433,6 +1550,10 @@ public class XMLEntityManager
                 featureId.endsWith(Constants.ALLOW_JAVA_ENCODINGS_FEATURE)) {
                 fAllowJavaEncodings = state;
             }
+            else if (suffixLength == Constants.COMPRESSED_ENTITIES_FEATURE.length() &&
+                featureId.endsWith(Constants.COMPRESSED_ENTITIES_FEATURE)) {
+                fCompressedEntities = state;
+            }
         }
 
     } // setFeature(String,boolean)
@@ -1500,6 +1621,21 @@ public class XMLEntityManager
                 fSecurityManager = (SecurityManager)value; 
                 fEntityExpansionLimit = (fSecurityManager != null)?fSecurityManager.getEntityExpansionLimit():0;
             }
+            
+            if (suffixLength == Constants.PARSER_METRICS_PROPERTY.length() && 
+                propertyId.endsWith(Constants.PARSER_METRICS_PROPERTY)) {
+                fMetrics = (ParserMetrics)value; 
+            }
+            
+            if (suffixLength == Constants.PARSER_EVENT_LISTENER_PROPERTY.length() && 
+                propertyId.endsWith(Constants.PARSER_EVENT_LISTENER_PROPERTY)) {
+                fEventListener = (ParserEventListener)value; 
+            }
+            
+            if (suffixLength == Constants.ENTITY_CACHE_PROPERTY.length() && 
+                propertyId.endsWith(Constants.ENTITY_CACHE_PROPERTY)) {
+                fEntityCache = (EntityCache)value; 
+            }
         }
 
     } // setProperty(String,Object)
@@ -2066,6 +2202,43 @@ public class XMLEntityManager
 
     } // getEncodingName(byte[],int):Object[]
 
+    /**
+     * Returns a stream of the decompressed contents of the given stream
+     * if it starts with the signature of the gzip format; otherwise
+     * returns a stream of the same bytes. The decompressor reads the
+     * compressed bytes directly from the given stream and is read in
+     * turn into the byte buffers of the entity readers.
+     *
+     * @param stream The input stream
+     */
+    protected InputStream decompress(InputStream stream) throws IOException {
+        PushbackInputStream pushback = null;
+        if (stream.markSupported()) {
+            stream.mark(2);
+        }
+        else {
+            stream = pushback = new PushbackInputStream(stream, 2);
+        }
+        int b0 = stream.read();
+        int b1 = b0 != -1 ? stream.read() : -1;
+        if (pushback != null) {
+            if (b1 != -1) {
+                pushback.unread(b1);
+            }
+            if (b0 != -1) {
+                pushback.unread(b0);
+            }
+        }
+        else {
+            stream.reset();
+        }
+        if (b0 == (GZIPInputStream.GZIP_MAGIC & 0xFF) &&
+            b1 == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return new GZIPInputStream(stream, fBufferSize);
+        }
+        return stream;
+    } // decompress(InputStream):InputStream
+
     /**
      * Creates a reader capable of reading the given input stream in
      * the specified encoding.
@@ -2334,6 +2507,14 @@ public class XMLEntityManager
         return fEntities;
     } // getDeclaredEntities():Hashtable
 
+    /** Counts bytes read from the byte stream of an entity. */
+    final void countBytesRead(int count) {
+        fBytesRead += count;
+        if (fMetrics != null) {
+            fMetrics.countBytesRead(count);
+        }
+    } // countBytesRead(int)
+
     /** Prints the contents of the buffer. */
     static final void print(ScannedEntity currentEntity) {
         if (DEBUG_BUFFER) {
@@ -3118,6 +3299,7 @@ public class XMLEntityManager
                 fEndOffset = fOffset;
                 return -1;
             }
+            countBytesRead(1);
             fData[fLength++] = (byte)b;
             fOffset++;
             return b & 0xff;
@@ -3131,7 +3313,11 @@ public class XMLEntityManager
                 return -1;
             }
             if (fCurrentEntity.mayReadChunks) {
-                return fInputStream.read();
+                final int b = fInputStream.read();
+                if (b != -1) {
+                    countBytesRead(1);
+                }
+                return b;
             }
             return readAndBuffer();
         }
@@ -3144,7 +3330,11 @@ public class XMLEntityManager
                 }
                 // better get some more for the voracious reader...
                 if (fCurrentEntity.mayReadChunks) {
-                    return fInputStream.read(b, off, len);
+                    final int count = fInputStream.read(b, off, len);
+                    if (count > 0) {
+                        countBytesRead(count);
+                    }
+                    return count;
                 }
                 int returnedVal = readAndBuffer();
                 if (returnedVal == -1) {
@@ -3235,4 +3425,112 @@ public class XMLEntityManager
         }
     } // end of RewindableInputStream class
 
+    /**
+     * Records the bytes of an entity as they are read, and offers them to
+     * the entity cache once the entity has been read completely. Recording
+     * stops if the entity is larger than the cache would keep.
+     *
+     * @xerces.internal
+     */
+    protected final class CachingInputStream extends InputStream {
+
+        private final InputStream fInputStream;
+        private final EntityCache fCache;
+        private final String fSystemId;
+        private final URLConnection fConnection;
+        private final int fMaxLength;
+        private byte[] fData;
+        private int fLength;
+
+        public CachingInputStream(InputStream is, String systemId, URLConnection connection) {
+            fInputStream = is;
+            fSystemId = systemId;
+            fConnection = connection;
+            fCache = fEntityCache;
+            fMaxLength = fCache.getMaxEntitySize();
+            fData = new byte[Math.max(0, Math.min(fBufferSize, fMaxLength))];
+            fLength = 0;
+        }
+
+        public int read() throws IOException {
+            final int b = fInputStream.read();
+            if (b == -1) {
+                endOfEntity();
+            }
+            else if (fData != null && ensureCapacity(1)) {
+                fData[fLength++] = (byte)b;
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int count = fInputStream.read(b, off, len);
+            if (count == -1) {
+                endOfEntity();
+            }
+            else if (fData != null && ensureCapacity(count)) {
+                System.arraycopy(b, off, fData, fLength, count);
+                fLength += count;
+            }
+            return count;
+        }
+
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            // read the skipped bytes so that they are recorded
+            final byte[] skipped = new byte[(int) Math.min(n, fBufferSize)];
+            long total = 0;
+            while (total < n) {
+                final int count = read(skipped, 0, (int) Math.min(n - total, skipped.length));
+                if (count <= 0) {
+                    break;
+                }
+                total += count;
+            }
+            return total;
+        }
+
+        public int available() throws IOException {
+            return fInputStream.available();
+        }
+
+        public void close() throws IOException {
+            fData = null;
+            fInputStream.close();
+        }
+
+        /** 
+         * Makes room for the given number of bytes, or stops recording
+         * and returns false if the entity would become too large.
+         */
+        private boolean ensureCapacity(int count) {
+            final int length = fLength + count;
+            if (length > fMaxLength) {
+                fData = null;
+                return false;
+            }
+            if (length > fData.length) {
+                byte[] newData = new byte[Math.min(Math.max(length, fData.length << 1), fMaxLength)];
+                System.arraycopy(fData, 0, newData, 0, fLength);
+                fData = newData;
+            }
+            return true;
+        }
+
+        /** Offers the recorded content to the entity cache once. */
+        private void endOfEntity() {
+            if (fData != null) {
+                byte[] content = fData;
+                if (fLength != content.length) {
+                    content = new byte[fLength];
+                    System.arraycopy(fData, 0, content, 0, fLength);
+                }
+                fData = null;
+                fCache.putEntity(fSystemId, fConnection, content);
+            }
+        }
+    } // end of CachingInputStream class
+
 } // class XMLEntityManager
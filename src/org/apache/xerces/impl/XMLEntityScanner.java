@@ -23,6 +23,7 @@ import java.util.Locale;
 
 import org.apache.xerces.impl.io.UCSReader;
 import org.apache.xerces.impl.msg.XMLMessageFormatter;
+import org.apache.xerces.util.ParserMetrics;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.XMLChar;
 import org.apache.xerces.util.XMLStringBuffer;
@@ -71,6 +72,24 @@ public class XMLEntityScanner implements XMLLocator {
      * http://apache.org/xml/properties/internal/error-reporter
      */
     protected XMLErrorReporter fErrorReporter;
+
+    /** Parser metrics, or null if no metrics are collected. */
+    protected ParserMetrics fMetrics = null;
+
+    // qualified name cache
+
+    /** Number of entries in the qualified name cache; a power of two. */
+    private static final int QNAME_CACHE_SIZE = 256;
+
+    /** Characters of the cached qualified names, indexed by hash code. */
+    private final char[][] fQNameCacheChars = new char[QNAME_CACHE_SIZE][];
+
+    /** Cached qualified names, indexed by hash code. */
+    private final QName[] fQNameCache = new QName[QNAME_CACHE_SIZE];
+
+    /** Symbol table the symbols of the cached qualified names belong to. */
+    private SymbolTable fQNameCacheSymbolTable = null;
+
     //
     // Constructors
     //
@@ -330,7 +349,7 @@ public class XMLEntityScanner implements XMLLocator {
         // return nmtoken
         String symbol = null;
         if (length > 0) {
-            symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, offset, length);
+            symbol = addSymbol(fCurrentEntity.ch, offset, length);
         }
         if (DEBUG_BUFFER) {
             System.out.print(")scanNmtoken: ");
@@ -377,7 +396,7 @@ public class XMLEntityScanner implements XMLLocator {
                 offset = 0;
                 if (load(1, false)) {
                     fCurrentEntity.columnNumber++;
-                    String symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, 0, 1);
+                    String symbol = addSymbol(fCurrentEntity.ch, 0, 1);
                     if (DEBUG_BUFFER) {
                         System.out.print(")scanName: ");
                         XMLEntityManager.print(fCurrentEntity);
@@ -413,7 +432,7 @@ public class XMLEntityScanner implements XMLLocator {
         // return name
         String symbol = null;
         if (length > 0) {
-            symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, offset, length);
+            symbol = addSymbol(fCurrentEntity.ch, offset, length);
         }
         if (DEBUG_BUFFER) {
             System.out.print(")scanName: ");
@@ -460,7 +479,7 @@ public class XMLEntityScanner implements XMLLocator {
                 offset = 0;
                 if (load(1, false)) {
                     fCurrentEntity.columnNumber++;
-                    String symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, 0, 1);
+                    String symbol = addSymbol(fCurrentEntity.ch, 0, 1);
                     if (DEBUG_BUFFER) {
                         System.out.print(")scanNCName: ");
                         XMLEntityManager.print(fCurrentEntity);
@@ -496,7 +515,7 @@ public class XMLEntityScanner implements XMLLocator {
         // return name
         String symbol = null;
         if (length > 0) {
-            symbol = fSymbolTable.addSymbol(fCurrentEntity.ch, offset, length);
+            symbol = addSymbol(fCurrentEntity.ch, offset, length);
         }
         if (DEBUG_BUFFER) {
             System.out.print(")scanNCName: ");
@@ -550,7 +569,7 @@ public class XMLEntityScanner implements XMLLocator {
                 if (load(1, false)) {
                     fCurrentEntity.columnNumber++;
                     String name =
-                        fSymbolTable.addSymbol(fCurrentEntity.ch, 0, 1);
+                        addSymbol(fCurrentEntity.ch, 0, 1);
                     qname.setValues(null, name, name, null);
                     if (DEBUG_BUFFER) {
                         System.out.print(")scanQName, "+qname+": ");
@@ -597,11 +616,11 @@ public class XMLEntityScanner implements XMLLocator {
             if (length > 0) {
                 String prefix = null;
                 String localpart = null;
-                String rawname = fSymbolTable.addSymbol(fCurrentEntity.ch,
+                String rawname = addSymbol(fCurrentEntity.ch,
                                                         offset, length);
                 if (index != -1) {
                     int prefixLength = index - offset;
-                    prefix = fSymbolTable.addSymbol(fCurrentEntity.ch,
+                    prefix = addSymbol(fCurrentEntity.ch,
                                                     offset, prefixLength);
                     int len = length - prefixLength - 1;
                     int startLocal = index +1;
@@ -611,7 +630,7 @@ public class XMLEntityScanner implements XMLLocator {
                                                   null,
                                                   XMLErrorReporter.SEVERITY_FATAL_ERROR);
                     }
-                    localpart = fSymbolTable.addSymbol(fCurrentEntity.ch,
+                    localpart = addSymbol(fCurrentEntity.ch,
                                                        startLocal, len);
 
                 }
@@ -638,6 +657,100 @@ public class XMLEntityScanner implements XMLLocator {
 
     } // scanQName(QName):boolean
 
+    /**
+     * Scans a qualified name from the input like <code>scanQName</code>,
+     * but first looks the name up in a cache of recently scanned names.
+     * A name found in the cache is set on the QName structure without
+     * looking up its prefix, local part and raw name in the symbol table.
+     * Names which are not entirely contained in the input buffer are
+     * scanned by <code>scanQName</code>.
+     *
+     * @param qname The qualified name structure to fill.
+     *
+     * @return Returns true if a qualified name appeared immediately on
+     *         the input and was scanned, false otherwise.
+     *
+     * @throws IOException  Thrown if i/o error occurs.
+     * @throws EOFException Thrown on end of file.
+     *
+     * @see #scanQName
+     */
+    public boolean scanCachedQName(QName qname) throws IOException {
+
+        // load more characters, if needed
+        if (fCurrentEntity.position == fCurrentEntity.count) {
+            load(0, true);
+        }
+
+        // scan the name against the character tables
+        final char[] ch = fCurrentEntity.ch;
+        final int offset = fCurrentEntity.position;
+        final int count = fCurrentEntity.count;
+        if (!XMLChar.isNCNameStart(ch[offset])) {
+            return scanQName(qname);
+        }
+        int hash = ch[offset];
+        int index = -1;
+        int position = offset + 1;
+        while (position < count) {
+            char c = ch[position];
+            if (!XMLChar.isName(c)) {
+                break;
+            }
+            if (c == ':') {
+                if (index != -1) {
+                    break;
+                }
+                index = position;
+            }
+            hash = hash * 31 + c;
+            ++position;
+        }
+        if (position == count) {
+            return scanQName(qname);
+        }
+        final int length = position - offset;
+
+        // look up the name
+        if (fQNameCacheSymbolTable != fSymbolTable) {
+            for (int i = 0; i < QNAME_CACHE_SIZE; ++i) {
+                fQNameCacheChars[i] = null;
+                fQNameCache[i] = null;
+            }
+            fQNameCacheSymbolTable = fSymbolTable;
+        }
+        final int entry = hash & (QNAME_CACHE_SIZE - 1);
+        final char[] chars = fQNameCacheChars[entry];
+        if (chars != null && chars.length == length) {
+            int i = 0;
+            while (i < length && chars[i] == ch[offset + i]) {
+                ++i;
+            }
+            if (i == length) {
+                fCurrentEntity.position = position;
+                fCurrentEntity.columnNumber += length;
+                qname.setValues(fQNameCache[entry]);
+                return true;
+            }
+        }
+
+        // scan the name and cache it, unless it is malformed
+        scanQName(qname);
+        if (index == -1 || XMLChar.isNCNameStart(ch[index + 1])) {
+            char[] copy = new char[length];
+            System.arraycopy(ch, offset, copy, 0, length);
+            QName cached = fQNameCache[entry];
+            if (cached == null) {
+                cached = new QName();
+                fQNameCache[entry] = cached;
+            }
+            cached.setValues(qname);
+            fQNameCacheChars[entry] = copy;
+        }
+        return true;
+
+    } // scanCachedQName(QName):boolean
+
     /**
      * Scans a range of parsed character data, setting the fields of the
      * XMLString structure, appropriately.
@@ -1715,8 +1828,24 @@ public class XMLEntityScanner implements XMLLocator {
         fSymbolTable = symbolTable;
         fEntityManager = entityManager;
         fErrorReporter = reporter;
+        fMetrics = entityManager.fMetrics;
     }
 
+    //
+    // Protected methods
+    //
+
+    /** 
+     * Adds the name in the given buffer to the symbol table, counting
+     * the lookup if metrics are collected.
+     */
+    protected final String addSymbol(char[] buffer, int offset, int length) {
+        if (fMetrics != null) {
+            fMetrics.countSymbolLookup(fSymbolTable.containsSymbol(buffer, offset, length));
+        }
+        return fSymbolTable.addSymbol(buffer, offset, length);
+    } // addSymbol(char[],int,int):String
+
     //
     // Private methods
     //
@@ -1752,6 +1881,9 @@ public class XMLEntityScanner implements XMLLocator {
         if (DEBUG_BUFFER) System.out.println("  length to try to read: "+length);
         int count = fCurrentEntity.reader.read(fCurrentEntity.ch, offset, length);
         if (DEBUG_BUFFER) System.out.println("  length actually read:  "+count);
+        if (fMetrics != null) {
+            fMetrics.countBufferRefill();
+        }
 
         // reset count and position
         boolean entityChanged = false;
@@ -168,6 +168,9 @@ public class XMLErrorReporter
     /** A SAX proxy to the error handler contained in this error reporter. */
     private ErrorHandler fSaxProxy = null;
 
+    /** The number of errors reported, of any severity. */
+    private int fErrorCount = 0;
+
     //
     // Constructors
     //
@@ -348,6 +351,8 @@ public class XMLErrorReporter
         // REVISIT: [Q] Should we do anything about invalid severity
         //              parameter? -Ac
         
+        fErrorCount++;
+
         // format error message and create parse exception
         MessageFormatter messageFormatter = getMessageFormatter(domain);
         String message;
@@ -590,6 +595,15 @@ public class XMLErrorReporter
         return null;
     } // getPropertyDefault(String):Object
 
+    /**
+     * Returns the number of errors, of any severity, reported so far. 
+     * Components compare two values of the count to find out whether
+     * an error was reported in between.
+     */
+    public int getErrorCount() {
+        return fErrorCount;
+    } // getErrorCount():int
+
     /**
      * Get the internal XMLErrrorHandler.
      */
@@ -74,6 +74,13 @@ extends XMLDocumentScannerImpl {
       *   scanner if DTD grammar is missing.*/
     protected boolean fPerformValidation;
 
+    /** 
+     * If is true, the document has no DOCTYPE and is not validated, 
+     * and the scanner scans start tags with the streamlined 
+     * <code>scanStartElementFast</code>.
+     */
+    protected boolean fFastScanning;
+
     // private data
     //
 
@@ -124,6 +131,9 @@ extends XMLDocumentScannerImpl {
     protected boolean scanStartElement()
     throws IOException, XNIException {
         if (DEBUG_CONTENT_SCANNING) System.out.println(">>> scanStartElementNS()");
+        if (fFastScanning) {
+            return scanStartElementFast();
+        }
 
         // Note: namespace processing is on by default
         fEntityScanner.scanQName(fElementQName);
@@ -289,6 +299,214 @@ extends XMLDocumentScannerImpl {
 
     } // scanStartElement():boolean
 
+    /**
+     * Scans a start element of a document which has no DOCTYPE and is not
+     * validated. Without a DTD there are no attribute defaults or types
+     * and no validator downstream of the scanner, so the scanner binds
+     * namespaces itself and skips the validation hooks. Element and
+     * attribute names are looked up in the cache of qualified names of
+     * the entity scanner, and the attributes are only bound once more
+     * after the whole tag has been scanned if a namespace has been
+     * declared in the tag or an attribute prefix was unbound.
+     * <p>
+     * <strong>Note:</strong> This method assumes that the leading
+     * '&lt;' character has been consumed.
+     *
+     * @return True if element is empty. (i.e. It matches
+     *          production [44].
+     */
+    protected boolean scanStartElementFast()
+    throws IOException, XNIException {
+
+        fEntityScanner.scanCachedQName(fElementQName);
+        String rawname = fElementQName.rawname;
+        fNamespaceContext.pushContext();
+
+        // push element stack
+        fCurrentElement = fElementStack.pushElement(fElementQName);
+
+        // attributes
+        boolean empty = false;
+        boolean bindAttributes = false;
+        fAttributes.removeAllAttributes();
+        do {
+            // spaces
+            boolean sawSpace = fEntityScanner.skipSpaces();
+
+            // end tag?
+            int c = fEntityScanner.peekChar();
+            if (c == '>') {
+                fEntityScanner.scanChar();
+                break;
+            }
+            else if (c == '/') {
+                fEntityScanner.scanChar();
+                if (!fEntityScanner.skipChar('>')) {
+                    reportFatalError("ElementUnterminated",
+                                     new Object[]{rawname});
+                }
+                empty = true;
+                break;
+            }
+            else if (!isValidNameStartChar(c) || !sawSpace) {
+                reportFatalError("ElementUnterminated", new Object[]{rawname});
+            }
+
+            // attributes
+            if (scanAttributeFast(fAttributes)) {
+                bindAttributes = true;
+            }
+
+        } while (true);
+
+        // REVISIT: is it required? forbit xmlns prefix for element
+        if (fElementQName.prefix == XMLSymbols.PREFIX_XMLNS) {
+            fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
+                                       "ElementXMLNSPrefix",
+                                       new Object[]{fElementQName.rawname},
+                                       XMLErrorReporter.SEVERITY_FATAL_ERROR);
+        }
+
+        // bind the element
+        String prefix = fElementQName.prefix != null
+                        ? fElementQName.prefix : XMLSymbols.EMPTY_STRING;
+        fElementQName.uri = fNamespaceContext.getURI(prefix);
+        fCurrentElement.uri = fElementQName.uri;
+        if (fElementQName.prefix == null && fElementQName.uri != null) {
+            fElementQName.prefix = XMLSymbols.EMPTY_STRING;
+            fCurrentElement.prefix = XMLSymbols.EMPTY_STRING;
+        }
+        if (fElementQName.prefix != null && fElementQName.uri == null) {
+            fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
+                                       "ElementPrefixUnbound",
+                                       new Object[]{fElementQName.prefix, fElementQName.rawname},
+                                       XMLErrorReporter.SEVERITY_FATAL_ERROR);
+        }
+
+        // bind attributes whose prefix may have been declared after them
+        int length = fAttributes.getLength();
+        if (bindAttributes) {
+            for (int i = 0; i < length; i++) {
+                fAttributes.getName(i, fAttributeQName);
+                String aprefix = fAttributeQName.prefix != null
+                                 ? fAttributeQName.prefix : XMLSymbols.EMPTY_STRING;
+                String uri = fNamespaceContext.getURI(aprefix);
+                if (fAttributeQName.uri != null && fAttributeQName.uri == uri) {
+                    continue;
+                }
+                if (aprefix != XMLSymbols.EMPTY_STRING) {
+                    if (uri == null) {
+                        fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
+                                                   "AttributePrefixUnbound",
+                                                   new Object[]{fElementQName.rawname,fAttributeQName.rawname,aprefix},
+                                                   XMLErrorReporter.SEVERITY_FATAL_ERROR);
+                    }
+                    fAttributes.setURI(i, uri);
+                }
+            }
+        }
+
+        if (length > 1) {
+            QName name = fAttributes.checkDuplicatesNS();
+            if (name != null) {
+                if (name.uri != null) {
+                    fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
+                                               "AttributeNSNotUnique",
+                                               new Object[]{fElementQName.rawname, name.localpart, name.uri},
+                                               XMLErrorReporter.SEVERITY_FATAL_ERROR);
+                }
+                else {
+                    fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
+                                               "AttributeNotUnique",
+                                               new Object[]{fElementQName.rawname, name.rawname}, 
+                                               XMLErrorReporter.SEVERITY_FATAL_ERROR);
+                }
+            }
+        }
+
+        // call handler
+        if (fDocumentHandler != null) {
+            if (empty) {
+
+                //decrease the markup depth..
+                fMarkupDepth--;
+
+                // check that this element was opened in the same entity
+                if (fMarkupDepth < fEntityStack[fEntityDepth - 1]) {
+                    reportFatalError("ElementEntityMismatch",
+                                     new Object[]{fCurrentElement.rawname});
+                }
+
+                fDocumentHandler.emptyElement(fElementQName, fAttributes, null);
+                fNamespaceContext.popContext();
+
+                //pop the element off the stack..
+                fElementStack.popElement(fElementQName);
+            } else {
+                fDocumentHandler.startElement(fElementQName, fAttributes, null);
+            }
+        }
+
+        if (DEBUG_CONTENT_SCANNING) System.out.println("<<< scanStartElementFast(): "+empty);
+        return empty;
+
+    } // scanStartElementFast():boolean
+
+    /**
+     * Scans an attribute of a document which has no DOCTYPE and is not
+     * validated, binding it to the namespace its prefix is bound to so 
+     * far in the start tag.
+     * 
+     * @param attributes The attributes list for the scanned attribute.
+     * @return True if the attributes of the start tag must be bound once
+     *         more after the tag has been scanned, i.e. if the attribute
+     *         changes the binding of a prefix or its prefix is not bound
+     *         yet.
+     * 
+     * @see #scanAttribute
+     */
+    protected boolean scanAttributeFast(XMLAttributesImpl attributes)
+    throws IOException, XNIException {
+
+        // name
+        fEntityScanner.scanCachedQName(fAttributeQName);
+
+        // equals
+        fEntityScanner.skipSpaces();
+        if (!fEntityScanner.skipChar('=')) {
+            reportFatalError("EqRequiredInAttribute",
+                             new Object[]{fCurrentElement.rawname,fAttributeQName.rawname});
+        }
+        fEntityScanner.skipSpaces();
+
+        // content
+        int attrIndex = attributes.getLength();
+        attributes.addAttributeNS(fAttributeQName, XMLSymbols.fCDATASymbol, null);
+        boolean isSameNormalizedAttr = scanAttributeValue(this.fTempString, fTempString2,
+                fAttributeQName.rawname, fIsEntityDeclaredVC, fCurrentElement.rawname);
+        String value = fTempString.toString();
+        attributes.setValue(attrIndex, value);
+        if (!isSameNormalizedAttr) {
+            attributes.setNonNormalizedValue(attrIndex, fTempString2.toString());
+        }
+        attributes.setSpecified(attrIndex, true);
+
+        String localpart = fAttributeQName.localpart;
+        String prefix = fAttributeQName.prefix != null
+                        ? fAttributeQName.prefix : XMLSymbols.EMPTY_STRING;
+        if (prefix == XMLSymbols.PREFIX_XMLNS ||
+            prefix == XMLSymbols.EMPTY_STRING && localpart == XMLSymbols.PREFIX_XMLNS) {
+            return declarePrefix(attributes, attrIndex, value);
+        }
+        if (fAttributeQName.prefix != null) {
+            String uri = fNamespaceContext.getURI(fAttributeQName.prefix);
+            attributes.setURI(attrIndex, uri);
+            return uri == null;
+        }
+        return false;
+
+    } // scanAttributeFast(XMLAttributesImpl):boolean
+
     /**
      * Scans the name of an element in a start or empty tag. 
      * 
@@ -547,62 +765,7 @@ extends XMLDocumentScannerImpl {
             // it's a namespace declaration. but prefix:xmlns="..." isn't.
             if (prefix == XMLSymbols.PREFIX_XMLNS ||
                 prefix == XMLSymbols.EMPTY_STRING && localpart == XMLSymbols.PREFIX_XMLNS) {
-
-                // get the internalized value of this attribute
-                String uri = fSymbolTable.addSymbol(value);
-
-                // 1. "xmlns" can't be bound to any namespace
-                if (prefix == XMLSymbols.PREFIX_XMLNS && localpart == XMLSymbols.PREFIX_XMLNS) {
-                    fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
-                                               "CantBindXMLNS",
-                                               new Object[]{fAttributeQName},
-                                               XMLErrorReporter.SEVERITY_FATAL_ERROR);
-                }
-
-                // 2. the namespace for "xmlns" can't be bound to any prefix
-                if (uri == NamespaceContext.XMLNS_URI) {
-                    fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
-                                               "CantBindXMLNS",
-                                               new Object[]{fAttributeQName},
-                                               XMLErrorReporter.SEVERITY_FATAL_ERROR);
-                }
-
-                // 3. "xml" can't be bound to any other namespace than it's own
-                if (localpart == XMLSymbols.PREFIX_XML) {
-                    if (uri != NamespaceContext.XML_URI) {
-                        fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
-                                                   "CantBindXML",
-                                                   new Object[]{fAttributeQName},
-                                                   XMLErrorReporter.SEVERITY_FATAL_ERROR);
-                    }
-                }
-                // 4. the namespace for "xml" can't be bound to any other prefix
-                else {
-                    if (uri ==NamespaceContext.XML_URI) {
-                        fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
-                                                   "CantBindXML",
-                                                   new Object[]{fAttributeQName},
-                                                   XMLErrorReporter.SEVERITY_FATAL_ERROR);
-                    }
-                }
-
-                prefix = localpart != XMLSymbols.PREFIX_XMLNS ? localpart : XMLSymbols.EMPTY_STRING;
-
-                // http://www.w3.org/TR/1999/REC-xml-names-19990114/#dt-prefix
-                // We should only report an error if there is a prefix,
-                // that is, the local part is not "xmlns". -SG
-                if (uri == XMLSymbols.EMPTY_STRING && localpart != XMLSymbols.PREFIX_XMLNS) {
-                    fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
-                                               "EmptyPrefixedAttName",
-                                               new Object[]{fAttributeQName},
-                                               XMLErrorReporter.SEVERITY_FATAL_ERROR);
-                }
-
-                // declare prefix in context
-                fNamespaceContext.declarePrefix(prefix, uri.length() != 0 ? uri : null);
-                // bind namespace attribute to a namespace
-                attributes.setURI(attrIndex, fNamespaceContext.getURI(XMLSymbols.PREFIX_XMLNS));
-
+                declarePrefix(attributes, attrIndex, value);
             }
             else {
                 // attempt to bind attribute
@@ -616,6 +779,97 @@ extends XMLDocumentScannerImpl {
     } // scanAttribute(XMLAttributes)
 
 
+    /**
+     * Declares the namespace of a namespace declaration attribute in the
+     * namespace context and binds the attribute to the namespace of 
+     * namespace declarations.
+     *
+     * A declaration which binds a prefix to the namespace it is already
+     * bound to in an enclosing element, as documents made of many records
+     * often do, has been checked where it was first declared. It is
+     * declared again without checking it or interning its value.
+     *
+     * @param attributes The attributes list of the start tag.
+     * @param attrIndex The index of the namespace declaration attribute.
+     * @param value The value of the namespace declaration attribute.
+     * @return True if the declaration changes the namespace the prefix
+     *         is bound to.
+     */
+    private boolean declarePrefix(XMLAttributesImpl attributes, int attrIndex, String value) {
+
+        String localpart = fAttributeQName.localpart;
+        String prefix = fAttributeQName.prefix != null
+                        ? fAttributeQName.prefix : XMLSymbols.EMPTY_STRING;
+
+        // redeclaration of the binding in scope
+        String declared = prefix == XMLSymbols.PREFIX_XMLNS ? localpart : XMLSymbols.EMPTY_STRING;
+        if (declared != XMLSymbols.PREFIX_XML && declared != XMLSymbols.PREFIX_XMLNS) {
+            String current = fNamespaceContext.getURI(declared);
+            if (current != null && current != NamespaceContext.XML_URI &&
+                current != NamespaceContext.XMLNS_URI && current.equals(value)) {
+                fNamespaceContext.declarePrefix(declared, current);
+                attributes.setURI(attrIndex, fNamespaceContext.getURI(XMLSymbols.PREFIX_XMLNS));
+                return false;
+            }
+        }
+
+        // get the internalized value of this attribute
+        String uri = fSymbolTable.addSymbol(value);
+
+        // 1. "xmlns" can't be bound to any namespace
+        if (prefix == XMLSymbols.PREFIX_XMLNS && localpart == XMLSymbols.PREFIX_XMLNS) {
+            fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
+                                       "CantBindXMLNS",
+                                       new Object[]{fAttributeQName},
+                                       XMLErrorReporter.SEVERITY_FATAL_ERROR);
+        }
+
+        // 2. the namespace for "xmlns" can't be bound to any prefix
+        if (uri == NamespaceContext.XMLNS_URI) {
+            fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
+                                       "CantBindXMLNS",
+                                       new Object[]{fAttributeQName},
+                                       XMLErrorReporter.SEVERITY_FATAL_ERROR);
+        }
+
+        // 3. "xml" can't be bound to any other namespace than it's own
+        if (localpart == XMLSymbols.PREFIX_XML) {
+            if (uri != NamespaceContext.XML_URI) {
+                fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
+                                           "CantBindXML",
+                                           new Object[]{fAttributeQName},
+                                           XMLErrorReporter.SEVERITY_FATAL_ERROR);
+            }
+        }
+        // 4. the namespace for "xml" can't be bound to any other prefix
+        else {
+            if (uri ==NamespaceContext.XML_URI) {
+                fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
+                                           "CantBindXML",
+                                           new Object[]{fAttributeQName},
+                                           XMLErrorReporter.SEVERITY_FATAL_ERROR);
+            }
+        }
+
+        prefix = localpart != XMLSymbols.PREFIX_XMLNS ? localpart : XMLSymbols.EMPTY_STRING;
+
+        // http://www.w3.org/TR/1999/REC-xml-names-19990114/#dt-prefix
+        // We should only report an error if there is a prefix,
+        // that is, the local part is not "xmlns". -SG
+        if (uri == XMLSymbols.EMPTY_STRING && localpart != XMLSymbols.PREFIX_XMLNS) {
+            fErrorReporter.reportError(XMLMessageFormatter.XMLNS_DOMAIN,
+                                       "EmptyPrefixedAttName",
+                                       new Object[]{fAttributeQName},
+                                       XMLErrorReporter.SEVERITY_FATAL_ERROR);
+        }
+
+        // declare prefix in context
+        fNamespaceContext.declarePrefix(prefix, uri.length() != 0 ? uri : null);
+        // bind namespace attribute to a namespace
+        attributes.setURI(attrIndex, fNamespaceContext.getURI(XMLSymbols.PREFIX_XMLNS));
+        return true;
+
+    } // declarePrefix(XMLAttributesImpl,int,String):boolean
 
     /**
      * Scans an end element.
@@ -688,6 +942,7 @@ extends XMLDocumentScannerImpl {
         super.reset(componentManager);
         fPerformValidation = false;
         fBindNamespaces = false;
+        fFastScanning = false;
     }
 
     /** Creates a content dispatcher. */
@@ -762,6 +1017,7 @@ extends XMLDocumentScannerImpl {
                 fDTDValidator.setDocumentSource(null);
                 fDTDValidator.setDocumentHandler(null);
             }
+            fFastScanning = fBindNamespaces && fDoctypeName == null && !fValidation;
         } // reconfigurePipeline()
     }
 
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl;
+
+import org.apache.xerces.util.ParserMetrics;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.NamespaceContext;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLDocumentHandler;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLDocumentFilter;
+import org.apache.xerces.xni.parser.XMLDocumentSource;
+
+/**
+ * Passes the document events on unchanged, and charges the time spent
+ * by the next component of the pipeline, and the components after it,
+ * to a stage of the {@link ParserMetrics}. The configuration places a 
+ * stage timer in front of each component it wants timed.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public final class XMLStageTimer implements XMLDocumentFilter {
+
+    //
+    // Data
+    //
+
+    /** The metrics charged. */
+    private final ParserMetrics fMetrics;
+
+    /** The stage charged. */
+    private final int fStage;
+
+    /** The document source. */
+    private XMLDocumentSource fDocumentSource;
+
+    /** The document handler. */
+    private XMLDocumentHandler fDocumentHandler;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a stage timer.
+     * 
+     * @param metrics The metrics charged.
+     * @param stage   The stage charged, one of the stage constants
+     *                of {@link ParserMetrics}.
+     */
+    public XMLStageTimer(ParserMetrics metrics, int stage) {
+        fMetrics = metrics;
+        fStage = stage;
+    } // <init>(ParserMetrics,int)
+
+    //
+    // Public methods
+    //
+
+    /** Returns the metrics charged. */
+    public ParserMetrics getMetrics() {
+        return fMetrics;
+    }
+
+    /** Returns the stage charged. */
+    public int getStage() {
+        return fStage;
+    }
+
+    //
+    // XMLDocumentSource methods
+    //
+
+    public void setDocumentHandler(XMLDocumentHandler handler) {
+        fDocumentHandler = handler;
+    }
+
+    public XMLDocumentHandler getDocumentHandler() {
+        return fDocumentHandler;
+    }
+
+    //
+    // XMLDocumentHandler methods
+    //
+
+    public void setDocumentSource(XMLDocumentSource source) {
+        fDocumentSource = source;
+    }
+
+    public XMLDocumentSource getDocumentSource() {
+        return fDocumentSource;
+    }
+
+    public void startDocument(XMLLocator locator, String encoding,
+            NamespaceContext namespaceContext, Augmentations augs)
+        throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.startDocument(locator, encoding, namespaceContext, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void xmlDecl(String version, String encoding, String standalone,
+            Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.xmlDecl(version, encoding, standalone, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void doctypeDecl(String rootElement, String publicId, String systemId,
+            Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.doctypeDecl(rootElement, publicId, systemId, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void comment(XMLString text, Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.comment(text, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void processingInstruction(String target, XMLString data,
+            Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.processingInstruction(target, data, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void startElement(QName element, XMLAttributes attributes,
+            Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.startElement(element, attributes, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void emptyElement(QName element, XMLAttributes attributes,
+            Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.emptyElement(element, attributes, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void startGeneralEntity(String name, XMLResourceIdentifier identifier,
+            String encoding, Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.startGeneralEntity(name, identifier, encoding, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void textDecl(String version, String encoding, Augmentations augs)
+        throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.textDecl(version, encoding, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void endGeneralEntity(String name, Augmentations augs)
+        throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.endGeneralEntity(name, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void characters(XMLString text, Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.characters(text, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void ignorableWhitespace(XMLString text, Augmentations augs)
+        throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.ignorableWhitespace(text, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void endElement(QName element, Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.endElement(element, augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void startCDATA(Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.startCDATA(augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void endCDATA(Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.endCDATA(augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+    public void endDocument(Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            final int depth = fMetrics.startStage(fStage);
+            fDocumentHandler.endDocument(augs);
+            fMetrics.endStage(depth);
+        }
+    }
+
+} // class XMLStageTimer
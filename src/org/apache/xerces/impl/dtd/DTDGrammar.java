@@ -18,6 +18,7 @@
 package org.apache.xerces.impl.dtd;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
 
 import org.apache.xerces.impl.dtd.models.CMAny;
@@ -89,6 +90,9 @@ public class DTDGrammar
     /** List mask (~LIST_FLAG). */
     private static final short LIST_MASK = ~LIST_FLAG;
 
+    /** An empty list of attribute declarations. */
+    private static final int[] NO_ATTRIBUTE_DECLS = new int[0];
+
     // debugging
 
     /** Debug DTDGrammar. */
@@ -148,6 +152,22 @@ public class DTDGrammar
     /** Last attribute declaration of an element declaration. */
     private int fElementDeclLastAttributeDeclIndex[][] = new int[INITIAL_CHUNK_COUNT][];
 
+    /** 
+     * Attribute declarations of an element declaration, hashed by name.
+     * Each table is an open addressing table of attribute declaration 
+     * indexes whose free slots hold -1.
+     */
+    private int fElementDeclAttributeDeclTable[][][] = new int[INITIAL_CHUNK_COUNT][][];
+
+    /** Number of attribute declarations in the table of an element declaration. */
+    private int fElementDeclAttributeDeclCount[][] = new int[INITIAL_CHUNK_COUNT][];
+
+    /** 
+     * Attribute declarations of an element declaration which are required 
+     * or have a default value, in the order of declaration. 
+     */
+    private int fElementDeclDefaultAttributeDecls[][][] = new int[INITIAL_CHUNK_COUNT][][];
+
     // attribute declarations
 
     /** Number of attribute declarations. */
@@ -340,19 +360,45 @@ public class DTDGrammar
         if (elementDeclIndex == -1) {
             return -1;
         }
-        int attDefIndex = getFirstAttributeDeclIndex(elementDeclIndex);
-        while (attDefIndex != -1) {
-            getAttributeDecl(attDefIndex, fAttributeDecl);
-
-            if (fAttributeDecl.name.rawname == attributeDeclName
-                || attributeDeclName.equals(fAttributeDecl.name.rawname) ) {
+        int chunk = elementDeclIndex >> CHUNK_SHIFT;
+        int index = elementDeclIndex & CHUNK_MASK;
+        int[] table = fElementDeclAttributeDeclTable[chunk][index];
+        if (table == null) {
+            return -1;
+        }
+        final int mask = table.length - 1;
+        int slot = attributeDeclName.hashCode() & mask;
+        int attDefIndex;
+        while ((attDefIndex = table[slot]) != -1) {
+            String rawname = fAttributeDeclName[attDefIndex >> CHUNK_SHIFT][attDefIndex & CHUNK_MASK].rawname;
+            if (rawname == attributeDeclName
+                || attributeDeclName.equals(rawname) ) {
                 return attDefIndex;
             }
-            attDefIndex = getNextAttributeDeclIndex(attDefIndex);
+            slot = (slot + 1) & mask;
         }
         return -1;
     } // getAttributeDeclIndex (int,QName)
 
+    /**
+     * Returns the indexes of the attribute declarations of an element
+     * declaration which are required or have a default value, in the
+     * order in which they were declared. The returned array is shared
+     * and must not be modified.
+     * 
+     * @param elementDeclIndex The index of the element declaration.
+     * 
+     * @return The indexes of the attribute declarations.
+     */
+    public int[] getDefaultAttributeDeclIndexes(int elementDeclIndex) {
+        if (elementDeclIndex < 0 || elementDeclIndex >= fElementDeclCount) {
+            return NO_ATTRIBUTE_DECLS;
+        }
+        int chunk = elementDeclIndex >> CHUNK_SHIFT;
+        int index = elementDeclIndex & CHUNK_MASK;
+        return fElementDeclDefaultAttributeDecls[chunk][index];
+    } // getDefaultAttributeDeclIndexes(int):int[]
+
     //
     // XMLDTDHandler methods
     //
@@ -1245,6 +1291,23 @@ public class DTDGrammar
         return true;
 
     } // getElementDecl(int,XMLElementDecl):boolean
+
+    /**
+     * Builds the content models of all element declarations with
+     * children or mixed content, so that content models are no longer
+     * built on demand while documents are validated. Once this has been
+     * called, a grammar which is not modified further may be used by 
+     * several validators at the same time. Grammars are prepared in 
+     * this way before being placed into a grammar pool.
+     */
+    public void buildContentModels() {
+        for (int i = 0; i < fElementDeclCount; i++) {
+            int type = fElementDeclType[i >> CHUNK_SHIFT][i & CHUNK_MASK];
+            if (type == XMLElementDecl.TYPE_CHILDREN || type == XMLElementDecl.TYPE_MIXED) {
+                getElementContentModelValidator(i);
+            }
+        }
+    } // buildContentModels()
     
     QName getElementDeclName(int elementDeclIndex) {
         if (elementDeclIndex < 0 || elementDeclIndex >= fElementDeclCount) {
@@ -1755,6 +1818,9 @@ public class DTDGrammar
       fElementDeclContentModelValidator[chunk][index]   = null;
       fElementDeclFirstAttributeDeclIndex[chunk][index] = -1;
       fElementDeclLastAttributeDeclIndex[chunk][index]  = -1;
+      fElementDeclAttributeDeclTable[chunk][index]      = null;
+      fElementDeclAttributeDeclCount[chunk][index]      = 0;
+      fElementDeclDefaultAttributeDecls[chunk][index]   = NO_ATTRIBUTE_DECLS;
       return fElementDeclCount++;
    }
 
@@ -1794,6 +1860,7 @@ public class DTDGrammar
       int index = elementDeclIndex &  CHUNK_MASK;
 
       fElementDeclFirstAttributeDeclIndex[chunk][index] = newFirstAttrIndex;
+      indexAttributeDecls(chunk, index);
    }
    
    protected void setContentSpecIndex(int elementDeclIndex, int contentSpecIndex){
@@ -1864,7 +1931,81 @@ public class DTDGrammar
             fAttributeDeclNextAttributeDeclIndex[attrChunk][attrIndex] = attributeDeclIndex;
          }
          fElementDeclLastAttributeDeclIndex[elemChunk][elemIndex] = attributeDeclIndex;
+         indexAttributeDecl(elemChunk, elemIndex, attributeDeclIndex);
+      }
+      else {
+         // the name or the default may have changed
+         indexAttributeDecls(elemChunk, elemIndex);
+      }
+   }
+
+   /** 
+    * Rebuilds the attribute declaration table and the default attribute
+    * declarations of an element declaration from its attribute list. 
+    */
+   private void indexAttributeDecls(int elemChunk, int elemIndex) {
+      fElementDeclAttributeDeclTable[elemChunk][elemIndex] = null;
+      fElementDeclAttributeDeclCount[elemChunk][elemIndex] = 0;
+      fElementDeclDefaultAttributeDecls[elemChunk][elemIndex] = NO_ATTRIBUTE_DECLS;
+      int index = fElementDeclFirstAttributeDeclIndex[elemChunk][elemIndex];
+      while (index != -1) {
+         indexAttributeDecl(elemChunk, elemIndex, index);
+         index = fAttributeDeclNextAttributeDeclIndex[index >> CHUNK_SHIFT][index & CHUNK_MASK];
+      }
+   }
+
+   /** 
+    * Enters an attribute declaration appended to the attribute list of
+    * an element declaration into the attribute declaration table and
+    * the default attribute declarations of the element declaration.
+    */
+   private void indexAttributeDecl(int elemChunk, int elemIndex, int attributeDeclIndex) {
+      int attrChunk = attributeDeclIndex >> CHUNK_SHIFT;
+      int attrIndex = attributeDeclIndex &  CHUNK_MASK;
+      String rawname = fAttributeDeclName[attrChunk][attrIndex].rawname;
+      if (rawname == null || getAttributeDeclIndex((elemChunk << CHUNK_SHIFT) + elemIndex, rawname) != -1) {
+         // only the first declaration of an attribute is binding
+         return;
       }
+
+      // keep the table at most half full
+      int[] table = fElementDeclAttributeDeclTable[elemChunk][elemIndex];
+      int count = fElementDeclAttributeDeclCount[elemChunk][elemIndex] + 1;
+      if (table == null || count << 1 > table.length) {
+         int[] oldTable = table;
+         table = new int[table == null ? 8 : table.length << 1];
+         Arrays.fill(table, -1);
+         if (oldTable != null) {
+            for (int i = 0; i < oldTable.length; i++) {
+               if (oldTable[i] != -1) {
+                  insertAttributeDecl(table, oldTable[i]);
+               }
+            }
+         }
+         fElementDeclAttributeDeclTable[elemChunk][elemIndex] = table;
+      }
+      insertAttributeDecl(table, attributeDeclIndex);
+      fElementDeclAttributeDeclCount[elemChunk][elemIndex] = count;
+
+      if (fAttributeDeclDefaultType[attrChunk][attrIndex] == XMLSimpleType.DEFAULT_TYPE_REQUIRED ||
+          fAttributeDeclDefaultValue[attrChunk][attrIndex] != null) {
+         int[] decls = fElementDeclDefaultAttributeDecls[elemChunk][elemIndex];
+         int[] newDecls = new int[decls.length + 1];
+         System.arraycopy(decls, 0, newDecls, 0, decls.length);
+         newDecls[decls.length] = attributeDeclIndex;
+         fElementDeclDefaultAttributeDecls[elemChunk][elemIndex] = newDecls;
+      }
+   }
+
+   /** Inserts an attribute declaration into an attribute declaration table. */
+   private void insertAttributeDecl(int[] table, int attributeDeclIndex) {
+      String rawname = fAttributeDeclName[attributeDeclIndex >> CHUNK_SHIFT][attributeDeclIndex & CHUNK_MASK].rawname;
+      final int mask = table.length - 1;
+      int slot = rawname.hashCode() & mask;
+      while (table[slot] != -1) {
+         slot = (slot + 1) & mask;
+      }
+      table[slot] = attributeDeclIndex;
    }
 
    protected int createContentSpec() {
@@ -2422,6 +2563,9 @@ public class DTDGrammar
             fElementDeclContentSpecIndex = resize(fElementDeclContentSpecIndex,fElementDeclContentSpecIndex.length * 2);
             fElementDeclFirstAttributeDeclIndex = resize(fElementDeclFirstAttributeDeclIndex, fElementDeclFirstAttributeDeclIndex.length * 2);
             fElementDeclLastAttributeDeclIndex = resize(fElementDeclLastAttributeDeclIndex, fElementDeclLastAttributeDeclIndex.length * 2);
+            fElementDeclAttributeDeclTable = resize(fElementDeclAttributeDeclTable, fElementDeclAttributeDeclTable.length * 2);
+            fElementDeclAttributeDeclCount = resize(fElementDeclAttributeDeclCount, fElementDeclAttributeDeclCount.length * 2);
+            fElementDeclDefaultAttributeDecls = resize(fElementDeclDefaultAttributeDecls, fElementDeclDefaultAttributeDecls.length * 2);
         }
         else if (fElementDeclName[chunk] != null) {
             return;
@@ -2434,6 +2578,9 @@ public class DTDGrammar
         fElementDeclContentSpecIndex[chunk] = new int[CHUNK_SIZE];
         fElementDeclFirstAttributeDeclIndex[chunk] = new int[CHUNK_SIZE];
         fElementDeclLastAttributeDeclIndex[chunk] = new int[CHUNK_SIZE];
+        fElementDeclAttributeDeclTable[chunk] = new int[CHUNK_SIZE][];
+        fElementDeclAttributeDeclCount[chunk] = new int[CHUNK_SIZE];
+        fElementDeclDefaultAttributeDecls[chunk] = new int[CHUNK_SIZE][];
         return;
     }
 
@@ -2587,6 +2734,12 @@ public class DTDGrammar
         return newarray;
     }
 
+    private static int[][][] resize(int array[][][], int newsize) {
+        int newarray[][][] = new int[newsize] [][];
+        System.arraycopy(array, 0, newarray, 0, array.length);
+        return newarray;
+    }
+
     //
     // Classes
     //
@@ -17,8 +17,11 @@
 
 package org.apache.xerces.impl.dtd;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.xni.XMLResourceIdentifier;
 import org.apache.xerces.xni.grammars.XMLGrammarDescription;
 
 /**
@@ -40,6 +43,13 @@ public class DTDGrammarBucket {
 
     // REVISIT:  make this class smarter and *way* more complete!
 
+    //
+    // Constants
+    //
+
+    /** The maximum number of DTDs cached for later documents. */
+    private static final int CACHED_DTD_LIMIT = 8;
+
     //
     // Data
     //
@@ -54,6 +64,10 @@ public class DTDGrammarBucket {
     // is the "active" grammar standalone?
     protected boolean fIsStandalone;
 
+    // DTDs read for earlier documents, most recently used first; these 
+    // are kept when the bucket is cleared
+    private final ArrayList fCachedDTDs = new ArrayList();
+
     //
     // Constructors
     //
@@ -107,4 +121,44 @@ public class DTDGrammarBucket {
     DTDGrammar getActiveGrammar () {
         return fActiveGrammar;
     }
+
+    // retrieve a cached DTD which can be reused for a document, dropping
+    // it if its external subset or parameter entities have changed
+    RecordedDTD getCachedDTD(XMLResourceIdentifier externalSubset, boolean standalone,
+                             SymbolTable symbolTable, int settingsVersion,
+                             RecordedDTD internalSubset) {
+        final int size = fCachedDTDs.size();
+        for (int i = 0; i < size; ++i) {
+            RecordedDTD dtd = (RecordedDTD) fCachedDTDs.get(i);
+            if (dtd.matches(externalSubset, standalone, symbolTable, 
+                            settingsVersion, internalSubset)) {
+                fCachedDTDs.remove(i);
+                // a DTD whose entities have changed is read again
+                if (!dtd.isCurrent()) {
+                    return null;
+                }
+                fCachedDTDs.add(0, dtd);
+                return dtd;
+            }
+        }
+        return null;
+    }
+
+    // cache a DTD for later documents, dropping the DTDs read with other 
+    // parser settings and the least recently used DTD if there are too many
+    void putCachedDTD(RecordedDTD dtd) {
+        for (int i = fCachedDTDs.size() - 1; i >= 0; --i) {
+            if (((RecordedDTD) fCachedDTDs.get(i)).getSettingsVersion() != dtd.getSettingsVersion()) {
+                fCachedDTDs.remove(i);
+            }
+        }
+        fCachedDTDs.add(0, dtd);
+        if (fCachedDTDs.size() > CACHED_DTD_LIMIT) {
+            fCachedDTDs.remove(CACHED_DTD_LIMIT);
+        }
+    }
+
+    void clearCachedDTDs() {
+        fCachedDTDs.clear();
+    }
 } // class DTDGrammarBucket
@@ -0,0 +1,1091 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.dtd;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+
+import org.apache.xerces.impl.XMLEntityManager;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLResourceIdentifierImpl;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.XMLDTDContentModelHandler;
+import org.apache.xerces.xni.XMLDTDHandler;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLDTDContentModelSource;
+import org.apache.xerces.xni.parser.XMLDTDSource;
+
+/**
+ * The events of a DTD as reported by the DTD processor, and the grammar
+ * built from them. 
+ * <p>
+ * While the DTD is read, this class is installed as the DTD handler and 
+ * DTD content model handler of the processor: it records each event and 
+ * passes it on to the handlers of the processor. Once the DTD has been 
+ * read, the recording is cached in the grammar bucket. A later document 
+ * which refers to the same external subset after the same internal subset
+ * reuses the grammar, and the events of the external subset are replayed
+ * to the handlers of the processor instead of scanning the external subset
+ * again. The external subset, and the external parameter entities it
+ * references, must not have changed since the DTD was read: their last
+ * modification date and length are checked before the DTD is reused.
+ * 
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class RecordedDTD
+    implements XMLDTDHandler, XMLDTDContentModelHandler {
+
+    //
+    // Constants
+    //
+
+    // event types
+
+    private static final short START_DTD = 0;
+    private static final short START_PARAMETER_ENTITY = 1;
+    private static final short TEXT_DECL = 2;
+    private static final short END_PARAMETER_ENTITY = 3;
+    private static final short START_EXTERNAL_SUBSET = 4;
+    private static final short END_EXTERNAL_SUBSET = 5;
+    private static final short COMMENT = 6;
+    private static final short PROCESSING_INSTRUCTION = 7;
+    private static final short ELEMENT_DECL = 8;
+    private static final short START_ATTLIST = 9;
+    private static final short ATTRIBUTE_DECL = 10;
+    private static final short END_ATTLIST = 11;
+    private static final short INTERNAL_ENTITY_DECL = 12;
+    private static final short EXTERNAL_ENTITY_DECL = 13;
+    private static final short UNPARSED_ENTITY_DECL = 14;
+    private static final short NOTATION_DECL = 15;
+    private static final short START_CONDITIONAL = 16;
+    private static final short IGNORED_CHARACTERS = 17;
+    private static final short END_CONDITIONAL = 18;
+    private static final short END_DTD = 19;
+    private static final short START_CONTENT_MODEL = 20;
+    private static final short ANY = 21;
+    private static final short EMPTY = 22;
+    private static final short START_GROUP = 23;
+    private static final short PCDATA = 24;
+    private static final short ELEMENT = 25;
+    private static final short SEPARATOR = 26;
+    private static final short OCCURRENCE = 27;
+    private static final short END_GROUP = 28;
+    private static final short END_CONTENT_MODEL = 29;
+
+    /** The arguments of an event without arguments. */
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    //
+    // Data
+    //
+
+    // handlers, while recording
+
+    /** DTD handler. */
+    private XMLDTDHandler fDTDHandler;
+
+    /** DTD content model handler. */
+    private XMLDTDContentModelHandler fDTDContentModelHandler;
+
+    // events
+
+    /** The type of each event. */
+    private short[] fTypes = new short[64];
+
+    /** The arguments of each event. */
+    private Object[][] fArguments = new Object[64][];
+
+    /** The number of events. */
+    private int fLength = 0;
+
+    /** The hash code of the events of the internal subset, after startDTD. */
+    private int fHash = 0;
+
+    /** The index of the startExternalSubset event, or -1. */
+    private int fExternalSubset = -1;
+
+    /** The hash code of the events before the startExternalSubset event. */
+    private int fInternalHash;
+
+    /** False if an event cannot be replayed. */
+    private boolean fReplayable = true;
+
+    // cache key
+
+    /** True if the document has an internal subset. */
+    private boolean fInternalSubset;
+
+    /** True if the document is standalone. */
+    private boolean fStandalone;
+
+    /** The symbol table of the names in the events and the grammar. */
+    private SymbolTable fSymbolTable;
+
+    /** The version of the parser settings the DTD was read with. */
+    private int fSettingsVersion;
+
+    /** The grammar built from the events. */
+    private DTDGrammar fGrammar;
+
+    // validation
+
+    /** 
+     * The stamps of the external subset and of the external parameter
+     * entities it references.
+     */
+    private final ArrayList fStamps = new ArrayList();
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a recording passing the events on to the given handlers. */
+    RecordedDTD(XMLDTDHandler dtdHandler,
+                XMLDTDContentModelHandler dtdContentModelHandler) {
+        fDTDHandler = dtdHandler;
+        fDTDContentModelHandler = dtdContentModelHandler;
+    } // <init>(XMLDTDHandler,XMLDTDContentModelHandler)
+
+    //
+    // Package methods
+    //
+
+    /**
+     * Completes the recording of a DTD so that it can be cached. Returns 
+     * false if the DTD cannot be cached: if it has no external subset, if 
+     * an event of the external subset cannot be replayed, or if the external
+     * subset or an external parameter entity it references cannot be 
+     * checked for changes.
+     * 
+     * @param externalSubsetStamp The stamp of the external subset, taken
+     *                       before it was read, or null.
+     * @param internalSubset True if the document has an internal subset.
+     * @param standalone     True if the document is standalone.
+     * @param symbolTable    The symbol table.
+     * @param settingsVersion The version of the parser settings.
+     * @param grammar        The grammar built from the events.
+     */
+    boolean complete(EntityStamp externalSubsetStamp, boolean internalSubset, 
+                     boolean standalone, SymbolTable symbolTable, 
+                     int settingsVersion, DTDGrammar grammar) {
+        fDTDHandler = null;
+        fDTDContentModelHandler = null;
+        if (!fReplayable || externalSubsetStamp == null || 
+            fExternalSubset == -1 || fTypes[fLength - 1] != END_DTD) {
+            return false;
+        }
+        for (int i = fExternalSubset; i < fLength; ++i) {
+            // the base system identifier of the entity is the entity 
+            // being scanned, which is not known when replayed
+            if (fTypes[i] == EXTERNAL_ENTITY_DECL && 
+                ((XMLResourceIdentifier) fArguments[i][1]).getBaseSystemId() == null) {
+                return false;
+            }
+        }
+        short[] types = new short[fLength];
+        System.arraycopy(fTypes, 0, types, 0, fLength);
+        fTypes = types;
+        Object[][] arguments = new Object[fLength][];
+        System.arraycopy(fArguments, 0, arguments, 0, fLength);
+        fArguments = arguments;
+        fInternalSubset = internalSubset;
+        fStandalone = standalone;
+        fSymbolTable = symbolTable;
+        fSettingsVersion = settingsVersion;
+        fGrammar = grammar;
+        fStamps.add(0, externalSubsetStamp);
+        return true;
+    } // complete(EntityStamp,boolean,boolean,SymbolTable,int,DTDGrammar):boolean
+
+    /**
+     * Returns true if this DTD can be reused for a document.
+     * 
+     * @param externalSubset  The identifier of the external subset.
+     * @param standalone      True if the document is standalone.
+     * @param symbolTable     The symbol table.
+     * @param settingsVersion The version of the parser settings.
+     * @param internalSubset  The recording of the internal subset of the
+     *                        document, or null if the document has none.
+     */
+    boolean matches(XMLResourceIdentifier externalSubset, boolean standalone,
+                    SymbolTable symbolTable, int settingsVersion, 
+                    RecordedDTD internalSubset) {
+        if (fSymbolTable != symbolTable || fSettingsVersion != settingsVersion || 
+            fStandalone != standalone || fInternalSubset != (internalSubset != null)) {
+            return false;
+        }
+        XMLResourceIdentifier identifier = 
+            (XMLResourceIdentifier) fArguments[fExternalSubset][0];
+        if (!equals(identifier.getExpandedSystemId(), externalSubset.getExpandedSystemId()) ||
+            !equals(identifier.getLiteralSystemId(), externalSubset.getLiteralSystemId()) ||
+            !equals(identifier.getPublicId(), externalSubset.getPublicId())) {
+            return false;
+        }
+        if (internalSubset != null) {
+            if (internalSubset.fHash != fInternalHash || 
+                internalSubset.fLength != fExternalSubset) {
+                return false;
+            }
+            // the first event is startDTD
+            for (int i = 1; i < fExternalSubset; ++i) {
+                if (internalSubset.fTypes[i] != fTypes[i]) {
+                    return false;
+                }
+                Object[] arguments = fArguments[i];
+                Object[] other = internalSubset.fArguments[i];
+                for (int j = 0; j < arguments.length; ++j) {
+                    if (!equals(arguments[j], other[j])) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    } // matches(XMLResourceIdentifier,boolean,SymbolTable,int,RecordedDTD):boolean
+
+    /**
+     * Replays the events of the external subset, preceded by the start of 
+     * the DTD if the document has no internal subset. The entities declared
+     * in the external subset are added to the entity manager as if the 
+     * external subset had been scanned.
+     * 
+     * @param dtdHandler     The DTD handler, or null.
+     * @param dtdContentModelHandler The DTD content model handler, or null.
+     * @param externalSubset The identifier of the external subset of the
+     *                       document.
+     * @param entityManager  The entity manager.
+     */
+    void replay(XMLDTDHandler dtdHandler, 
+                XMLDTDContentModelHandler dtdContentModelHandler,
+                XMLResourceIdentifier externalSubset, 
+                XMLEntityManager entityManager) throws IOException, XNIException {
+        if (!fInternalSubset && dtdHandler != null) {
+            dtdHandler.startDTD((XMLLocator) fArguments[0][0], null);
+        }
+        for (int i = fExternalSubset; i < fLength; ++i) {
+            Object[] arguments = fArguments[i];
+            switch (fTypes[i]) {
+                case START_PARAMETER_ENTITY: {
+                    if (dtdHandler != null) {
+                        dtdHandler.startParameterEntity((String) arguments[0], 
+                            (XMLResourceIdentifier) arguments[1], (String) arguments[2], null);
+                    }
+                    break;
+                }
+                case TEXT_DECL: {
+                    if (dtdHandler != null) {
+                        dtdHandler.textDecl((String) arguments[0], (String) arguments[1], null);
+                    }
+                    break;
+                }
+                case END_PARAMETER_ENTITY: {
+                    if (dtdHandler != null) {
+                        dtdHandler.endParameterEntity((String) arguments[0], null);
+                    }
+                    break;
+                }
+                case START_EXTERNAL_SUBSET: {
+                    if (dtdHandler != null) {
+                        dtdHandler.startExternalSubset(externalSubset, null);
+                    }
+                    entityManager.startExternalSubset();
+                    break;
+                }
+                case END_EXTERNAL_SUBSET: {
+                    entityManager.endExternalSubset();
+                    if (dtdHandler != null) {
+                        dtdHandler.endExternalSubset(null);
+                    }
+                    break;
+                }
+                case COMMENT: {
+                    if (dtdHandler != null) {
+                        dtdHandler.comment((XMLString) arguments[0], null);
+                    }
+                    break;
+                }
+                case PROCESSING_INSTRUCTION: {
+                    if (dtdHandler != null) {
+                        dtdHandler.processingInstruction((String) arguments[0], 
+                            (XMLString) arguments[1], null);
+                    }
+                    break;
+                }
+                case ELEMENT_DECL: {
+                    if (dtdHandler != null) {
+                        dtdHandler.elementDecl((String) arguments[0], (String) arguments[1], null);
+                    }
+                    break;
+                }
+                case START_ATTLIST: {
+                    if (dtdHandler != null) {
+                        dtdHandler.startAttlist((String) arguments[0], null);
+                    }
+                    break;
+                }
+                case ATTRIBUTE_DECL: {
+                    if (dtdHandler != null) {
+                        String[] enumeration = (String[]) arguments[3];
+                        dtdHandler.attributeDecl((String) arguments[0], (String) arguments[1], 
+                            (String) arguments[2], 
+                            enumeration != null ? (String[]) enumeration.clone() : null,
+                            (String) arguments[4], (XMLString) arguments[5], 
+                            (XMLString) arguments[6], null);
+                    }
+                    break;
+                }
+                case END_ATTLIST: {
+                    if (dtdHandler != null) {
+                        dtdHandler.endAttlist(null);
+                    }
+                    break;
+                }
+                case INTERNAL_ENTITY_DECL: {
+                    String name = (String) arguments[0];
+                    XMLString text = (XMLString) arguments[1];
+                    entityManager.addInternalEntity(name, text.toString());
+                    if (dtdHandler != null) {
+                        dtdHandler.internalEntityDecl(name, text, (XMLString) arguments[2], null);
+                    }
+                    break;
+                }
+                case EXTERNAL_ENTITY_DECL: {
+                    String name = (String) arguments[0];
+                    XMLResourceIdentifier identifier = (XMLResourceIdentifier) arguments[1];
+                    entityManager.addExternalEntity(name, identifier.getPublicId(), 
+                        identifier.getLiteralSystemId(), identifier.getBaseSystemId());
+                    if (dtdHandler != null) {
+                        dtdHandler.externalEntityDecl(name, identifier, null);
+                    }
+                    break;
+                }
+                case UNPARSED_ENTITY_DECL: {
+                    String name = (String) arguments[0];
+                    XMLResourceIdentifier identifier = (XMLResourceIdentifier) arguments[1];
+                    String notation = (String) arguments[2];
+                    entityManager.addUnparsedEntity(name, identifier.getPublicId(), 
+                        identifier.getLiteralSystemId(), identifier.getBaseSystemId(), notation);
+                    if (dtdHandler != null) {
+                        dtdHandler.unparsedEntityDecl(name, identifier, notation, null);
+                    }
+                    break;
+                }
+                case NOTATION_DECL: {
+                    if (dtdHandler != null) {
+                        dtdHandler.notationDecl((String) arguments[0], 
+                            (XMLResourceIdentifier) arguments[1], null);
+                    }
+                    break;
+                }
+                case START_CONDITIONAL: {
+                    if (dtdHandler != null) {
+                        dtdHandler.startConditional(((Short) arguments[0]).shortValue(), null);
+                    }
+                    break;
+                }
+                case IGNORED_CHARACTERS: {
+                    if (dtdHandler != null) {
+                        dtdHandler.ignoredCharacters((XMLString) arguments[0], null);
+                    }
+                    break;
+                }
+                case END_CONDITIONAL: {
+                    if (dtdHandler != null) {
+                        dtdHandler.endConditional(null);
+                    }
+                    break;
+                }
+                case END_DTD: {
+                    if (dtdHandler != null) {
+                        dtdHandler.endDTD(null);
+                    }
+                    break;
+                }
+                case START_CONTENT_MODEL: {
+                    if (dtdContentModelHandler != null) {
+                        dtdContentModelHandler.startContentModel((String) arguments[0], null);
+                    }
+                    break;
+                }
+                case ANY: {
+                    if (dtdContentModelHandler != null) {
+                        dtdContentModelHandler.any(null);
+                    }
+                    break;
+                }
+                case EMPTY: {
+                    if (dtdContentModelHandler != null) {
+                        dtdContentModelHandler.empty(null);
+                    }
+                    break;
+                }
+                case START_GROUP: {
+                    if (dtdContentModelHandler != null) {
+                        dtdContentModelHandler.startGroup(null);
+                    }
+                    break;
+                }
+                case PCDATA: {
+                    if (dtdContentModelHandler != null) {
+                        dtdContentModelHandler.pcdata(null);
+                    }
+                    break;
+                }
+                case ELEMENT: {
+                    if (dtdContentModelHandler != null) {
+                        dtdContentModelHandler.element((String) arguments[0], null);
+                    }
+                    break;
+                }
+                case SEPARATOR: {
+                    if (dtdContentModelHandler != null) {
+                        dtdContentModelHandler.separator(((Short) arguments[0]).shortValue(), null);
+                    }
+                    break;
+                }
+                case OCCURRENCE: {
+                    if (dtdContentModelHandler != null) {
+                        dtdContentModelHandler.occurrence(((Short) arguments[0]).shortValue(), null);
+                    }
+                    break;
+                }
+                case END_GROUP: {
+                    if (dtdContentModelHandler != null) {
+                        dtdContentModelHandler.endGroup(null);
+                    }
+                    break;
+                }
+                case END_CONTENT_MODEL: {
+                    if (dtdContentModelHandler != null) {
+                        dtdContentModelHandler.endContentModel(null);
+                    }
+                    break;
+                }
+            }
+        }
+    } // replay(XMLDTDHandler,XMLDTDContentModelHandler,XMLResourceIdentifier,XMLEntityManager)
+
+    /**
+     * Returns true if the external subset and the external parameter
+     * entities it references have not changed since they were read.
+     */
+    boolean isCurrent() {
+        final int size = fStamps.size();
+        for (int i = 0; i < size; ++i) {
+            if (!((EntityStamp) fStamps.get(i)).isCurrent()) {
+                return false;
+            }
+        }
+        return true;
+    } // isCurrent():boolean
+
+    /** Returns the grammar built from the events. */
+    DTDGrammar getGrammar() {
+        return fGrammar;
+    } // getGrammar():DTDGrammar
+
+    /** Returns the version of the parser settings the DTD was read with. */
+    int getSettingsVersion() {
+        return fSettingsVersion;
+    } // getSettingsVersion():int
+
+    /** Returns the DTD handler the events are passed on to. */
+    XMLDTDHandler getDTDHandler() {
+        return fDTDHandler;
+    } // getDTDHandler():XMLDTDHandler
+
+    /** Sets the DTD handler the events are passed on to. */
+    void setDTDHandler(XMLDTDHandler dtdHandler) {
+        fDTDHandler = dtdHandler;
+    } // setDTDHandler(XMLDTDHandler)
+
+    /** Returns the DTD content model handler the events are passed on to. */
+    XMLDTDContentModelHandler getDTDContentModelHandler() {
+        return fDTDContentModelHandler;
+    } // getDTDContentModelHandler():XMLDTDContentModelHandler
+
+    /** Sets the DTD content model handler the events are passed on to. */
+    void setDTDContentModelHandler(XMLDTDContentModelHandler dtdContentModelHandler) {
+        fDTDContentModelHandler = dtdContentModelHandler;
+    } // setDTDContentModelHandler(XMLDTDContentModelHandler)
+
+    //
+    // XMLDTDHandler methods
+    //
+
+    public void startDTD(XMLLocator locator, Augmentations augs) throws XNIException {
+        record(START_DTD, new Object[] { 
+            locator != null ? new LocatorSnapshot(locator) : null }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.startDTD(locator, augs);
+        }
+    } // startDTD(XMLLocator,Augmentations)
+
+    public void startParameterEntity(String name, XMLResourceIdentifier identifier,
+                                     String encoding, Augmentations augs) 
+        throws XNIException {
+        record(START_PARAMETER_ENTITY, new Object[] { name, copy(identifier), encoding }, augs);
+        // the external parameter entities of the external subset are not
+        // read when it is replayed, so they must be checked for changes
+        if (fExternalSubset != -1 && identifier != null && 
+            identifier.getExpandedSystemId() != null) {
+            EntityStamp stamp = EntityStamp.read(identifier.getExpandedSystemId());
+            if (stamp != null) {
+                fStamps.add(stamp);
+            }
+            else {
+                fReplayable = false;
+            }
+        }
+        if (fDTDHandler != null) {
+            fDTDHandler.startParameterEntity(name, identifier, encoding, augs);
+        }
+    } // startParameterEntity(String,XMLResourceIdentifier,String,Augmentations)
+
+    public void textDecl(String version, String encoding, Augmentations augs)
+        throws XNIException {
+        record(TEXT_DECL, new Object[] { version, encoding }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.textDecl(version, encoding, augs);
+        }
+    } // textDecl(String,String,Augmentations)
+
+    public void endParameterEntity(String name, Augmentations augs) throws XNIException {
+        record(END_PARAMETER_ENTITY, new Object[] { name }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.endParameterEntity(name, augs);
+        }
+    } // endParameterEntity(String,Augmentations)
+
+    public void startExternalSubset(XMLResourceIdentifier identifier, Augmentations augs) 
+        throws XNIException {
+        if (fExternalSubset == -1) {
+            fExternalSubset = fLength;
+            fInternalHash = fHash;
+        }
+        else {
+            fReplayable = false;
+        }
+        record(START_EXTERNAL_SUBSET, new Object[] { copy(identifier) }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.startExternalSubset(identifier, augs);
+        }
+    } // startExternalSubset(XMLResourceIdentifier,Augmentations)
+
+    public void endExternalSubset(Augmentations augs) throws XNIException {
+        record(END_EXTERNAL_SUBSET, NO_ARGUMENTS, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.endExternalSubset(augs);
+        }
+    } // endExternalSubset(Augmentations)
+
+    public void comment(XMLString text, Augmentations augs) throws XNIException {
+        record(COMMENT, new Object[] { copy(text) }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.comment(text, augs);
+        }
+    } // comment(XMLString,Augmentations)
+
+    public void processingInstruction(String target, XMLString data, Augmentations augs)
+        throws XNIException {
+        record(PROCESSING_INSTRUCTION, new Object[] { target, copy(data) }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.processingInstruction(target, data, augs);
+        }
+    } // processingInstruction(String,XMLString,Augmentations)
+
+    public void elementDecl(String name, String contentModel, Augmentations augs)
+        throws XNIException {
+        record(ELEMENT_DECL, new Object[] { name, contentModel }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.elementDecl(name, contentModel, augs);
+        }
+    } // elementDecl(String,String,Augmentations)
+
+    public void startAttlist(String elementName, Augmentations augs) throws XNIException {
+        record(START_ATTLIST, new Object[] { elementName }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.startAttlist(elementName, augs);
+        }
+    } // startAttlist(String,Augmentations)
+
+    public void attributeDecl(String elementName, String attributeName, 
+                              String type, String[] enumeration, 
+                              String defaultType, XMLString defaultValue,
+                              XMLString nonNormalizedDefaultValue, Augmentations augs)
+        throws XNIException {
+        record(ATTRIBUTE_DECL, new Object[] { elementName, attributeName, type, 
+            enumeration != null ? (String[]) enumeration.clone() : null, defaultType, 
+            copy(defaultValue), copy(nonNormalizedDefaultValue) }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.attributeDecl(elementName, attributeName, type, enumeration, 
+                defaultType, defaultValue, nonNormalizedDefaultValue, augs);
+        }
+    } // attributeDecl(String,String,String,String[],String,XMLString,XMLString,Augmentations)
+
+    public void endAttlist(Augmentations augs) throws XNIException {
+        record(END_ATTLIST, NO_ARGUMENTS, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.endAttlist(augs);
+        }
+    } // endAttlist(Augmentations)
+
+    public void internalEntityDecl(String name, XMLString text, 
+                                   XMLString nonNormalizedText, Augmentations augs) 
+        throws XNIException {
+        record(INTERNAL_ENTITY_DECL, 
+            new Object[] { name, copy(text), copy(nonNormalizedText) }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.internalEntityDecl(name, text, nonNormalizedText, augs);
+        }
+    } // internalEntityDecl(String,XMLString,XMLString,Augmentations)
+
+    public void externalEntityDecl(String name, XMLResourceIdentifier identifier,
+                                   Augmentations augs) throws XNIException {
+        record(EXTERNAL_ENTITY_DECL, new Object[] { name, copy(identifier) }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.externalEntityDecl(name, identifier, augs);
+        }
+    } // externalEntityDecl(String,XMLResourceIdentifier,Augmentations)
+
+    public void unparsedEntityDecl(String name, XMLResourceIdentifier identifier, 
+                                   String notation, Augmentations augs) 
+        throws XNIException {
+        record(UNPARSED_ENTITY_DECL, new Object[] { name, copy(identifier), notation }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.unparsedEntityDecl(name, identifier, notation, augs);
+        }
+    } // unparsedEntityDecl(String,XMLResourceIdentifier,String,Augmentations)
+
+    public void notationDecl(String name, XMLResourceIdentifier identifier,
+                             Augmentations augs) throws XNIException {
+        record(NOTATION_DECL, new Object[] { name, copy(identifier) }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.notationDecl(name, identifier, augs);
+        }
+    } // notationDecl(String,XMLResourceIdentifier,Augmentations)
+
+    public void startConditional(short type, Augmentations augs) throws XNIException {
+        record(START_CONDITIONAL, new Object[] { new Short(type) }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.startConditional(type, augs);
+        }
+    } // startConditional(short,Augmentations)
+
+    public void ignoredCharacters(XMLString text, Augmentations augs) throws XNIException {
+        record(IGNORED_CHARACTERS, new Object[] { copy(text) }, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.ignoredCharacters(text, augs);
+        }
+    } // ignoredCharacters(XMLString,Augmentations)
+
+    public void endConditional(Augmentations augs) throws XNIException {
+        record(END_CONDITIONAL, NO_ARGUMENTS, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.endConditional(augs);
+        }
+    } // endConditional(Augmentations)
+
+    public void endDTD(Augmentations augs) throws XNIException {
+        record(END_DTD, NO_ARGUMENTS, augs);
+        if (fDTDHandler != null) {
+            fDTDHandler.endDTD(augs);
+        }
+    } // endDTD(Augmentations)
+
+    public void setDTDSource(XMLDTDSource source) {
+    } // setDTDSource(XMLDTDSource)
+
+    public XMLDTDSource getDTDSource() {
+        return null;
+    } // getDTDSource():XMLDTDSource
+
+    //
+    // XMLDTDContentModelHandler methods
+    //
+
+    public void startContentModel(String elementName, Augmentations augs)
+        throws XNIException {
+        record(START_CONTENT_MODEL, new Object[] { elementName }, augs);
+        if (fDTDContentModelHandler != null) {
+            fDTDContentModelHandler.startContentModel(elementName, augs);
+        }
+    } // startContentModel(String,Augmentations)
+
+    public void any(Augmentations augs) throws XNIException {
+        record(ANY, NO_ARGUMENTS, augs);
+        if (fDTDContentModelHandler != null) {
+            fDTDContentModelHandler.any(augs);
+        }
+    } // any(Augmentations)
+
+    public void empty(Augmentations augs) throws XNIException {
+        record(EMPTY, NO_ARGUMENTS, augs);
+        if (fDTDContentModelHandler != null) {
+            fDTDContentModelHandler.empty(augs);
+        }
+    } // empty(Augmentations)
+
+    public void startGroup(Augmentations augs) throws XNIException {
+        record(START_GROUP, NO_ARGUMENTS, augs);
+        if (fDTDContentModelHandler != null) {
+            fDTDContentModelHandler.startGroup(augs);
+        }
+    } // startGroup(Augmentations)
+
+    public void pcdata(Augmentations augs) throws XNIException {
+        record(PCDATA, NO_ARGUMENTS, augs);
+        if (fDTDContentModelHandler != null) {
+            fDTDContentModelHandler.pcdata(augs);
+        }
+    } // pcdata(Augmentations)
+
+    public void element(String elementName, Augmentations augs) throws XNIException {
+        record(ELEMENT, new Object[] { elementName }, augs);
+        if (fDTDContentModelHandler != null) {
+            fDTDContentModelHandler.element(elementName, augs);
+        }
+    } // element(String,Augmentations)
+
+    public void separator(short separator, Augmentations augs) throws XNIException {
+        record(SEPARATOR, new Object[] { new Short(separator) }, augs);
+        if (fDTDContentModelHandler != null) {
+            fDTDContentModelHandler.separator(separator, augs);
+        }
+    } // separator(short,Augmentations)
+
+    public void occurrence(short occurrence, Augmentations augs) throws XNIException {
+        record(OCCURRENCE, new Object[] { new Short(occurrence) }, augs);
+        if (fDTDContentModelHandler != null) {
+            fDTDContentModelHandler.occurrence(occurrence, augs);
+        }
+    } // occurrence(short,Augmentations)
+
+    public void endGroup(Augmentations augs) throws XNIException {
+        record(END_GROUP, NO_ARGUMENTS, augs);
+        if (fDTDContentModelHandler != null) {
+            fDTDContentModelHandler.endGroup(augs);
+        }
+    } // endGroup(Augmentations)
+
+    public void endContentModel(Augmentations augs) throws XNIException {
+        record(END_CONTENT_MODEL, NO_ARGUMENTS, augs);
+        if (fDTDContentModelHandler != null) {
+            fDTDContentModelHandler.endContentModel(augs);
+        }
+    } // endContentModel(Augmentations)
+
+    public void setDTDContentModelSource(XMLDTDContentModelSource source) {
+    } // setDTDContentModelSource(XMLDTDContentModelSource)
+
+    public XMLDTDContentModelSource getDTDContentModelSource() {
+        return null;
+    } // getDTDContentModelSource():XMLDTDContentModelSource
+
+    //
+    // Private methods
+    //
+
+    /** Records an event. */
+    private void record(short type, Object[] arguments, Augmentations augs) {
+        // augmentations are not replayed
+        if (augs != null) {
+            fReplayable = false;
+        }
+        if (fLength == fTypes.length) {
+            short[] types = new short[fLength << 1];
+            System.arraycopy(fTypes, 0, types, 0, fLength);
+            fTypes = types;
+            Object[][] newArguments = new Object[fLength << 1][];
+            System.arraycopy(fArguments, 0, newArguments, 0, fLength);
+            fArguments = newArguments;
+        }
+        fTypes[fLength] = type;
+        fArguments[fLength] = arguments;
+        if (fExternalSubset == -1 && type != START_DTD) {
+            int hash = fHash * 31 + type;
+            for (int i = 0; i < arguments.length; ++i) {
+                hash = hash * 31 + hashCode(arguments[i]);
+            }
+            fHash = hash;
+        }
+        fLength++;
+    } // record(short,Object[],Augmentations)
+
+    /** Returns a copy of a string. */
+    private static XMLString copy(XMLString string) {
+        if (string == null) {
+            return null;
+        }
+        char[] ch = new char[string.length];
+        System.arraycopy(string.ch, string.offset, ch, 0, string.length);
+        return new XMLString(ch, 0, ch.length);
+    } // copy(XMLString):XMLString
+
+    /** Returns a copy of a resource identifier. */
+    private static XMLResourceIdentifier copy(XMLResourceIdentifier identifier) {
+        if (identifier == null) {
+            return null;
+        }
+        return new XMLResourceIdentifierImpl(identifier.getPublicId(), 
+            identifier.getLiteralSystemId(), identifier.getBaseSystemId(), 
+            identifier.getExpandedSystemId(), identifier.getNamespace());
+    } // copy(XMLResourceIdentifier):XMLResourceIdentifier
+
+    /** Returns true if two recorded arguments are equal. */
+    private static boolean equals(Object o1, Object o2) {
+        if (o1 == o2) {
+            return true;
+        }
+        if (o1 == null || o2 == null) {
+            return false;
+        }
+        if (o1 instanceof XMLString) {
+            XMLString s1 = (XMLString) o1;
+            XMLString s2 = (XMLString) o2;
+            return s1.length == s2.length && s1.equals(s2.ch, s2.offset, s2.length);
+        }
+        if (o1 instanceof XMLResourceIdentifier) {
+            XMLResourceIdentifier id1 = (XMLResourceIdentifier) o1;
+            XMLResourceIdentifier id2 = (XMLResourceIdentifier) o2;
+            return equals(id1.getPublicId(), id2.getPublicId()) &&
+                equals(id1.getLiteralSystemId(), id2.getLiteralSystemId()) &&
+                equals(id1.getBaseSystemId(), id2.getBaseSystemId()) &&
+                equals(id1.getExpandedSystemId(), id2.getExpandedSystemId()) &&
+                equals(id1.getNamespace(), id2.getNamespace());
+        }
+        if (o1 instanceof String[]) {
+            String[] a1 = (String[]) o1;
+            String[] a2 = (String[]) o2;
+            if (a1.length != a2.length) {
+                return false;
+            }
+            for (int i = 0; i < a1.length; ++i) {
+                if (!equals(a1[i], a2[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return o1.equals(o2);
+    } // equals(Object,Object):boolean
+
+    /** Returns the hash code of a recorded argument. */
+    private static int hashCode(Object o) {
+        if (o == null) {
+            return 0;
+        }
+        if (o instanceof XMLString) {
+            XMLString s = (XMLString) o;
+            int hash = 0;
+            for (int i = 0; i < s.length; ++i) {
+                hash = hash * 31 + s.ch[s.offset + i];
+            }
+            return hash;
+        }
+        if (o instanceof XMLResourceIdentifier) {
+            XMLResourceIdentifier id = (XMLResourceIdentifier) o;
+            return hashCode(id.getLiteralSystemId()) * 31 + hashCode(id.getBaseSystemId());
+        }
+        if (o instanceof String[]) {
+            String[] a = (String[]) o;
+            int hash = a.length;
+            for (int i = 0; i < a.length; ++i) {
+                hash = hash * 31 + hashCode(a[i]);
+            }
+            return hash;
+        }
+        return o.hashCode();
+    } // hashCode(Object):int
+
+    //
+    // Classes
+    //
+
+    /** 
+     * The values of a locator at the start of the DTD. The DTD is started
+     * by the external subset if the document has no internal subset. 
+     */
+    private static final class LocatorSnapshot implements XMLLocator {
+
+        private final String fPublicId;
+        private final String fLiteralSystemId;
+        private final String fBaseSystemId;
+        private final String fExpandedSystemId;
+        private final int fLineNumber;
+        private final int fColumnNumber;
+        private final int fCharacterOffset;
+        private final String fEncoding;
+        private final String fXMLVersion;
+
+        LocatorSnapshot(XMLLocator locator) {
+            fPublicId = locator.getPublicId();
+            fLiteralSystemId = locator.getLiteralSystemId();
+            fBaseSystemId = locator.getBaseSystemId();
+            fExpandedSystemId = locator.getExpandedSystemId();
+            fLineNumber = locator.getLineNumber();
+            fColumnNumber = locator.getColumnNumber();
+            fCharacterOffset = locator.getCharacterOffset();
+            fEncoding = locator.getEncoding();
+            fXMLVersion = locator.getXMLVersion();
+        }
+
+        public String getPublicId() {
+            return fPublicId;
+        }
+
+        public String getLiteralSystemId() {
+            return fLiteralSystemId;
+        }
+
+        public String getBaseSystemId() {
+            return fBaseSystemId;
+        }
+
+        public String getExpandedSystemId() {
+            return fExpandedSystemId;
+        }
+
+        public int getLineNumber() {
+            return fLineNumber;
+        }
+
+        public int getColumnNumber() {
+            return fColumnNumber;
+        }
+
+        public int getCharacterOffset() {
+            return fCharacterOffset;
+        }
+
+        public String getEncoding() {
+            return fEncoding;
+        }
+
+        public String getXMLVersion() {
+            return fXMLVersion;
+        }
+
+    } // class LocatorSnapshot
+
+    /** 
+     * The last modification date and length of an external entity, used
+     * to find out whether the entity has changed since it was read.
+     */
+    static final class EntityStamp {
+
+        private final String fSystemId;
+        private final long fLastModified;
+        private final long fLength;
+        private final String fETag;
+
+        private EntityStamp(String systemId, long lastModified, long length, String etag) {
+            fSystemId = systemId;
+            fLastModified = lastModified;
+            fLength = length;
+            fETag = etag;
+        }
+
+        /**
+         * Returns the stamp of an entity, or null if the entity cannot be
+         * reached or its last modification date is not known. A local file
+         * is not opened, and only the headers of a resource served over
+         * HTTP are requested.
+         * 
+         * @param systemId The expanded system identifier of the entity.
+         */
+        static EntityStamp read(String systemId) {
+            try {
+                URL url = new URL(systemId);
+                if (url.getProtocol().equals("file")) {
+                    try {
+                        File file = new File(new URI(systemId));
+                        long lastModified = file.lastModified();
+                        if (lastModified == 0) {
+                            return null;
+                        }
+                        return new EntityStamp(systemId, lastModified, file.length(), null);
+                    }
+                    catch (URISyntaxException e) {
+                        // read the stamp from a connection
+                    }
+                    catch (IllegalArgumentException e) {
+                        // not a local file
+                    }
+                }
+                URLConnection connection = url.openConnection();
+                if (connection instanceof HttpURLConnection) {
+                    HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                    httpConnection.setRequestMethod("HEAD");
+                    try {
+                        if (httpConnection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                            return null;
+                        }
+                        return read(systemId, connection);
+                    }
+                    finally {
+                        httpConnection.disconnect();
+                    }
+                }
+                try {
+                    return read(systemId, connection);
+                }
+                finally {
+                    try {
+                        connection.getInputStream().close();
+                    }
+                    catch (IOException e) {
+                        // the connection could not be opened
+                    }
+                }
+            }
+            catch (IOException e) {
+                return null;
+            }
+        } // read(String):EntityStamp
+
+        /** Returns true if the entity has not changed. */
+        boolean isCurrent() {
+            EntityStamp current = read(fSystemId);
+            return current != null && current.fLastModified == fLastModified &&
+                current.fLength == fLength && RecordedDTD.equals(current.fETag, fETag);
+        } // isCurrent():boolean
+
+        private static EntityStamp read(String systemId, URLConnection connection) {
+            long lastModified = connection.getLastModified();
+            if (lastModified == 0) {
+                return null;
+            }
+            return new EntityStamp(systemId, lastModified, 
+                connection.getContentLength(), connection.getHeaderField("ETag"));
+        } // read(String,URLConnection):EntityStamp
+
+    } // class EntityStamp
+
+} // class RecordedDTD
@@ -28,6 +28,9 @@ import org.apache.xerces.impl.XMLEntityManager;
 import org.apache.xerces.impl.XMLErrorReporter;
 import org.apache.xerces.impl.msg.XMLMessageFormatter;
 import org.apache.xerces.util.DefaultErrorHandler;
+import org.apache.xerces.util.EntityCache;
+import org.apache.xerces.util.ParserEventListener;
+import org.apache.xerces.util.ParserMetrics;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.xni.XNIException;
 import org.apache.xerces.xni.grammars.Grammar;
@@ -103,6 +106,14 @@ public class XMLDTDLoader
     /** Property identifier: locale. */
     public static final String LOCALE =
         Constants.XERCES_PROPERTY_PREFIX + Constants.LOCALE_PROPERTY;
+    
+    /** Property identifier: parser event listener. */
+    protected static final String PARSER_EVENT_LISTENER =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PARSER_EVENT_LISTENER_PROPERTY;
+
+    /** Property identifier: entity cache. */
+    protected static final String ENTITY_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_CACHE_PROPERTY;
 
     /** Recognized properties. */
     private static final String[] LOADER_RECOGNIZED_PROPERTIES = {
@@ -112,7 +123,9 @@ public class XMLDTDLoader
         ENTITY_RESOLVER,
         GRAMMAR_POOL,       
         DTD_VALIDATOR,
-        LOCALE
+        LOCALE,
+        PARSER_EVENT_LISTENER,
+        ENTITY_CACHE
     };
 
     // enforcing strict uri?
@@ -133,6 +146,12 @@ public class XMLDTDLoader
     // what's our Locale?
     protected Locale fLocale;
 
+    // is told of each grammar loaded
+    protected ParserEventListener fEventListener;
+
+    // holds the content of external entities read before
+    protected EntityCache fEntityCache;
+
     //
     // Constructors
     //
@@ -270,6 +289,12 @@ public class XMLDTDLoader
         else if (propertyId.equals(DTD_VALIDATOR)) {
             return fValidator;
         } 
+        else if (propertyId.equals(PARSER_EVENT_LISTENER)) {
+            return fEventListener;
+        } 
+        else if (propertyId.equals(ENTITY_CACHE)) {
+            return fEntityCache;
+        } 
         throw new XMLConfigurationException(XMLConfigurationException.NOT_RECOGNIZED, propertyId);
     } // getProperty(String):  Object
 
@@ -319,6 +344,13 @@ public class XMLDTDLoader
         else if(propertyId.equals(GRAMMAR_POOL)) {
             fGrammarPool = (XMLGrammarPool)value;
         } 
+        else if (propertyId.equals(PARSER_EVENT_LISTENER)) {
+            fEventListener = (ParserEventListener)value;
+        } 
+        else if (propertyId.equals(ENTITY_CACHE)) {
+            fEntityCache = (EntityCache)value;
+            fEntityManager.setProperty(propertyId, value);
+        } 
         else {
             throw new XMLConfigurationException(XMLConfigurationException.NOT_RECOGNIZED, propertyId);
         }
@@ -431,6 +463,7 @@ public class XMLDTDLoader
         // know which grammar it is, and we don't know the root name anyway...
 
         // actually start the parsing!
+        final long start = (fEventListener != null) ? ParserMetrics.nanoTime() : 0;
         try {
             fDTDScanner.setInputSource(source);
             fDTDScanner.scanDTDExternalSubset(true);
@@ -441,8 +474,17 @@ public class XMLDTDLoader
             // Close all streams opened by the parser.
             fEntityManager.closeReaders();
         }
-        if(fDTDGrammar != null && fGrammarPool != null) {
-            fGrammarPool.cacheGrammars(XMLDTDDescription.XML_DTD, new Grammar[] {fDTDGrammar});
+        if (fEventListener != null) {
+            fEventListener.grammarLoaded(XMLDTDDescription.XML_DTD, 
+                    source.getSystemId(), ParserMetrics.nanoTime() - start);
+        }
+        if (fDTDGrammar != null) {
+            // loaded grammars are meant to be pooled and may be shared 
+            // by concurrent validators
+            fDTDGrammar.buildContentModels();
+            if (fGrammarPool != null) {
+                fGrammarPool.cacheGrammars(XMLDTDDescription.XML_DTD, new Grammar[] {fDTDGrammar});
+            }
         }
         return fDTDGrammar;
     } // loadGrammar(XMLInputSource):  Grammar
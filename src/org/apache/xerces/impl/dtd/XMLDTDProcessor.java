@@ -17,6 +17,7 @@
 
 package org.apache.xerces.impl.dtd;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -25,8 +26,10 @@ import java.util.Map;
 import java.util.StringTokenizer;
 
 import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.XMLEntityManager;
 import org.apache.xerces.impl.XMLErrorReporter;
 import org.apache.xerces.impl.msg.XMLMessageFormatter;
+import org.apache.xerces.util.ParserConfigurationSettings;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.XMLChar;
 import org.apache.xerces.util.XMLSymbols;
@@ -98,6 +101,10 @@ public class XMLDTDProcessor
     /** Feature identifier: warn on undeclared element referenced in content model. */
     protected static final String WARN_ON_UNDECLARED_ELEMDEF =
         Constants.XERCES_FEATURE_PREFIX + Constants.WARN_ON_UNDECLARED_ELEMDEF_FEATURE;
+    
+    /** Feature identifier: cache external DTD. */
+    protected static final String CACHE_EXTERNAL_DTD =
+        Constants.XERCES_FEATURE_PREFIX + Constants.CACHE_EXTERNAL_DTD_FEATURE;
         
 	protected static final String PARSER_SETTINGS = 
         Constants.XERCES_FEATURE_PREFIX + Constants.PARSER_SETTINGS;
@@ -128,6 +135,7 @@ public class XMLDTDProcessor
         WARN_ON_DUPLICATE_ATTDEF,
         WARN_ON_UNDECLARED_ELEMDEF,
         NOTIFY_CHAR_REFS,
+        CACHE_EXTERNAL_DTD,
     };
 
     /** Feature defaults. */
@@ -136,6 +144,7 @@ public class XMLDTDProcessor
         Boolean.FALSE,
         Boolean.FALSE,
         null,
+        Boolean.TRUE,
     };
 
     /** Recognized properties. */
@@ -173,6 +182,9 @@ public class XMLDTDProcessor
     
     /** warn on undeclared element referenced in content model, this feature only works when valiation is true */
     protected boolean fWarnOnUndeclaredElemdef;
+
+    /** Cache external DTD. */
+    protected boolean fCacheExternalDTD;
         
     // properties
 
@@ -259,6 +271,26 @@ public class XMLDTDProcessor
     /** NOTATION enumeration values. */
     private HashMap fNotationEnumVals;
 
+    // caching of external DTDs
+
+    /** The version of the parser settings, or -1 if unknown. */
+    private int fSettingsVersion = -1;
+
+    /** The DTD being recorded, so that it can be cached. */
+    private RecordedDTD fRecordedDTD;
+
+    /** The number of errors reported before the DTD. */
+    private int fErrorCount;
+
+    /** True if the scanner asked for a cached external subset. */
+    private boolean fExternalSubsetRequested;
+
+    /** The stamp of the external subset, taken before it was read. */
+    private RecordedDTD.EntityStamp fExternalSubsetStamp;
+
+    /** True if the scanner asked after the start of the DTD. */
+    private boolean fRequestedAfterStartDTD;
+
     //
     // Constructors
     //
@@ -289,6 +321,14 @@ public class XMLDTDProcessor
      *                      SAXNotSupportedException.
      */
     public void reset(XMLComponentManager componentManager) throws XMLConfigurationException {
+
+        // cached external DTDs are only reused with the same settings
+        if (componentManager instanceof ParserConfigurationSettings) {
+            fSettingsVersion = ((ParserConfigurationSettings) componentManager).getSettingsVersion();
+        }
+        else {
+            fSettingsVersion = -1;
+        }
        
         boolean parser_settings;
         try {
@@ -333,6 +373,12 @@ public class XMLDTDProcessor
         catch (XMLConfigurationException e) {
             fWarnOnUndeclaredElemdef = false;
         }
+        try {
+            fCacheExternalDTD = componentManager.getFeature(CACHE_EXTERNAL_DTD);
+        } 
+        catch (XMLConfigurationException e) {
+            fCacheExternalDTD = false;
+        }
 
         // get needed components
         fErrorReporter =
@@ -356,6 +402,9 @@ public class XMLDTDProcessor
         // we get our grammarBucket from the validator...
         if (fValidator != null) {
             fGrammarBucket = fValidator.getGrammarBucket();
+            if (!fCacheExternalDTD) {
+                fGrammarBucket.clearCachedDTDs();
+            }
         } else {
             fGrammarBucket = null;
         }
@@ -368,6 +417,10 @@ public class XMLDTDProcessor
         fDTDGrammar = null;
         // initialize state
         fInDTDIgnore = false;
+        stopRecording();
+        fExternalSubsetRequested = false;
+        fExternalSubsetStamp = null;
+        fRequestedAfterStartDTD = false;
 
         fNDataDeclNotations.clear();
 
@@ -486,6 +539,10 @@ public class XMLDTDProcessor
      * @param dtdHandler The DTD handler.
      */
     public void setDTDHandler(XMLDTDHandler dtdHandler) {
+        if (fRecordedDTD != null) {
+            fRecordedDTD.setDTDHandler(dtdHandler);
+            return;
+        }
         fDTDHandler = dtdHandler;
     } // setDTDHandler(XMLDTDHandler)
 
@@ -495,6 +552,9 @@ public class XMLDTDProcessor
      * @return The DTD handler.
      */
     public XMLDTDHandler getDTDHandler() {
+        if (fRecordedDTD != null) {
+            return fRecordedDTD.getDTDHandler();
+        }
         return fDTDHandler;
     } // getDTDHandler():  XMLDTDHandler
 
@@ -508,6 +568,10 @@ public class XMLDTDProcessor
      * @param dtdContentModelHandler The DTD content model handler.
      */
     public void setDTDContentModelHandler(XMLDTDContentModelHandler dtdContentModelHandler) {
+        if (fRecordedDTD != null) {
+            fRecordedDTD.setDTDContentModelHandler(dtdContentModelHandler);
+            return;
+        }
         fDTDContentModelHandler = dtdContentModelHandler;
     } // setDTDContentModelHandler(XMLDTDContentModelHandler)
 
@@ -517,6 +581,9 @@ public class XMLDTDProcessor
      * @return dtdContentModelHandler The DTD content model handler.
      */
     public XMLDTDContentModelHandler getDTDContentModelHandler() {
+        if (fRecordedDTD != null) {
+            return fRecordedDTD.getDTDContentModelHandler();
+        }
         return fDTDContentModelHandler;
     } // getDTDContentModelHandler():  XMLDTDContentModelHandler
 
@@ -663,6 +730,14 @@ public class XMLDTDProcessor
             fDTDGrammar = fGrammarBucket.getActiveGrammar();
         }
 
+        // record the DTD so that it can be cached for later documents
+        if (fDTDGrammar != null && canCacheExternalDTD()) {
+            fRecordedDTD = new RecordedDTD(fDTDHandler, fDTDContentModelHandler);
+            fDTDHandler = fRecordedDTD;
+            fDTDContentModelHandler = fRecordedDTD;
+            fErrorCount = fErrorReporter.getErrorCount();
+        }
+
         // call handlers
         if(fDTDGrammar != null )
             fDTDGrammar.startDTD(locator, augs);
@@ -1292,8 +1367,11 @@ public class XMLDTDProcessor
         // save grammar
         if(fDTDGrammar != null) {
             fDTDGrammar.endDTD(augs);
-            if(fGrammarPool != null)
+            if(fGrammarPool != null) {
+                // pooled grammars may be shared by concurrent validators
+                fDTDGrammar.buildContentModels();
                 fGrammarPool.cacheGrammars(XMLGrammarDescription.XML_DTD, new Grammar[] {fDTDGrammar});
+            }
         }
         if (fValidation) {
             DTDGrammar grammar = (fDTDGrammar != null? fDTDGrammar: fGrammarBucket.getActiveGrammar());
@@ -1358,8 +1436,67 @@ public class XMLDTDProcessor
             fDTDHandler.endDTD(augs);
         }
 
+        // cache the DTD if it has been recorded
+        if (fRecordedDTD != null) {
+            RecordedDTD dtd = fRecordedDTD;
+            stopRecording();
+            // declarations reported with errors are not reused, since 
+            // the errors would not be reported again
+            if (fExternalSubsetRequested && fDTDGrammar != null &&
+                fErrorReporter.getErrorCount() == fErrorCount &&
+                dtd.complete(fExternalSubsetStamp, fRequestedAfterStartDTD, 
+                             fGrammarBucket.getStandalone(), fSymbolTable, 
+                             fSettingsVersion, fDTDGrammar)) {
+                fGrammarBucket.putCachedDTD(dtd);
+            }
+        }
+
     } // endDTD()
 
+    /**
+     * Reports the external subset of the DTD of the document, and uses its 
+     * grammar, from the cache of external DTDs if an earlier document had
+     * the same external subset after the same internal subset. This is 
+     * called by the document scanner in place of scanning the external 
+     * subset, after the internal subset if the document has one. 
+     * 
+     * @param identifier    The identifier of the external subset.
+     * @param entityManager The entity manager, to which the entities
+     *                      declared in the external subset are added.
+     *
+     * @return True if the external subset was reported, false if it has 
+     *         to be scanned.
+     */
+    public boolean replayExternalSubset(XMLResourceIdentifier identifier,
+                                        XMLEntityManager entityManager) 
+        throws IOException, XNIException {
+
+        // the grammar of the DOCTYPE must still be built, and if the DTD 
+        // has been started it must be recorded
+        if (!canCacheExternalDTD() || 
+            fGrammarBucket.getActiveGrammar() == null || 
+            fGrammarBucket.getActiveGrammar().isImmutable() ||
+            (fDTDGrammar != null && fRecordedDTD == null)) {
+            return false;
+        }
+        fExternalSubsetRequested = true;
+        fRequestedAfterStartDTD = fRecordedDTD != null;
+        RecordedDTD dtd = fGrammarBucket.getCachedDTD(identifier, 
+            fGrammarBucket.getStandalone(), fSymbolTable, fSettingsVersion, fRecordedDTD);
+        if (dtd == null) {
+            // note the date of the external subset before it is read, so
+            // that a change made while reading it is noticed later
+            fExternalSubsetStamp = RecordedDTD.EntityStamp.read(identifier.getExpandedSystemId());
+            return false;
+        }
+        stopRecording();
+        fDTDGrammar = null;
+        fValidator.setCachedGrammar(dtd.getGrammar());
+        dtd.replay(fDTDHandler, fDTDContentModelHandler, identifier, entityManager);
+        return true;
+
+    } // replayExternalSubset(XMLResourceIdentifier,XMLEntityManager):boolean
+
     // sets the XMLDTDSource of this handler
     public void setDTDSource(XMLDTDSource source ) {
         fDTDSource = source;
@@ -1625,6 +1762,21 @@ public class XMLDTDProcessor
     // Private methods
     //
 
+    /** Returns true if external DTDs may be cached. */
+    private boolean canCacheExternalDTD() {
+        return fCacheExternalDTD && fSettingsVersion != -1 && 
+            fGrammarPool == null && fValidator != null;
+    } // canCacheExternalDTD():boolean
+
+    /** Stops recording the DTD, restoring the handlers. */
+    private void stopRecording() {
+        if (fRecordedDTD != null) {
+            fDTDHandler = fRecordedDTD.getDTDHandler();
+            fDTDContentModelHandler = fRecordedDTD.getDTDContentModelHandler();
+            fRecordedDTD = null;
+        }
+    } // stopRecording()
+
     /**
      * Normalize the attribute value of a non CDATA default attribute
      * collapsing sequences of space characters (x20)
@@ -28,6 +28,7 @@ import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
 import org.apache.xerces.impl.msg.XMLMessageFormatter;
 import org.apache.xerces.impl.validation.ValidationManager;
 import org.apache.xerces.impl.validation.ValidationState;
+import org.apache.xerces.util.ParserMetrics;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.XMLChar;
 import org.apache.xerces.util.XMLSymbols;
@@ -143,6 +144,10 @@ public class XMLDTDValidator
     protected static final String VALIDATION_MANAGER =
         Constants.XERCES_PROPERTY_PREFIX + Constants.VALIDATION_MANAGER_PROPERTY;
 
+    /** Property identifier: parser metrics. */
+    protected static final String PARSER_METRICS =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PARSER_METRICS_PROPERTY;
+
     // recognized features and properties
 
     /** Recognized features. */
@@ -231,6 +236,9 @@ public class XMLDTDValidator
     // the grammar pool
     protected XMLGrammarPool fGrammarPool;
 
+    /** Parser metrics, or null if no metrics are collected. */
+    protected ParserMetrics fMetrics;
+
     /** Grammar bucket. */
     protected DTDGrammarBucket fGrammarBucket;
 
@@ -396,6 +404,13 @@ public class XMLDTDValidator
         return fGrammarBucket;
     } // getGrammarBucket():  DTDGrammarBucket
 
+    // validate the document against a grammar cached for an earlier 
+    // document, instead of the grammar created for its DOCTYPE
+    void setCachedGrammar(DTDGrammar grammar) {
+        fDTDGrammar = grammar;
+        fGrammarBucket.setActiveGrammar(grammar);
+    } // setCachedGrammar(DTDGrammar)
+
     //
     // XMLComponent methods
     //
@@ -512,6 +527,11 @@ public class XMLDTDValidator
         } catch (XMLConfigurationException e) {
             fGrammarPool = null;
         }
+        try {
+            fMetrics = (ParserMetrics)componentManager.getProperty(PARSER_METRICS);
+        } catch (XMLConfigurationException e) {
+            fMetrics = null;
+        }
 
         fDatatypeValidatorFactory = (DTDDVFactory)componentManager.getProperty(Constants.XERCES_PROPERTY_PREFIX + Constants.DATATYPE_VALIDATOR_FACTORY_PROPERTY);
 		init();
@@ -736,6 +756,10 @@ public class XMLDTDValidator
         }
         XMLDTDDescription grammarDesc = new XMLDTDDescription(publicId, systemId, fDocLocation.getExpandedSystemId(), eid, rootElement);
         fDTDGrammar = fGrammarBucket.getGrammar(grammarDesc);
+        if (fDTDGrammar != null && fGrammarPool != null && fMetrics != null) {
+            // the bucket only holds the initial grammars of the pool
+            fMetrics.countGrammarLookup(true);
+        }
         if(fDTDGrammar == null) {
             // give grammar pool a chance...
             //
@@ -747,6 +771,9 @@ public class XMLDTDValidator
             // This can never happen when the instance document specified a DOCTYPE. -- mrglavas
             if (fGrammarPool != null && (systemId != null || publicId != null)) {
                 fDTDGrammar = (DTDGrammar)fGrammarPool.retrieveGrammar(grammarDesc);
+                if (fMetrics != null) {
+                    fMetrics.countGrammarLookup(fDTDGrammar != null);
+                }
             }
         }
         if(fDTDGrammar == null) {
@@ -1164,10 +1191,13 @@ public class XMLDTDValidator
         // (1) report error for REQUIRED attrs that are missing (V_TAGc)
         // (2) add default attrs (FIXED and NOT_FIXED)
         //
-        int attlistIndex = fDTDGrammar.getFirstAttributeDeclIndex(elementIndex);
+        // only the attribute decls which are REQUIRED or have a default
+        // value need to be considered
+        int[] defaultAttributeDecls = fDTDGrammar.getDefaultAttributeDeclIndexes(elementIndex);
 
-        while (attlistIndex != -1) {
+        for (int j = 0; j < defaultAttributeDecls.length; j++) {
 
+            int attlistIndex = defaultAttributeDecls[j];
             fDTDGrammar.getAttributeDecl(attlistIndex, fTempAttDecl);
 
             if (DEBUG_ATTRIBUTES) {
@@ -1189,25 +1219,9 @@ public class XMLDTDValidator
             String attRawName = fTempAttDecl.name.rawname;
             String attType = getAttributeTypeName(fTempAttDecl);
             int attDefaultType =fTempAttDecl.simpleType.defaultType;
-            String attValue = null;
-                            
-            if (fTempAttDecl.simpleType.defaultValue != null) {
-                attValue = fTempAttDecl.simpleType.defaultValue;
-            }
-            
-            boolean specified = false;
+            String attValue = fTempAttDecl.simpleType.defaultValue;
             boolean required = attDefaultType == XMLSimpleType.DEFAULT_TYPE_REQUIRED;
-            boolean cdata = attType == XMLSymbols.fCDATASymbol;
-
-            if (!cdata || required || attValue != null) {
-                int attrCount = attributes.getLength();
-                for (int i = 0; i < attrCount; i++) {
-                    if (attributes.getQName(i) == attRawName) {
-                        specified = true;
-                        break;
-                    }
-                }
-            }
+            boolean specified = attributes.getIndex(attRawName) != -1;
 
             if (!specified) {
                 if (required) {
@@ -1245,8 +1259,6 @@ public class XMLDTDValidator
                     int newAttr = attributes.addAttribute(fTempQName, attType, attValue);
                 }
             }
-            // get next att decl in the Grammar for this element
-            attlistIndex = fDTDGrammar.getNextAttributeDeclIndex(attlistIndex);
         }
 
         // now iterate through the expanded attributes for
@@ -1276,18 +1288,12 @@ public class XMLDTDValidator
                     }
                 }
             }
-            int attDefIndex = -1;
-            int position =
-            fDTDGrammar.getFirstAttributeDeclIndex(elementIndex);
-            while (position != -1) {
+            int position = 
+            fDTDGrammar.getAttributeDeclIndex(elementIndex, attrRawName);
+            if (position != -1) {
+                // found the match att decl, 
                 fDTDGrammar.getAttributeDecl(position, fTempAttDecl);
-                if (fTempAttDecl.name.rawname == attrRawName) {
-                    // found the match att decl, 
-                    attDefIndex = position;
-                    declared = true;
-                    break;
-                }
-                position = fDTDGrammar.getNextAttributeDeclIndex(position);
+                declared = true;
             }
             if (!declared) {
                 if (fPerformValidation) {
@@ -1722,6 +1728,9 @@ public class XMLDTDValidator
             ContentModelValidator cmElem = null;
             cmElem = fTempElementDecl.contentModelValidator;
             int result = cmElem.validate(children, childOffset, childCount);
+            if (fMetrics != null) {
+                fMetrics.countContentModelTransitions(childCount);
+            }
             return result;
         }
         else if (contentType == -1) {
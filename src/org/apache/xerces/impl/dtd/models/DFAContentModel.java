@@ -87,6 +87,14 @@ public class DFAContentModel
     /** The element map size. */
     private int fElemMapSize = 0;
 
+    /**
+     * Open addressing table of the indexes into the element map, hashed
+     * by the raw names of the elements. Free slots hold -1. This is null 
+     * if the element map contains information related to ANY models, 
+     * which must be matched in the order of the element map.
+     */
+    private int fElemMapTable[] = null;
+
     /** Boolean to distinguish Schema Mixed Content */
     private boolean fMixed;
 
@@ -299,29 +307,34 @@ public class DFAContentModel
 
             // Look up this child in our element map
             int elemIndex = 0;
-            for (; elemIndex < fElemMapSize; elemIndex++)
-            {
-                int type = fElemMapType[elemIndex] & 0x0f ;
-                if (type == XMLContentSpec.CONTENTSPECNODE_LEAF) {
-                    //System.out.println("fElemMap["+elemIndex+"]: "+fElemMap[elemIndex]);
-                    if (fElemMap[elemIndex].rawname == curElem.rawname) {
-                        break;
+            if (fElemMapTable != null) {
+                elemIndex = lookupElemMapTable(curElem.rawname);
+            }
+            else {
+                for (; elemIndex < fElemMapSize; elemIndex++)
+                {
+                    int type = fElemMapType[elemIndex] & 0x0f ;
+                    if (type == XMLContentSpec.CONTENTSPECNODE_LEAF) {
+                        //System.out.println("fElemMap["+elemIndex+"]: "+fElemMap[elemIndex]);
+                        if (fElemMap[elemIndex].rawname == curElem.rawname) {
+                            break;
+                        }
                     }
-                }
-                else if (type == XMLContentSpec.CONTENTSPECNODE_ANY) {
-                    String uri = fElemMap[elemIndex].uri;
-                    if (uri == null || uri == curElem.uri) {
-                        break;
+                    else if (type == XMLContentSpec.CONTENTSPECNODE_ANY) {
+                        String uri = fElemMap[elemIndex].uri;
+                        if (uri == null || uri == curElem.uri) {
+                            break;
+                        }
                     }
-                }
-                else if (type == XMLContentSpec.CONTENTSPECNODE_ANY_LOCAL) {
-                    if (curElem.uri == null) {
-                        break;
+                    else if (type == XMLContentSpec.CONTENTSPECNODE_ANY_LOCAL) {
+                        if (curElem.uri == null) {
+                            break;
+                        }
                     }
-                }
-                else if (type == XMLContentSpec.CONTENTSPECNODE_ANY_OTHER) {
-                    if (fElemMap[elemIndex].uri != curElem.uri) {
-                        break;
+                    else if (type == XMLContentSpec.CONTENTSPECNODE_ANY_OTHER) {
+                        if (fElemMap[elemIndex].uri != curElem.uri) {
+                            break;
+                        }
                     }
                 }
             }
@@ -543,6 +556,8 @@ public class DFAContentModel
 
 	/* Optimization(Jan, 2001) */
 
+        fElemMapTable = buildElemMapTable();
+
         //
         //  Next lets create some arrays, some that that hold transient
         //  information during the DFA build and some that are permament.
@@ -923,6 +938,55 @@ public class DFAContentModel
     }
 
 
+    /**
+     * Builds the table of the indexes into the element map, hashed by
+     * raw name. Returns null if the element map contains anything
+     * but leaves.
+     */
+    private int[] buildElemMapTable() {
+        int size = 2;
+        while (size < fElemMapSize << 1) {
+            size <<= 1;
+        }
+        int[] table = new int[size];
+        for (int slot = 0; slot < size; slot++) {
+            table[slot] = -1;
+        }
+        final int mask = size - 1;
+        for (int index = 0; index < fElemMapSize; index++) {
+            final String rawname = fElemMap[index].rawname;
+            if ((fElemMapType[index] & 0x0f) != XMLContentSpec.CONTENTSPECNODE_LEAF ||
+                rawname == null) {
+                return null;
+            }
+            int slot = rawname.hashCode() & mask;
+            while (table[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index;
+        }
+        return table;
+    }
+
+    /**
+     * Returns the index into the element map of the element with the 
+     * given raw name, or the size of the element map if there is none.
+     */
+    private int lookupElemMapTable(String rawname) {
+        if (rawname != null) {
+            final int mask = fElemMapTable.length - 1;
+            int slot = rawname.hashCode() & mask;
+            int index;
+            while ((index = fElemMapTable[slot]) != -1) {
+                if (fElemMap[index].rawname == rawname) {
+                    return index;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return fElemMapSize;
+    }
+
     /**
      * -1 is used to represent bad transitions in the transition table
      * entry for each state. So each entry is initialized to an all -1
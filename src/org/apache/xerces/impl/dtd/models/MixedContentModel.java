@@ -53,6 +53,13 @@ public class MixedContentModel
     /** The type of the children to support ANY. */
     private final int fChildrenType[];
 
+    /**
+     * Open addressing table of the indexes into the list of children,
+     * hashed by raw name. Free slots hold -1. This is null if the list 
+     * contains ANY types, which must be matched in order.
+     */
+    private final int fChildrenTable[];
+
     /* this is the EquivClassComparator object */
     //private EquivClassComparator comparator = null;
     
@@ -85,6 +92,7 @@ public class MixedContentModel
             fChildrenType[i] = type[offset + i];
         }
         fOrdered = ordered;
+        fChildrenTable = ordered ? null : buildChildrenTable();
 
     }
 
@@ -171,6 +179,12 @@ public class MixedContentModel
     
                 // And try to find it in our list
                 int inIndex = 0;
+                if (fChildrenTable != null) {
+                    if (!containsChild(curChild.rawname)) {
+                        return outIndex;
+                    }
+                    continue;
+                }
                 for (; inIndex < fCount; inIndex++)
                 {
                     int type = fChildrenType[inIndex];
@@ -211,4 +225,53 @@ public class MixedContentModel
         return -1;
     } // validate
 
+    //
+    // Private methods
+    //
+
+    /**
+     * Builds the table of the indexes into the list of children, hashed
+     * by raw name. Returns null if the list contains anything but leaves.
+     */
+    private int[] buildChildrenTable() {
+        int size = 2;
+        while (size < fCount << 1) {
+            size <<= 1;
+        }
+        int[] table = new int[size];
+        for (int slot = 0; slot < size; slot++) {
+            table[slot] = -1;
+        }
+        final int mask = size - 1;
+        for (int index = 0; index < fCount; index++) {
+            final String rawname = fChildren[index].rawname;
+            if (fChildrenType[index] != XMLContentSpec.CONTENTSPECNODE_LEAF ||
+                rawname == null) {
+                return null;
+            }
+            int slot = rawname.hashCode() & mask;
+            while (table[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index;
+        }
+        return table;
+    } // buildChildrenTable():int[]
+
+    /** Returns true if the list of children contains the given raw name. */
+    private boolean containsChild(String rawname) {
+        if (rawname != null) {
+            final int mask = fChildrenTable.length - 1;
+            int slot = rawname.hashCode() & mask;
+            int index;
+            while ((index = fChildrenTable[slot]) != -1) {
+                if (fChildren[index].rawname == rawname) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return false;
+    } // containsChild(String):boolean
+
 } // class MixedContentModel
@@ -27,7 +27,8 @@ package org.apache.xerces.impl.dv.util;
  *
  * This implementation does not encode/decode streaming
  * data. You need the data that you will encode/decode
- * already on a byte arrray.
+ * already on a byte arrray. Use {@link Base64Decoder} to
+ * decode character data which arrives in chunks.
  *
  * @xerces.internal 
  *
@@ -98,6 +99,14 @@ public final class  Base64 {
         return (isWhiteSpace(octect) || isPad(octect) || isData(octect));
     }
 
+    /**
+     * Returns the 6-bit value of a Base64 data character, or -1
+     * if the character is not in the Base64 alphabet.
+     */
+    static int getValue(char octect) {
+        return (octect < BASELENGTH) ? base64Alphabet[octect] : -1;
+    }
+
     /**
      * Encodes hex octects into Base64
      *
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.dv.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Decodes Base64 data as it arrives in chunks. The accepted input
+ * is the same as for {@link Base64#decode(String)}: white space may
+ * appear anywhere, and padding is only allowed at the end of the
+ * last quadruple.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public final class Base64Decoder extends BinaryDecoder {
+
+    /** Bits of the current quadruple. */
+    private int fBits;
+
+    /** Number of characters of the current quadruple seen so far. */
+    private int fCount;
+
+    /** Number of pad characters seen. */
+    private int fPads;
+
+    /** True once a padded quadruple has been completed. */
+    private boolean fDone;
+
+    public Base64Decoder(OutputStream output) {
+        super(output);
+    }
+
+    protected void decodeChars(char[] ch, int start, int end) throws IOException {
+        for (int i = start; i < end && !fError; i++) {
+            final char c = ch[i];
+            if (isWhiteSpace(c)) {
+                continue;
+            }
+            if (fDone) {
+                fError = true;
+                return;
+            }
+            if (c == '=') {
+                // padding may only fill the last one or two positions
+                if (fCount < 2) {
+                    fError = true;
+                    return;
+                }
+                fPads++;
+                if (++fCount == 4) {
+                    endPadded();
+                }
+                continue;
+            }
+            final int value = Base64.getValue(c);
+            if (value == -1 || fPads > 0) {
+                fError = true;
+                return;
+            }
+            fBits = (fBits << 6) | value;
+            if (++fCount == 4) {
+                write(fBits >> 16);
+                write((fBits >> 8) & 0xff);
+                write(fBits & 0xff);
+                fBits = 0;
+                fCount = 0;
+            }
+        }
+    }
+
+    protected boolean endChars() {
+        return fCount == 0;
+    }
+
+    protected void resetState() {
+        fBits = 0;
+        fCount = 0;
+        fPads = 0;
+        fDone = false;
+    }
+
+    /** Writes the octets of a quadruple ending in padding. */
+    private void endPadded() throws IOException {
+        if (fPads == 2) {
+            // 12 bits, the last 4 of which must be zero
+            if ((fBits & 0xf) != 0) {
+                fError = true;
+                return;
+            }
+            write(fBits >> 4);
+        }
+        else {
+            // 18 bits, the last 2 of which must be zero
+            if ((fBits & 0x3) != 0) {
+                fError = true;
+                return;
+            }
+            write(fBits >> 10);
+            write((fBits >> 2) & 0xff);
+        }
+        fCount = 0;
+        fDone = true;
+    }
+
+} // class Base64Decoder
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.dv.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Base class for decoders which turn the lexical representation of
+ * a binary datatype into octets as the characters become available.
+ * Characters can be passed in as many chunks as necessary, e.g.
+ * directly from the buffers handed to <code>characters</code> by a
+ * SAX or XNI pipeline, so that the encoded text never needs to be
+ * collected into a single string. Decoded octets are written to an
+ * output stream through a small internal buffer.
+ * <p>
+ * A decoder may be given a maximum length. As soon as more octets
+ * than the maximum have been decoded the data is reported as invalid,
+ * which allows length facets to be checked without decoding the
+ * remainder of a value.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public abstract class BinaryDecoder {
+
+    //
+    // Constants
+    //
+
+    /** Size of the internal output buffer. */
+    private static final int BUFFER_SIZE = 2048;
+
+    //
+    // Data
+    //
+
+    /** Destination of decoded octets. */
+    private OutputStream fOutput;
+
+    /** Decoded octets which have not yet been written. */
+    private final byte[] fBuffer = new byte[BUFFER_SIZE];
+
+    /** Number of octets in the output buffer. */
+    private int fBufferLength;
+
+    /** Scratch buffer used when decoding strings. */
+    private char[] fChars;
+
+    /** Total number of octets decoded. */
+    private long fLength;
+
+    /** Maximum number of octets allowed, or -1 for no limit. */
+    private long fMaxLength = -1;
+
+    /** True if the data seen so far is not valid. */
+    protected boolean fError;
+
+    //
+    // Constructors
+    //
+
+    protected BinaryDecoder(OutputStream output) {
+        fOutput = output;
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Decodes a chunk of characters.
+     *
+     * @param ch     the character array
+     * @param offset the offset of the first character
+     * @param length the number of characters
+     * @return false if the characters seen so far are not a valid
+     *         representation, or decode to more octets than allowed
+     * @throws IOException if the output stream throws an exception
+     */
+    public boolean decode(char[] ch, int offset, int length) throws IOException {
+        if (!fError) {
+            decodeChars(ch, offset, offset + length);
+        }
+        return !fError;
+    }
+
+    /**
+     * Decodes a string, copying at most a buffer's worth of characters
+     * at a time.
+     *
+     * @param s the characters to decode
+     * @return false if the characters seen so far are not valid
+     * @throws IOException if the output stream throws an exception
+     */
+    public boolean decode(String s) throws IOException {
+        if (fChars == null) {
+            fChars = new char[BUFFER_SIZE];
+        }
+        final int length = s.length();
+        for (int i = 0; i < length && !fError; i += BUFFER_SIZE) {
+            int end = Math.min(length, i + BUFFER_SIZE);
+            s.getChars(i, end, fChars, 0);
+            decodeChars(fChars, 0, end - i);
+        }
+        return !fError;
+    }
+
+    /**
+     * Signals that all characters have been passed to the decoder and
+     * flushes decoded octets to the output stream. Call {@link #reset()}
+     * before decoding another value.
+     *
+     * @return true if the complete value was valid
+     * @throws IOException if the output stream throws an exception
+     */
+    public boolean end() throws IOException {
+        boolean valid = !fError && endChars();
+        if (fBufferLength > 0) {
+            fOutput.write(fBuffer, 0, fBufferLength);
+            fBufferLength = 0;
+        }
+        fOutput.flush();
+        return valid;
+    }
+
+    /**
+     * Returns the number of octets decoded since the last call to
+     * {@link #reset()}.
+     */
+    public long getLength() {
+        return fLength;
+    }
+
+    /**
+     * Sets the maximum number of octets which may be decoded, or -1
+     * if there is no limit.
+     */
+    public void setMaxLength(long maxLength) {
+        fMaxLength = maxLength;
+    }
+
+    /** Sets the output stream to which decoded octets are written. */
+    public void setOutputStream(OutputStream output) {
+        fOutput = output;
+    }
+
+    /**
+     * Discards any partially decoded data and the length count. Octets
+     * which have not been written to the output stream are dropped.
+     */
+    public void reset() {
+        fBufferLength = 0;
+        fLength = 0;
+        fError = false;
+        resetState();
+    }
+
+    //
+    // Protected methods
+    //
+
+    /** Decodes the characters in <code>ch[start..end-1]</code>. */
+    protected abstract void decodeChars(char[] ch, int start, int end) throws IOException;
+
+    /** Returns true if the characters seen so far form a complete value. */
+    protected abstract boolean endChars();
+
+    /** Resets the state of the current value. */
+    protected abstract void resetState();
+
+    /** Appends a decoded octet to the output. */
+    protected final void write(int b) throws IOException {
+        if (fMaxLength >= 0 && fLength >= fMaxLength) {
+            fError = true;
+            return;
+        }
+        if (fBufferLength == BUFFER_SIZE) {
+            fOutput.write(fBuffer, 0, BUFFER_SIZE);
+            fBufferLength = 0;
+        }
+        fBuffer[fBufferLength++] = (byte) b;
+        fLength++;
+    }
+
+    /** Returns true if the character is XML white space. */
+    protected static boolean isWhiteSpace(char c) {
+        return (c == 0x20 || c == 0xd || c == 0xa || c == 0x9);
+    }
+
+} // class BinaryDecoder
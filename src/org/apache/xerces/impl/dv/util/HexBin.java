@@ -20,7 +20,9 @@ package org.apache.xerces.impl.dv.util;
 /**
  * format validation
  *
- * This class encodes/decodes hexadecimal data
+ * This class encodes/decodes hexadecimal data. Use
+ * {@link HexBinDecoder} to decode character data which
+ * arrives in chunks.
  * 
  * @xerces.internal  
  * 
@@ -56,6 +58,14 @@ public final class  HexBin {
         }
     }
 
+    /**
+     * Returns the 4-bit value of a hexadecimal digit, or -1
+     * if the character is not a hexadecimal digit.
+     */
+    static int getValue(char digit) {
+        return (digit < BASELENGTH) ? hexNumberTable[digit] : -1;
+    }
+
     /**
      * Encode a byte array to hex string
      *
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.dv.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Decodes hexadecimal data as it arrives in chunks. Leading and
+ * trailing white space is ignored, as it would be removed by the
+ * whitespace facet of hexBinary; white space between digits makes
+ * the value invalid.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public final class HexBinDecoder extends BinaryDecoder {
+
+    /** Value of the pending high-order digit, or -1. */
+    private int fHigh = -1;
+
+    /** True if any digit has been seen. */
+    private boolean fStarted;
+
+    /** True if white space has been seen after a digit. */
+    private boolean fTrailing;
+
+    public HexBinDecoder(OutputStream output) {
+        super(output);
+    }
+
+    protected void decodeChars(char[] ch, int start, int end) throws IOException {
+        for (int i = start; i < end && !fError; i++) {
+            final char c = ch[i];
+            if (isWhiteSpace(c)) {
+                fTrailing = fStarted;
+                continue;
+            }
+            final int value = HexBin.getValue(c);
+            if (value == -1 || fTrailing) {
+                fError = true;
+                return;
+            }
+            fStarted = true;
+            if (fHigh == -1) {
+                fHigh = value;
+            }
+            else {
+                write((fHigh << 4) | value);
+                fHigh = -1;
+            }
+        }
+    }
+
+    protected boolean endChars() {
+        return fHigh == -1;
+    }
+
+    protected void resetState() {
+        fHigh = -1;
+        fStarted = false;
+        fTrailing = false;
+    }
+
+} // class HexBinDecoder
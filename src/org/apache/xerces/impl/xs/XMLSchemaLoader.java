@@ -48,6 +48,8 @@ import org.apache.xerces.util.DOMErrorHandlerWrapper;
 import org.apache.xerces.util.DefaultErrorHandler;
 import org.apache.xerces.util.MessageFormatter;
 import org.apache.xerces.util.ParserConfigurationSettings;
+import org.apache.xerces.util.ParserEventListener;
+import org.apache.xerces.util.ParserMetrics;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.XMLSymbols;
 import org.apache.xerces.util.URI.MalformedURIException;
@@ -209,6 +211,14 @@ XSLoader, DOMConfiguration {
     protected static final String ENTITY_MANAGER =
         Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_MANAGER_PROPERTY;   
     
+    /** Property identifier: parser event listener. */
+    protected static final String PARSER_EVENT_LISTENER =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PARSER_EVENT_LISTENER_PROPERTY;
+    
+    /** Property identifier: entity cache. */
+    protected static final String ENTITY_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_CACHE_PROPERTY;
+    
     // recognized properties
     private static final String [] RECOGNIZED_PROPERTIES = {
         ENTITY_MANAGER,
@@ -222,7 +232,9 @@ XSLoader, DOMConfiguration {
         JAXP_SCHEMA_SOURCE,
         SECURITY_MANAGER,
         LOCALE,
-        SCHEMA_DV_FACTORY
+        SCHEMA_DV_FACTORY,
+        PARSER_EVENT_LISTENER,
+        ENTITY_CACHE
     };
     
     // Data
@@ -233,6 +245,8 @@ XSLoader, DOMConfiguration {
     private XMLEntityManager fEntityManager = null;
     private XMLEntityResolver fUserEntityResolver = null;
     private XMLGrammarPool fGrammarPool = null;
+    // is told of each schema loaded
+    private ParserEventListener fEventListener = null;
     private String fExternalSchemas = null;
     private String fExternalNoNSSchema = null;
     // JAXP property: schema source 
@@ -428,6 +442,9 @@ XSLoader, DOMConfiguration {
         else if (propertyId.equals(XMLGRAMMAR_POOL)) {
             fGrammarPool = (XMLGrammarPool)state;
         } 
+        else if (propertyId.equals(PARSER_EVENT_LISTENER)) {
+            fEventListener = (ParserEventListener)state;
+        } 
         else if (propertyId.equals(SCHEMA_LOCATION)) {
             fExternalSchemas = (String)state;
         }
@@ -577,7 +594,13 @@ XSLoader, DOMConfiguration {
         if(!fJAXPProcessed) {
             processJAXPSchemaSource(locationPairs);
         }
+        if (fEventListener == null) {
+            return fSchemaHandler.parseSchema(source, desc, locationPairs);
+        }
+        final long start = ParserMetrics.nanoTime();
         SchemaGrammar grammar = fSchemaHandler.parseSchema(source, desc, locationPairs);
+        fEventListener.grammarLoaded(XMLGrammarDescription.XML_SCHEMA, 
+                source.getSystemId(), ParserMetrics.nanoTime() - start);
         
         return grammar;
     } // loadSchema(XSDDescription, XMLInputSource):  SchemaGrammar
@@ -1026,6 +1049,12 @@ XSLoader, DOMConfiguration {
             fGrammarPool = null;
         }
         initGrammarBucket();
+        
+        try {
+            fEventListener = (ParserEventListener) componentManager.getProperty(PARSER_EVENT_LISTENER);
+        } catch (XMLConfigurationException e) {
+            fEventListener = null;
+        }
 
         boolean psvi = true;
         try {
@@ -53,6 +53,7 @@ import org.apache.xerces.impl.xs.models.CMNodeFactory;
 import org.apache.xerces.impl.xs.models.XSCMValidator;
 import org.apache.xerces.util.AugmentationsImpl;
 import org.apache.xerces.util.IntStack;
+import org.apache.xerces.util.ParserMetrics;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.XMLAttributesImpl;
 import org.apache.xerces.util.XMLChar;
@@ -253,6 +254,10 @@ public class XMLSchemaValidator
     protected static final String SCHEMA_DV_FACTORY = 
         Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_DV_FACTORY_PROPERTY;
     
+    /** Property identifier: parser metrics. */
+    protected static final String PARSER_METRICS =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PARSER_METRICS_PROPERTY;
+    
     // recognized features and properties
 
     /** Recognized features. */
@@ -511,6 +516,9 @@ public class XMLSchemaValidator
     protected ConfigurableValidationState fValidationState = new ConfigurableValidationState();
     protected XMLGrammarPool fGrammarPool;
 
+    /** Parser metrics, or null if no metrics are collected. */
+    protected ParserMetrics fMetrics;
+
     // schema location property values
     protected String fExternalSchemas = null;
     protected String fExternalNoNamespaceSchema = null;
@@ -1583,6 +1591,12 @@ public class XMLSchemaValidator
         } catch (XMLConfigurationException e) {
             fGrammarPool = null;
         }
+        
+        try {
+            fMetrics = (ParserMetrics) componentManager.getProperty(PARSER_METRICS);
+        } catch (XMLConfigurationException e) {
+            fMetrics = null;
+        }
 
         fState4XsiType.setSymbolTable(symbolTable);
         fState4ApplyDefault.setSymbolTable(symbolTable);
@@ -1944,6 +1958,9 @@ public class XMLSchemaValidator
         Object decl = null;
         if (fCurrentCM != null) {
             decl = fCurrentCM.oneTransition(element, fCurrCMState, fSubGroupHandler);
+            if (fMetrics != null) {
+                fMetrics.countContentModelTransitions(1);
+            }
             // it could be an element decl or a wildcard decl
             if (fCurrCMState[0] == XSCMValidator.FIRST_ERROR) {
                 XSComplexTypeDecl ctype = (XSComplexTypeDecl) fCurrentType;
@@ -2648,6 +2665,9 @@ public class XMLSchemaValidator
             fXSDDescription.setNamespace(namespace);
             if (fGrammarPool != null) {
                 grammar = (SchemaGrammar) fGrammarPool.retrieveGrammar(fXSDDescription);
+                if (fMetrics != null) {
+                    fMetrics.countGrammarLookup(grammar != null);
+                }
                 if (grammar != null) {
                     // put this grammar into the bucket, along with grammars
                     // imported by it (directly or indirectly)
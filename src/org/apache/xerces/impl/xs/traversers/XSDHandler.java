@@ -213,6 +213,10 @@ public class XSDHandler {
     protected static final String LOCALE =
         Constants.XERCES_PROPERTY_PREFIX + Constants.LOCALE_PROPERTY;
     
+    /** Property identifier: entity cache. */
+    protected static final String ENTITY_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_CACHE_PROPERTY;
+    
     protected static final boolean DEBUG_NODE_POOL = false;
     
     // Data
@@ -3567,6 +3571,16 @@ public class XSDHandler {
         } catch (XMLConfigurationException e) {
         }
         
+        // schema documents are read through the entity cache of the parser
+        Object entityCache = null;
+        try {
+            entityCache = componentManager.getProperty(ENTITY_CACHE);
+        } catch (XMLConfigurationException e) {
+        }
+        if (entityCache != fSchemaParser.getProperty(ENTITY_CACHE)) {
+            fSchemaParser.setProperty(ENTITY_CACHE, entityCache);
+        }
+        
     } // reset(XMLComponentManager)
     
     
@@ -107,6 +107,36 @@ public class DocumentBuilderFactoryImpl extends DocumentBuilderFactory {
         }
     }
 
+    /**
+     * Creates a pool of {@link javax.xml.parsers.DocumentBuilder}s using
+     * the currently configured parameters. Later changes to the parameters
+     * of this factory do not affect the pool.
+     * 
+     * @param capacity The maximum number of idle document builders kept.
+     */
+    public DocumentBuilderPool newDocumentBuilderPool(int capacity) {
+        return new DocumentBuilderPool(copy(), capacity);
+    }
+
+    /**
+     * Returns a new factory with the currently configured parameters.
+     */
+    private DocumentBuilderFactoryImpl copy() {
+        DocumentBuilderFactoryImpl factory = new DocumentBuilderFactoryImpl();
+        factory.setNamespaceAware(isNamespaceAware());
+        factory.setValidating(isValidating());
+        factory.setIgnoringElementContentWhitespace(isIgnoringElementContentWhitespace());
+        factory.setExpandEntityReferences(isExpandEntityReferences());
+        factory.setIgnoringComments(isIgnoringComments());
+        factory.setCoalescing(isCoalescing());
+        factory.attributes = (attributes != null) ? (Hashtable) attributes.clone() : null;
+        factory.features = (features != null) ? (Hashtable) features.clone() : null;
+        factory.grammar = grammar;
+        factory.isXIncludeAware = isXIncludeAware;
+        factory.fSecureProcess = fSecureProcess;
+        return factory;
+    }
+
     /**
      * Allows the user to set specific attributes on the underlying 
      * implementation.
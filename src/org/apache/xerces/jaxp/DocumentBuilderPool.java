@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.jaxp;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * A pool of document builders created by one factory. The factory
+ * should not be modified once the pool has been constructed; builders
+ * created before and after a modification would differ.
+ * 
+ * @version $Id$
+ */
+public class DocumentBuilderPool extends ParserPool {
+
+    //
+    // Data
+    //
+
+    /** The factory which creates the document builders. */
+    private final DocumentBuilderFactory fFactory;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a pool of document builders with the default capacity.
+     * 
+     * @param factory The factory which creates the document builders.
+     */
+    public DocumentBuilderPool(DocumentBuilderFactory factory) {
+        this(factory, DEFAULT_CAPACITY);
+    } // <init>(DocumentBuilderFactory)
+
+    /**
+     * Constructs a pool of document builders.
+     * 
+     * @param factory  The factory which creates the document builders.
+     * @param capacity The maximum number of idle document builders kept.
+     */
+    public DocumentBuilderPool(DocumentBuilderFactory factory, int capacity) {
+        super(capacity);
+        if (factory == null) {
+            throw new NullPointerException();
+        }
+        fFactory = factory;
+    } // <init>(DocumentBuilderFactory,int)
+
+    //
+    // Public methods
+    //
+
+    /** 
+     * Borrows a document builder. It must be returned with 
+     * {@link #release} once the application is done with it.
+     * 
+     * @throws ParserConfigurationException If the factory cannot create
+     *                                      a document builder.
+     */
+    public DocumentBuilder borrow() throws ParserConfigurationException {
+        DocumentBuilder builder = (DocumentBuilder) borrowIdle();
+        if (builder == null) {
+            synchronized (fFactory) {
+                builder = fFactory.newDocumentBuilder();
+            }
+            lend(builder);
+        }
+        return builder;
+    } // borrow():DocumentBuilder
+
+    /** 
+     * Returns a borrowed document builder to the pool. 
+     * 
+     * @throws IllegalArgumentException If the document builder has not
+     *                                  been borrowed from this pool.
+     */
+    public void release(DocumentBuilder builder) {
+        returnInstance(builder);
+    } // release(DocumentBuilder)
+
+    //
+    // Protected methods
+    //
+
+    protected void reset(Object instance) {
+        ((DocumentBuilder) instance).reset();
+    } // reset(Object)
+
+} // class DocumentBuilderPool
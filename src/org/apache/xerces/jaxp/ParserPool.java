@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.jaxp;
+
+import java.util.WeakHashMap;
+
+/**
+ * The base class of the pools of parsers and validators. A pool lends
+ * instances which have been used and reset before, so that an 
+ * application which parses many documents on several threads does not
+ * need to construct a parser for each of them. A thread borrows an 
+ * instance, uses it, and returns it to the pool, which resets it. 
+ * <p>
+ * A pool keeps at most as many idle instances as its capacity. If no
+ * idle instance is available when one is borrowed, a new one is 
+ * created; an instance returned when the pool is full is discarded. 
+ * Borrowing therefore never blocks.
+ * <p>
+ * An instance which is borrowed but never returned is counted as 
+ * leaked once it has been garbage collected. An instance must not be 
+ * used after it has been returned.
+ * 
+ * @version $Id$
+ */
+public abstract class ParserPool {
+
+    //
+    // Constants
+    //
+
+    /** Default capacity (8). */
+    public static final int DEFAULT_CAPACITY = 8;
+
+    //
+    // Data
+    //
+
+    /** The idle instances. */
+    private final Object[] fIdle;
+
+    /** The number of idle instances. */
+    private int fIdleCount = 0;
+
+    /** The instances lent and not yet returned, as keys. */
+    private final WeakHashMap fBorrowed = new WeakHashMap();
+
+    /** The number of instances lent and neither returned nor leaked. */
+    private int fBorrowedCount = 0;
+
+    /** The number of instances which have leaked. */
+    private int fLeakedCount = 0;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a pool.
+     * 
+     * @param capacity The maximum number of idle instances kept.
+     */
+    protected ParserPool(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity < 0: " + capacity);
+        }
+        fIdle = new Object[capacity];
+    } // <init>(int)
+
+    //
+    // Public methods
+    //
+
+    /** Returns the maximum number of idle instances kept. */
+    public final int getCapacity() {
+        return fIdle.length;
+    } // getCapacity():int
+
+    /** Returns the number of idle instances. */
+    public final synchronized int getIdleCount() {
+        return fIdleCount;
+    } // getIdleCount():int
+
+    /** Returns the number of instances borrowed and not yet returned. */
+    public final synchronized int getBorrowedCount() {
+        expungeLeaks();
+        return fBorrowedCount;
+    } // getBorrowedCount():int
+
+    /** 
+     * Returns the number of instances which have been borrowed and 
+     * garbage collected without having been returned.
+     */
+    public final synchronized int getLeakedCount() {
+        expungeLeaks();
+        return fLeakedCount;
+    } // getLeakedCount():int
+
+    /** Discards the idle instances. */
+    public final synchronized void clear() {
+        for (int i = 0; i < fIdleCount; ++i) {
+            fIdle[i] = null;
+        }
+        fIdleCount = 0;
+    } // clear()
+
+    //
+    // Protected methods
+    //
+
+    /** 
+     * Takes an idle instance out of the pool and lends it. Returns null
+     * if there is no idle instance; the caller then creates a new one 
+     * and lends it with {@link #lend}.
+     */
+    protected final synchronized Object borrowIdle() {
+        if (fIdleCount == 0) {
+            return null;
+        }
+        Object instance = fIdle[--fIdleCount];
+        fIdle[fIdleCount] = null;
+        lend(instance);
+        return instance;
+    } // borrowIdle():Object
+
+    /** Records an instance as lent. */
+    protected final synchronized void lend(Object instance) {
+        expungeLeaks();
+        fBorrowed.put(instance, Boolean.TRUE);
+        ++fBorrowedCount;
+    } // lend(Object)
+
+    /** 
+     * Takes back an instance, resets it and keeps it if there is room.
+     * 
+     * @throws IllegalArgumentException If the instance has not been 
+     *                                  borrowed from this pool, or has
+     *                                  already been returned.
+     */
+    protected final void returnInstance(Object instance) {
+        synchronized (this) {
+            if (fBorrowed.remove(instance) == null) {
+                throw new IllegalArgumentException("The instance has not been borrowed from this pool.");
+            }
+            --fBorrowedCount;
+            if (fIdleCount == fIdle.length) {
+                return;
+            }
+        }
+        try {
+            reset(instance);
+        }
+        // An instance which cannot be reset is not kept.
+        catch (RuntimeException e) {
+            return;
+        }
+        synchronized (this) {
+            if (fIdleCount < fIdle.length) {
+                fIdle[fIdleCount++] = instance;
+            }
+        }
+    } // returnInstance(Object)
+
+    /** Resets an instance to the state it was created in. */
+    protected abstract void reset(Object instance);
+
+    //
+    // Private methods
+    //
+
+    /** Counts the instances lent which have been garbage collected. */
+    private void expungeLeaks() {
+        final int live = fBorrowed.size();
+        if (live < fBorrowedCount) {
+            fLeakedCount += fBorrowedCount - live;
+            fBorrowedCount = live;
+        }
+    } // expungeLeaks()
+
+} // class ParserPool
@@ -82,6 +82,31 @@ public class SAXParserFactoryImpl extends SAXParserFactory {
         return saxParserImpl;
     }
 
+    /**
+     * Creates a pool of <code>SAXParser</code>s using the currently 
+     * configured factory parameters. Later changes to the parameters
+     * of this factory do not affect the pool.
+     * 
+     * @param capacity The maximum number of idle parsers kept.
+     */
+    public SAXParserPool newSAXParserPool(int capacity) {
+        return new SAXParserPool(copy(), capacity);
+    }
+
+    /**
+     * Returns a new factory with the currently configured parameters.
+     */
+    private SAXParserFactoryImpl copy() {
+        SAXParserFactoryImpl factory = new SAXParserFactoryImpl();
+        factory.setNamespaceAware(isNamespaceAware());
+        factory.setValidating(isValidating());
+        factory.features = (features != null) ? (Hashtable) features.clone() : null;
+        factory.grammar = grammar;
+        factory.isXIncludeAware = isXIncludeAware;
+        factory.fSecureProcess = fSecureProcess;
+        return factory;
+    }
+
     /**
      * Common code for translating exceptions
      */
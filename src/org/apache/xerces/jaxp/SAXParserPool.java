@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.jaxp;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.SAXException;
+
+/**
+ * A pool of SAX parsers created by one factory. The factory
+ * should not be modified once the pool has been constructed; parsers
+ * created before and after a modification would differ.
+ * 
+ * @version $Id$
+ */
+public class SAXParserPool extends ParserPool {
+
+    //
+    // Data
+    //
+
+    /** The factory which creates the SAX parsers. */
+    private final SAXParserFactory fFactory;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a pool of SAX parsers with the default capacity.
+     * 
+     * @param factory The factory which creates the SAX parsers.
+     */
+    public SAXParserPool(SAXParserFactory factory) {
+        this(factory, DEFAULT_CAPACITY);
+    } // <init>(SAXParserFactory)
+
+    /**
+     * Constructs a pool of SAX parsers.
+     * 
+     * @param factory  The factory which creates the SAX parsers.
+     * @param capacity The maximum number of idle SAX parsers kept.
+     */
+    public SAXParserPool(SAXParserFactory factory, int capacity) {
+        super(capacity);
+        if (factory == null) {
+            throw new NullPointerException();
+        }
+        fFactory = factory;
+    } // <init>(SAXParserFactory,int)
+
+    //
+    // Public methods
+    //
+
+    /** 
+     * Borrows a SAX parser. It must be returned with 
+     * {@link #release} once the application is done with it.
+     * 
+     * @throws ParserConfigurationException If the factory cannot create
+     *                                      a SAX parser.
+     * @throws SAXException If the factory cannot create a SAX parser.
+     */
+    public SAXParser borrow() throws ParserConfigurationException, SAXException {
+        SAXParser parser = (SAXParser) borrowIdle();
+        if (parser == null) {
+            synchronized (fFactory) {
+                parser = fFactory.newSAXParser();
+            }
+            lend(parser);
+        }
+        return parser;
+    } // borrow():SAXParser
+
+    /** 
+     * Returns a borrowed SAX parser to the pool. 
+     * 
+     * @throws IllegalArgumentException If the SAX parser has not
+     *                                  been borrowed from this pool.
+     */
+    public void release(SAXParser parser) {
+        returnInstance(parser);
+    } // release(SAXParser)
+
+    //
+    // Protected methods
+    //
+
+    protected void reset(Object instance) {
+        ((SAXParser) instance).reset();
+    } // reset(Object)
+
+} // class SAXParserPool
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.jaxp;
+
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+
+/**
+ * A pool of validators of one schema.
+ * 
+ * @version $Id$
+ */
+public class ValidatorPool extends ParserPool {
+
+    //
+    // Data
+    //
+
+    /** The schema which creates the validators. */
+    private final Schema fSchema;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a pool of validators with the default capacity.
+     * 
+     * @param schema The schema which creates the validators.
+     */
+    public ValidatorPool(Schema schema) {
+        this(schema, DEFAULT_CAPACITY);
+    } // <init>(Schema)
+
+    /**
+     * Constructs a pool of validators.
+     * 
+     * @param schema   The schema which creates the validators.
+     * @param capacity The maximum number of idle validators kept.
+     */
+    public ValidatorPool(Schema schema, int capacity) {
+        super(capacity);
+        if (schema == null) {
+            throw new NullPointerException();
+        }
+        fSchema = schema;
+    } // <init>(Schema,int)
+
+    //
+    // Public methods
+    //
+
+    /** 
+     * Borrows a validator. It must be returned with {@link #release} 
+     * once the application is done with it.
+     */
+    public Validator borrow() {
+        Validator validator = (Validator) borrowIdle();
+        if (validator == null) {
+            validator = fSchema.newValidator();
+            lend(validator);
+        }
+        return validator;
+    } // borrow():Validator
+
+    /** 
+     * Returns a borrowed validator to the pool. 
+     * 
+     * @throws IllegalArgumentException If the validator has not been 
+     *                                  borrowed from this pool.
+     */
+    public void release(Validator validator) {
+        returnInstance(validator);
+    } // release(Validator)
+
+    //
+    // Protected methods
+    //
+
+    protected void reset(Object instance) {
+        ((Validator) instance).reset();
+    } // reset(Object)
+
+} // class ValidatorPool
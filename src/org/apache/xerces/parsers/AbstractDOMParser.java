@@ -19,6 +19,7 @@ package org.apache.xerces.parsers;
 
 import java.util.Locale;
 import java.util.Stack;
+import java.util.StringTokenizer;
 
 import org.apache.xerces.dom.AttrImpl;
 import org.apache.xerces.dom.CoreDocumentImpl;
@@ -41,6 +42,8 @@ import org.apache.xerces.dom.TextImpl;
 import org.apache.xerces.impl.Constants;
 import org.apache.xerces.impl.dv.XSSimpleType;
 import org.apache.xerces.util.DOMErrorHandlerWrapper;
+import org.apache.xerces.util.XMLChar;
+import org.apache.xerces.util.XMLStringBuffer;
 import org.apache.xerces.xni.Augmentations;
 import org.apache.xerces.xni.NamespaceContext;
 import org.apache.xerces.xni.QName;
@@ -115,6 +118,9 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     protected static final String DEFER_NODE_EXPANSION =
     Constants.XERCES_FEATURE_PREFIX + Constants.DEFER_NODE_EXPANSION_FEATURE;
 
+    /** Feature id: discard subtree siblings. */
+    protected static final String DISCARD_SUBTREE_SIBLINGS =
+    Constants.XERCES_FEATURE_PREFIX + Constants.DISCARD_SUBTREE_SIBLINGS_FEATURE;
 
     /** Recognized features. */
     private static final String[] RECOGNIZED_FEATURES = {
@@ -123,7 +129,8 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
         INCLUDE_COMMENTS_FEATURE,
         CREATE_CDATA_NODES_FEATURE,
         INCLUDE_IGNORABLE_WHITESPACE,
-        DEFER_NODE_EXPANSION
+        DEFER_NODE_EXPANSION,
+        DISCARD_SUBTREE_SIBLINGS
     };
 
     // property ids
@@ -135,6 +142,14 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     protected static final String  CURRENT_ELEMENT_NODE=
     Constants.XERCES_PROPERTY_PREFIX + Constants.CURRENT_ELEMENT_NODE_PROPERTY;
 
+    /** Property id: subtree handler. */
+    protected static final String SUBTREE_HANDLER =
+    Constants.XERCES_PROPERTY_PREFIX + Constants.SUBTREE_HANDLER_PROPERTY;
+
+    /** Property id: subtree paths. */
+    protected static final String SUBTREE_PATHS =
+    Constants.XERCES_PROPERTY_PREFIX + Constants.SUBTREE_PATHS_PROPERTY;
+
     // protected static final String GRAMMAR_POOL =
     // Constants.XERCES_PROPERTY_PREFIX + Constants.XMLGRAMMAR_POOL_PROPERTY;
 
@@ -142,6 +157,8 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     private static final String[] RECOGNIZED_PROPERTIES = {
         DOCUMENT_CLASS_NAME,
         CURRENT_ELEMENT_NODE,
+        SUBTREE_HANDLER,
+        SUBTREE_PATHS,
     };
 
     // other
@@ -156,6 +173,16 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     protected static final String PSVI_DOCUMENT_CLASS_NAME =
     "org.apache.xerces.dom.PSVIDocumentImpl";
 
+    /** Initial size of the deferred character buffer. */
+    private static final int DEFERRED_CHARACTERS_SIZE = 1024;
+
+    /** 
+     * Largest deferred character buffer kept from one parse to the next.
+     * A larger buffer, grown for an unusually large text node, is released
+     * on reset.
+     */
+    private static final int MAX_RETAINED_CHARACTERS_SIZE = 64 * 1024;
+
     /**
      * If the user stops the process, this exception will be thrown.
      */
@@ -223,6 +250,16 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     /** Character buffer */
     protected final StringBuffer fStringBuffer = new StringBuffer (50);
 
+    /** 
+     * Character content not yet added to the deferred DOM. Consecutive
+     * character events are collected here and stored as a single node
+     * when the next non-character event is received.
+     */
+    protected XMLStringBuffer fDeferredCharacters = new XMLStringBuffer (DEFERRED_CHARACTERS_SIZE);
+
+    /** True if the deferred characters belong to a CDATA section. */
+    protected boolean fDeferredCDATA;
+
     // internal subset
 
     /** Internal subset buffer. */
@@ -236,6 +273,11 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     protected int                  fDocumentIndex;
     protected int                  fDocumentTypeIndex;
     protected int                  fCurrentNodeIndex;
+    /** 
+     * @deprecated Character content is collected before deferred nodes are
+     * created, so CDATA sections are no longer tracked by index. This field
+     * is always -1.
+     */
     protected int                  fCurrentCDATASectionIndex;
 
     // state
@@ -281,6 +323,32 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
 
     protected LSParserFilter fDOMFilter = null;
 
+    /** Subtree handler; null if subtrees are not streamed. */
+    protected DOMSubtreeHandler fSubtreeHandler = null;
+
+    /** 
+     * True if the white space, comments and processing instructions
+     * preceding a streamed subtree are discarded along with it. 
+     */
+    protected boolean fDiscardSubtreeSiblings;
+
+    // subtree streaming
+
+    /** Paths of the streamed subtrees, as arrays of element names. */
+    private String[][] fSubtreePaths;
+
+    /** Whether each of the paths is absolute. */
+    private boolean[] fSubtreePathAbsolute;
+
+    /** Qualified names of the open elements. */
+    private String[] fElementPath = new String[16];
+
+    /** Number of open elements. */
+    private int fElementDepth;
+
+    /** Depth of the subtree currently being built, or -1 if none. */
+    private int fSubtreeDepth = -1;
+
     //
     // Constructors
     //
@@ -300,6 +368,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
         fConfiguration.setFeature (DEFER_NODE_EXPANSION, true);
         fConfiguration.setFeature (INCLUDE_COMMENTS_FEATURE, true);
         fConfiguration.setFeature (CREATE_CDATA_NODES_FEATURE, true);
+        fConfiguration.setFeature (DISCARD_SUBTREE_SIBLINGS, false);
 
         // add recognized properties
         fConfiguration.addRecognizedProperties (RECOGNIZED_PROPERTIES);
@@ -424,6 +493,17 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
         setDocumentClassName ((String)
         fConfiguration.getProperty (DOCUMENT_CLASS_NAME));
 
+        // subtrees can only be detached from a fully built DOM
+        fSubtreeHandler = (DOMSubtreeHandler)
+        fConfiguration.getProperty (SUBTREE_HANDLER);
+        if (fSubtreeHandler != null) {
+            setSubtreePaths ((String[]) fConfiguration.getProperty (SUBTREE_PATHS));
+            fDiscardSubtreeSiblings = fConfiguration.getFeature (DISCARD_SUBTREE_SIBLINGS);
+            fDeferNodeExpansion = false;
+        }
+        fElementDepth = 0;
+        fSubtreeDepth = -1;
+
         // reset dom information
         fDocument = null;
         fDocumentImpl = null;
@@ -435,6 +515,13 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
 
         // reset string buffer
         fStringBuffer.setLength (0);
+        if (fDeferredCharacters.ch.length > MAX_RETAINED_CHARACTERS_SIZE) {
+            fDeferredCharacters = new XMLStringBuffer (DEFERRED_CHARACTERS_SIZE);
+        }
+        else {
+            fDeferredCharacters.clear ();
+        }
+        fDeferredCDATA = false;
 
         // reset state information
         fRoot = null;
@@ -450,6 +537,138 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
 
     } // reset()
 
+    /**
+     * Parses the subtree paths.
+     */
+    private void setSubtreePaths (String[] paths) {
+        int count = (paths != null) ? paths.length : 0;
+        fSubtreePaths = new String[count][];
+        fSubtreePathAbsolute = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            String path = paths[i];
+            boolean absolute = path.startsWith ("/");
+            StringTokenizer tokenizer = new StringTokenizer (path, "/");
+            String[] steps = new String[tokenizer.countTokens ()];
+            for (int j = 0; j < steps.length; j++) {
+                steps[j] = tokenizer.nextToken ();
+            }
+            fSubtreePaths[i] = steps;
+            fSubtreePathAbsolute[i] = absolute;
+        }
+    } // setSubtreePaths(String[])
+
+    /**
+     * Returns true if the current element path matches one of the
+     * subtree paths.
+     */
+    private boolean matchesSubtreePath () {
+        for (int i = 0; i < fSubtreePaths.length; i++) {
+            String[] steps = fSubtreePaths[i];
+            int offset = fElementDepth - steps.length;
+            if (steps.length == 0 || offset < 0 ||
+                (fSubtreePathAbsolute[i] && offset != 0)) {
+                continue;
+            }
+            int j = 0;
+            for (; j < steps.length; j++) {
+                String step = steps[j];
+                if (!step.equals ("*") && !step.equals (fElementPath[offset + j])) {
+                    break;
+                }
+            }
+            if (j == steps.length) {
+                return true;
+            }
+        }
+        return false;
+    } // matchesSubtreePath():boolean
+
+    /**
+     * Detaches the current element, which ends a streamed subtree,
+     * from its parent and hands it to the subtree handler.
+     */
+    private void endSubtree () {
+        Node element = fCurrentNode;
+        Node parent = element.getParentNode ();
+        parent.removeChild (element);
+        if (fDocumentImpl != null) {
+            removeIdentifiers (element);
+        }
+        if (fDiscardSubtreeSiblings) {
+            // drop the whitespace, comments and processing instructions 
+            // preceding the subtree as well so that they don't accumulate 
+            // between records; any other content of the parent is kept
+            Node previous = parent.getLastChild ();
+            while (previous != null) {
+                short type = previous.getNodeType ();
+                if (type != Node.COMMENT_NODE && type != Node.PROCESSING_INSTRUCTION_NODE &&
+                    !(type == Node.TEXT_NODE && isWhitespace (previous.getNodeValue ()))) {
+                    break;
+                }
+                Node node = previous;
+                previous = previous.getPreviousSibling ();
+                parent.removeChild (node);
+            }
+        }
+        fFirstChunk = true;
+        fCurrentNode = parent;
+        fSubtreeHandler.subtreeParsed ((Element) element);
+    } // endSubtree()
+
+    /**
+     * Removes the identifiers of the given element and of its descendants
+     * from the document, so that a detached subtree can neither be found
+     * by <code>getElementById</code> nor kept alive by the document.
+     */
+    private void removeIdentifiers (Node node) {
+        if (node.getNodeType () == Node.ELEMENT_NODE && node.hasAttributes ()) {
+            NamedNodeMap attributes = node.getAttributes ();
+            for (int i = 0; i < attributes.getLength (); i++) {
+                Attr attr = (Attr) attributes.item (i);
+                if (attr.isId ()) {
+                    String value = attr.getValue ();
+                    if (fDocumentImpl.getIdentifier (value) == node) {
+                        fDocumentImpl.removeIdentifier (value);
+                    }
+                }
+            }
+        }
+        for (Node child = node.getFirstChild (); child != null; child = child.getNextSibling ()) {
+            removeIdentifiers (child);
+        }
+    } // removeIdentifiers(Node)
+
+    /**
+     * Returns true if the given text consists of white space only.
+     */
+    private static boolean isWhitespace (String text) {
+        for (int i = 0; i < text.length (); i++) {
+            if (!XMLChar.isSpace (text.charAt (i))) {
+                return false;
+            }
+        }
+        return true;
+    } // isWhitespace(String):boolean
+
+    /**
+     * Stores the character content collected since the last non-character
+     * event in the deferred DOM, as a child of the current node.
+     */
+    protected final void flushDeferredCharacters () {
+        if (fDeferredCDATA) {
+            int cs = fDeferredDocumentImpl.
+            createDeferredCDATASection (fDeferredCharacters.toString ());
+            fDeferredDocumentImpl.appendChild (fCurrentNodeIndex, cs);
+            fDeferredCDATA = false;
+        }
+        else if (fDeferredCharacters.length > 0) {
+            int txt = fDeferredDocumentImpl.
+            createDeferredTextNode (fDeferredCharacters.toString (), false);
+            fDeferredDocumentImpl.appendChild (fCurrentNodeIndex, txt);
+        }
+        fDeferredCharacters.clear ();
+    } // flushDeferredCharacters()
+
     /**
      * Set the locale to use for messages.
      *
@@ -530,6 +749,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
         }
         else {
 
+            flushDeferredCharacters ();
             int er =
             fDeferredDocumentImpl.createDeferredEntityReference (name, identifier.getExpandedSystemId ());
             if (fDocumentTypeIndex != -1) {
@@ -647,6 +867,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
 
         }
         else {
+            flushDeferredCharacters ();
             int comment =
             fDeferredDocumentImpl.createDeferredComment (text.toString ());
             fDeferredDocumentImpl.appendChild (fCurrentNodeIndex, comment);
@@ -723,6 +944,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
             }
         }
         else {
+            flushDeferredCharacters ();
             int pi = fDeferredDocumentImpl.
             createDeferredProcessingInstruction (target, data.toString ());
             fDeferredDocumentImpl.appendChild (fCurrentNodeIndex, pi);
@@ -928,6 +1150,18 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
             System.out.println ("==>startElement ("+element.rawname+")");
         }
         if (!fDeferNodeExpansion) {
+            if (fSubtreeHandler != null) {
+                if (fElementDepth == fElementPath.length) {
+                    String[] newPath = new String[fElementDepth << 1];
+                    System.arraycopy (fElementPath, 0, newPath, 0, fElementDepth);
+                    fElementPath = newPath;
+                }
+                fElementPath[fElementDepth++] = element.rawname;
+                if (fSubtreeDepth == -1 && !fFilterReject && 
+                    !fInEntityRef && matchesSubtreePath ()) {
+                    fSubtreeDepth = fElementDepth;
+                }
+            }
             if (fFilterReject) {
                 ++fRejectedElementDepth;
                 return;
@@ -1065,6 +1299,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
             fCurrentNode = el;
         }
         else {
+            flushDeferredCharacters ();
             int el = fDeferredDocumentImpl.createDeferredElement (fNamespaceAware ?
                     element.uri : null, element.rawname);
             Object type = null;
@@ -1168,7 +1403,12 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
                     fCurrentNode = fCurrentCDATASection;
                 }
                 else {
-                    fCurrentCDATASection.appendData (text.toString ());
+                    // collect all the data into the string buffer; it is
+                    // stored in the CDATA section by endCDATA
+                    if (fStringBuffer.length () == 0) {
+                        fStringBuffer.append (fCurrentCDATASection.getData ());
+                    }
+                    fStringBuffer.append (text.ch, text.offset, text.length);
                 }
             }
             else if (!fInDTD) {
@@ -1203,34 +1443,18 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
             }
         }
         else {
-            // The Text and CDATASection normalization is taken care of within
-            // the DOM in the deferred case.
+            // Consecutive chunks are collected and stored as a single
+            // Text or CDATASection node by flushDeferredCharacters.
             if (fInCDATASection && fCreateCDATANodes) {
-                if (fCurrentCDATASectionIndex == -1) {
-                    int cs = fDeferredDocumentImpl.
-                    createDeferredCDATASection (text.toString ());
-
-                    fDeferredDocumentImpl.appendChild (fCurrentNodeIndex, cs);
-                    fCurrentCDATASectionIndex = cs;
-                    fCurrentNodeIndex = cs;
-                }
-                else {
-                    int txt = fDeferredDocumentImpl.
-                    createDeferredTextNode (text.toString (), false);
-                    fDeferredDocumentImpl.appendChild (fCurrentNodeIndex, txt);
-                }
+                fDeferredCDATA = true;
+                fDeferredCharacters.append (text);
             } else if (!fInDTD) {
                 // if type is union (XML Schema) it is possible that we receive
                 // character call with empty data
                 if (text.length == 0) {
                     return;
                 }
-
-                String value = text.toString ();
-                int txt = fDeferredDocumentImpl.
-                createDeferredTextNode (value, false);
-                fDeferredDocumentImpl.appendChild (fCurrentNodeIndex, txt);
-
+                fDeferredCharacters.append (text);
             }
         }
     } // characters(XMLString)
@@ -1271,6 +1495,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
         else {
             // The Text normalization is taken care of within the DOM in the
             // deferred case.
+            flushDeferredCharacters ();
             int txt = fDeferredDocumentImpl.
             createDeferredTextNode (text.toString (), true);
             fDeferredDocumentImpl.appendChild (fCurrentNodeIndex, txt);
@@ -1292,6 +1517,15 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
         }
         if (!fDeferNodeExpansion) {
 
+            boolean endOfSubtree = false;
+            if (fSubtreeHandler != null) {
+                if (fSubtreeDepth == fElementDepth) {
+                    endOfSubtree = true;
+                    fSubtreeDepth = -1;
+                }
+                fElementPath[--fElementDepth] = null;
+            }
+
             // REVISIT: Should this happen after we call the filter?
             if (augs != null && fDocumentImpl != null && (fNamespaceAware || fStorePSVI)) {
                 ElementPSVI elementPSVI = (ElementPSVI) augs.getItem(Constants.ELEMENT_PSVI);
@@ -1362,16 +1596,27 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
                         default: { }
                     }
                 }
-                fCurrentNode = fCurrentNode.getParentNode ();
+                if (endOfSubtree) {
+                    endSubtree ();
+                }
+                else {
+                    fCurrentNode = fCurrentNode.getParentNode ();
+                }
 
             } // end-if DOMFilter
             else {
                 setCharacterData (false);
-                fCurrentNode = fCurrentNode.getParentNode ();
+                if (endOfSubtree) {
+                    endSubtree ();
+                }
+                else {
+                    fCurrentNode = fCurrentNode.getParentNode ();
+                }
             }
 
         }
         else {
+            flushDeferredCharacters ();
             if (augs != null) {
                 ElementPSVI elementPSVI = (ElementPSVI) augs.getItem(Constants.ELEMENT_PSVI);
                 if (elementPSVI != null) {
@@ -1410,6 +1655,9 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
                 setCharacterData (false);
             }
         }
+        else if (fCreateCDATANodes) {
+            flushDeferredCharacters ();
+        }
     } // startCDATA()
 
     /**
@@ -1429,6 +1677,12 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
 
             if (fCurrentCDATASection !=null) {
 
+                // store the content collected after the first chunk
+                if (fStringBuffer.length () > 0) {
+                    fCurrentCDATASection.setData (fStringBuffer.toString ());
+                    fStringBuffer.setLength (0);
+                }
+
                 if (fDOMFilter !=null && !fInEntityRef &&
                 (fDOMFilter.getWhatToShow () & NodeFilter.SHOW_CDATA_SECTION)!= 0) {
                     short code = fDOMFilter.acceptNode (fCurrentCDATASection);
@@ -1457,11 +1711,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
             }
         }
         else {
-            if (fCurrentCDATASectionIndex !=-1) {
-                fCurrentNodeIndex =
-                fDeferredDocumentImpl.getParentNode (fCurrentNodeIndex, false);
-                fCurrentCDATASectionIndex = -1;
-            }
+            flushDeferredCharacters ();
         }
 
     } // endCDATA()
@@ -1487,6 +1737,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
             fCurrentNode = null;
         }
         else {
+            flushDeferredCharacters ();
             // set the actual encoding
             if (fLocator != null) {
                 fDeferredDocumentImpl.setInputEncoding (fLocator.getEncoding());
@@ -1611,6 +1862,7 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
         }
         else {
 
+            flushDeferredCharacters ();
             if (fDocumentTypeIndex != -1) {
                 // find corresponding Entity decl
                 int node = fDeferredDocumentImpl.getLastChild (fDocumentTypeIndex, false);
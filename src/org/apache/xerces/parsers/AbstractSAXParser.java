@@ -94,6 +94,14 @@ public abstract class AbstractSAXParser
     /** Feature id: string interning. */
     protected static final String STRING_INTERNING =
         Constants.SAX_FEATURE_PREFIX + Constants.STRING_INTERNING_FEATURE;
+
+    /** Feature identifier: notify built-in entity references. */
+    private static final String NOTIFY_BUILTIN_REFS =
+        Constants.XERCES_FEATURE_PREFIX + Constants.NOTIFY_BUILTIN_REFS_FEATURE;
+
+    /** Feature identifier: coalesce characters. */
+    private static final String COALESCE_CHARACTERS =
+        Constants.XERCES_FEATURE_PREFIX + Constants.COALESCE_CHARACTERS_FEATURE;
     
     /** Feature identifier: allow notation and unparsed entity events to be sent out of order. */
     // this is not meant to be a recognized feature, but we need it here to use
@@ -201,6 +209,13 @@ public abstract class AbstractSAXParser
     // second declaration to any registered DeclHandler
     protected SymbolHash fDeclaredAttrs = null;
 
+    // the state of the notify-builtin-refs feature set by the
+    // application or the subclass; null until the first parse
+    private Boolean fNotifyBuiltInRefs = null;
+
+    // true if the application has set the notify-builtin-refs feature
+    private boolean fNotifyBuiltInRefsSet = false;
+
     //
     // Constructors
     //
@@ -1642,6 +1657,15 @@ public abstract class AbstractSAXParser
             }
             */
 
+            // http://apache.org/xml/features/scanner/notify-builtin-refs
+            //   may be turned off for a parse, see reset()
+            if (featureId.equals(NOTIFY_BUILTIN_REFS)) {
+                fConfiguration.setFeature(featureId, state);
+                fNotifyBuiltInRefs = state ? Boolean.TRUE : Boolean.FALSE;
+                fNotifyBuiltInRefsSet = true;
+                return;
+            }
+
             //
             // Default handling
             //
@@ -1802,6 +1826,10 @@ public abstract class AbstractSAXParser
             }
             */
 
+            if (fNotifyBuiltInRefs != null && featureId.equals(NOTIFY_BUILTIN_REFS)) {
+                return fNotifyBuiltInRefs.booleanValue();
+            }
+
             return fConfiguration.getFeature(featureId);
         }
         catch (XMLConfigurationException e) {
@@ -2185,6 +2213,28 @@ public abstract class AbstractSAXParser
         fNamespaces = fConfiguration.getFeature(NAMESPACES);
         fAugmentations = null;
         fDeclaredAttrs = null;
+
+        // Built-in entity references are only reported to the lexical
+        // handler. Without one, notifying them would just keep the
+        // scanner from coalescing the characters around them, unless
+        // the application asked for the notifications.
+        try {
+            if (fNotifyBuiltInRefs == null) {
+                fNotifyBuiltInRefs = fConfiguration.getFeature(NOTIFY_BUILTIN_REFS)
+                                   ? Boolean.TRUE : Boolean.FALSE;
+            }
+            boolean notifyBuiltInRefs = fNotifyBuiltInRefs.booleanValue() &&
+                (fNotifyBuiltInRefsSet || fLexicalHandler != null || 
+                 !fConfiguration.getFeature(COALESCE_CHARACTERS));
+            // only change the setting if needed; any change discards the
+            // DTDs cached by the configuration for later documents
+            if (fConfiguration.getFeature(NOTIFY_BUILTIN_REFS) != notifyBuiltInRefs) {
+                fConfiguration.setFeature(NOTIFY_BUILTIN_REFS, notifyBuiltInRefs);
+            }
+        }
+        catch (XMLConfigurationException e) {
+            // the configuration does not scan built-in references
+        }
         
     } // reset()
 
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.parsers;
+
+import org.apache.xerces.xni.XNIException;
+import org.w3c.dom.Element;
+
+/**
+ * Receives the element subtrees streamed by a DOM parser.
+ * <p>
+ * When this handler is set as the value of the 
+ * <code>http://apache.org/xml/properties/dom/subtree-handler</code>
+ * property, the elements matching one of the paths given by the
+ * <code>http://apache.org/xml/properties/dom/subtree-paths</code>
+ * property are built as usual, then detached from the document and
+ * handed to this handler as soon as their end tag has been parsed. The
+ * parser keeps no reference to a subtree once it has been passed to the
+ * handler, so that the memory needed to process record-oriented documents
+ * stays proportional to the size of a single record rather than to the
+ * size of the whole document.
+ * <p>
+ * Each path is a sequence of element names separated by '/', where
+ * '*' matches any name. Names are compared to the qualified names of the
+ * elements as they appear in the document. A path starting with '/' is
+ * absolute and matches from the document element (e.g. 
+ * <code>/records/record</code>); other paths match the innermost
+ * elements of the current element path (e.g. <code>record</code> matches
+ * a <code>record</code> element at any depth). Elements nested in a
+ * streamed subtree are never streamed separately.
+ *
+ * @version $Id$
+ */
+public interface DOMSubtreeHandler {
+
+    /**
+     * Receives a completed subtree. The element has been removed from its
+     * parent but still belongs to the document being built, so it can be
+     * inspected, imported into another document or simply discarded.
+     * The identifiers of the element and its descendants are removed from
+     * the document.
+     * <p>
+     * The other children of the parent are kept. If the
+     * <code>http://apache.org/xml/features/dom/discard-subtree-siblings</code>
+     * feature is set to true, the white space, comments and processing 
+     * instructions immediately preceding the element are discarded along 
+     * with it, so that they do not accumulate between subtrees; any other
+     * content of the parent, such as the text of mixed content, is kept.
+     *
+     * @param element The root of the completed subtree.
+     *
+     * @throws XNIException Thrown by the handler to stop parsing.
+     */
+    public void subtreeParsed(Element element) throws XNIException;
+
+} // interface DOMSubtreeHandler
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.parsers;
+
+import java.util.Locale;
+
+import org.apache.xerces.xni.parser.XMLParserConfiguration;
+
+/**
+ * An immutable snapshot of the features and properties of a parser 
+ * configuration, from which new configurations can be constructed 
+ * cheaply. A template is created with 
+ * {@link XML11Configuration#newTemplate} once the configuration has been
+ * set up, and may then be shared by any number of threads, e.g.
+ * <pre>
+ * XIncludeAwareParserConfiguration config = new XIncludeAwareParserConfiguration();
+ * config.setFeature("http://xml.org/sax/features/validation", true);
+ * ParserConfigurationTemplate template = config.newTemplate();
+ * ...
+ * SAXParser parser = new SAXParser(template.newConfiguration());
+ * </pre>
+ * <p>
+ * The values of the properties are shared by all the configurations
+ * constructed from a template, so they must be safe for use by several
+ * parsers at once. The symbol table is not copied: each configuration
+ * creates its own.
+ * 
+ * @version $Id$
+ */
+public final class ParserConfigurationTemplate {
+
+    //
+    // Data
+    //
+
+    /** True if the configurations constructed are XInclude aware. */
+    private final boolean fXIncludeAware;
+
+    /** True if XInclude processing is enabled. */
+    final boolean fXIncludeEnabled;
+
+    /** The recognized features. */
+    final String[] fFeatureIds;
+
+    /** The states of the features. */
+    final boolean[] fFeatureStates;
+
+    /** The recognized properties. */
+    final String[] fPropertyIds;
+
+    /** The values of the properties; null if not copied. */
+    final Object[] fPropertyValues;
+
+    /** The locale. */
+    final Locale fLocale;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a template. */
+    ParserConfigurationTemplate(XML11Configuration configuration,
+            String[] featureIds, boolean[] featureStates,
+            String[] propertyIds, Object[] propertyValues, Locale locale) {
+        fXIncludeAware = (configuration instanceof XIncludeAwareParserConfiguration);
+        fXIncludeEnabled = fXIncludeAware && 
+            configuration.getFeature(XIncludeAwareParserConfiguration.XINCLUDE_FEATURE);
+        fFeatureIds = featureIds;
+        fFeatureStates = featureStates;
+        fPropertyIds = propertyIds;
+        fPropertyValues = propertyValues;
+        fLocale = locale;
+    } // <init>(XML11Configuration,String[],boolean[],String[],Object[],Locale)
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Constructs a new configuration from this template. It is an 
+     * <code>XIncludeAwareParserConfiguration</code> if the template was
+     * created from one, and an <code>XML11Configuration</code> otherwise.
+     */
+    public XMLParserConfiguration newConfiguration() {
+        if (fXIncludeAware) {
+            return new XIncludeAwareParserConfiguration(this);
+        }
+        return new XML11Configuration(this);
+    } // newConfiguration():XMLParserConfiguration
+
+} // class ParserConfigurationTemplate
@@ -18,6 +18,7 @@
 package org.apache.xerces.parsers;
 
 import org.apache.xerces.impl.Constants;
+import org.apache.xerces.util.IndexedNamespaceSupport;
 import org.apache.xerces.util.NamespaceSupport;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.xinclude.XIncludeHandler;
@@ -123,25 +124,58 @@ public class XIncludeAwareParserConfiguration extends XML11Configuration {
             SymbolTable symbolTable,
             XMLGrammarPool grammarPool,
             XMLComponentManager parentSettings) {
-        super(symbolTable, grammarPool, parentSettings);
-        
-        final String[] recognizedFeatures = {
-                ALLOW_UE_AND_NOTATION_EVENTS,
-                XINCLUDE_FIXUP_BASE_URIS,
-                XINCLUDE_FIXUP_LANGUAGE
-        };
-        addRecognizedFeatures(recognizedFeatures);
-        
-        // add default recognized properties
-        final String[] recognizedProperties =
-        { XINCLUDE_HANDLER, NAMESPACE_CONTEXT };
-        addRecognizedProperties(recognizedProperties);
+        this(symbolTable, grammarPool, parentSettings, null);
+    } // <init>(SymbolTable,XMLGrammarPool,XMLComponentManager)
+    
+    /**
+     * Constructs a parser configuration with the features and properties
+     * of a template.
+     * 
+     * @param template The template.
+     */
+    public XIncludeAwareParserConfiguration(ParserConfigurationTemplate template) {
+        this(null, null, null, template);
+    } // <init>(ParserConfigurationTemplate)
+    
+    /**
+     * Constructs a parser configuration using the specified symbol table,
+     * grammar pool, parent settings and template.
+     *
+     * @param symbolTable    The symbol table to use.
+     * @param grammarPool    The grammar pool to use.
+     * @param parentSettings The parent settings.
+     * @param template       The template whose features and properties
+     *                       are copied, or null.
+     */
+    protected XIncludeAwareParserConfiguration(
+            SymbolTable symbolTable,
+            XMLGrammarPool grammarPool,
+            XMLComponentManager parentSettings,
+            ParserConfigurationTemplate template) {
+        super(symbolTable, grammarPool, parentSettings, template);
         
-        setFeature(ALLOW_UE_AND_NOTATION_EVENTS, true);
-        setFeature(XINCLUDE_FIXUP_BASE_URIS, true);
-        setFeature(XINCLUDE_FIXUP_LANGUAGE, true);
+        if (template == null) {
+            final String[] recognizedFeatures = {
+                    ALLOW_UE_AND_NOTATION_EVENTS,
+                    XINCLUDE_FIXUP_BASE_URIS,
+                    XINCLUDE_FIXUP_LANGUAGE
+            };
+            addRecognizedFeatures(recognizedFeatures);
+            
+            // add default recognized properties
+            final String[] recognizedProperties =
+            { XINCLUDE_HANDLER, NAMESPACE_CONTEXT };
+            addRecognizedProperties(recognizedProperties);
+            
+            setFeature(ALLOW_UE_AND_NOTATION_EVENTS, true);
+            setFeature(XINCLUDE_FIXUP_BASE_URIS, true);
+            setFeature(XINCLUDE_FIXUP_LANGUAGE, true);
+        }
+        else {
+            fXIncludeEnabled = template.fXIncludeEnabled;
+        }
         
-        fNonXIncludeNSContext = new NamespaceSupport();
+        fNonXIncludeNSContext = new IndexedNamespaceSupport();
         fCurrentNSContext = fNonXIncludeNSContext;
         setProperty(NAMESPACE_CONTEXT, fNonXIncludeNSContext);
     }
@@ -268,6 +302,11 @@ public class XIncludeAwareParserConfiguration extends XML11Configuration {
         }
     } // configureXML11Pipeline()
     
+    protected boolean isComponentProperty(String propertyId, Object value) {
+        return super.isComponentProperty(propertyId, value) || 
+            propertyId.equals(NAMESPACE_CONTEXT);
+    } // isComponentProperty(String,Object):boolean
+    
     public boolean getFeature(String featureId)
         throws XMLConfigurationException {
         if (featureId.equals(PARSER_SETTINGS)) {
@@ -32,6 +32,7 @@ import org.apache.xerces.impl.XMLEntityHandler;
 import org.apache.xerces.impl.XMLEntityManager;
 import org.apache.xerces.impl.XMLErrorReporter;
 import org.apache.xerces.impl.XMLNSDocumentScannerImpl;
+import org.apache.xerces.impl.XMLStageTimer;
 import org.apache.xerces.impl.XMLVersionDetector;
 import org.apache.xerces.impl.dtd.XML11DTDProcessor;
 import org.apache.xerces.impl.dtd.XML11DTDValidator;
@@ -45,6 +46,8 @@ import org.apache.xerces.impl.validation.ValidationManager;
 import org.apache.xerces.impl.xs.XMLSchemaValidator;
 import org.apache.xerces.impl.xs.XSMessageFormatter;
 import org.apache.xerces.util.ParserConfigurationSettings;
+import org.apache.xerces.util.ParserEventListener;
+import org.apache.xerces.util.ParserMetrics;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.xni.XMLDTDContentModelHandler;
 import org.apache.xerces.xni.XMLDTDHandler;
@@ -55,6 +58,7 @@ import org.apache.xerces.xni.parser.XMLComponent;
 import org.apache.xerces.xni.parser.XMLComponentManager;
 import org.apache.xerces.xni.parser.XMLConfigurationException;
 import org.apache.xerces.xni.parser.XMLDTDScanner;
+import org.apache.xerces.xni.parser.XMLDocumentFilter;
 import org.apache.xerces.xni.parser.XMLDocumentScanner;
 import org.apache.xerces.xni.parser.XMLDocumentSource;
 import org.apache.xerces.xni.parser.XMLEntityResolver;
@@ -279,6 +283,14 @@ public class XML11Configuration extends ParserConfigurationSettings
     protected static final String LOCALE =
         Constants.XERCES_PROPERTY_PREFIX + Constants.LOCALE_PROPERTY;
 
+    /** Property identifier: parser metrics. */
+    protected static final String PARSER_METRICS =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PARSER_METRICS_PROPERTY;
+
+    /** Property identifier: parser event listener. */
+    protected static final String PARSER_EVENT_LISTENER =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PARSER_EVENT_LISTENER_PROPERTY;
+
     /** Property identifier: root type definition. */
     protected static final String ROOT_TYPE_DEF =
         Constants.XERCES_PROPERTY_PREFIX + Constants.ROOT_TYPE_DEFINITION_PROPERTY;
@@ -339,6 +351,27 @@ public class XML11Configuration extends ParserConfigurationSettings
      */
 	protected boolean fConfigUpdated = false;
 
+    /** 
+     * Times the stages of the parse when a parser event listener has 
+     * been set but parser metrics have not.
+     */
+    private ParserMetrics fEventMetrics;
+
+    /** 
+     * The settings version at which the settings read on every parse 
+     * were last read, or -1 if they have not been read.
+     */
+    private int fParseSettingsVersion = -1;
+
+    /** The parser metrics timing the stages of the parse, if any. */
+    private ParserMetrics fStageMetrics;
+
+    /** The parser event listener, if any. */
+    private ParserEventListener fEventListener;
+
+    /** True if either DTD or XML Schema validation is turned on. */
+    private boolean fValidating;
+
     //
     // XML 1.0 components
     //
@@ -415,6 +448,12 @@ public class XML11Configuration extends ParserConfigurationSettings
     /** Flag indiciating whether XML11 components have been initialized. */
     private boolean f11Initialized = false;
 
+    /** 
+     * True while this configuration is constructed from a template. The
+     * components do not register their features and properties then.
+     */
+    private boolean fFromTemplate = false;
+
     //
     // Constructors
     //
@@ -464,8 +503,37 @@ public class XML11Configuration extends ParserConfigurationSettings
         SymbolTable symbolTable,
         XMLGrammarPool grammarPool,
         XMLComponentManager parentSettings) {
+        this(symbolTable, grammarPool, parentSettings, null);
+    } // <init>(SymbolTable,XMLGrammarPool,XMLComponentManager)
+
+    /**
+     * Constructs a parser configuration with the features and properties
+     * of a template.
+     * 
+     * @param template The template.
+     */
+    public XML11Configuration(ParserConfigurationTemplate template) {
+        this(null, null, null, template);
+    } // <init>(ParserConfigurationTemplate)
+
+    /**
+     * Constructs a parser configuration using the specified symbol table,
+     * grammar pool, parent settings and template.
+     *
+     * @param symbolTable    The symbol table to use.
+     * @param grammarPool    The grammar pool to use.
+     * @param parentSettings The parent settings.
+     * @param template       The template whose features and properties
+     *                       are copied, or null.
+     */
+    protected XML11Configuration(
+        SymbolTable symbolTable,
+        XMLGrammarPool grammarPool,
+        XMLComponentManager parentSettings,
+        ParserConfigurationTemplate template) {
 		
 		super(parentSettings);
+		fFromTemplate = (template != null);
 
 		// create a vector to hold all the components in use
 		// XML 1.0 specialized components
@@ -505,7 +573,9 @@ public class XML11Configuration extends ParserConfigurationSettings
 		        PARSER_SETTINGS,
 		        
 		};
-        addRecognizedFeatures(recognizedFeatures);
+        if (template == null) {
+            addRecognizedFeatures(recognizedFeatures);
+        }
         // set state for default features
         fFeatures.put(VALIDATION, Boolean.FALSE);
         fFeatures.put(NAMESPACES, Boolean.TRUE);
@@ -557,8 +627,12 @@ public class XML11Configuration extends ParserConfigurationSettings
                 ROOT_TYPE_DEF,
                 ROOT_ELEMENT_DECL,
                 SCHEMA_DV_FACTORY,
+                PARSER_METRICS,
+                PARSER_EVENT_LISTENER,
         };
-        addRecognizedProperties(recognizedProperties);
+        if (template == null) {
+            addRecognizedProperties(recognizedProperties);
+        }
 		
 		if (symbolTable == null) {
 			symbolTable = new SymbolTable();
@@ -619,9 +693,15 @@ public class XML11Configuration extends ParserConfigurationSettings
             // REVISIT: What is the right thing to do? -Ac
         }
         
-		fConfigUpdated = false;
+        // the components have not been reset yet, so the
+        // first parse must let them read every setting
+		fConfigUpdated = true;
 
-    } // <init>(SymbolTable,XMLGrammarPool)
+        if (template != null) {
+            applyTemplate(template);
+        }
+
+    } // <init>(SymbolTable,XMLGrammarPool,XMLComponentManager,ParserConfigurationTemplate)
 
     //
     // Public methods
@@ -719,7 +799,9 @@ public class XML11Configuration extends ParserConfigurationSettings
 	 *                 uninstall the currently installed resolver.
 	 */
 	public void setEntityResolver(XMLEntityResolver resolver) {
-		fProperties.put(ENTITY_RESOLVER, resolver);
+		if (fProperties.put(ENTITY_RESOLVER, resolver) != resolver) {
+			fSettingsVersion++;
+		}
 	} // setEntityResolver(XMLEntityResolver)
 
 	/**
@@ -752,7 +834,9 @@ public class XML11Configuration extends ParserConfigurationSettings
 	 * @see #getErrorHandler
 	 */
 	public void setErrorHandler(XMLErrorHandler errorHandler) {
-		fProperties.put(ERROR_HANDLER, errorHandler);
+		if (fProperties.put(ERROR_HANDLER, errorHandler) != errorHandler) {
+			fSettingsVersion++;
+		}
 	} // setErrorHandler(XMLErrorHandler)
 
 	/**
@@ -793,6 +877,14 @@ public class XML11Configuration extends ParserConfigurationSettings
         }
         fParseInProgress = true;
 
+        readParseSettings();
+        final ParserEventListener listener = fEventListener;
+        long start = 0;
+        long validationStart = 0;
+        if (listener != null) {
+            start = ParserMetrics.nanoTime();
+            validationStart = getValidationTime(fStageMetrics);
+        }
         try {
             setInputSource(source);
             parse(true);
@@ -816,11 +908,39 @@ public class XML11Configuration extends ParserConfigurationSettings
             fParseInProgress = false;
             // close all streams opened by xerces
             this.cleanup();
+            if (listener != null) {
+                final long duration = ParserMetrics.nanoTime() - start;
+                final String systemId = source.getSystemId();
+                listener.documentParsed(systemId, fEntityManager.getBytesRead(), duration);
+                if (fValidating) {
+                    listener.documentValidated(systemId, 
+                            getValidationTime(fStageMetrics) - validationStart);
+                }
+            }
         }
 
     } // parse(InputSource)
 
     public boolean parse(boolean complete) throws XNIException, IOException {
+        readParseSettings();
+        final ParserMetrics metrics = fStageMetrics;
+        if (metrics == null) {
+            return parseDocument(complete);
+        }
+        if (fInputSource != null) {
+            metrics.countDocument();
+        }
+        final int depth = metrics.startStage(ParserMetrics.SCANNING);
+        try {
+            return parseDocument(complete);
+        }
+        finally {
+            metrics.endStage(depth);
+        }
+    } // parse(boolean):boolean
+
+    /** Parses the document, or the next part of it. */
+    private boolean parseDocument(boolean complete) throws XNIException, IOException {
         //
         // reset and configure pipeline and set InputSource.
         if (fInputSource != null) {
@@ -930,7 +1050,6 @@ public class XML11Configuration extends ParserConfigurationSettings
 	 */
 	public void setFeature(String featureId, boolean state)
 		throws XMLConfigurationException {
-		fConfigUpdated = true;
 		// forward to every XML 1.0 component
 		int count = fComponents.size();
 		for (int i = 0; i < count; i++) {
@@ -956,7 +1075,13 @@ public class XML11Configuration extends ParserConfigurationSettings
 			}
 		}
 		// save state if noone "objects"
+		int version = fSettingsVersion;
 		super.setFeature(featureId, state);
+		// the components only need to read their settings again
+		// if the value has actually changed
+		if (fSettingsVersion != version) {
+			fConfigUpdated = true;
+		}
 
 	} // setFeature(String,boolean)
 	
@@ -988,7 +1113,6 @@ public class XML11Configuration extends ParserConfigurationSettings
 	 */
 	public void setProperty(String propertyId, Object value)
 		throws XMLConfigurationException {
-		fConfigUpdated = true;
 		if (LOCALE.equals(propertyId)) {
 		    setLocale((Locale) value);
 		}
@@ -1017,7 +1141,11 @@ public class XML11Configuration extends ParserConfigurationSettings
 		}
 
 		// store value if noone "objects"
+		int version = fSettingsVersion;
 		super.setProperty(propertyId, value);
+		if (fSettingsVersion != version) {
+			fConfigUpdated = true;
+		}
 
 	} // setProperty(String,Object)
     
@@ -1163,6 +1291,8 @@ public class XML11Configuration extends ParserConfigurationSettings
             fLastComponent = fSchemaValidator;
         }
 
+        configureStageTimers();
+
     } // configureXML11Pipeline()
 
     /** Configures the pipeline. */
@@ -1256,8 +1386,77 @@ public class XML11Configuration extends ParserConfigurationSettings
             }
             fLastComponent = fSchemaValidator;
         }
+
+        configureStageTimers();
+
     } // configurePipeline()
 
+    /**
+     * Inserts stage timers into the document pipeline if parser metrics
+     * have been set: one in front of each validator and one in front of
+     * the document handler. The last timer becomes the last component so
+     * that components added to the end of the pipeline are charged to
+     * the document handler.
+     */
+    protected void configureStageTimers() {
+        readParseSettings();
+        final ParserMetrics metrics = fStageMetrics;
+        if (metrics == null) {
+            return;
+        }
+        XMLDocumentSource source = fCurrentScanner;
+        while (source != fLastComponent) {
+            XMLDocumentFilter filter = (XMLDocumentFilter) source.getDocumentHandler();
+            XMLStageTimer timer = new XMLStageTimer(metrics, 
+                    filter instanceof XMLSchemaValidator ? 
+                    ParserMetrics.SCHEMA_VALIDATION : ParserMetrics.DTD_VALIDATION);
+            source.setDocumentHandler(timer);
+            timer.setDocumentSource(source);
+            timer.setDocumentHandler(filter);
+            filter.setDocumentSource(timer);
+            source = filter;
+        }
+        XMLStageTimer timer = new XMLStageTimer(metrics, ParserMetrics.DOCUMENT_HANDLER);
+        fLastComponent.setDocumentHandler(timer);
+        timer.setDocumentSource(fLastComponent);
+        timer.setDocumentHandler(fDocumentHandler);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.setDocumentSource(timer);
+        }
+        fLastComponent = timer;
+    } // configureStageTimers()
+
+    /**
+     * Reads the settings needed on every parse: the parser metrics timing
+     * the stages of the parse, which are the parser metrics if they have 
+     * been set, else metrics of this configuration if a parser event 
+     * listener has been set, else null; the parser event listener; and 
+     * whether the document is validated. The settings are only read 
+     * again once they have changed.
+     */
+    private void readParseSettings() {
+        if (fParseSettingsVersion == fSettingsVersion) {
+            return;
+        }
+        fEventListener = (ParserEventListener) fProperties.get(PARSER_EVENT_LISTENER);
+        ParserMetrics metrics = (ParserMetrics) fProperties.get(PARSER_METRICS);
+        if (metrics == null && fEventListener != null) {
+            if (fEventMetrics == null) {
+                fEventMetrics = new ParserMetrics();
+            }
+            metrics = fEventMetrics;
+        }
+        fStageMetrics = metrics;
+        fValidating = fFeatures.get(VALIDATION) == Boolean.TRUE || 
+            fFeatures.get(XMLSCHEMA_VALIDATION) == Boolean.TRUE;
+        fParseSettingsVersion = fSettingsVersion;
+    } // readParseSettings()
+
+    /** Returns the time spent in the validators. */
+    private static long getValidationTime(ParserMetrics metrics) {
+        return metrics.getDTDValidationTime() + metrics.getSchemaValidationTime();
+    } // getValidationTime(ParserMetrics):long
+
 
     // features and properties
 
@@ -1521,6 +1720,11 @@ public class XML11Configuration extends ParserConfigurationSettings
      */
     protected void addRecognizedParamsAndSetDefaults(XMLComponent component) {
         
+        // the template has the features and properties of the component
+        if (fFromTemplate) {
+            return;
+        }
+        
         // register component's recognized features
         String[] recognizedFeatures = component.getRecognizedFeatures();
         addRecognizedFeatures(recognizedFeatures);
@@ -1538,6 +1742,7 @@ public class XML11Configuration extends ParserConfigurationSettings
                     // Do not overwrite values already set on the configuration.
                     if (!fFeatures.containsKey(featureId)) {
                         fFeatures.put(featureId, state);
+                        fSettingsVersion++;
                         // For newly added components who recognize this feature
                         // but did not offer a default value, we need to make
                         // sure these components will get an opportunity to read
@@ -1555,6 +1760,7 @@ public class XML11Configuration extends ParserConfigurationSettings
                     // Do not overwrite values already set on the configuration.
                     if (!fProperties.containsKey(propertyId)) {
                         fProperties.put(propertyId, value);
+                        fSettingsVersion++;
                         // For newly added components who recognize this property
                         // but did not offer a default value, we need to make
                         // sure these components will get an opportunity to read
@@ -1585,9 +1791,82 @@ public class XML11Configuration extends ParserConfigurationSettings
             addXML11Component(fXML11NSDTDValidator);
 				
             f11Initialized = true;
+            // the new components must read every setting
+            fConfigUpdated = true;
         }
     }
     
+    /**
+     * Returns a template of this configuration. The template holds the 
+     * recognized features and properties of this configuration and 
+     * their values, except the values of the properties which are 
+     * the components of this configuration or their private state.
+     * Configurations constructed from the template have the same 
+     * features and properties, but are constructed faster because their
+     * components do not need to register and query their features and
+     * properties one at a time.
+     */
+    public ParserConfigurationTemplate newTemplate() {
+        final String[] featureIds = (String[]) fRecognizedFeatures.toArray(new String[fRecognizedFeatures.size()]);
+        final boolean[] states = new boolean[featureIds.length];
+        for (int i = 0; i < featureIds.length; ++i) {
+            if (featureIds[i].equals(PARSER_SETTINGS)) {
+                continue;
+            }
+            try {
+                states[i] = getFeature(featureIds[i]);
+            }
+            catch (XMLConfigurationException e) {
+                // not set
+            }
+        }
+        final String[] propertyIds = (String[]) fRecognizedProperties.toArray(new String[fRecognizedProperties.size()]);
+        final Object[] values = new Object[propertyIds.length];
+        for (int i = 0; i < propertyIds.length; ++i) {
+            Object value = fProperties.get(propertyIds[i]);
+            if (!isComponentProperty(propertyIds[i], value)) {
+                values[i] = value;
+            }
+        }
+        return new ParserConfigurationTemplate(this, featureIds, states, propertyIds, values, fLocale);
+    } // newTemplate():ParserConfigurationTemplate
+
+    /**
+     * Returns true if the value of a property is one of the components
+     * of this configuration or part of their private state, which must
+     * not be shared with other configurations.
+     */
+    protected boolean isComponentProperty(String propertyId, Object value) {
+        return value instanceof XMLComponent || 
+            propertyId.equals(SYMBOL_TABLE) || 
+            propertyId.equals(VALIDATION_MANAGER) ||
+            propertyId.equals(DATATYPE_VALIDATOR_FACTORY);
+    } // isComponentProperty(String,Object):boolean
+
+    /** Copies the features and properties of a template. */
+    private void applyTemplate(ParserConfigurationTemplate template) {
+        fRecognizedFeatures = new ArrayList(template.fFeatureIds.length);
+        for (int i = 0; i < template.fFeatureIds.length; ++i) {
+            fRecognizedFeatures.add(template.fFeatureIds[i]);
+            fFeatures.put(template.fFeatureIds[i], template.fFeatureStates[i] ? Boolean.TRUE : Boolean.FALSE);
+        }
+        fRecognizedProperties = new ArrayList(template.fPropertyIds.length);
+        for (int i = 0; i < template.fPropertyIds.length; ++i) {
+            fRecognizedProperties.add(template.fPropertyIds[i]);
+            if (template.fPropertyValues[i] != null) {
+                fProperties.put(template.fPropertyIds[i], template.fPropertyValues[i]);
+            }
+        }
+        fGrammarPool = (XMLGrammarPool) fProperties.get(XMLGRAMMAR_POOL);
+        if (template.fLocale != null) {
+            setLocale(template.fLocale);
+        }
+        fFromTemplate = false;
+        // the components read their features and properties on reset
+        fConfigUpdated = true;
+        fSettingsVersion++;
+    } // applyTemplate(ParserConfigurationTemplate)
+
     /** 
      * Returns the state of a feature. This method calls getFeature()
      * on ParserConfigurationSettings, bypassing getFeature() on this
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.io.IOException;
+
+import org.apache.xerces.impl.dv.util.BinaryDecoder;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * A SAX filter which decodes the character content of selected elements
+ * with a {@link BinaryDecoder}. The chunks received in
+ * <code>characters</code> are passed straight to the decoder, so the
+ * encoded text of large binary values is never collected into a string.
+ * <p>
+ * Subclasses select the elements to decode by overriding
+ * {@link #startBinaryContent(String, String, String, Attributes)}. The
+ * character content of a selected element is consumed by the filter and
+ * is not passed on to the content handler; all other events are passed
+ * through unchanged.
+ *
+ * @version $Id$
+ */
+public class BinaryContentFilter extends XMLFilterImpl {
+
+    //
+    // Data
+    //
+
+    /** The decoder of the current binary element, if any. */
+    private BinaryDecoder fDecoder;
+
+    /** Element depth relative to the current binary element. */
+    private int fDepth;
+
+    /** True if the current binary element has child elements. */
+    private boolean fHasChildren;
+
+    //
+    // Constructors
+    //
+
+    public BinaryContentFilter() {
+        super();
+    }
+
+    public BinaryContentFilter(XMLReader parent) {
+        super(parent);
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Called for each element outside of binary content. Returns the
+     * decoder to which the character content of the element is passed,
+     * or null if the element is not to be decoded. The decoder is reset
+     * by the filter before use. The default implementation returns null.
+     */
+    protected BinaryDecoder startBinaryContent(String uri, String localName,
+            String qName, Attributes atts) throws SAXException {
+        return null;
+    }
+
+    /**
+     * Called at the end of an element whose content was decoded, before
+     * the <code>endElement</code> event is passed on. Child elements make
+     * the value invalid; their character content is discarded. The
+     * default implementation does nothing.
+     *
+     * @param valid true if the content was a valid representation
+     */
+    protected void endBinaryContent(String uri, String localName, String qName,
+            BinaryDecoder decoder, boolean valid) throws SAXException {
+    }
+
+    //
+    // ContentHandler methods
+    //
+
+    public void startElement(String uri, String localName, String qName,
+            Attributes atts) throws SAXException {
+        if (fDecoder != null) {
+            fDepth++;
+            fHasChildren = true;
+        }
+        else {
+            BinaryDecoder decoder = startBinaryContent(uri, localName, qName, atts);
+            if (decoder != null) {
+                decoder.reset();
+                fDecoder = decoder;
+                fDepth = 0;
+                fHasChildren = false;
+            }
+        }
+        super.startElement(uri, localName, qName, atts);
+    }
+
+    public void endElement(String uri, String localName, String qName)
+        throws SAXException {
+        if (fDecoder != null && fDepth-- == 0) {
+            BinaryDecoder decoder = fDecoder;
+            fDecoder = null;
+            boolean valid;
+            try {
+                valid = decoder.end() && !fHasChildren;
+            }
+            catch (IOException e) {
+                throw new SAXException(e);
+            }
+            endBinaryContent(uri, localName, qName, decoder, valid);
+        }
+        super.endElement(uri, localName, qName);
+    }
+
+    public void characters(char[] ch, int start, int length)
+        throws SAXException {
+        if (fDecoder == null) {
+            super.characters(ch, start, length);
+        }
+        else if (!fHasChildren) {
+            try {
+                fDecoder.decode(ch, start, length);
+            }
+            catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
+
+    public void ignorableWhitespace(char[] ch, int start, int length)
+        throws SAXException {
+        if (fDecoder == null) {
+            super.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+} // class BinaryContentFilter
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.net.URLConnection;
+
+/**
+ * A cache of the content of external entities, DTDs and schema
+ * documents, keyed by expanded system identifier. An application which
+ * parses many documents referring to the same external resources sets an
+ * instance of this interface as the value of the property
+ * http://apache.org/xml/properties/entity-cache. The entity manager then
+ * asks the cache for the content of each external entity it would open a
+ * connection for, and offers the cache the bytes of each such entity it
+ * has read completely.
+ * <p>
+ * Entities whose input source supplies a byte or character stream, and
+ * entities read through an <code>HTTPInputSource</code>, are not cached.
+ * <p>
+ * An entity cache may be shared by parsers running on several threads,
+ * so implementations must be thread-safe.
+ *
+ * @see EntityCacheImpl
+ *
+ * @version $Id$
+ */
+public interface EntityCache {
+
+    /**
+     * Returns the content of an entity, or null if the entity is not
+     * in the cache or its content is no longer valid. The entity manager
+     * does not modify the returned array.
+     *
+     * @param systemId The expanded system identifier of the entity.
+     */
+    public byte[] getEntity(String systemId);
+
+    /**
+     * Returns the size in bytes of the largest entity this cache will
+     * keep. The entity manager stops recording the content of an entity
+     * as it reads it once it is larger than this.
+     */
+    public int getMaxEntitySize();
+
+    /**
+     * Offers the content of an entity which has been read completely.
+     *
+     * @param systemId   The expanded system identifier of the entity.
+     * @param connection The connection the entity was read from. Its 
+     *                   headers may be used to validate the content later.
+     * @param content    The content of the entity. The cache may keep 
+     *                   this array; the entity manager does not modify it.
+     */
+    public void putEntity(String systemId, URLConnection connection, byte[] content);
+
+} // interface EntityCache
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Default implementation of an entity cache. The cache holds at most
+ * a given number of bytes, dropping the least recently used entities
+ * when it is full. 
+ * <p>
+ * An entity which has been in the cache for longer than the time to live
+ * is validated before it is returned, by {@link #revalidate}. The default
+ * implementation asks an HTTP server whether the entity has changed since
+ * it was read, sending its entity tag and last modification date, and 
+ * checks the last modification date of other resources such as files.
+ * An entity which is no longer valid is dropped, so that the entity 
+ * manager reads it again.
+ * <p>
+ * This class is thread-safe. Validation is done without holding the lock
+ * of the cache.
+ *
+ * @version $Id$
+ */
+public class EntityCacheImpl implements EntityCache {
+
+    //
+    // Constants
+    //
+
+    /** Default capacity in bytes (4 MB). */
+    public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+
+    /** Default size in bytes of the largest entity kept (256 KB). */
+    public static final int DEFAULT_MAX_ENTITY_SIZE = 256 * 1024;
+
+    /** Default time to live in milliseconds (one minute). */
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 1000;
+
+    //
+    // Data
+    //
+
+    /** The number of bytes this cache holds at most. */
+    private final int fCapacity;
+
+    /** The size of the largest entity this cache keeps. */
+    private final int fMaxEntitySize;
+
+    /** 
+     * The time in milliseconds after which an entity is validated, or a 
+     * negative number if entities are never validated.
+     */
+    private final long fTimeToLive;
+
+    /** The cached entities by system identifier, in access order. */
+    private final LinkedHashMap fEntities = new LinkedHashMap(16, 0.75f, true);
+
+    /** The number of bytes held. */
+    private int fSize = 0;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs an entity cache with the default settings. */
+    public EntityCacheImpl() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_ENTITY_SIZE, DEFAULT_TIME_TO_LIVE);
+    } // <init>()
+
+    /**
+     * Constructs an entity cache.
+     *
+     * @param capacity      The number of bytes the cache holds at most.
+     * @param maxEntitySize The size of the largest entity the cache keeps.
+     * @param timeToLive    The time in milliseconds after which an entity 
+     *                      is validated before it is returned, or a 
+     *                      negative number if entities are never validated.
+     */
+    public EntityCacheImpl(int capacity, int maxEntitySize, long timeToLive) {
+        fCapacity = capacity;
+        fMaxEntitySize = Math.min(maxEntitySize, capacity);
+        fTimeToLive = timeToLive;
+    } // <init>(int,int,long)
+
+    //
+    // EntityCache methods
+    //
+
+    public byte[] getEntity(String systemId) {
+        CachedEntity entity;
+        synchronized (this) {
+            entity = (CachedEntity) fEntities.get(systemId);
+            if (entity == null) {
+                return null;
+            }
+            if (fTimeToLive < 0 || 
+                System.currentTimeMillis() - entity.validated <= fTimeToLive) {
+                return entity.content;
+            }
+        }
+        boolean valid;
+        try {
+            valid = revalidate(systemId, entity.etag, entity.lastModified);
+        }
+        catch (IOException e) {
+            valid = false;
+        }
+        synchronized (this) {
+            if (fEntities.get(systemId) == entity) {
+                if (valid) {
+                    entity.validated = System.currentTimeMillis();
+                }
+                else {
+                    removeEntity(systemId);
+                }
+            }
+        }
+        return valid ? entity.content : null;
+    } // getEntity(String):byte[]
+
+    public int getMaxEntitySize() {
+        return fMaxEntitySize;
+    } // getMaxEntitySize():int
+
+    public void putEntity(String systemId, URLConnection connection, byte[] content) {
+        if (content.length > fMaxEntitySize) {
+            return;
+        }
+        CachedEntity entity = new CachedEntity(content, 
+                connection.getHeaderField("ETag"), connection.getLastModified());
+        synchronized (this) {
+            removeEntity(systemId);
+            fEntities.put(systemId, entity);
+            fSize += content.length;
+            Iterator entities = fEntities.values().iterator();
+            while (fSize > fCapacity) {
+                fSize -= ((CachedEntity) entities.next()).content.length;
+                entities.remove();
+            }
+        }
+    } // putEntity(String,URLConnection,byte[])
+
+    //
+    // Public methods
+    //
+
+    /** Drops an entity from the cache. */
+    public synchronized void removeEntity(String systemId) {
+        CachedEntity entity = (CachedEntity) fEntities.remove(systemId);
+        if (entity != null) {
+            fSize -= entity.content.length;
+        }
+    } // removeEntity(String)
+
+    /** Drops all entities from the cache. */
+    public synchronized void clear() {
+        fEntities.clear();
+        fSize = 0;
+    } // clear()
+
+    /** Returns the number of bytes held by the cache. */
+    public synchronized int getSize() {
+        return fSize;
+    } // getSize():int
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Returns true if an entity which has been in the cache for longer
+     * than the time to live has not changed. This method is called without
+     * holding the lock of the cache. Subclasses may override it to apply
+     * a policy of their own.
+     *
+     * @param systemId     The expanded system identifier of the entity.
+     * @param etag         The entity tag the entity was read with, or null.
+     * @param lastModified The last modification date the entity was read
+     *                     with, or 0 if it is not known.
+     *
+     * @throws IOException Thrown if the resource cannot be reached; the
+     *                     entity is then considered to have changed.
+     */
+    protected boolean revalidate(String systemId, String etag, long lastModified)
+        throws IOException {
+        if (etag == null && lastModified == 0) {
+            return false;
+        }
+        URLConnection connection = new URL(systemId).openConnection();
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            if (etag != null) {
+                httpConnection.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != 0) {
+                httpConnection.setIfModifiedSince(lastModified);
+            }
+            try {
+                return httpConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+            }
+            finally {
+                httpConnection.disconnect();
+            }
+        }
+        try {
+            return lastModified != 0 && connection.getLastModified() == lastModified;
+        }
+        finally {
+            try {
+                connection.getInputStream().close();
+            }
+            catch (IOException e) {
+                // the connection could not be opened
+            }
+        }
+    } // revalidate(String,String,long):boolean
+
+    //
+    // Classes
+    //
+
+    /** An entity in the cache. */
+    private static final class CachedEntity {
+
+        /** The content of the entity. */
+        final byte[] content;
+
+        /** The entity tag the entity was read with, or null. */
+        final String etag;
+
+        /** The last modification date the entity was read with, or 0. */
+        final long lastModified;
+
+        /** The time the entity was read or last validated. */
+        long validated;
+
+        CachedEntity(byte[] content, String etag, long lastModified) {
+            this.content = content;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validated = System.currentTimeMillis();
+        }
+
+    } // class CachedEntity
+
+} // class EntityCacheImpl
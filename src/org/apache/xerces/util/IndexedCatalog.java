@@ -0,0 +1,513 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Vector;
+
+import org.apache.xml.resolver.Catalog;
+import org.apache.xml.resolver.CatalogEntry;
+import org.apache.xml.resolver.CatalogManager;
+import org.apache.xml.resolver.helpers.PublicId;
+
+/**
+ * <p>A catalog which, once its entries have been read, indexes them so
+ * that it can be queried by several threads at the same time.</p>
+ *
+ * <p>After the catalog files have been parsed, {@link #index()} loads
+ * the subordinate catalogs (the catalogs listed after the first one and
+ * the <code>nextCatalog</code> entries) and builds tables of the
+ * entries: hash tables of the system, public and URI entries, and tries
+ * of the prefixes of the rewrite and delegate entries and of the suffixes
+ * of the suffix entries. Resolution then follows the same rules as
+ * <code>Catalog</code>, but looks the entries up in these tables instead
+ * of scanning them, and does not lock.</p>
+ *
+ * <p>Delegation reads the delegated catalogs each time it happens, with
+ * readers which are shared by all the catalogs of the tree. An identifier
+ * which matches a delegate entry is therefore resolved by
+ * <code>Catalog</code> while holding a lock shared by the tree, as is
+ * any resolution by a catalog which has not been indexed.</p>
+ *
+ * @version $Id$
+ */
+final class IndexedCatalog extends Catalog {
+
+    /** Whether system identifiers are compared ignoring case. **/
+    private static final boolean FOLD_CASE;
+
+    static {
+        String osName = null;
+        try {
+            osName = System.getProperty("os.name");
+        }
+        catch (SecurityException e) {}
+        FOLD_CASE = osName != null && osName.indexOf("Windows") >= 0;
+    }
+
+    /** The lock held while resolving through <code>Catalog</code>. **/
+    private Object fLock = this;
+
+    /** Whether the entries of this catalog have been indexed. **/
+    private boolean fIndexed = false;
+
+    /**
+     * The subordinate catalogs, if they all have been indexed;
+     * <code>null</code> otherwise.
+     */
+    private IndexedCatalog [] fSubordinates = null;
+
+    /** The first system entry of each system identifier. **/
+    private HashMap fSystem;
+
+    /** The first public entry of each public identifier. **/
+    private HashMap fPublic;
+
+    /**
+     * The first public entry of each public identifier which
+     * is preferred over a system identifier.
+     */
+    private HashMap fPublicOverride;
+
+    /** The first uri entry of each URI. **/
+    private HashMap fURI;
+
+    /** The rewriteSystem entries. **/
+    private Trie fRewriteSystem;
+
+    /** The systemSuffix entries, by reversed suffix. **/
+    private Trie fSystemSuffix;
+
+    /** The delegateSystem entries. **/
+    private Trie fDelegateSystem;
+
+    /** The delegatePublic entries. **/
+    private Trie fDelegatePublic;
+
+    /** The rewriteURI entries. **/
+    private Trie fRewriteURI;
+
+    /** The uriSuffix entries, by reversed suffix. **/
+    private Trie fURISuffix;
+
+    /** The delegateURI entries. **/
+    private Trie fDelegateURI;
+
+    /**
+     * <p>Constructs a catalog with the given catalog manager.</p>
+     *
+     * @param manager the catalog manager
+     */
+    IndexedCatalog (CatalogManager manager) {
+        super(manager);
+    }
+
+    /**
+     * <p>Loads the subordinate catalogs and indexes the entries of
+     * this catalog and of its subordinates. The catalog must not be
+     * modified afterwards.</p>
+     */
+    void index () {
+        synchronized (fLock) {
+            index(fLock, new ArrayList());
+        }
+    }
+
+    /*
+     * Catalog methods
+     */
+
+    /**
+     * Returns a new indexed catalog which shares the catalog
+     * manager and the readers of this catalog.
+     */
+    protected Catalog newCatalog () {
+        IndexedCatalog catalog = new IndexedCatalog(catalogManager);
+        copyReaders(catalog);
+        return catalog;
+    }
+
+    protected String resolveLocalSystem (String systemId)
+        throws MalformedURLException, IOException {
+
+        if (fIndexed && systemId != null) {
+            String resolved = (String) fSystem.get(FOLD_CASE ? foldCase(systemId) : systemId);
+            if (resolved != null) {
+                return resolved;
+            }
+            Trie match = Trie.longestMatch(fRewriteSystem, systemId, false);
+            if (match != null) {
+                return match.fValue + systemId.substring(match.fKey.length());
+            }
+            match = Trie.longestMatch(fSystemSuffix, systemId, true);
+            if (match != null) {
+                return match.fValue;
+            }
+            if (Trie.longestMatch(fDelegateSystem, systemId, false) == null) {
+                return null;
+            }
+        }
+        synchronized (fLock) {
+            return super.resolveLocalSystem(systemId);
+        }
+    }
+
+    protected String resolveLocalPublic (int entityType, String entityName,
+        String publicId, String systemId)
+        throws MalformedURLException, IOException {
+
+        if (fIndexed && publicId != null) {
+            String normalized = PublicId.normalize(publicId);
+            if (systemId != null) {
+                String resolved = resolveLocalSystem(systemId);
+                if (resolved != null) {
+                    return resolved;
+                }
+            }
+            String resolved = (String)
+                ((systemId == null) ? fPublic : fPublicOverride).get(normalized);
+            if (resolved != null) {
+                return resolved;
+            }
+            if (Trie.longestMatch(fDelegatePublic, normalized, false) == null) {
+                return null;
+            }
+        }
+        synchronized (fLock) {
+            return super.resolveLocalPublic(entityType, entityName, publicId, systemId);
+        }
+    }
+
+    protected String resolveLocalURI (String uri)
+        throws MalformedURLException, IOException {
+
+        if (fIndexed && uri != null) {
+            String resolved = (String) fURI.get(uri);
+            if (resolved != null) {
+                return resolved;
+            }
+            Trie match = Trie.longestMatch(fRewriteURI, uri, false);
+            if (match != null) {
+                return match.fValue + uri.substring(match.fKey.length());
+            }
+            match = Trie.longestMatch(fURISuffix, uri, true);
+            if (match != null) {
+                return match.fValue;
+            }
+            if (Trie.longestMatch(fDelegateURI, uri, false) == null) {
+                return null;
+            }
+        }
+        synchronized (fLock) {
+            return super.resolveLocalURI(uri);
+        }
+    }
+
+    protected String resolveSubordinateCatalogs (int entityType, String entityName,
+        String publicId, String systemId)
+        throws MalformedURLException, IOException {
+
+        final IndexedCatalog [] subordinates = fSubordinates;
+        if (subordinates != null) {
+            if (entityType == PUBLIC) {
+                for (int i = 0; i < subordinates.length; ++i) {
+                    String resolved = subordinates[i].resolvePublic(publicId, systemId);
+                    if (resolved != null) {
+                        return resolved;
+                    }
+                }
+                return null;
+            }
+            else if (entityType == SYSTEM) {
+                for (int i = 0; i < subordinates.length; ++i) {
+                    String resolved = subordinates[i].resolveSystem(systemId);
+                    if (resolved != null) {
+                        return resolved;
+                    }
+                }
+                return null;
+            }
+            else if (entityType == URI) {
+                for (int i = 0; i < subordinates.length; ++i) {
+                    String resolved = subordinates[i].resolveURI(systemId);
+                    if (resolved != null) {
+                        return resolved;
+                    }
+                }
+                return null;
+            }
+        }
+        synchronized (fLock) {
+            return super.resolveSubordinateCatalogs(entityType, entityName, publicId, systemId);
+        }
+    }
+
+    /*
+     * Private methods
+     */
+
+    /**
+     * Indexes this catalog and its subordinates. The subordinate
+     * catalogs are read the way <code>Catalog</code> reads them when
+     * they are first needed, except for those which are already being
+     * indexed, i.e. which would make the tree of catalogs infinite.
+     *
+     * @param lock the lock of the tree of catalogs
+     * @param path the subordinate catalogs being indexed
+     */
+    private void index (Object lock, ArrayList path) {
+        fLock = lock;
+        indexEntries();
+        fIndexed = true;
+
+        final Vector catalogs = this.catalogs;
+        final int length = catalogs.size();
+        IndexedCatalog [] subordinates = new IndexedCatalog[length];
+        boolean complete = true;
+        for (int i = 0; i < length; ++i) {
+            Object catalog = catalogs.elementAt(i);
+            if (catalog instanceof String) {
+                String fileName = (String) catalog;
+                if (path.contains(fileName)) {
+                    complete = false;
+                    continue;
+                }
+                Catalog subordinate = newCatalog();
+                try {
+                    subordinate.parseCatalog(fileName);
+                }
+                catch (MalformedURLException e) {}
+                catch (FileNotFoundException e) {}
+                catch (IOException e) {}
+                catalogs.setElementAt(subordinate, i);
+                catalog = subordinate;
+                path.add(fileName);
+                ((IndexedCatalog) subordinate).index(lock, path);
+                path.remove(path.size() - 1);
+            }
+            if (catalog instanceof IndexedCatalog && ((IndexedCatalog) catalog).fIndexed) {
+                subordinates[i] = (IndexedCatalog) catalog;
+            }
+            else {
+                complete = false;
+            }
+        }
+        if (complete) {
+            fSubordinates = subordinates;
+        }
+    }
+
+    /** Builds the tables of the entries of this catalog. **/
+    private void indexEntries () {
+        fSystem = new HashMap();
+        fPublic = new HashMap();
+        fPublicOverride = new HashMap();
+        fURI = new HashMap();
+        boolean override = default_override;
+        final Vector entries = catalogEntries;
+        final int length = entries.size();
+        for (int i = 0; i < length; ++i) {
+            CatalogEntry entry = (CatalogEntry) entries.elementAt(i);
+            int type = entry.getEntryType();
+            if (type == SYSTEM) {
+                String key = entry.getEntryArg(0);
+                putFirst(fSystem, FOLD_CASE ? foldCase(key) : key, entry.getEntryArg(1));
+            }
+            else if (type == PUBLIC) {
+                putFirst(fPublic, entry.getEntryArg(0), entry.getEntryArg(1));
+                if (override) {
+                    putFirst(fPublicOverride, entry.getEntryArg(0), entry.getEntryArg(1));
+                }
+            }
+            else if (type == OVERRIDE) {
+                override = entry.getEntryArg(0).equalsIgnoreCase("YES");
+            }
+            else if (type == URI) {
+                putFirst(fURI, entry.getEntryArg(0), entry.getEntryArg(1));
+            }
+            else if (type == REWRITE_SYSTEM) {
+                fRewriteSystem = Trie.put(fRewriteSystem, entry.getEntryArg(0), entry.getEntryArg(1), false);
+            }
+            else if (type == SYSTEM_SUFFIX) {
+                fSystemSuffix = Trie.put(fSystemSuffix, entry.getEntryArg(0), entry.getEntryArg(1), true);
+            }
+            else if (type == DELEGATE_SYSTEM) {
+                fDelegateSystem = Trie.put(fDelegateSystem, entry.getEntryArg(0), entry.getEntryArg(1), false);
+            }
+            else if (type == DELEGATE_PUBLIC) {
+                fDelegatePublic = Trie.put(fDelegatePublic, entry.getEntryArg(0), entry.getEntryArg(1), false);
+            }
+            else if (type == REWRITE_URI) {
+                fRewriteURI = Trie.put(fRewriteURI, entry.getEntryArg(0), entry.getEntryArg(1), false);
+            }
+            else if (type == URI_SUFFIX) {
+                fURISuffix = Trie.put(fURISuffix, entry.getEntryArg(0), entry.getEntryArg(1), true);
+            }
+            else if (type == DELEGATE_URI) {
+                fDelegateURI = Trie.put(fDelegateURI, entry.getEntryArg(0), entry.getEntryArg(1), false);
+            }
+        }
+    }
+
+    /** Maps a key to a value unless it is already mapped. **/
+    private static void putFirst (HashMap map, String key, String value) {
+        if (!map.containsKey(key)) {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * Returns a string which is equal to the fold of another string
+     * if and only if the two strings are equal ignoring case.
+     */
+    private static String foldCase (String s) {
+        final int length = s.length();
+        char [] chars = null;
+        for (int i = 0; i < length; ++i) {
+            char c = s.charAt(i);
+            char folded = Character.toLowerCase(Character.toUpperCase(c));
+            if (folded != c) {
+                if (chars == null) {
+                    chars = s.toCharArray();
+                }
+                chars[i] = folded;
+            }
+        }
+        return (chars != null) ? new String(chars) : s;
+    }
+
+    /**
+     * A trie of the keys of catalog entries, read either forwards
+     * or backwards. Each key keeps the value of its first entry.
+     */
+    private static final class Trie {
+
+        /** The characters leading to the children, in ascending order. **/
+        private char [] fChars = null;
+
+        /** The children. **/
+        private Trie [] fChildren = null;
+
+        /** The number of children. **/
+        private int fCount = 0;
+
+        /** The key ending at this node, if any. **/
+        String fKey = null;
+
+        /** The value of the key ending at this node. **/
+        String fValue = null;
+
+        /**
+         * Adds a key to a trie, creating the trie if it is
+         * <code>null</code>, and returns the trie.
+         */
+        static Trie put (Trie trie, String key, String value, boolean backwards) {
+            if (trie == null) {
+                trie = new Trie();
+            }
+            Trie node = trie;
+            final int length = key.length();
+            for (int i = 0; i < length; ++i) {
+                char c = key.charAt(backwards ? length - 1 - i : i);
+                int index = node.indexOf(c);
+                if (index < 0) {
+                    index = node.insert(-(index + 1), c);
+                }
+                node = node.fChildren[index];
+            }
+            if (node.fKey == null) {
+                node.fKey = key;
+                node.fValue = value;
+            }
+            return trie;
+        }
+
+        /**
+         * Returns the node of the longest key of a trie which is a
+         * prefix of the given string, or a suffix of it if the keys
+         * are read backwards; <code>null</code> if there is none.
+         */
+        static Trie longestMatch (Trie trie, String s, boolean backwards) {
+            Trie match = null;
+            Trie node = trie;
+            final int length = s.length();
+            for (int i = 0; node != null; ++i) {
+                if (node.fKey != null) {
+                    match = node;
+                }
+                if (i == length) {
+                    break;
+                }
+                int index = node.indexOf(s.charAt(backwards ? length - 1 - i : i));
+                node = (index >= 0) ? node.fChildren[index] : null;
+            }
+            return match;
+        }
+
+        /**
+         * Returns the index of the child for a character, or
+         * <code>-(insertion point + 1)</code> if there is none.
+         */
+        private int indexOf (char c) {
+            int low = 0;
+            int high = fCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midChar = fChars[mid];
+                if (midChar < c) {
+                    low = mid + 1;
+                }
+                else if (midChar > c) {
+                    high = mid - 1;
+                }
+                else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /** Inserts a new child at the given index. **/
+        private int insert (int index, char c) {
+            if (fChars == null) {
+                fChars = new char[2];
+                fChildren = new Trie[2];
+            }
+            else if (fCount == fChars.length) {
+                char [] chars = new char[fCount << 1];
+                Trie [] children = new Trie[fCount << 1];
+                System.arraycopy(fChars, 0, chars, 0, fCount);
+                System.arraycopy(fChildren, 0, children, 0, fCount);
+                fChars = chars;
+                fChildren = children;
+            }
+            System.arraycopy(fChars, index, fChars, index + 1, fCount - index);
+            System.arraycopy(fChildren, index, fChildren, index + 1, fCount - index);
+            fChars[index] = c;
+            fChildren[index] = new Trie();
+            ++fCount;
+            return index;
+        }
+
+    } // class Trie
+
+} // class IndexedCatalog
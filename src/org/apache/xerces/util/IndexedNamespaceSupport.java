@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+/**
+ * Namespace support which finds the binding of a prefix in constant time,
+ * whatever the depth of the element. The bindings of each prefix form a
+ * stack: every binding records the binding of the same prefix it shadows,
+ * and a table keyed by the prefix symbol holds the innermost binding. 
+ * Popping a context restores the shadowed bindings of the prefixes
+ * declared in it.
+ * <p>
+ * Like its base class, this class assumes that all strings passed as
+ * arguments to methods are unique symbols.
+ *
+ * @version $Id$
+ */
+public class IndexedNamespaceSupport extends NamespaceSupport {
+
+    //
+    // Constants
+    //
+
+    /** Initial size of the prefix table. Must be a power of 2. */
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    /** 
+     * Number of prefixes above which the prefix table is discarded on
+     * reset, so that the prefixes of one document are not kept forever.
+     */
+    private static final int MAX_RETAINED_PREFIXES = 64;
+
+    //
+    // Data
+    //
+
+    /** 
+     * The prefixes of the prefix table. The last slot is reserved for
+     * the null prefix; empty slots are null.
+     */
+    private String[] fTablePrefixes = new String[INITIAL_TABLE_SIZE + 1];
+
+    /** 
+     * The index in the namespace information array of the innermost
+     * binding of each prefix in the table, or -1 if it is not bound.
+     */
+    private int[] fTableBindings = newBindings(INITIAL_TABLE_SIZE + 1);
+
+    /** The number of non-null prefixes in the table. */
+    private int fTableCount;
+
+    /** 
+     * The index of the binding each binding shadows, or -1. This array
+     * is indexed by the index of a binding divided by 2.
+     */
+    private int[] fShadowed = new int[fNamespace.length / 2];
+
+    /** The prefix table slot of each binding, indexed like fShadowed. */
+    private int[] fSlots = new int[fNamespace.length / 2];
+
+    //
+    // Constructors
+    //
+
+    /** Default constructor. */
+    public IndexedNamespaceSupport() {
+    } // <init>()
+
+    //
+    // Public methods
+    //
+
+    /**
+     * @see org.apache.xerces.xni.NamespaceContext#reset()
+     */
+    public void reset() {
+        super.reset();
+        if (fTableCount > MAX_RETAINED_PREFIXES) {
+            fTablePrefixes = new String[INITIAL_TABLE_SIZE + 1];
+            fTableCount = 0;
+        }
+        fTableBindings = newBindings(fTablePrefixes.length);
+        for (int i = 0; i < fNamespaceSize; i += 2) {
+            bind(i, getSlot(fNamespace[i]));
+        }
+    } // reset()
+
+    /**
+     * @see org.apache.xerces.xni.NamespaceContext#popContext()
+     */
+    public void popContext() {
+        int start = fContext[fCurrentContext];
+        for (int i = fNamespaceSize - 2; i >= start; i -= 2) {
+            fTableBindings[fSlots[i >> 1]] = fShadowed[i >> 1];
+        }
+        super.popContext();
+    } // popContext()
+
+    /**
+     * @see org.apache.xerces.xni.NamespaceContext#declarePrefix(String, String)
+     */
+    public boolean declarePrefix(String prefix, String uri) {
+        // ignore "xml" and "xmlns" prefixes
+        if (prefix == XMLSymbols.PREFIX_XML || prefix == XMLSymbols.PREFIX_XMLNS) {
+            return false;
+        }
+
+        // see if prefix already exists in current context
+        int slot = getSlot(prefix);
+        int binding = fTableBindings[slot];
+        if (binding >= fContext[fCurrentContext]) {
+            fNamespace[binding + 1] = uri;
+            return true;
+        }
+
+        // resize arrays, if needed
+        if (fNamespaceSize == fNamespace.length) {
+            String[] namespacearray = new String[fNamespaceSize * 2];
+            System.arraycopy(fNamespace, 0, namespacearray, 0, fNamespaceSize);
+            fNamespace = namespacearray;
+        }
+        ensureBindingCapacity();
+
+        // bind prefix to uri in current context
+        bind(fNamespaceSize, slot);
+        fNamespace[fNamespaceSize++] = prefix;
+        fNamespace[fNamespaceSize++] = uri;
+
+        return true;
+
+    } // declarePrefix(String,String):boolean
+
+    /**
+     * @see org.apache.xerces.xni.NamespaceContext#getURI(String)
+     */
+    public String getURI(String prefix) {
+        int binding = fTableBindings[findSlot(prefix)];
+        return binding >= 0 ? fNamespace[binding + 1] : null;
+    } // getURI(String):String
+
+    /** 
+     * Checks whether a binding or unbinding for
+     * the given prefix exists in the context.
+     * 
+     * @param prefix The prefix to look up. 
+     * 
+     * @return true if the given prefix exists in the context
+     */
+    public boolean containsPrefix(String prefix) {
+        return fTableBindings[findSlot(prefix)] >= 0;
+    } // containsPrefix(String):boolean
+
+    //
+    // Private methods
+    //
+
+    /** Returns a binding array with no binding. */
+    private static int[] newBindings(int length) {
+        int[] bindings = new int[length];
+        for (int i = 0; i < length; i++) {
+            bindings[i] = -1;
+        }
+        return bindings;
+    } // newBindings(int):int[]
+
+    /** Makes the binding at the given index the innermost binding of its prefix. */
+    private void bind(int index, int slot) {
+        if ((index >> 1) >= fShadowed.length) {
+            ensureBindingCapacity();
+        }
+        fShadowed[index >> 1] = fTableBindings[slot];
+        fSlots[index >> 1] = slot;
+        fTableBindings[slot] = index;
+    } // bind(int,int)
+
+    /** Makes room for the bindings of the namespace information array. */
+    private void ensureBindingCapacity() {
+        int length = fNamespace.length / 2;
+        if (fShadowed.length < length) {
+            int[] shadowed = new int[length];
+            System.arraycopy(fShadowed, 0, shadowed, 0, fShadowed.length);
+            fShadowed = shadowed;
+            int[] slots = new int[length];
+            System.arraycopy(fSlots, 0, slots, 0, fSlots.length);
+            fSlots = slots;
+        }
+    } // ensureBindingCapacity()
+
+    /** 
+     * Returns the slot of a prefix in the prefix table, or an empty slot
+     * whose binding is -1 if the prefix is not in the table.
+     */
+    private int findSlot(String prefix) {
+        int mask = fTablePrefixes.length - 2;
+        if (prefix == null) {
+            return mask + 1;
+        }
+        int slot = prefix.hashCode() & mask;
+        String entry;
+        while ((entry = fTablePrefixes[slot]) != null) {
+            if (entry == prefix) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    } // findSlot(String):int
+
+    /** Returns the slot of a prefix in the prefix table, adding it if needed. */
+    private int getSlot(String prefix) {
+        int slot = findSlot(prefix);
+        if (prefix == null || fTablePrefixes[slot] != null) {
+            return slot;
+        }
+        if (fTableCount * 2 >= fTablePrefixes.length - 1) {
+            rehash();
+            slot = findSlot(prefix);
+        }
+        fTablePrefixes[slot] = prefix;
+        fTableCount++;
+        return slot;
+    } // getSlot(String):int
+
+    /** Doubles the size of the prefix table. */
+    private void rehash() {
+        String[] oldPrefixes = fTablePrefixes;
+        int[] oldBindings = fTableBindings;
+        int oldSize = oldPrefixes.length - 1;
+        int size = oldSize * 2;
+        fTablePrefixes = new String[size + 1];
+        fTableBindings = newBindings(size + 1);
+        int[] slots = new int[oldSize + 1];
+        for (int i = 0; i < oldSize; i++) {
+            if (oldPrefixes[i] != null) {
+                int slot = findSlot(oldPrefixes[i]);
+                fTablePrefixes[slot] = oldPrefixes[i];
+                fTableBindings[slot] = oldBindings[i];
+                slots[i] = slot;
+            }
+        }
+        fTableBindings[size] = oldBindings[oldSize];
+        slots[oldSize] = size;
+        for (int i = fNamespaceSize - 2; i >= 0; i -= 2) {
+            fSlots[i >> 1] = slots[fSlots[i >> 1]];
+        }
+    } // rehash()
+
+} // class IndexedNamespaceSupport
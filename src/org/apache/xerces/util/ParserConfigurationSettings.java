@@ -34,6 +34,14 @@ import org.apache.xerces.xni.parser.XMLConfigurationException;
  * This class can be constructed with a "parent" settings object
  * (in the form of an <code>XMLComponentManager</code>) that allows
  * parser configuration settings to be "chained" together.
+ * <p>
+ * The recognized features and properties are kept in an index so
+ * that checking a feature or property does not search the lists of
+ * recognized settings. A settings version is incremented whenever the
+ * value of a feature or property changes; setting a feature or property
+ * to its current value leaves the version unchanged. An object which 
+ * remembers the version of the settings it last read can skip reading
+ * them again if the version has not changed.
  *
  * @author Andy Clark, IBM
  *
@@ -66,6 +74,29 @@ public class ParserConfigurationSettings
     /** Parent parser configuration settings. */
     protected XMLComponentManager fParentSettings;
 
+    /** Version of the settings, incremented whenever a setting changes. */
+    protected int fSettingsVersion;
+
+    // indexes
+
+    /** Recognized features covered by the index of recognized features. */
+    private ArrayList fIndexedFeatures;
+
+    /** Number of recognized features covered by the index. */
+    private int fIndexedFeatureCount;
+
+    /** Identifiers of the recognized features, keyed by feature identifier. */
+    private final HashMap fFeatureIndex = new HashMap();
+
+    /** Recognized properties covered by the index of recognized properties. */
+    private ArrayList fIndexedProperties;
+
+    /** Number of recognized properties covered by the index. */
+    private int fIndexedPropertyCount;
+
+    /** Identifiers of the recognized properties, keyed by property identifier. */
+    private final HashMap fPropertyIndex = new HashMap();
+
     //
     // Constructors
     //
@@ -111,8 +142,10 @@ public class ParserConfigurationSettings
         int featureIdsCount = featureIds != null ? featureIds.length : 0;
         for (int i = 0; i < featureIdsCount; i++) {
             String featureId = featureIds[i];
-            if (!fRecognizedFeatures.contains(featureId)) {
+            if (getFeatureIndex(featureId) == -1) {
+                fFeatureIndex.put(featureId, new Integer(fRecognizedFeatures.size()));
                 fRecognizedFeatures.add(featureId);
+                fIndexedFeatureCount++;
             }
         }
 
@@ -137,7 +170,10 @@ public class ParserConfigurationSettings
         // check and store
         checkFeature(featureId);
 
-        fFeatures.put(featureId, state ? Boolean.TRUE : Boolean.FALSE);
+        Boolean value = state ? Boolean.TRUE : Boolean.FALSE;
+        if (!value.equals(fFeatures.put(featureId, value))) {
+            fSettingsVersion++;
+        }
     } // setFeature(String,boolean)
 
     /**
@@ -153,8 +189,10 @@ public class ParserConfigurationSettings
         int propertyIdsCount = propertyIds != null ? propertyIds.length : 0;
         for (int i = 0; i < propertyIdsCount; i++) {
             String propertyId = propertyIds[i];
-            if (!fRecognizedProperties.contains(propertyId)) {
+            if (getPropertyIndex(propertyId) == -1) {
+                fPropertyIndex.put(propertyId, new Integer(fRecognizedProperties.size()));
                 fRecognizedProperties.add(propertyId);
+                fIndexedPropertyCount++;
             }
         }
 
@@ -173,7 +211,9 @@ public class ParserConfigurationSettings
 
         // check and store
         checkProperty(propertyId);
-        fProperties.put(propertyId, value);
+        if (fProperties.put(propertyId, value) != value) {
+            fSettingsVersion++;
+        }
 
     } // setProperty(String,Object)
 
@@ -231,6 +271,20 @@ public class ParserConfigurationSettings
 
     } // getProperty(String):Object
 
+    //
+    // Public methods
+    //
+
+    /**
+     * Returns the version of the settings. The version is incremented
+     * whenever the value of a feature or property changes, so two equal
+     * versions denote the same settings. Property values are compared
+     * by identity.
+     */
+    public int getSettingsVersion() {
+        return fSettingsVersion;
+    } // getSettingsVersion():int
+
     //
     // Protected methods
     //
@@ -248,7 +302,7 @@ public class ParserConfigurationSettings
         throws XMLConfigurationException {
 
         // check feature
-        if (!fRecognizedFeatures.contains(featureId)) {
+        if (getFeatureIndex(featureId) == -1) {
             if (fParentSettings != null) {
                 fParentSettings.getFeature(featureId);
             }
@@ -273,7 +327,7 @@ public class ParserConfigurationSettings
         throws XMLConfigurationException {
 
         // check property
-        if (!fRecognizedProperties.contains(propertyId)) {
+        if (getPropertyIndex(propertyId) == -1) {
             if (fParentSettings != null) {
                 fParentSettings.getProperty(propertyId);
             }
@@ -285,4 +339,59 @@ public class ParserConfigurationSettings
 
     } // checkProperty(String)
 
+    //
+    // Private methods
+    //
+
+    /**
+     * Returns the position of a recognized feature in the order of
+     * registration, or -1 if the feature is not recognized by this
+     * object.
+     *
+     * @param featureId The unique identifier (URI) of the feature.
+     */
+    private int getFeatureIndex(String featureId) {
+        if (fIndexedFeatures != fRecognizedFeatures || 
+            fIndexedFeatureCount != fRecognizedFeatures.size()) {
+            fIndexedFeatures = fRecognizedFeatures;
+            fIndexedFeatureCount = index(fRecognizedFeatures, fFeatureIndex);
+        }
+        Integer index = (Integer) fFeatureIndex.get(featureId);
+        return index != null ? index.intValue() : -1;
+    } // getFeatureIndex(String):int
+
+    /**
+     * Returns the position of a recognized property in the order of
+     * registration, or -1 if the property is not recognized by this
+     * object.
+     *
+     * @param propertyId The unique identifier (URI) of the property.
+     */
+    private int getPropertyIndex(String propertyId) {
+        if (fIndexedProperties != fRecognizedProperties || 
+            fIndexedPropertyCount != fRecognizedProperties.size()) {
+            fIndexedProperties = fRecognizedProperties;
+            fIndexedPropertyCount = index(fRecognizedProperties, fPropertyIndex);
+        }
+        Integer index = (Integer) fPropertyIndex.get(propertyId);
+        return index != null ? index.intValue() : -1;
+    } // getPropertyIndex(String):int
+
+    /** 
+     * Rebuilds an index of recognized settings and returns the number of
+     * settings covered. The lists of recognized settings may be replaced
+     * or appended to directly by subclasses.
+     */
+    private static int index(ArrayList recognized, HashMap index) {
+        index.clear();
+        final int count = recognized.size();
+        for (int i = 0; i < count; ++i) {
+            Object id = recognized.get(i);
+            if (!index.containsKey(id)) {
+                index.put(id, new Integer(i));
+            }
+        }
+        return count;
+    } // index(ArrayList,HashMap):int
+
 } // class ParserConfigurationSettings
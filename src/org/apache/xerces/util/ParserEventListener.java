@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+/**
+ * Receives notice of what a parser does, one event at a time, so that
+ * an application can pass it on to a monitoring or profiling tool, e.g.
+ * as events of a flight recorder. An application which wants to receive
+ * the events sets an instance of this interface as the value of the 
+ * property http://apache.org/xml/properties/parser-event-listener. 
+ * <p>
+ * The methods are called on the thread parsing the document, after the
+ * work they report has been done. Durations are in nanoseconds, measured
+ * with {@link ParserMetrics#nanoTime}. When no listener has been set no
+ * time is measured.
+ *
+ * @version $Id$
+ */
+public interface ParserEventListener {
+
+    /**
+     * A document has been parsed, successfully or not.
+     * 
+     * @param systemId  The system identifier of the document, or null.
+     * @param bytesRead The number of bytes read from the byte streams of
+     *                  the document and of its external entities.
+     * @param duration  The time spent parsing the document.
+     */
+    public void documentParsed(String systemId, long bytesRead, long duration);
+
+    /**
+     * A document has been validated against a DTD or an XML Schema.
+     * 
+     * @param systemId The system identifier of the document, or null.
+     * @param duration The time spent in the validators, including the 
+     *                 time spent loading schemas.
+     */
+    public void documentValidated(String systemId, long duration);
+
+    /**
+     * A grammar has been loaded.
+     * 
+     * @param grammarType The type of the grammar, one of the types of
+     *                    <code>XMLGrammarDescription</code>.
+     * @param systemId    The system identifier of the grammar, or null.
+     * @param duration    The time spent loading the grammar.
+     */
+    public void grammarLoaded(String grammarType, String systemId, long duration);
+
+    /**
+     * The entity resolver has been asked to resolve an entity.
+     * 
+     * @param publicId         The public identifier of the entity, or null.
+     * @param systemId         The expanded system identifier of the entity, 
+     *                         or null.
+     * @param resolvedSystemId The system identifier of the input source 
+     *                         returned by the entity resolver, or null.
+     * @param duration         The time spent in the entity resolver.
+     */
+    public void entityResolved(String publicId, String systemId, 
+                               String resolvedSystemId, long duration);
+
+} // interface ParserEventListener
@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.lang.reflect.Method;
+
+/**
+ * Collects timings and counters of the parses made by a parser. An
+ * application which wants to know where the time of a parse goes sets
+ * an instance of this class as the value of the property
+ * http://apache.org/xml/properties/parser-metrics. The components of 
+ * the parser record what they do in it, and the values accumulate over
+ * all parses until the application calls {@link #reset}.
+ * <p>
+ * The time of a parse is divided into stages. Each stage is charged
+ * only the time it spends itself, not the time spent in the stages it
+ * calls. Timings are in nanoseconds, though on platforms which do not
+ * provide a nanosecond clock they have the precision of 
+ * <code>System.currentTimeMillis()</code>.
+ * <p>
+ * Like the parser, an instance of this class is not safe for use by 
+ * several threads at once. It may be read by another thread, e.g. by
+ * an MBean server, but values read while a parse is in progress may
+ * not be current.
+ * 
+ * @version $Id$
+ */
+public final class ParserMetrics implements ParserMetricsMBean {
+
+    //
+    // Constants
+    //
+
+    /** Stage: scanning, and everything not counted in another stage. */
+    public static final int SCANNING = 0;
+
+    /** Stage: resolving and opening entities. */
+    public static final int ENTITY_RESOLUTION = 1;
+
+    /** Stage: validating against a DTD. */
+    public static final int DTD_VALIDATION = 2;
+
+    /** Stage: validating against an XML Schema. */
+    public static final int SCHEMA_VALIDATION = 3;
+
+    /** Stage: the document handler at the end of the pipeline. */
+    public static final int DOCUMENT_HANDLER = 4;
+
+    /** Number of stages. */
+    private static final int STAGE_COUNT = 5;
+
+    /** The method System.nanoTime(), if the platform provides it. */
+    private static final Method NANO_TIME;
+
+    static {
+        Method nanoTime = null;
+        try {
+            nanoTime = System.class.getMethod("nanoTime", (Class[]) null);
+        }
+        catch (Exception e) {}
+        NANO_TIME = nanoTime;
+    }
+
+    //
+    // Data
+    //
+
+    /** The time spent in each stage. */
+    private final long[] fStageTimes = new long[STAGE_COUNT];
+
+    /** The stages entered and not yet left; the current stage is last. */
+    private int[] fStages = new int[8];
+
+    /** The number of stages entered and not yet left. */
+    private int fDepth = 0;
+
+    /** The time the current stage was entered or last charged. */
+    private long fMark;
+
+    /** Number of documents parsed. */
+    private long fDocumentCount;
+
+    /** Number of bytes read. */
+    private long fBytesRead;
+
+    /** Number of buffer refills. */
+    private long fBufferRefills;
+
+    /** Number of names found in the symbol table. */
+    private long fSymbolTableHits;
+
+    /** Number of names added to the symbol table. */
+    private long fSymbolTableMisses;
+
+    /** Number of grammars found in the grammar pool. */
+    private long fGrammarPoolHits;
+
+    /** Number of grammars not found in the grammar pool. */
+    private long fGrammarPoolMisses;
+
+    /** Number of content model transitions. */
+    private long fContentModelTransitions;
+
+    //
+    // ParserMetricsMBean methods
+    //
+
+    public long getDocumentCount() {
+        return fDocumentCount;
+    }
+
+    public long getParseTime() {
+        long time = 0;
+        for (int i = 0; i < STAGE_COUNT; ++i) {
+            time += fStageTimes[i];
+        }
+        return time;
+    }
+
+    public long getScanningTime() {
+        return fStageTimes[SCANNING];
+    }
+
+    public long getEntityResolutionTime() {
+        return fStageTimes[ENTITY_RESOLUTION];
+    }
+
+    public long getDTDValidationTime() {
+        return fStageTimes[DTD_VALIDATION];
+    }
+
+    public long getSchemaValidationTime() {
+        return fStageTimes[SCHEMA_VALIDATION];
+    }
+
+    public long getDocumentHandlerTime() {
+        return fStageTimes[DOCUMENT_HANDLER];
+    }
+
+    public long getBytesRead() {
+        return fBytesRead;
+    }
+
+    public long getBufferRefills() {
+        return fBufferRefills;
+    }
+
+    public long getSymbolTableHits() {
+        return fSymbolTableHits;
+    }
+
+    public long getSymbolTableMisses() {
+        return fSymbolTableMisses;
+    }
+
+    public long getGrammarPoolHits() {
+        return fGrammarPoolHits;
+    }
+
+    public long getGrammarPoolMisses() {
+        return fGrammarPoolMisses;
+    }
+
+    public long getContentModelTransitions() {
+        return fContentModelTransitions;
+    }
+
+    public void reset() {
+        for (int i = 0; i < STAGE_COUNT; ++i) {
+            fStageTimes[i] = 0;
+        }
+        fDocumentCount = 0;
+        fBytesRead = 0;
+        fBufferRefills = 0;
+        fSymbolTableHits = 0;
+        fSymbolTableMisses = 0;
+        fGrammarPoolHits = 0;
+        fGrammarPoolMisses = 0;
+        fContentModelTransitions = 0;
+    } // reset()
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Enters a stage. The time since the current stage was entered or
+     * last charged is charged to the current stage.
+     * 
+     * @param stage The stage entered.
+     * 
+     * @return The number of stages entered before, which must be passed
+     *         to {@link #endStage} when leaving the stage.
+     */
+    public int startStage(int stage) {
+        final long now = nanoTime();
+        if (fDepth > 0) {
+            fStageTimes[fStages[fDepth - 1]] += now - fMark;
+        }
+        if (fDepth == fStages.length) {
+            int[] stages = new int[fDepth << 1];
+            System.arraycopy(fStages, 0, stages, 0, fDepth);
+            fStages = stages;
+        }
+        fStages[fDepth] = stage;
+        fMark = now;
+        return fDepth++;
+    } // startStage(int):int
+
+    /**
+     * Leaves a stage, and any stage entered after it which was not left
+     * because of an exception. The time since the current stage was 
+     * entered or last charged is charged to the current stage.
+     * 
+     * @param depth The value returned by {@link #startStage}.
+     */
+    public void endStage(int depth) {
+        final long now = nanoTime();
+        if (fDepth > depth) {
+            fStageTimes[fStages[fDepth - 1]] += now - fMark;
+            fDepth = depth;
+        }
+        fMark = now;
+    } // endStage(int)
+
+    /** Counts a document. */
+    public void countDocument() {
+        ++fDocumentCount;
+    }
+
+    /** Counts bytes read. */
+    public void countBytesRead(int count) {
+        fBytesRead += count;
+    }
+
+    /** Counts a buffer refill. */
+    public void countBufferRefill() {
+        ++fBufferRefills;
+    }
+
+    /** Counts a lookup in the symbol table. */
+    public void countSymbolLookup(boolean hit) {
+        if (hit) {
+            ++fSymbolTableHits;
+        }
+        else {
+            ++fSymbolTableMisses;
+        }
+    } // countSymbolLookup(boolean)
+
+    /** Counts a lookup in the grammar pool. */
+    public void countGrammarLookup(boolean hit) {
+        if (hit) {
+            ++fGrammarPoolHits;
+        }
+        else {
+            ++fGrammarPoolMisses;
+        }
+    } // countGrammarLookup(boolean)
+
+    /** Counts transitions made in a content model. */
+    public void countContentModelTransitions(int count) {
+        fContentModelTransitions += count;
+    }
+
+    //
+    // Object methods
+    //
+
+    public String toString() {
+        StringBuffer str = new StringBuffer();
+        str.append("documents=").append(fDocumentCount);
+        str.append(" parseTime=").append(getParseTime());
+        str.append(" scanningTime=").append(fStageTimes[SCANNING]);
+        str.append(" entityResolutionTime=").append(fStageTimes[ENTITY_RESOLUTION]);
+        str.append(" dtdValidationTime=").append(fStageTimes[DTD_VALIDATION]);
+        str.append(" schemaValidationTime=").append(fStageTimes[SCHEMA_VALIDATION]);
+        str.append(" documentHandlerTime=").append(fStageTimes[DOCUMENT_HANDLER]);
+        str.append(" bytesRead=").append(fBytesRead);
+        str.append(" bufferRefills=").append(fBufferRefills);
+        str.append(" symbolTableHits=").append(fSymbolTableHits);
+        str.append(" symbolTableMisses=").append(fSymbolTableMisses);
+        str.append(" grammarPoolHits=").append(fGrammarPoolHits);
+        str.append(" grammarPoolMisses=").append(fGrammarPoolMisses);
+        str.append(" contentModelTransitions=").append(fContentModelTransitions);
+        return str.toString();
+    } // toString():String
+
+    //
+    // Public static methods
+    //
+
+    /** 
+     * Returns the current value of the most precise clock available, 
+     * in nanoseconds. Only the difference between two values is 
+     * meaningful.
+     */
+    public static long nanoTime() {
+        if (NANO_TIME != null) {
+            try {
+                return ((Long) NANO_TIME.invoke(null, (Object[]) null)).longValue();
+            }
+            catch (Exception e) {}
+        }
+        return System.currentTimeMillis() * 1000000L;
+    } // nanoTime():long
+
+} // class ParserMetrics
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+/**
+ * The management interface of {@link ParserMetrics}. It follows the
+ * naming conventions of a JMX standard MBean, so that an application
+ * may register a <code>ParserMetrics</code> object with an MBean server.
+ *
+ * @version $Id$
+ */
+public interface ParserMetricsMBean {
+
+    /** Returns the number of documents parsed. */
+    public long getDocumentCount();
+
+    /** Returns the time spent parsing, in nanoseconds. */
+    public long getParseTime();
+
+    /** 
+     * Returns the time spent scanning, in nanoseconds. This includes 
+     * everything which is not counted in another stage, e.g. the 
+     * processing of the DTD.
+     */
+    public long getScanningTime();
+
+    /** Returns the time spent resolving and opening entities, in nanoseconds. */
+    public long getEntityResolutionTime();
+
+    /** Returns the time spent validating against a DTD, in nanoseconds. */
+    public long getDTDValidationTime();
+
+    /** 
+     * Returns the time spent validating against an XML Schema, in 
+     * nanoseconds. This includes loading the schemas.
+     */
+    public long getSchemaValidationTime();
+
+    /** 
+     * Returns the time spent in the document handler at the end of the
+     * pipeline, e.g. building a DOM, in nanoseconds.
+     */
+    public long getDocumentHandlerTime();
+
+    /** Returns the number of bytes read from byte streams. */
+    public long getBytesRead();
+
+    /** Returns the number of times the buffer of an entity was refilled. */
+    public long getBufferRefills();
+
+    /** Returns the number of names found in the symbol table. */
+    public long getSymbolTableHits();
+
+    /** Returns the number of names added to the symbol table. */
+    public long getSymbolTableMisses();
+
+    /**
+     * Returns the number of grammars found in the grammar pool. A DTD
+     * found in the initial grammar set of the pool is counted as a hit.
+     * Schema grammars which the validator takes from the initial grammar
+     * set at the start of a document are not looked up, and are not
+     * counted.
+     */
+    public long getGrammarPoolHits();
+
+    /** Returns the number of grammars not found in the grammar pool. */
+    public long getGrammarPoolMisses();
+
+    /** Returns the number of transitions made in content models. */
+    public long getContentModelTransitions();
+
+    /** Sets all timings and counters to zero. */
+    public void reset();
+
+} // interface ParserMetricsMBean
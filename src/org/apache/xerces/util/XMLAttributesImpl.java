@@ -104,6 +104,13 @@ public class XMLAttributesImpl
      */
     protected boolean fIsTableViewConsistent;
 
+    /**
+     * Indicates whether the table view holds all of the attributes 
+     * hashed by local part and namespace name, so that attributes can 
+     * be looked up by namespace name in it.
+     */
+    private boolean fIsTableViewByNameConsistent;
+
     //
     // Constructors
     //
@@ -173,6 +180,7 @@ public class XMLAttributesImpl
      */
     public int addAttribute(QName name, String type, String value) {
 
+        int length = fLength;
         int index;
         if (fLength < SIZE_LIMIT) {
             index = name.uri != null && name.uri.length() != 0
@@ -195,6 +203,9 @@ public class XMLAttributesImpl
             name.uri.length() == 0 || 
             (index = getIndexFast(name.uri, name.localpart)) == -1) {
             
+            // The table view is about to be hashed by raw name.
+            fIsTableViewByNameConsistent = false;
+            
             /**
              * If attributes were removed from the list after the table
              * becomes in use this isn't reflected in the table view. It's
@@ -264,6 +275,9 @@ public class XMLAttributesImpl
         
         // set values
         Attribute attribute = fAttributes[index];
+        if (fLength == length) {
+            checkTableViewByName(attribute, name.localpart, name.uri);
+        }
         attribute.name.setValues(name);
         attribute.type = type;
         attribute.value = value;
@@ -272,6 +286,10 @@ public class XMLAttributesImpl
             
         // clear augmentations
         attribute.augs.removeAllItems();
+        
+        if (fLength != length && fIsTableViewByNameConsistent) {
+            addToTableViewByName(index);
+        }
 
         return index;
 
@@ -283,6 +301,7 @@ public class XMLAttributesImpl
      */
     public void removeAllAttributes() {
         fLength = 0;
+        fIsTableViewByNameConsistent = false;
     } // removeAllAttributes()
 
     /**
@@ -295,6 +314,7 @@ public class XMLAttributesImpl
      */
     public void removeAttributeAt(int attrIndex) {
         fIsTableViewConsistent = false;
+        fIsTableViewByNameConsistent = false;
         if (attrIndex < fLength - 1) {
             Attribute removedAttr = fAttributes[attrIndex];
             System.arraycopy(fAttributes, attrIndex + 1,
@@ -313,6 +333,7 @@ public class XMLAttributesImpl
      * @param attrName  The new attribute name.
      */
     public void setName(int attrIndex, QName attrName) {
+        checkTableViewByName(fAttributes[attrIndex], attrName.localpart, attrName.uri);
         fAttributes[attrIndex].name.setValues(attrName);
     } // setName(int,QName)
 
@@ -560,6 +581,23 @@ public class XMLAttributesImpl
      *         appear in the list.
      */
     public int getIndex(String uri, String localPart) {
+        if (fLength > SIZE_LIMIT && localPart != null) {
+            if (!fIsTableViewByNameConsistent) {
+                prepareAndPopulateTableViewByName();
+            }
+            int bucket = getTableViewBucket(localPart, uri);
+            Attribute found = fAttributeTableViewChainState[bucket] == fLargeCount
+                ? fAttributeTableView[bucket] : null;
+            while (found != null) {
+                if (localPart.equals(found.name.localpart) &&
+                    ((uri==found.name.uri) ||
+                    (uri!=null && found.name.uri!=null && found.name.uri.equals(uri)))) {
+                    return found.index;
+                }
+                found = found.next;
+            }
+            return -1;
+        }
         for (int i = 0; i < fLength; i++) {
             Attribute attribute = fAttributes[i];
             if (attribute.name.localpart != null &&
@@ -732,6 +770,7 @@ public class XMLAttributesImpl
      * @param uri       Namespace uri
      */
     public void setURI(int attrIndex, String uri) {
+        checkTableViewByName(fAttributes[attrIndex], fAttributes[attrIndex].name.localpart, uri);
         fAttributes[attrIndex].name.uri = uri;
     } // getURI(int,QName)
 
@@ -813,6 +852,10 @@ public class XMLAttributesImpl
             
         // clear augmentations
         attribute.augs.removeAllItems();
+        
+        if (fIsTableViewByNameConsistent) {
+            addToTableViewByName(index);
+        }
     }
     
     /**
@@ -844,16 +887,21 @@ public class XMLAttributesImpl
     	// If the list is large check duplicates using a hash table.
     	else {
             // We don't want this table view to be read if someone calls 
-            // addAttribute so we invalidate it up front.
+            // addAttribute so we invalidate it up front. It is only 
+            // complete by name if no duplicate is found.
             fIsTableViewConsistent = false;
+            fIsTableViewByNameConsistent = false;
 
             prepareTableView();
 
             Attribute attr;
             int bucket;
 
-            for (int i = fLength - 1; i >= 0; --i) {
+            // Enter the attributes in document order so that the later
+            // of two duplicates is reported, as for small lists.
+            for (int i = 0; i < fLength; ++i) {
                 attr = fAttributes[i];
+                attr.index = i;
                 bucket = getTableViewBucket(attr.name.localpart, attr.name.uri);
                 
                 // The chain is stale. 
@@ -881,6 +929,10 @@ public class XMLAttributesImpl
                     fAttributeTableView[bucket] = attr;
                 }
             }
+            
+            // The names are unique, so the table view can be used to
+            // look them up until the attributes change.
+            fIsTableViewByNameConsistent = true;
     	}
     	return null;
     }
@@ -900,6 +952,19 @@ public class XMLAttributesImpl
      *         appear in the list.
      */
     public int getIndexFast(String uri, String localPart) {
+        if (fIsTableViewByNameConsistent && localPart != null) {
+            int bucket = getTableViewBucket(localPart, uri);
+            Attribute found = fAttributeTableViewChainState[bucket] == fLargeCount
+                ? fAttributeTableView[bucket] : null;
+            while (found != null) {
+                if (found.name.localpart == localPart && 
+                    found.name.uri == uri) {
+                    return found.index;
+                }
+                found = found.next;
+            }
+            return -1;
+        }
         for (int i = 0; i < fLength; ++i) {
             Attribute attribute = fAttributes[i];
             if (attribute.name.localpart == localPart && 
@@ -1008,6 +1073,85 @@ public class XMLAttributesImpl
             }
         }
     }
+    
+    /**
+     * Prepares the table view of the attributes list for use, and
+     * populates it with all of the attributes, hashed by local part
+     * and namespace name.
+     */
+    private void prepareAndPopulateTableViewByName() {
+        // We don't want this table view to be read if someone calls 
+        // addAttribute so we invalidate it up front.
+        fIsTableViewConsistent = false;
+        prepareTableView();
+        Attribute attr;
+        int bucket;
+        // Enter the attributes in reverse order so that the first of
+        // attributes with the same name is found first in a chain.
+        for (int i = fLength - 1; i >= 0; --i) {
+            attr = fAttributes[i];
+            attr.index = i;
+            if (attr.name.localpart == null) {
+                continue;
+            }
+            bucket = getTableViewBucket(attr.name.localpart, attr.name.uri);
+            if (fAttributeTableViewChainState[bucket] != fLargeCount) {
+                fAttributeTableViewChainState[bucket] = fLargeCount;
+                attr.next = null;
+                fAttributeTableView[bucket] = attr;
+            } 
+            else {
+                // Update table view
+                attr.next = fAttributeTableView[bucket];
+                fAttributeTableView[bucket] = attr;
+            }
+        }
+        fIsTableViewByNameConsistent = true;
+    }
+    
+    /**
+     * Enters the attribute at the given index, which has just been 
+     * added to the list, in the table view of the attributes hashed 
+     * by local part and namespace name.
+     * 
+     * @param index the index of the new attribute
+     */
+    private void addToTableViewByName(int index) {
+        Attribute attr = fAttributes[index];
+        attr.index = index;
+        attr.next = null;
+        if (attr.name.localpart == null) {
+            return;
+        }
+        int bucket = getTableViewBucket(attr.name.localpart, attr.name.uri);
+        if (fAttributeTableViewChainState[bucket] != fLargeCount) {
+            fAttributeTableViewChainState[bucket] = fLargeCount;
+            fAttributeTableView[bucket] = attr;
+        }
+        else {
+            // Append to the chain so that the first of attributes 
+            // with the same name is still found first.
+            Attribute last = fAttributeTableView[bucket];
+            while (last.next != null) {
+                last = last.next;
+            }
+            last.next = attr;
+        }
+    }
+    
+    /**
+     * Invalidates the table view of the attributes hashed by local part
+     * and namespace name if the given attribute is about to be renamed.
+     * 
+     * @param attr the attribute
+     * @param localpart the new local part of the attribute
+     * @param uri the new namespace name of the attribute
+     */
+    private void checkTableViewByName(Attribute attr, String localpart, String uri) {
+        if (attr.name.localpart != localpart || attr.name.uri != uri) {
+            fIsTableViewByNameConsistent = false;
+        }
+    }
 
     //
     // Classes
@@ -1053,6 +1197,9 @@ public class XMLAttributesImpl
         /** Pointer to the next attribute in the chain. **/
         public Attribute next;
         
+        /** Index of the attribute when it was entered in the chain. **/
+        public int index;
+        
     } // class Attribute
 
 } // class XMLAttributesImpl
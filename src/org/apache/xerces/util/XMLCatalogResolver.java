@@ -64,7 +64,7 @@ public class XMLCatalogResolver
     private CatalogManager fResolverCatalogManager = null;
     
     /** Internal catalog structure. **/
-    private Catalog fCatalog = null;
+    private volatile IndexedCatalog fCatalog = null;
 	
     /** An array of catalog URIs. **/
     private String [] fCatalogsList = null;
@@ -73,7 +73,7 @@ public class XMLCatalogResolver
      * Indicates whether the list of catalogs has
      * changed since it was processed.
      */
-    private boolean fCatalogsChanged = true;
+    private volatile boolean fCatalogsChanged = true;
     
     /** Application specified prefer public setting. **/
     private boolean fPreferPublic = true;
@@ -454,15 +454,12 @@ public class XMLCatalogResolver
      * @throws IOException if an i/o error occurred while reading
      * the catalog
      */
-    public final synchronized String resolveSystem (String systemId) 
+    public final String resolveSystem (String systemId) 
         throws IOException {
 
-        if (fCatalogsChanged) {
-            parseCatalogs();
-            fCatalogsChanged = false;
-        }
-        return (fCatalog != null) 
-            ? fCatalog.resolveSystem(systemId) : null;
+        final Catalog catalog = getCatalog();
+        return (catalog != null) 
+            ? catalog.resolveSystem(systemId) : null;
     }
     
     /**
@@ -480,15 +477,12 @@ public class XMLCatalogResolver
      * @throws IOException if an i/o error occurred while reading
      * the catalog
      */
-    public final synchronized String resolvePublic (String publicId, String systemId) 
+    public final String resolvePublic (String publicId, String systemId) 
         throws IOException {
 
-        if (fCatalogsChanged) {
-            parseCatalogs();
-            fCatalogsChanged = false;
-        }
-        return (fCatalog != null) 
-            ? fCatalog.resolvePublic(publicId, systemId) : null;
+        final Catalog catalog = getCatalog();
+        return (catalog != null) 
+            ? catalog.resolvePublic(publicId, systemId) : null;
     }
     
     /**
@@ -509,15 +503,28 @@ public class XMLCatalogResolver
      * @throws IOException if an i/o error occurred while reading
      * the catalog
      */
-    public final synchronized String resolveURI (String uri) 
+    public final String resolveURI (String uri) 
         throws IOException {
 
+        final Catalog catalog = getCatalog();
+        return (catalog != null) 
+            ? catalog.resolveURI(uri) : null;
+    }
+    
+    /**
+     * Returns the catalog, parsing the catalogs in the list
+     * if the list has changed since it was last parsed.
+     */
+    private Catalog getCatalog () throws IOException {
         if (fCatalogsChanged) {
-            parseCatalogs();
-            fCatalogsChanged = false;
+            synchronized (this) {
+                if (fCatalogsChanged) {
+                    parseCatalogs();
+                    fCatalogsChanged = false;
+                }
+            }
         }
-        return (fCatalog != null)
-            ? fCatalog.resolveURI(uri) : null;
+        return fCatalog;
     }
     
     /**
@@ -542,20 +549,24 @@ public class XMLCatalogResolver
     
     /**
      * Instruct the <code>Catalog</code> to parse each of the  
-     * catalogs in the list. Only the first catalog will actually be 
-     * parsed immediately. The others will be queued and read if 
-     * they are needed later.
+     * catalogs in the list, then index the catalog so that it 
+     * may be queried without locking. Only the first catalog is 
+     * parsed into the catalog itself. The others, and the catalogs 
+     * they refer to, are read as subordinate catalogs when the 
+     * catalog is indexed.
      */
     private void parseCatalogs () throws IOException {
         if (fCatalogsList != null) {
-            fCatalog = new Catalog(fResolverCatalogManager);
-            attachReaderToCatalog(fCatalog);
+            IndexedCatalog catalog = new IndexedCatalog(fResolverCatalogManager);
+            attachReaderToCatalog(catalog);
             for (int i = 0; i < fCatalogsList.length; ++i) {
-                String catalog = fCatalogsList[i];
-                if (catalog != null && catalog.length() > 0) {
-                    fCatalog.parseCatalog(catalog);
+                String fileName = fCatalogsList[i];
+                if (fileName != null && fileName.length() > 0) {
+                    catalog.parseCatalog(fileName);
                 }
             }
+            catalog.index();
+            fCatalog = catalog;
         }
         else {
             fCatalog = null;
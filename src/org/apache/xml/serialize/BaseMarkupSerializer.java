@@ -134,6 +134,12 @@ public abstract class BaseMarkupSerializer
 
     protected EncodingInfo _encodingInfo;
 
+    /**
+     * The escape table of the output encoding, see {@link
+     * EncodingInfo#getEscapeTable}.
+     */
+    byte[] _escapeTable;
+
 
     /**
      * Holds array of all element states that have been entered.
@@ -317,6 +323,26 @@ public abstract class BaseMarkupSerializer
     }
 
 
+    /**
+     * Returns the output stream set with {@link #setOutputByteStream},
+     * or null if the output is a writer.
+     */
+    OutputStream getOutputByteStream()
+    {
+        return _output;
+    }
+
+
+    /**
+     * Returns the writer set with {@link #setOutputCharStream}, or null
+     * if the output is a stream.
+     */
+    Writer getOutputCharStream()
+    {
+        return _output == null ? _writer : null;
+    }
+
+
     public boolean reset()
     {
         if ( _elementStateCount > 1 ) {
@@ -350,6 +376,7 @@ public abstract class BaseMarkupSerializer
         // reused with the same output stream and different encoding.
 
         _encodingInfo = _format.getEncodingInfo();
+        _escapeTable = _encodingInfo.getEscapeTable();
 
         if ( _output != null ) {
             _writer = _encodingInfo.getWriter(_output);
@@ -1399,6 +1426,20 @@ public abstract class BaseMarkupSerializer
         char ch;
 
         for ( int index = 0 ; index <  length; ++index ) {
+            // print the run of characters which need no escaping at once
+            final byte[] table = _escapeTable;
+            int end = index;
+            while ( end < length && ( ch = text.charAt( end ) ) < table.length &&
+                    ( table[ ch ] & EncodingInfo.CLEAN_CDATA ) != 0 ) {
+                ++end;
+            }
+            if ( end > index ) {
+                _printer.printText( text, index, end - index );
+                if ( end == length ) {
+                    break;
+                }
+                index = end;
+            }
             ch = text.charAt( index );            
             if (ch == ']'
                 && index + 2 < length
@@ -0,0 +1,936 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xml.serialize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.Enumeration;
+import java.util.StringTokenizer;
+
+import org.apache.xerces.dom.DOMMessageFormatter;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ls.LSSerializerFilter;
+import org.w3c.dom.traversal.NodeFilter;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.NamespaceSupport;
+
+/**
+ * Writes the canonical form of a document, as defined by Canonical XML
+ * 1.0, Canonical XML 1.1 and Exclusive XML Canonicalization 1.0. The
+ * output is always encoded in UTF-8.
+ * <p>
+ * The serializer is a SAX content and lexical handler, so a document can
+ * be canonicalized while it is parsed, without building a tree; writing
+ * to a <code>java.security.DigestOutputStream</code> digests it in the
+ * same pass. The parser must report namespaces. It also serializes DOM
+ * documents, elements and document fragments, in which case an element
+ * is canonicalized as the apex of a document subset: the namespace
+ * declarations in scope and, for Canonical XML, the attributes in the
+ * <code>xml</code> namespace of its ancestors are rendered on it.
+ * Canonical XML 1.1 inherits <code>xml:lang</code> and
+ * <code>xml:space</code> only; <code>xml:base</code> is not fixed up.
+ * Namespace declarations missing from a DOM tree are added as needed
+ * for the names of elements and attributes. An
+ * <code>LSSerializerFilter</code> can be set to exclude DOM nodes from
+ * the output.
+ * <p>
+ * The input is expected to have been processed as the specifications
+ * require: entity references replaced, default attributes added and
+ * line breaks normalized, which the parser does. Comments are only
+ * written when requested.
+ * <pre>
+ * CanonicalSerializer canonical = new CanonicalSerializer(
+ *     new DigestOutputStream(out, digest), CanonicalSerializer.EXCLUSIVE, false);
+ * reader.setContentHandler(canonical);
+ * reader.setProperty("http://xml.org/sax/properties/lexical-handler", canonical);
+ * reader.parse(input);
+ * </pre>
+ *
+ * @see <a href="http://www.w3.org/TR/xml-c14n">Canonical XML</a>
+ * @see <a href="http://www.w3.org/TR/xml-exc-c14n/">Exclusive XML Canonicalization</a>
+ *
+ * @version $Id$
+ */
+public class CanonicalSerializer
+    implements ContentHandler, LexicalHandler, DOMSerializer {
+
+    //
+    // Constants
+    //
+
+    /** Canonical XML 1.0. */
+    public static final int CANONICAL_XML_10 = 0;
+
+    /** Canonical XML 1.1. */
+    public static final int CANONICAL_XML_11 = 1;
+
+    /** Exclusive XML Canonicalization 1.0. */
+    public static final int EXCLUSIVE = 2;
+
+    /** The namespace bound to the prefix "xml". */
+    private static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+
+    /** Initial capacity of the arrays of namespace declarations and attributes. */
+    private static final int INITIAL_SIZE = 8;
+
+    //
+    // Data
+    //
+
+    /** The canonicalization method. */
+    private final int fMethod;
+
+    /** True if comments are written. */
+    private final boolean fWithComments;
+
+    /** The filter applied to DOM nodes, or null. */
+    private LSSerializerFilter fFilter;
+
+    /** The printer, which buffers the output. */
+    private final Printer fPrinter;
+
+    /**
+     * The prefixes which Exclusive XML Canonicalization treats as Canonical
+     * XML does; the default namespace is the empty string.
+     */
+    private String[] fInclusivePrefixes = new String[0];
+
+    /** The namespace bindings in scope in the input. */
+    private final NamespaceSupport fInScope = new NamespaceSupport();
+
+    /** The namespace bindings in scope in the output. */
+    private final NamespaceSupport fRendered = new NamespaceSupport();
+
+    /** Prefixes declared for the next element. */
+    private String[] fPendingPrefixes = new String[INITIAL_SIZE];
+
+    /** Namespace URIs bound to {@link #fPendingPrefixes}. */
+    private String[] fPendingURIs = new String[INITIAL_SIZE];
+
+    /** Number of namespace declarations for the next element. */
+    private int fPendingCount = 0;
+
+    /** Prefixes considered for declaration on the current element. */
+    private String[] fPrefixes = new String[INITIAL_SIZE];
+
+    /** Number of prefixes considered for declaration. */
+    private int fPrefixCount = 0;
+
+    /** Indices of the attributes of the current element in output order. */
+    private int[] fAttributeOrder = new int[INITIAL_SIZE];
+
+    /** Attributes of DOM elements, reused for every element. */
+    private final AttributesImpl fAttributes = new AttributesImpl();
+
+    /** Number of open elements. */
+    private int fDepth = 0;
+
+    /** True once the document element has ended. */
+    private boolean fAfterRoot = false;
+
+    /** True while inside the DTD, whose comments are not written. */
+    private boolean fInDTD = false;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a serializer which writes to an output stream.
+     *
+     * @param output The output stream
+     * @param method The method: {@link #CANONICAL_XML_10},
+     *  {@link #CANONICAL_XML_11} or {@link #EXCLUSIVE}
+     * @param withComments True if comments are written
+     */
+    public CanonicalSerializer(OutputStream output, int method, boolean withComments) {
+        this(newWriter(output), method, withComments);
+    }
+
+    /**
+     * Constructs a serializer which writes to a writer. The caller is
+     * responsible for encoding the characters in UTF-8.
+     *
+     * @param writer The writer
+     * @param method The method: {@link #CANONICAL_XML_10},
+     *  {@link #CANONICAL_XML_11} or {@link #EXCLUSIVE}
+     * @param withComments True if comments are written
+     */
+    public CanonicalSerializer(Writer writer, int method, boolean withComments) {
+        if (method < CANONICAL_XML_10 || method > EXCLUSIVE) {
+            throw new IllegalArgumentException(String.valueOf(method));
+        }
+        fMethod = method;
+        fWithComments = withComments;
+        fPrinter = new Printer(writer, new OutputFormat());
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Sets the InclusiveNamespaces PrefixList of Exclusive XML
+     * Canonicalization: the prefixes, separated by white space, whose
+     * declarations are rendered as in Canonical XML. The default namespace
+     * is written as <code>#default</code>.
+     *
+     * @param prefixList The prefix list, or null for none
+     */
+    public void setInclusiveNamespaces(String prefixList) {
+        if (prefixList == null) {
+            fInclusivePrefixes = new String[0];
+            return;
+        }
+        StringTokenizer tokens = new StringTokenizer(prefixList);
+        fInclusivePrefixes = new String[tokens.countTokens()];
+        for (int i = 0; i < fInclusivePrefixes.length; ++i) {
+            String prefix = tokens.nextToken();
+            fInclusivePrefixes[i] = prefix.equals("#default") ? "" : prefix;
+        }
+    }
+
+    /**
+     * Sets a filter which decides which DOM nodes are written, as the filter
+     * of an <code>LSSerializer</code> does. It is called for the nodes whose
+     * type is in its <code>whatToShow</code> mask, before the nodes are
+     * canonicalized. A rejected or skipped node is not written, except
+     * that the children of a skipped element or entity reference are;
+     * the children of a skipped apex are written as apexes. Namespace
+     * declarations which the names of the remaining elements and
+     * attributes require are written even if the filter rejects the
+     * attributes declaring them. The filter is not applied to SAX events.
+     *
+     * @param filter The filter, or null for none
+     */
+    public void setFilter(LSSerializerFilter filter) {
+        fFilter = filter;
+    }
+
+    //
+    // DOMSerializer methods
+    //
+
+    /**
+     * Writes the canonical form of a document.
+     */
+    public void serialize(Document doc) throws IOException {
+        reset();
+        for (Node child = doc.getFirstChild(); child != null; child = child.getNextSibling()) {
+            serializeNode(child);
+        }
+        fPrinter.flush();
+    }
+
+    /**
+     * Writes the canonical form of an element as the apex of a document
+     * subset.
+     */
+    public void serialize(Element elem) throws IOException {
+        reset();
+        serializeApex(elem);
+        fPrinter.flush();
+    }
+
+    /**
+     * Writes the canonical form of the children of a document fragment.
+     */
+    public void serialize(DocumentFragment frag) throws IOException {
+        reset();
+        for (Node child = frag.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                serializeApex((Element) child);
+            }
+            else {
+                serializeNode(child);
+            }
+        }
+        fPrinter.flush();
+    }
+
+    //
+    // ContentHandler methods
+    //
+
+    public void setDocumentLocator(Locator locator) {
+    }
+
+    public void startDocument() throws SAXException {
+        reset();
+    }
+
+    public void endDocument() throws SAXException {
+        try {
+            fPrinter.flush();
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        addPending(prefix, uri);
+    }
+
+    public void endPrefixMapping(String prefix) throws SAXException {
+    }
+
+    public void startElement(String uri, String localName, String qName,
+                             Attributes attributes) throws SAXException {
+        try {
+            startElement(qName, attributes);
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void endElement(String uri, String localName, String qName)
+        throws SAXException {
+        try {
+            endElement(qName);
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (fDepth == 0) {
+            return;
+        }
+        try {
+            printText(ch, start, length);
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void ignorableWhitespace(char[] ch, int start, int length)
+        throws SAXException {
+        characters(ch, start, length);
+    }
+
+    public void processingInstruction(String target, String data)
+        throws SAXException {
+        if (fInDTD) {
+            return;
+        }
+        try {
+            printProcessingInstruction(target, data);
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void skippedEntity(String name) throws SAXException {
+        throw new SAXException(DOMMessageFormatter.formatMessage(
+            DOMMessageFormatter.SERIALIZER_DOMAIN, "EntityNotExpanded",
+            new Object[] { name }));
+    }
+
+    //
+    // LexicalHandler methods
+    //
+
+    public void startDTD(String name, String publicId, String systemId) {
+        fInDTD = true;
+    }
+
+    public void endDTD() {
+        fInDTD = false;
+    }
+
+    public void startEntity(String name) {
+    }
+
+    public void endEntity(String name) {
+    }
+
+    public void startCDATA() {
+    }
+
+    public void endCDATA() {
+    }
+
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        if (!fWithComments || fInDTD) {
+            return;
+        }
+        try {
+            printComment(new String(ch, start, length));
+        }
+        catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Creates a UTF-8 writer. */
+    private static Writer newWriter(OutputStream output) {
+        try {
+            return new OutputStreamWriter(output, "UTF8");
+        }
+        catch (UnsupportedEncodingException e) {
+            // every Java platform supports UTF-8
+            throw new RuntimeException(e.toString());
+        }
+    }
+
+    /** Prepares the serializer for a new document. */
+    private void reset() {
+        fInScope.reset();
+        fRendered.reset();
+        fPendingCount = 0;
+        fDepth = 0;
+        fAfterRoot = false;
+        fInDTD = false;
+    }
+
+    /** 
+     * Returns the decision of the filter about a DOM node, or
+     * <code>FILTER_ACCEPT</code> if the filter does not see the node.
+     */
+    private short acceptNode(Node node) {
+        if (fFilter == null || 
+            (fFilter.getWhatToShow() & (1 << (node.getNodeType() - 1))) == 0) {
+            return NodeFilter.FILTER_ACCEPT;
+        }
+        return fFilter.acceptNode(node);
+    }
+
+    /** Serializes a DOM node other than an element which is an apex. */
+    private void serializeNode(Node node) throws IOException {
+        short type = node.getNodeType();
+        if (type == Node.DOCUMENT_TYPE_NODE ||
+            (type == Node.COMMENT_NODE && !fWithComments)) {
+            return;
+        }
+        short code = acceptNode(node);
+        if (code == NodeFilter.FILTER_REJECT) {
+            return;
+        }
+        boolean accepted = code != NodeFilter.FILTER_SKIP;
+        switch (type) {
+        case Node.ELEMENT_NODE:
+            if (accepted) {
+                serializeElement((Element) node);
+            }
+            else {
+                serializeChildren(node);
+            }
+            break;
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+            if (accepted) {
+                printText(node.getNodeValue());
+            }
+            break;
+        case Node.ENTITY_REFERENCE_NODE:
+            serializeChildren(node);
+            break;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            if (accepted) {
+                printProcessingInstruction(node.getNodeName(), node.getNodeValue());
+            }
+            break;
+        case Node.COMMENT_NODE:
+            if (accepted) {
+                printComment(node.getNodeValue());
+            }
+            break;
+        }
+    }
+
+    /** Serializes the children of a DOM node. */
+    private void serializeChildren(Node node) throws IOException {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            serializeNode(child);
+        }
+    }
+
+    /**
+     * Serializes an element as the apex of a document subset, declaring
+     * the namespaces of its ancestors and inheriting their attributes in
+     * the xml namespace.
+     */
+    private void serializeApex(Element elem) throws IOException {
+        short code = acceptNode(elem);
+        if (code == NodeFilter.FILTER_REJECT) {
+            return;
+        }
+        if (code == NodeFilter.FILTER_SKIP) {
+            for (Node child = elem.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    serializeApex((Element) child);
+                }
+                else {
+                    serializeNode(child);
+                }
+            }
+            return;
+        }
+        fAttributes.clear();
+        for (Node ancestor = elem.getParentNode();
+             ancestor != null && ancestor.getNodeType() == Node.ELEMENT_NODE;
+             ancestor = ancestor.getParentNode()) {
+            NamedNodeMap attributes = ancestor.getAttributes();
+            for (int i = 0; i < attributes.getLength(); ++i) {
+                Attr attr = (Attr) attributes.item(i);
+                String name = attr.getName();
+                if (isNamespaceDeclaration(name)) {
+                    String prefix = name.length() == 5 ? "" : name.substring(6);
+                    if (!isPending(prefix) && !elem.hasAttribute(name)) {
+                        addPending(prefix, attr.getValue());
+                    }
+                }
+                else if (name.startsWith("xml:") && isInherited(name) &&
+                         !elem.hasAttribute(name) &&
+                         fAttributes.getIndex(name) == -1) {
+                    fAttributes.addAttribute(XML_NAMESPACE, name.substring(4), name,
+                                             "CDATA", attr.getValue());
+                }
+            }
+        }
+        serializeElement(elem);
+    }
+
+    /** Returns true if an attribute in the xml namespace is inherited. */
+    private boolean isInherited(String name) {
+        if (fMethod == CANONICAL_XML_10) {
+            return true;
+        }
+        if (fMethod == CANONICAL_XML_11) {
+            return name.equals("xml:lang") || name.equals("xml:space");
+        }
+        return false;
+    }
+
+    /**
+     * Serializes a DOM element. Attributes inherited by an apex have
+     * already been added to {@link #fAttributes}.
+     */
+    private void serializeElement(Element elem) throws IOException {
+        NamedNodeMap attributes = elem.getAttributes();
+        for (int i = 0; i < attributes.getLength(); ++i) {
+            Attr attr = (Attr) attributes.item(i);
+            if (acceptNode(attr) != NodeFilter.FILTER_ACCEPT) {
+                continue;
+            }
+            String name = attr.getName();
+            if (isNamespaceDeclaration(name)) {
+                addPending(name.length() == 5 ? "" : name.substring(6), attr.getValue());
+            }
+            else {
+                String uri = attr.getNamespaceURI();
+                String localName = attr.getLocalName();
+                fAttributes.addAttribute(uri != null ? uri : "",
+                                         localName != null ? localName : name,
+                                         name, "CDATA", attr.getValue());
+            }
+        }
+        for (int i = 0; i < fAttributes.getLength(); ++i) {
+            String prefix = prefixOf(fAttributes.getQName(i));
+            if (prefix.length() > 0 && fAttributes.getURI(i).length() > 0) {
+                declareIfMissing(prefix, fAttributes.getURI(i));
+            }
+        }
+        if (elem.getLocalName() != null) {
+            String prefix = elem.getPrefix();
+            String uri = elem.getNamespaceURI();
+            declareIfMissing(prefix != null ? prefix : "", uri != null ? uri : "");
+        }
+
+        startElement(elem.getNodeName(), fAttributes);
+        fAttributes.clear();
+        serializeChildren(elem);
+        endElement(elem.getNodeName());
+    }
+
+    /**
+     * Declares a prefix used by a DOM node on the next element, unless it
+     * is already bound to the namespace.
+     */
+    private void declareIfMissing(String prefix, String uri) {
+        if (prefix.equals("xml")) {
+            return;
+        }
+        String declared = null;
+        int i = fPendingCount - 1;
+        while (i >= 0 && !fPendingPrefixes[i].equals(prefix)) {
+            --i;
+        }
+        if (i >= 0) {
+            declared = fPendingURIs[i];
+        }
+        else {
+            declared = fInScope.getURI(prefix);
+        }
+        if (!uri.equals(declared != null ? declared : "")) {
+            addPending(prefix, uri);
+        }
+    }
+
+    /** Returns true if a prefix is declared for the next element. */
+    private boolean isPending(String prefix) {
+        for (int i = 0; i < fPendingCount; ++i) {
+            if (fPendingPrefixes[i].equals(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Declares a prefix on the next element. */
+    private void addPending(String prefix, String uri) {
+        if (fPendingCount == fPendingPrefixes.length) {
+            String[] prefixes = new String[fPendingCount << 1];
+            System.arraycopy(fPendingPrefixes, 0, prefixes, 0, fPendingCount);
+            fPendingPrefixes = prefixes;
+            String[] uris = new String[fPendingCount << 1];
+            System.arraycopy(fPendingURIs, 0, uris, 0, fPendingCount);
+            fPendingURIs = uris;
+        }
+        fPendingPrefixes[fPendingCount] = prefix;
+        fPendingURIs[fPendingCount] = uri;
+        ++fPendingCount;
+    }
+
+    /** Returns true if a raw attribute name is that of a namespace declaration. */
+    private static boolean isNamespaceDeclaration(String name) {
+        return name.startsWith("xmlns") && (name.length() == 5 || name.charAt(5) == ':');
+    }
+
+    /**
+     * Prints the start tag of an element with the namespace declarations
+     * it renders and its attributes in canonical order.
+     */
+    private void startElement(String qName, Attributes attributes) throws IOException {
+        // bind the namespaces declared on the element
+        fInScope.pushContext();
+        for (int i = 0; i < fPendingCount; ++i) {
+            fInScope.declarePrefix(fPendingPrefixes[i], fPendingURIs[i]);
+        }
+        fPendingCount = 0;
+        int length = attributes.getLength();
+        int count = 0;
+        if (fAttributeOrder.length < length) {
+            fAttributeOrder = new int[length];
+        }
+        for (int i = 0; i < length; ++i) {
+            String name = attributes.getQName(i);
+            if (isNamespaceDeclaration(name)) {
+                fInScope.declarePrefix(name.length() == 5 ? "" : name.substring(6),
+                                       attributes.getValue(i));
+            }
+            else {
+                fAttributeOrder[count++] = i;
+            }
+        }
+
+        // choose the namespace declarations to render
+        fPrefixCount = 0;
+        if (fMethod == EXCLUSIVE) {
+            addPrefix(prefixOf(qName));
+            for (int i = 0; i < count; ++i) {
+                String prefix = prefixOf(attributes.getQName(fAttributeOrder[i]));
+                if (prefix.length() > 0) {
+                    addPrefix(prefix);
+                }
+            }
+            for (int i = 0; i < fInclusivePrefixes.length; ++i) {
+                addPrefix(fInclusivePrefixes[i]);
+            }
+        }
+        else {
+            Enumeration prefixes = fInScope.getDeclaredPrefixes();
+            while (prefixes.hasMoreElements()) {
+                addPrefix((String) prefixes.nextElement());
+            }
+        }
+        int rendered = 0;
+        for (int i = 0; i < fPrefixCount; ++i) {
+            String prefix = fPrefixes[i];
+            if (!prefix.equals("xml") && !prefix.equals("xmlns") &&
+                !getURI(fInScope, prefix).equals(getURI(fRendered, prefix))) {
+                fPrefixes[rendered++] = prefix;
+            }
+        }
+        sortPrefixes(rendered);
+
+        fPrinter.printText('<');
+        fPrinter.printText(qName);
+        fRendered.pushContext();
+        for (int i = 0; i < rendered; ++i) {
+            String prefix = fPrefixes[i];
+            String uri = getURI(fInScope, prefix);
+            fRendered.declarePrefix(prefix, uri);
+            if (prefix.length() == 0) {
+                fPrinter.printText(" xmlns");
+            }
+            else {
+                fPrinter.printText(" xmlns:");
+                fPrinter.printText(prefix);
+            }
+            printAttributeValue(uri);
+        }
+        sortAttributes(attributes, count);
+        for (int i = 0; i < count; ++i) {
+            int index = fAttributeOrder[i];
+            fPrinter.printText(' ');
+            fPrinter.printText(attributes.getQName(index));
+            printAttributeValue(attributes.getValue(index));
+        }
+        fPrinter.printText('>');
+        ++fDepth;
+    }
+
+    /** Prints the end tag of an element. */
+    private void endElement(String qName) throws IOException {
+        fPrinter.printText("</");
+        fPrinter.printText(qName);
+        fPrinter.printText('>');
+        fRendered.popContext();
+        fInScope.popContext();
+        if (--fDepth == 0) {
+            fAfterRoot = true;
+        }
+    }
+
+    /** Adds a prefix to the prefixes considered for declaration, once. */
+    private void addPrefix(String prefix) {
+        for (int i = 0; i < fPrefixCount; ++i) {
+            if (fPrefixes[i].equals(prefix)) {
+                return;
+            }
+        }
+        if (fPrefixCount == fPrefixes.length) {
+            String[] prefixes = new String[fPrefixCount << 1];
+            System.arraycopy(fPrefixes, 0, prefixes, 0, fPrefixCount);
+            fPrefixes = prefixes;
+        }
+        fPrefixes[fPrefixCount++] = prefix;
+    }
+
+    /** Returns the prefix of a raw name, or the empty string. */
+    private static String prefixOf(String qName) {
+        int colon = qName.indexOf(':');
+        return colon == -1 ? "" : qName.substring(0, colon);
+    }
+
+    /**
+     * Returns the namespace bound to a prefix, or the empty string if the
+     * prefix is not bound.
+     */
+    private static String getURI(NamespaceSupport bindings, String prefix) {
+        String uri = bindings.getURI(prefix);
+        return uri != null ? uri : "";
+    }
+
+    /** Sorts the first prefixes, the default namespace first. */
+    private void sortPrefixes(int count) {
+        for (int i = 1; i < count; ++i) {
+            String prefix = fPrefixes[i];
+            int j = i;
+            while (j > 0 && fPrefixes[j - 1].compareTo(prefix) > 0) {
+                fPrefixes[j] = fPrefixes[j - 1];
+                --j;
+            }
+            fPrefixes[j] = prefix;
+        }
+    }
+
+    /**
+     * Sorts the attribute indices by namespace URI and then by local name;
+     * attributes without a namespace come first.
+     */
+    private void sortAttributes(Attributes attributes, int count) {
+        for (int i = 1; i < count; ++i) {
+            int index = fAttributeOrder[i];
+            int j = i;
+            while (j > 0 && compareAttributes(attributes, fAttributeOrder[j - 1], index) > 0) {
+                fAttributeOrder[j] = fAttributeOrder[j - 1];
+                --j;
+            }
+            fAttributeOrder[j] = index;
+        }
+    }
+
+    /** Compares two attributes in canonical order. */
+    private static int compareAttributes(Attributes attributes, int i, int j) {
+        int result = getURI(attributes, i).compareTo(getURI(attributes, j));
+        if (result == 0) {
+            result = getLocalName(attributes, i).compareTo(getLocalName(attributes, j));
+        }
+        return result;
+    }
+
+    /** Returns the namespace URI of an attribute, or the empty string. */
+    private static String getURI(Attributes attributes, int index) {
+        String uri = attributes.getURI(index);
+        return uri != null ? uri : "";
+    }
+
+    /** Returns the local name of an attribute, or its raw name if it has none. */
+    private static String getLocalName(Attributes attributes, int index) {
+        String localName = attributes.getLocalName(index);
+        return localName != null && localName.length() > 0
+            ? localName : attributes.getQName(index);
+    }
+
+    /**
+     * Prints a processing instruction, separated from the document element
+     * by a line break outside of it.
+     */
+    private void printProcessingInstruction(String target, String data)
+        throws IOException {
+        if (fDepth == 0 && fAfterRoot) {
+            fPrinter.printText('\n');
+        }
+        fPrinter.printText("<?");
+        fPrinter.printText(target);
+        if (data != null && data.length() > 0) {
+            fPrinter.printText(' ');
+            fPrinter.printText(data);
+        }
+        fPrinter.printText("?>");
+        if (fDepth == 0 && !fAfterRoot) {
+            fPrinter.printText('\n');
+        }
+    }
+
+    /**
+     * Prints a comment, separated from the document element by a line
+     * break outside of it.
+     */
+    private void printComment(String text) throws IOException {
+        if (fDepth == 0 && fAfterRoot) {
+            fPrinter.printText('\n');
+        }
+        fPrinter.printText("<!--");
+        fPrinter.printText(text);
+        fPrinter.printText("-->");
+        if (fDepth == 0 && !fAfterRoot) {
+            fPrinter.printText('\n');
+        }
+    }
+
+    /** Prints text content, escaping &amp;, &lt;, &gt; and carriage returns. */
+    private void printText(String text) throws IOException {
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; ++i) {
+            String reference = getTextReference(text.charAt(i));
+            if (reference != null) {
+                fPrinter.printText(text, start, i - start);
+                fPrinter.printText(reference);
+                start = i + 1;
+            }
+        }
+        fPrinter.printText(text, start, length - start);
+    }
+
+    /** Prints text content, escaping &amp;, &lt;, &gt; and carriage returns. */
+    private void printText(char[] ch, int start, int length) throws IOException {
+        int end = start + length;
+        for (int i = start; i < end; ++i) {
+            String reference = getTextReference(ch[i]);
+            if (reference != null) {
+                fPrinter.printText(ch, start, i - start);
+                fPrinter.printText(reference);
+                start = i + 1;
+            }
+        }
+        fPrinter.printText(ch, start, end - start);
+    }
+
+    /** Returns the reference for a character of text content, or null. */
+    private static String getTextReference(char ch) {
+        switch (ch) {
+        case '&':
+            return "&amp;";
+        case '<':
+            return "&lt;";
+        case '>':
+            return "&gt;";
+        case '\r':
+            return "&#xD;";
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Prints ="value", escaping &amp;, &lt;, quotes, tabs and line breaks
+     * in the value.
+     */
+    private void printAttributeValue(String value) throws IOException {
+        fPrinter.printText("=\"");
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; ++i) {
+            String reference;
+            switch (value.charAt(i)) {
+            case '&':
+                reference = "&amp;";
+                break;
+            case '<':
+                reference = "&lt;";
+                break;
+            case '"':
+                reference = "&quot;";
+                break;
+            case '\t':
+                reference = "&#x9;";
+                break;
+            case '\n':
+                reference = "&#xA;";
+                break;
+            case '\r':
+                reference = "&#xD;";
+                break;
+            default:
+                continue;
+            }
+            fPrinter.printText(value, start, i - start);
+            fPrinter.printText(reference);
+            start = i + 1;
+        }
+        fPrinter.printText(value, start, length - start);
+        fPrinter.printText('"');
+    }
+
+} // class CanonicalSerializer
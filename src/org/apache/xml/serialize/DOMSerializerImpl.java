@@ -24,11 +24,13 @@ import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.xerces.dom.CoreDocumentImpl;
 import org.apache.xerces.dom.DOMErrorImpl;
 import org.apache.xerces.dom.DOMLocatorImpl;
 import org.apache.xerces.dom.DOMMessageFormatter;
+import org.apache.xerces.dom.DOMOutputImpl;
 import org.apache.xerces.dom.DOMNormalizer;
 import org.apache.xerces.dom.DOMStringListImpl;
 import org.apache.xerces.impl.Constants;
@@ -104,7 +106,24 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
     protected final static short NSDECL              = 0x1<<9;
     protected final static short DOM_ELEMENT_CONTENT_WHITESPACE = 0x1<<10;
     protected final static short PRETTY_PRINT        = 0x1<<11;
+    protected final static short CANONICAL           = 0x1<<12;
     
+    /** Property identifier: serialization threads. */
+    protected static final String SERIALIZATION_THREADS =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.SERIALIZATION_THREADS_PROPERTY;
+
+    /**
+     * The number of threads which serialize the children of the document
+     * element; less than two serializes them on the calling thread.
+     */
+    private int fSerializationThreads = 0;
+
+    /**
+     * The threads which serialize the children of the document element,
+     * created when first needed and kept for later serializations.
+     */
+    private WorkerPool fWorkerPool = null;
+
     // well-formness checking
     private DOMErrorHandler fErrorHandler = null;    
     private final DOMErrorImpl fError = new DOMErrorImpl();
@@ -159,6 +178,22 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
                     features |= COMMENTS;                 
                 }
                 // false does not have any effect
+            } else if (name.equalsIgnoreCase(Constants.DOM_CANONICAL_FORM)) {
+                if (state) {
+                    features &= ~ENTITIES;
+                    features &= ~CDATA;
+                    features &= ~DISCARDDEFAULT;
+                    features &= ~PRETTY_PRINT;
+                    features &= ~XMLDECL;
+                    features |= NAMESPACES;
+                    features |= NSDECL;
+                    features |= WELLFORMED;
+                    features |= CANONICAL;
+                    serializer.fNamespaces = true;
+                    serializer.fNamespacePrefixes = true;
+                } else {
+                    features &= ~CANONICAL;
+                }
             } else if (name.equalsIgnoreCase(Constants.DOM_XMLDECL)) {
                 features =
                     (short) (state ? features | XMLDECL : features & ~XMLDECL);                
@@ -206,8 +241,7 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
                          ? features | PRETTY_PRINT
                          : features & ~PRETTY_PRINT);
             }
-                else if (name.equalsIgnoreCase(Constants.DOM_CANONICAL_FORM)
-                    || name.equalsIgnoreCase(Constants.DOM_VALIDATE_IF_SCHEMA)
+                else if (name.equalsIgnoreCase(Constants.DOM_VALIDATE_IF_SCHEMA)
                     || name.equalsIgnoreCase(Constants.DOM_VALIDATE)
                     || name.equalsIgnoreCase(Constants.DOM_CHECK_CHAR_NORMALIZATION)
                     || name.equalsIgnoreCase(Constants.DOM_DATATYPE_NORMALIZATION)
@@ -259,6 +293,17 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
                         new Object[] { name });
                 throw new DOMException(DOMException.TYPE_MISMATCH_ERR, msg);
             }
+        } else if (name.equalsIgnoreCase(SERIALIZATION_THREADS)) {
+            if (value instanceof Integer && ((Integer) value).intValue() >= 0) {
+                fSerializationThreads = ((Integer) value).intValue();
+            } else {
+                String msg =
+                    DOMMessageFormatter.formatMessage(
+                        DOMMessageFormatter.DOM_DOMAIN,
+                        "TYPE_MISMATCH_ERR",
+                        new Object[] { name });
+                throw new DOMException(DOMException.TYPE_MISMATCH_ERR, msg);
+            }
         } else if (
             name.equalsIgnoreCase(Constants.DOM_RESOURCE_RESOLVER)
                 || name.equalsIgnoreCase(Constants.DOM_SCHEMA_LOCATION)
@@ -300,12 +345,12 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
             || name.equalsIgnoreCase(Constants.DOM_CDATA_SECTIONS)
             || name.equalsIgnoreCase(Constants.DOM_COMMENTS)
             || name.equalsIgnoreCase(Constants.DOM_FORMAT_PRETTY_PRINT)
+            || name.equalsIgnoreCase(Constants.DOM_CANONICAL_FORM)
             || name.equalsIgnoreCase(Constants.DOM_NAMESPACE_DECLARATIONS)){
 	            // both values supported
 				return true;
 			}
-			else if (name.equalsIgnoreCase(Constants.DOM_CANONICAL_FORM)
-			    || name.equalsIgnoreCase(Constants.DOM_VALIDATE_IF_SCHEMA)
+			else if (name.equalsIgnoreCase(Constants.DOM_VALIDATE_IF_SCHEMA)
 			    || name.equalsIgnoreCase(Constants.DOM_VALIDATE)
 			    || name.equalsIgnoreCase(Constants.DOM_CHECK_CHAR_NORMALIZATION)
 			    || name.equalsIgnoreCase(Constants.DOM_DATATYPE_NORMALIZATION)
@@ -323,6 +368,9 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
 				state == null || state instanceof DOMErrorHandler){
 			return true;
 		}
+		else if (name.equalsIgnoreCase(SERIALIZATION_THREADS)) {
+			return state instanceof Integer && ((Integer) state).intValue() >= 0;
+		}
 	    return false;
     }
 
@@ -366,6 +414,7 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
 			//parameters.add(Constants.DOM_SCHEMA_TYPE);
 			
 			//Add recognized xerces features and properties
+			parameters.add(SERIALIZATION_THREADS);
 			
 			fRecognizedParameters = new DOMStringListImpl(parameters);		
     		
@@ -411,8 +460,9 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
                      return Boolean.TRUE;
                  }                 
                  return Boolean.FALSE;
+        } else if (name.equalsIgnoreCase(Constants.DOM_CANONICAL_FORM)) {
+            return isCanonical() ? Boolean.TRUE : Boolean.FALSE;
         } else if (name.equalsIgnoreCase(Constants.DOM_NORMALIZE_CHARACTERS)
-                || name.equalsIgnoreCase(Constants.DOM_CANONICAL_FORM)
                 || name.equalsIgnoreCase(Constants.DOM_VALIDATE_IF_SCHEMA)
                 || name.equalsIgnoreCase(Constants.DOM_CHECK_CHAR_NORMALIZATION)
                 || name.equalsIgnoreCase(Constants.DOM_VALIDATE)
@@ -421,6 +471,8 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
             return Boolean.FALSE;
         } else if (name.equalsIgnoreCase(Constants.DOM_ERROR_HANDLER)) {
             return fErrorHandler;
+        } else if (name.equalsIgnoreCase(SERIALIZATION_THREADS)) {
+            return new Integer(fSerializationThreads);
         } else if (
             name.equalsIgnoreCase(Constants.DOM_RESOURCE_RESOLVER)
                 || name.equalsIgnoreCase(Constants.DOM_SCHEMA_LOCATION)
@@ -483,14 +535,15 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
             prepareForSerialization(ser, wnode);
             ser._format.setEncoding("UTF-16");
             ser.setOutputCharStream(destination);
+            DOMSerializer target = getDOMSerializer(ser);
             if (wnode.getNodeType() == Node.DOCUMENT_NODE) {
-                ser.serialize((Document)wnode);
+                target.serialize((Document)wnode);
             }
             else if (wnode.getNodeType() == Node.DOCUMENT_FRAGMENT_NODE) {
-                ser.serialize((DocumentFragment)wnode);
+                target.serialize((DocumentFragment)wnode);
             }
             else if (wnode.getNodeType() == Node.ELEMENT_NODE) {
-                ser.serialize((Element)wnode);
+                target.serialize((Element)wnode);
             }
             else {
                 String msg = DOMMessageFormatter.formatMessage(
@@ -688,6 +741,7 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
                 }
             }
         }
+        GZIPOutputStream compressor = null;
         try {
             prepareForSerialization(ser, node);
             ser._format.setEncoding(encoding);
@@ -710,27 +764,35 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
                         throw new LSException(LSException.SERIALIZE_ERR, msg);
                     }
                     else {
-                        ser.setOutputByteStream(XMLEntityManager.createOutputStream(uri));
+                        outputStream = XMLEntityManager.createOutputStream(uri);
                     }
                 }
-                else {
-                    // byte stream was specified
-                    ser.setOutputByteStream(outputStream);
+                if (destination instanceof DOMOutputImpl &&
+                    ((DOMOutputImpl) destination).getCompressed()) {
+                    // the serializer buffers its output, so the
+                    // compressor writes straight to the destination
+                    compressor = new GZIPOutputStream(outputStream);
+                    outputStream = compressor;
                 }
+                ser.setOutputByteStream(outputStream);
             }
             else {
                 // character stream is specified
                 ser.setOutputCharStream(writer); 
             }
 
+            DOMSerializer target = getDOMSerializer(ser);
             if (node.getNodeType() == Node.DOCUMENT_NODE)
-                ser.serialize((Document) node);
+                target.serialize((Document) node);
             else if (node.getNodeType() == Node.DOCUMENT_FRAGMENT_NODE)
-                ser.serialize((DocumentFragment) node);
+                target.serialize((DocumentFragment) node);
             else if (node.getNodeType() == Node.ELEMENT_NODE)
-                ser.serialize((Element) node);
+                target.serialize((Element) node);
             else
                 return false;
+            if (compressor != null) {
+                compressor.finish();
+            }
         } 
         catch( UnsupportedEncodingException ue) {
             if (ser.fDOMErrorHandler != null) {
@@ -835,12 +897,13 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
             ser._format.setEncoding(encoding);
             ser.setOutputByteStream(XMLEntityManager.createOutputStream(URI));
 
+            DOMSerializer target = getDOMSerializer(ser);
             if (node.getNodeType() == Node.DOCUMENT_NODE)
-                ser.serialize((Document) node);
+                target.serialize((Document) node);
             else if (node.getNodeType() == Node.DOCUMENT_FRAGMENT_NODE)
-                ser.serialize((DocumentFragment) node);
+                target.serialize((DocumentFragment) node);
             else if (node.getNodeType() == Node.ELEMENT_NODE)
-                ser.serialize((Element) node);
+                target.serialize((Element) node);
             else
                 return false;
         } 
@@ -876,12 +939,57 @@ public class DOMSerializerImpl implements LSSerializer, DOMConfiguration {
     //  Private methods
     //
 
+    /**
+     * Returns true if canonical-form is set and none of the parameters
+     * it implies has been changed since.
+     */
+    private boolean isCanonical() {
+        return (features & CANONICAL) != 0 &&
+            (features & (ENTITIES | CDATA | DISCARDDEFAULT | PRETTY_PRINT | XMLDECL)) == 0 &&
+            (features & NAMESPACES) != 0 &&
+            (features & NSDECL) != 0 &&
+            (features & WELLFORMED) != 0;
+    }
+
+    /**
+     * Returns the serializer which writes a node to the output of the
+     * given serializer: the serializer itself, or a serializer of
+     * Canonical XML 1.0 if canonical-form is set. The filter of this
+     * serializer is applied in both cases.
+     */
+    private DOMSerializer getDOMSerializer(XMLSerializer ser) {
+        if (!isCanonical()) {
+            return ser;
+        }
+        boolean comments = (features & COMMENTS) != 0;
+        OutputStream output = ser.getOutputByteStream();
+        CanonicalSerializer canonical;
+        if (output != null) {
+            canonical = new CanonicalSerializer(output, CanonicalSerializer.CANONICAL_XML_10, comments);
+        }
+        else {
+            canonical = new CanonicalSerializer(ser.getOutputCharStream(),
+                                                CanonicalSerializer.CANONICAL_XML_10, comments);
+        }
+        canonical.setFilter(ser.fDOMFilter);
+        return canonical;
+    }
+
     private void prepareForSerialization(XMLSerializer ser, Node node) {
         ser.reset();
         ser.features = features;
         ser.fDOMErrorHandler = fErrorHandler;
         ser.fNamespaces = (features & NAMESPACES) != 0;
         ser.fNamespacePrefixes = (features & NSDECL) != 0;
+        if (fSerializationThreads < 2) {
+            ser.fWorkerPool = null;
+        }
+        else {
+            if (fWorkerPool == null || fWorkerPool.getMaxThreads() != fSerializationThreads) {
+                fWorkerPool = new WorkerPool(fSerializationThreads);
+            }
+            ser.fWorkerPool = fWorkerPool;
+        }
         ser._format.setIndenting((features & PRETTY_PRINT) != 0);
         ser._format.setOmitComments((features & COMMENTS)==0);
         ser._format.setOmitXMLDeclaration((features & XMLDECL) == 0);   
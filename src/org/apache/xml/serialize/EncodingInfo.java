@@ -23,6 +23,7 @@ import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 
 import org.apache.xerces.util.EncodingMap;
+import org.apache.xerces.util.XMLChar;
 
 /**
  * This class represents an encoding.
@@ -57,6 +58,21 @@ public class EncodingInfo {
     
     // Is the charset encoder usable or available.
     boolean fHaveTriedCharsetEncoder = false;
+    
+    // Flags in the escape table: the character can be printed unchanged
+    // in text content, attribute values or CDATA sections respectively.
+    static final byte CLEAN_TEXT = 0x01;
+    static final byte CLEAN_ATTR = 0x02;
+    static final byte CLEAN_CDATA = 0x04;
+    
+    // Escape table for the characters up to lastPrintable (at most 0xFFFF).
+    private byte[] fEscapeTable = null;
+    
+    // Cached results of isPrintable for characters above lastPrintable;
+    // 0 if not yet known, PRINTABLE or NOT_PRINTABLE otherwise.
+    private byte[] fPrintable = null;
+    private static final byte PRINTABLE = 1;
+    private static final byte NOT_PRINTABLE = 2;
 
     /**
      * Creates new <code>EncodingInfo</code> instance.
@@ -94,6 +110,45 @@ public class EncodingInfo {
         return new OutputStreamWriter(output, javaName);
     }
     
+    /**
+     * Returns a table which holds, for every character up to the last
+     * printable character of this encoding, flags which tell whether it
+     * can be printed unchanged in the text content (CLEAN_TEXT), attribute
+     * values (CLEAN_ATTR) and CDATA sections (CLEAN_CDATA) of an XML 1.0
+     * document. Characters beyond the table must be checked one by one.
+     */
+    synchronized byte[] getEscapeTable() {
+        if (fEscapeTable == null) {
+            byte[] table = new byte[Math.min(lastPrintable, 0xFFFF) + 1];
+            for (int ch = 0; ch < table.length; ++ch) {
+                if (!XMLChar.isValid(ch)) {
+                    continue;
+                }
+                int flags = 0;
+                if (ch >= ' ') {
+                    if (ch != '<' && ch != '&' && ch != '>') {
+                        flags |= CLEAN_TEXT;
+                    }
+                    if (ch != '<' && ch != '&' && ch != '"') {
+                        flags |= CLEAN_ATTR;
+                    }
+                    if (ch != ']' && ch != 0x7F) {
+                        flags |= CLEAN_CDATA;
+                    }
+                }
+                else if (ch == '\n' || ch == '\t') {
+                    flags = CLEAN_TEXT | CLEAN_CDATA;
+                }
+                else if (ch == '\r') {
+                    flags = CLEAN_CDATA;
+                }
+                table[ch] = (byte) flags;
+            }
+            fEscapeTable = table;
+        }
+        return fEscapeTable;
+    }
+    
     /**
      * Checks whether the specified character is printable or not in this encoding.
      *
@@ -103,7 +158,32 @@ public class EncodingInfo {
         if (ch <= this.lastPrintable) {
             return true;
         }
-        return isPrintable0(ch);
+        return isPrintableCached(ch);
+    }
+    
+    /**
+     * Checks whether a character above lastPrintable is printable. The
+     * answer for a given character never changes, so it is remembered
+     * rather than asking the charset encoder again. Instances are shared
+     * by all serializers using the same encoding, so the encoder is only
+     * asked while holding the lock; a cached answer can be read without it.
+     */
+    private boolean isPrintableCached(char ch) {
+        byte[] printable = fPrintable;
+        if (printable != null && printable[ch] != 0) {
+            return printable[ch] == PRINTABLE;
+        }
+        synchronized (this) {
+            if (fPrintable == null) {
+                fPrintable = new byte[0x10000];
+            }
+            byte result = fPrintable[ch];
+            if (result == 0) {
+                result = isPrintable0(ch) ? PRINTABLE : NOT_PRINTABLE;
+                fPrintable[ch] = result;
+            }
+            return result == PRINTABLE;
+        }
     }
     
     /**
@@ -47,6 +47,10 @@ public class Encodings
 
     // last printable character for Unicode-compatible encodings
     static final int LAST_PRINTABLE_UNICODE = 0xffff;
+    // last printable character for ISO-8859-1, which can express
+    // exactly the first 256 characters of Unicode
+    static final int LAST_PRINTABLE_LATIN1 = 0xff;
+    static final String LATIN1_ENCODING = "ISO8859_1";
     // unicode-compliant encodings; can express plane 0
     static final String[] UNICODE_ENCODINGS = {
         "Unicode", "UnicodeBig", "UnicodeLittle", "GB2312", "UTF8", "UTF-16",
@@ -89,7 +93,8 @@ public class Encodings
                     }
                 }
                 if(i == UNICODE_ENCODINGS.length) {
-                    eInfo = new EncodingInfo(EncodingMap.getJava2IANAMapping(encoding), encoding, DEFAULT_LAST_PRINTABLE);
+                    eInfo = new EncodingInfo(EncodingMap.getJava2IANAMapping(encoding), encoding,
+                        LATIN1_ENCODING.equalsIgnoreCase(encoding) ? LAST_PRINTABLE_LATIN1 : DEFAULT_LAST_PRINTABLE);
                 }
                 _encodings.put(encoding, eInfo); 
                 return eInfo;
@@ -108,7 +113,8 @@ public class Encodings
             }
         }
         if(i == UNICODE_ENCODINGS.length) {
-            eInfo = new EncodingInfo(encoding, jName, DEFAULT_LAST_PRINTABLE);
+            eInfo = new EncodingInfo(encoding, jName, LATIN1_ENCODING.equals(jName) ?
+                LAST_PRINTABLE_LATIN1 : DEFAULT_LAST_PRINTABLE);
         }
         _encodings.put(jName, eInfo); 
         return eInfo;
@@ -77,6 +77,13 @@ public class IndentPrinter
     private int             _nextIndent;
 
 
+    /**
+     * Scratch buffer for copying characters in bulk, e.g. the indentation
+     * and the contents of a line so that it is written in a single call.
+     */
+    private char[]          _chars = new char[ 120 ];
+
+
     public IndentPrinter( Writer writer, OutputFormat format)
     {
         super( writer, format );
@@ -102,7 +109,7 @@ public class IndentPrinter
         // state, can no longer re-enter it.
         if ( _dtdWriter == null ) {
             _line.append( _text );
-            _text = new StringBuffer( 20 );
+            _text.setLength( 0 );
             flushLine( false );
             _dtdWriter = new StringWriter();
             _docWriter = _writer;
@@ -121,7 +128,7 @@ public class IndentPrinter
         // Only works if we're going out of DTD mode.
         if ( _writer == _dtdWriter ) {
             _line.append( _text );
-            _text = new StringBuffer( 20 );
+            _text.setLength( 0 );
             flushLine( false );
             _writer = _docWriter;
             return _dtdWriter.toString();
@@ -161,6 +168,14 @@ public class IndentPrinter
     {
         _text.append( chars, start, length );
     }
+
+
+    public void printText( String text, int start, int length )
+    {
+        char[] chars = getChars( length );
+        text.getChars( start, start + length, chars, 0 );
+        _text.append( chars, 0, length );
+    }
     
 
     /**
@@ -213,7 +228,7 @@ public class IndentPrinter
                 --_spaces;
             }
             _line.append( _text );
-            _text = new StringBuffer( 20 );
+            _text.setLength( 0 );
         }
         // Starting a new word: accumulate the text between the line
         // and this new word; not a new word: just add another space.
@@ -243,7 +258,7 @@ public class IndentPrinter
                 --_spaces;
             }
             _line.append( _text );
-            _text = new StringBuffer( 20 );
+            _text.setLength( 0 );
         }
         flushLine( preserveSpace );
         try {
@@ -272,27 +287,28 @@ public class IndentPrinter
         if ( _line.length() > 0 ) {
             try {
                 
+                indent = 0;
                 if ( _format.getIndenting() && ! preserveSpace ) {
                     // Make sure the indentation does not blow us away.
                     indent = _thisIndent;
                     if ( ( 2 * indent ) > _format.getLineWidth() && _format.getLineWidth() > 0 )
                         indent = _format.getLineWidth() / 2;
-                    // Print the indentation as spaces and set the current
-                    // indentation to the next expected indentation.
-                    while ( indent > 0 ) {
-                        _writer.write( ' ' );
-                        --indent;
-                    }
                 }
                 _thisIndent = _nextIndent;
                 
+                // Print the indentation as spaces followed by the line.
                 // There is no need to print the spaces at the end of the line,
                 // they are simply stripped and replaced with a single line
                 // separator.
                 _spaces = 0;
-                _writer.write( _line.toString() );
+                int length = indent + _line.length();
+                char[] chars = getChars( length );
+                for ( int i = 0 ; i < indent ; ++i )
+                    chars[ i ] = ' ';
+                _line.getChars( 0, _line.length(), chars, indent );
+                _writer.write( chars, 0, length );
                 
-                _line = new StringBuffer( 40 );
+                _line.setLength( 0 );
             } catch ( IOException except ) {
                 // We don't throw an exception, but hold it
                 // until the end of the document.
@@ -346,6 +362,18 @@ public class IndentPrinter
     }
 
 
+    /**
+     * Returns the scratch buffer, grown to hold at least the given
+     * number of characters.
+     */
+    private char[] getChars( int length )
+    {
+        if ( length > _chars.length )
+            _chars = new char[ Math.max( length, _chars.length * 2 ) ];
+        return _chars;
+    }
+
+
     public int getNextIndent()
     {
         return _nextIndent;
@@ -0,0 +1,421 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xml.serialize;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+
+import org.apache.xerces.dom.DeferredNode;
+import org.apache.xerces.util.NamespaceSupport;
+import org.apache.xerces.util.SymbolTable;
+import org.w3c.dom.DOMError;
+import org.w3c.dom.DOMErrorHandler;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Serializes the children of the document element on several threads.
+ * Only the children of the document element are split; each of them,
+ * with its whole subtree, is serialized on a single thread, and the
+ * prolog and epilog of the document are serialized on the calling
+ * thread.
+ * <p>
+ * The children are split into runs of consecutive siblings, called
+ * partitions. Each partition is serialized by a serializer of its own
+ * into a character buffer, and the calling thread prints the buffers in
+ * document order. A partition only starts after an element or a text
+ * node, where the state of the document element is known without
+ * serializing the preceding siblings: its start tag has been closed and
+ * no CDATA section is open. The namespace bindings in scope are copied
+ * into the serializer of each partition. The partitions are serialized
+ * by the threads of a {@link WorkerPool} which belongs to the
+ * <code>LSSerializer</code> and is reused by later serializations.
+ * <p>
+ * Reading nodes of a deferred document, or entity references, may modify
+ * the document, so such documents are expanded completely before any
+ * thread is started.
+ *
+ * @version $Id$
+ */
+final class ParallelContentSerializer {
+
+    //
+    // Constants
+    //
+
+    /**
+     * Number of partitions per thread. Having more partitions than
+     * threads evens out subtrees of different size.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    //
+    // Data
+    //
+
+    /** The serializer of the document. */
+    private final XMLSerializer fSerializer;
+
+    /** The document element. */
+    private final Element fElement;
+
+    /** The state of the document element in the serializer of the document. */
+    private final ElementState fState;
+
+    /** The threads of the serializer. */
+    private final WorkerPool fPool;
+
+    /** The number of threads. */
+    private final int fThreads;
+
+    /** The error handler shared by the serializers of the partitions. */
+    private final DOMErrorHandler fErrorHandler;
+
+    /** The first node of each partition. */
+    private Node[] fStarts;
+
+    /** The prefixes in scope in the document element. */
+    private String[] fPrefixes;
+
+    /** The namespace names bound to {@link #fPrefixes}. */
+    private String[] fURIs;
+
+    /** The serialized partitions; null until serialized, or once printed. */
+    private PartitionWriter[] fResults;
+
+    /** The next partition to serialize. */
+    private int fNext = 0;
+
+    /** The first failure of a thread, if any. */
+    private Throwable fFailure = null;
+
+    /** The state of the document element after the last partition. */
+    private ElementState fLastState = null;
+
+    //
+    // Constructors
+    //
+
+    ParallelContentSerializer(XMLSerializer serializer, Element element,
+                              ElementState state, WorkerPool pool) {
+        fSerializer = serializer;
+        fElement = element;
+        fState = state;
+        fPool = pool;
+        fThreads = pool.getMaxThreads();
+        fErrorHandler = serializer.fDOMErrorHandler != null
+            ? new SynchronizedErrorHandler(serializer.fDOMErrorHandler) : null;
+    }
+
+    //
+    // Methods
+    //
+
+    /**
+     * Serializes the children of the document element. Returns false,
+     * without printing anything, if the children cannot be split into at
+     * least two partitions.
+     */
+    boolean serialize() throws IOException {
+        if (!partition()) {
+            return false;
+        }
+        if (needsExpansion(fElement.getOwnerDocument())) {
+            expand(fElement);
+        }
+        if (fSerializer.fNSBinder != null) {
+            ArrayList prefixes = new ArrayList();
+            ArrayList uris = new ArrayList();
+            Enumeration e = fSerializer.fNSBinder.getAllPrefixes();
+            while (e.hasMoreElements()) {
+                String prefix = (String) e.nextElement();
+                prefixes.add(prefix);
+                uris.add(fSerializer.fNSBinder.getURI(prefix));
+            }
+            fPrefixes = (String[]) prefixes.toArray(new String[prefixes.size()]);
+            fURIs = (String[]) uris.toArray(new String[uris.size()]);
+        }
+        int threads = Math.min(fThreads, fStarts.length);
+        for (int i = 0; i < threads; ++i) {
+            fPool.execute(new Worker());
+        }
+        try {
+            for (int i = 0; i < fStarts.length; ++i) {
+                PartitionWriter result = waitFor(i);
+                result.printTo(fSerializer._printer);
+            }
+        }
+        finally {
+            stop();
+        }
+        fState.empty = fLastState.empty;
+        fState.afterElement = fLastState.afterElement;
+        fState.afterComment = fLastState.afterComment;
+        fState.inCData = fLastState.inCData;
+        return true;
+    }
+
+    /**
+     * Splits the children into partitions of about the same number of
+     * siblings. Returns false if there are fewer than two partitions.
+     */
+    private boolean partition() {
+        int count = 0;
+        for (Node child = fElement.getFirstChild(); child != null; child = child.getNextSibling()) {
+            ++count;
+        }
+        int size = Math.max(1, count / (fThreads * PARTITIONS_PER_THREAD));
+        ArrayList starts = new ArrayList();
+        starts.add(fElement.getFirstChild());
+        int length = 0;
+        Node previous = null;
+        for (Node child = fElement.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (length >= size && isBoundary(previous)) {
+                starts.add(child);
+                length = 0;
+            }
+            ++length;
+            previous = child;
+        }
+        if (starts.size() < 2) {
+            return false;
+        }
+        fStarts = (Node[]) starts.toArray(new Node[starts.size()]);
+        fResults = new PartitionWriter[fStarts.length];
+        return true;
+    }
+
+    /** Returns true if a partition may start after the given node. */
+    private static boolean isBoundary(Node previous) {
+        short type = previous.getNodeType();
+        return type == Node.ELEMENT_NODE || type == Node.TEXT_NODE;
+    }
+
+    /** Serializes a partition with a serializer of its own. */
+    private PartitionWriter serialize(int index) throws IOException {
+        XMLSerializer serializer = fSerializer.newSerializer();
+        PartitionWriter out = new PartitionWriter();
+        serializer._format = fSerializer._format;
+        serializer.setOutputCharStream(out);
+        serializer.features = fSerializer.features;
+        serializer.fNamespaces = fSerializer.fNamespaces;
+        serializer.fNamespacePrefixes = fSerializer.fNamespacePrefixes;
+        serializer.fDOMErrorHandler = fErrorHandler;
+        if (fSerializer.fNSBinder != null) {
+            serializer.fNSBinder = new NamespaceSupport();
+            serializer.fLocalNSBinder = new NamespaceSupport();
+            serializer.fSymbolTable = new SymbolTable();
+        }
+        serializer.reset();
+        if (serializer.fNSBinder != null) {
+            serializer.fNSBinder.pushContext();
+            for (int i = 0; i < fPrefixes.length; ++i) {
+                serializer.fNSBinder.declarePrefix(fPrefixes[i], fURIs[i]);
+            }
+        }
+        serializer.prepare();
+        serializer._started = true;
+
+        ElementState state = serializer.enterElementState(fState.namespaceURI,
+            fState.localName, fState.rawName, fState.preserveSpace);
+        if (index == 0) {
+            state.empty = fState.empty;
+            state.afterElement = fState.afterElement;
+            state.afterComment = fState.afterComment;
+            state.inCData = fState.inCData;
+        }
+        else {
+            state.empty = false;
+            state.afterElement =
+                fStarts[index].getPreviousSibling().getNodeType() == Node.ELEMENT_NODE;
+            state.afterComment = false;
+            state.inCData = false;
+        }
+
+        Node end = index + 1 < fStarts.length ? fStarts[index + 1] : null;
+        for (Node child = fStarts[index]; child != end; child = child.getNextSibling()) {
+            serializer.serializeNode(child);
+        }
+        serializer._printer.flush();
+        if (serializer._printer.getException() != null) {
+            throw serializer._printer.getException();
+        }
+        if (index == fStarts.length - 1) {
+            fLastState = state;
+        }
+        return out;
+    }
+
+    /** Returns the next partition to serialize, or -1 if there is none. */
+    private synchronized int next() {
+        if (fFailure != null || fNext == fStarts.length) {
+            return -1;
+        }
+        return fNext++;
+    }
+
+    /** Records a serialized partition. */
+    private synchronized void done(int index, PartitionWriter result) {
+        fResults[index] = result;
+        notifyAll();
+    }
+
+    /** Records the failure of a thread. */
+    private synchronized void fail(Throwable failure) {
+        if (fFailure == null) {
+            fFailure = failure;
+        }
+        notifyAll();
+    }
+
+    /** Stops handing out partitions. */
+    private synchronized void stop() {
+        fNext = fStarts.length;
+    }
+
+    /**
+     * Waits until a partition has been serialized and returns it, or
+     * rethrows the failure of a thread.
+     */
+    private synchronized PartitionWriter waitFor(int index) throws IOException {
+        while (fResults[index] == null && fFailure == null) {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                stop();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            }
+        }
+        if (fFailure != null) {
+            if (fFailure instanceof IOException) {
+                throw (IOException) fFailure;
+            }
+            if (fFailure instanceof RuntimeException) {
+                throw (RuntimeException) fFailure;
+            }
+            if (fFailure instanceof Error) {
+                throw (Error) fFailure;
+            }
+            throw new IOException(fFailure.toString());
+        }
+        PartitionWriter result = fResults[index];
+        fResults[index] = null;
+        return result;
+    }
+
+    /**
+     * Returns true if reading the document may modify it, i.e. if it is
+     * a deferred document or declares entities.
+     */
+    private static boolean needsExpansion(Document document) {
+        if (document == null) {
+            return false;
+        }
+        if (document instanceof DeferredNode) {
+            return true;
+        }
+        DocumentType doctype = document.getDoctype();
+        return doctype != null && doctype.getEntities() != null &&
+            doctype.getEntities().getLength() > 0;
+    }
+
+    /** Visits every node of a subtree so that it is completely expanded. */
+    private static void expand(Node root) {
+        Node node = root;
+        while (node != null) {
+            node.getNodeName();
+            node.getNodeValue();
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); ++i) {
+                    expand(attributes.item(i));
+                }
+            }
+            Node next = node.getFirstChild();
+            while (next == null && node != root) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = next;
+        }
+    }
+
+    //
+    // Classes
+    //
+
+    /** Serializes partitions until there are none left. */
+    private final class Worker implements Runnable {
+
+        public void run() {
+            int index;
+            while ((index = next()) != -1) {
+                try {
+                    done(index, serialize(index));
+                }
+                catch (Throwable failure) {
+                    fail(failure);
+                    return;
+                }
+            }
+        }
+
+    } // class Worker
+
+    /** Holds a serialized partition. */
+    private static final class PartitionWriter extends CharArrayWriter {
+
+        PartitionWriter() {
+            super(8192);
+        }
+
+        /** Prints the partition without copying it first. */
+        void printTo(Printer printer) throws IOException {
+            printer.printText(buf, 0, count);
+        }
+
+    } // class PartitionWriter
+
+    /** Reports the errors of all partitions to one error handler in turn. */
+    private static final class SynchronizedErrorHandler implements DOMErrorHandler {
+
+        private final DOMErrorHandler fHandler;
+
+        SynchronizedErrorHandler(DOMErrorHandler handler) {
+            fHandler = handler;
+        }
+
+        public boolean handleError(DOMError error) {
+            synchronized (fHandler) {
+                return fHandler.handleError(error);
+            }
+        }
+
+    } // class SynchronizedErrorHandler
+
+} // class ParallelContentSerializer
@@ -91,6 +91,13 @@ public class Printer
     private static final int BufferSize = 4096;
 
 
+    /**
+     * Longest run of characters which is copied one character at a time
+     * rather than in bulk.
+     */
+    private static final int SmallCopy = 16;
+
+
     /**
      * Output buffer.
      */
@@ -164,16 +171,39 @@ public class Printer
 
     public void printText( String text )
         throws IOException
+    {
+        printText( text, 0, text.length() );
+    }
+
+
+    /**
+     * Prints part of a string.
+     *
+     * @param text The string containing the text to print
+     * @param start The offset of the first character to print
+     * @param length The number of characters to print
+     */
+    public void printText( String text, int start, int length )
+        throws IOException
     {
         try {
-            int length = text.length();
-            for ( int i = 0 ; i < length ; ++i ) {
+            // Short runs, which are common in heavily escaped text, are
+            // cheaper to copy one character at a time.
+            if ( length <= SmallCopy && length <= BufferSize - _pos ) {
+                for ( int end = start + length ; start < end ; ++start )
+                    _buffer[ _pos++ ] = text.charAt( start );
+                return;
+            }
+            while ( length > 0 ) {
                 if ( _pos == BufferSize ) {
                     _writer.write( _buffer );
                     _pos = 0;
                 }
-                _buffer[ _pos ] = text.charAt( i );
-                ++_pos;
+                int count = Math.min( length, BufferSize - _pos );
+                text.getChars( start, start + count, _buffer, _pos );
+                _pos += count;
+                start += count;
+                length -= count;
             }
         } catch ( IOException except ) {
             // We don't throw an exception, but hold it
@@ -190,13 +220,18 @@ public class Printer
     {
         try {
             int length = text.length();
-            for ( int i = 0 ; i < length ; ++i ) {
+            int start = 0;
+            // Copy as much of the text as fits into the buffer at a time.
+            while ( length > 0 ) {
                 if ( _pos == BufferSize ) {
                     _writer.write( _buffer );
                     _pos = 0;
                 }
-                _buffer[ _pos ] = text.charAt( i );
-                ++_pos;
+                int count = Math.min( length, BufferSize - _pos );
+                text.getChars( start, start + count, _buffer, _pos );
+                _pos += count;
+                start += count;
+                length -= count;
             }
         } catch ( IOException except ) {
             // We don't throw an exception, but hold it
@@ -212,14 +247,16 @@ public class Printer
         throws IOException
     {
         try {
-            while ( length-- > 0 ) {
+            while ( length > 0 ) {
                 if ( _pos == BufferSize ) {
                     _writer.write( _buffer );
                     _pos = 0;
                 }
-                _buffer[ _pos ] = chars[ start ];
-                ++start;
-                ++_pos;
+                int count = Math.min( length, BufferSize - _pos );
+                System.arraycopy( chars, start, _buffer, _pos, count );
+                _pos += count;
+                start += count;
+                length -= count;
             }
         } catch ( IOException except ) {
             // We don't throw an exception, but hold it
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xml.serialize;
+
+import java.util.LinkedList;
+
+/**
+ * A bounded pool of daemon threads which run the tasks of a serializer.
+ * Threads are started as tasks are submitted, up to the maximum, and
+ * are reused by later serializations. A thread which has been idle for
+ * {@link #KEEP_ALIVE} milliseconds terminates, so that a pool which is
+ * no longer used does not keep its threads.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class WorkerPool {
+
+    //
+    // Constants
+    //
+
+    /** Time in milliseconds an idle thread waits for a task. */
+    static final long KEEP_ALIVE = 30000;
+
+    //
+    // Data
+    //
+
+    /** The maximum number of threads. */
+    private final int fMaxThreads;
+
+    /** Tasks which have not been started yet. */
+    private final LinkedList fTasks = new LinkedList();
+
+    /** The number of threads. */
+    private int fThreads = 0;
+
+    /** The number of threads waiting for a task. */
+    private int fIdleThreads = 0;
+
+    //
+    // Constructors
+    //
+
+    WorkerPool(int maxThreads) {
+        fMaxThreads = maxThreads;
+    }
+
+    //
+    // Methods
+    //
+
+    /** Returns the maximum number of threads. */
+    int getMaxThreads() {
+        return fMaxThreads;
+    }
+
+    /**
+     * Queues a task, starting a thread for it if there are more queued
+     * tasks than idle threads and the maximum has not been reached. The
+     * task must not throw.
+     */
+    synchronized void execute(Runnable task) {
+        fTasks.addLast(task);
+        if (fIdleThreads > 0) {
+            notify();
+        }
+        if (fTasks.size() > fIdleThreads && fThreads < fMaxThreads) {
+            Thread thread = new Thread(new Worker(), "Xerces serializer worker");
+            thread.setDaemon(true);
+            thread.start();
+            ++fThreads;
+        }
+    }
+
+    /**
+     * Returns the next task, waiting for one if there is none, or null
+     * if the calling thread has been idle too long and must terminate.
+     */
+    private synchronized Runnable take() {
+        if (fTasks.isEmpty()) {
+            ++fIdleThreads;
+            try {
+                long end = System.currentTimeMillis() + KEEP_ALIVE;
+                long timeout = KEEP_ALIVE;
+                while (fTasks.isEmpty() && timeout > 0) {
+                    wait(timeout);
+                    timeout = end - System.currentTimeMillis();
+                }
+            }
+            catch (InterruptedException e) {
+                // terminate below unless there is work
+            }
+            finally {
+                --fIdleThreads;
+            }
+            if (fTasks.isEmpty()) {
+                --fThreads;
+                return null;
+            }
+        }
+        return (Runnable) fTasks.removeFirst();
+    }
+
+    //
+    // Classes
+    //
+
+    /** Runs tasks until it has been idle too long. */
+    private final class Worker implements Runnable {
+
+        public void run() {
+            Runnable task;
+            while ((task = take()) != null) {
+                task.run();
+            }
+        }
+
+    } // class Worker
+
+} // class WorkerPool
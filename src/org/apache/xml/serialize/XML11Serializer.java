@@ -537,4 +537,8 @@ extends XMLSerializer {
         return true;
     }
 
+    XMLSerializer newSerializer() {
+        return new XML11Serializer();
+    }
+
 }
@@ -136,6 +136,13 @@ extends BaseMarkupSerializer {
 
     private boolean fPreserveSpace;
 
+    /**
+     * The threads which serialize the children of the document element.
+     * The children are serialized on the calling thread if this is null
+     * or has fewer than two threads.
+     */
+    WorkerPool fWorkerPool = null;
+
 
     /**
      * Constructs a new serializer. The serializer cannot be used without
@@ -662,7 +669,8 @@ extends BaseMarkupSerializer {
         }
         tagName = elem.getTagName();
         state = getElementState();
-        if (isDocumentState()) {
+        boolean root = isDocumentState();
+        if (root) {
             // If this is the root element handle it differently.
             // If the first root element in the document, serialize
             // the document's DOCTYPE. Space preserving defaults
@@ -1065,10 +1073,12 @@ extends BaseMarkupSerializer {
             state = enterElementState( null, null, tagName, fPreserveSpace );
             state.doCData = _format.isCDataElement( tagName );
             state.unescaped = _format.isNonEscapingElement( tagName );
-            child = elem.getFirstChild();
-            while (child != null) {
-                serializeNode( child );
-                child = child.getNextSibling();
+            if (! root || ! serializeChildrenInParallel( elem, state )) {
+                child = elem.getFirstChild();
+                while (child != null) {
+                    serializeNode( child );
+                    child = child.getNextSibling();
+                }
             }
             if (fNamespaces) {
                 fNSBinder.popContext();
@@ -1094,6 +1104,33 @@ extends BaseMarkupSerializer {
 
 
 
+    /**
+     * Serializes the children of the document element on several threads,
+     * see {@link ParallelContentSerializer}. Returns false if the children
+     * must be serialized one by one instead: if fewer than two threads
+     * were requested, if the output is indented or filtered, or if the
+     * children of the document element are not escaped as usual.
+     */
+    private boolean serializeChildrenInParallel( Element elem, ElementState state )
+        throws IOException
+    {
+        if ( fWorkerPool == null || fWorkerPool.getMaxThreads() < 2 || _indenting ||
+             fDOMFilter != null || state.doCData || state.unescaped )
+            return false;
+        return new ParallelContentSerializer( this, elem, state, fWorkerPool ).serialize();
+    }
+
+
+    /**
+     * Returns a new serializer of the same kind as this one, used to
+     * serialize parts of a document on other threads.
+     */
+    XMLSerializer newSerializer()
+    {
+        return new XMLSerializer();
+    }
+
+
     /**
      * Serializes a namespace attribute with the given prefix and value for URI.
      * In case prefix is empty will serialize default namespace declaration.
@@ -1227,6 +1264,21 @@ extends BaseMarkupSerializer {
     protected void printEscaped(String source) throws IOException {
         int length = source.length();
         for (int i = 0; i < length; ++i) {
+            // print the run of characters which need no escaping at once
+            final byte[] table = _escapeTable;
+            int end = i;
+            char c;
+            while (end < length && (c = source.charAt(end)) < table.length &&
+                    (table[c] & EncodingInfo.CLEAN_ATTR) != 0) {
+                ++end;
+            }
+            if (end > i) {
+                _printer.printText(source, i, end - i);
+                if (end == length) {
+                    break;
+                }
+                i = end;
+            }
             int ch = source.charAt(i);
             if (!XMLChar.isValid(ch)) {
                 if (++i < length) {
@@ -1275,53 +1327,46 @@ extends BaseMarkupSerializer {
 
     protected void printText( String text, boolean preserveSpace, boolean unescaped )
     throws IOException {
-        int index;
-        char ch;
+        // Spaces and line terminators are printed as they are, so
+        // preserving spaces or not makes no difference.
+        int index = 0;
         int length = text.length();
-        if ( preserveSpace ) {
-            // Preserving spaces: the text must print exactly as it is,
-            // without breaking when spaces appear in the text and without
-            // consolidating spaces. If a line terminator is used, a line
-            // break will occur.
-            for ( index = 0 ; index < length ; ++index ) {
-                ch = text.charAt( index );
-                if (!XMLChar.isValid(ch)) {
-                    // check if it is surrogate
-                    if (++index <length) {
-                        surrogates(ch, text.charAt(index), true);
-                    } else {
-                        fatalError("The character '"+ch+"' is an invalid XML character"); 
-                    }
-                    continue;
+        while ( index < length ) {
+            // print the run of characters which need no escaping at once
+            int start = index;
+            char ch;
+            if ( unescaped ) {
+                while ( index < length && XMLChar.isValid( text.charAt( index ) ) ) {
+                    ++index;
                 }
-                if ( unescaped ) {
-                    _printer.printText( ch );
-                } else
-                    printXMLChar( ch );
             }
-        } else {
-            // Not preserving spaces: print one part at a time, and
-            // use spaces between parts to break them into different
-            // lines. Spaces at beginning of line will be stripped
-            // by printing mechanism. Line terminator is treated
-            // no different than other text part.
-            for ( index = 0 ; index < length ; ++index ) {
-                ch = text.charAt( index );
-                if (!XMLChar.isValid(ch)) {
-                    // check if it is surrogate
-                    if (++index <length) {
-                        surrogates(ch, text.charAt(index), true);
-                    } else {
-                        fatalError("The character '"+ch+"' is an invalid XML character"); 
-                    }
-                    continue;
+            else {
+                final byte[] table = _escapeTable;
+                while ( index < length && ( ch = text.charAt( index ) ) < table.length &&
+                        ( table[ ch ] & EncodingInfo.CLEAN_TEXT ) != 0 ) {
+                    ++index;
                 }
-
-				if ( unescaped )
-                    _printer.printText( ch );
-                else
-                    printXMLChar( ch);
             }
+            if ( index > start ) {
+                _printer.printText( text, start, index - start );
+                if ( index == length ) {
+                    break;
+                }
+            }
+            ch = text.charAt( index++ );
+            if (!XMLChar.isValid(ch)) {
+                // check if it is surrogate
+                if ( index < length ) {
+                    surrogates(ch, text.charAt(index++), true);
+                } else {
+                    fatalError("The character '"+ch+"' is an invalid XML character"); 
+                }
+                continue;
+            }
+            if ( unescaped ) {
+                _printer.printText( ch );
+            } else
+                printXMLChar( ch );
         }
     }
 
@@ -1330,54 +1375,47 @@ extends BaseMarkupSerializer {
     protected void printText( char[] chars, int start, int length,
                               boolean preserveSpace, boolean unescaped ) throws IOException {
 
-        if ( preserveSpace ) {
-            // Preserving spaces: the text must print exactly as it is,
-            // without breaking when spaces appear in the text and without
-            // consolidating spaces. If a line terminator is used, a line
-            // break will occur.
-            while ( length-- > 0 ) {
-                char ch = chars[start++];
-                if (!XMLChar.isValid(ch)) {
-                    // check if it is surrogate
-                    if ( length-- > 0 ) {
-                        surrogates(ch, chars[start++], true);
-                    } 
-                    else {
-                        fatalError("The character '"+ch+"' is an invalid XML character"); 
-                    }
-                    continue;
+        // Spaces and line terminators are printed as they are, so
+        // preserving spaces or not makes no difference.
+        int end = start + length;
+        while ( start < end ) {
+            // print the run of characters which need no escaping at once
+            int runStart = start;
+            if ( unescaped ) {
+                while ( start < end && XMLChar.isValid( chars[start] ) ) {
+                    ++start;
                 }
-                if ( unescaped ) {
-                    _printer.printText( ch );
-                } 
-                else {
-                    printXMLChar( ch );
+            }
+            else {
+                final byte[] table = _escapeTable;
+                char ch;
+                while ( start < end && ( ch = chars[start] ) < table.length &&
+                        ( table[ ch ] & EncodingInfo.CLEAN_TEXT ) != 0 ) {
+                    ++start;
                 }
             }
-        } else {
-            // Not preserving spaces: print one part at a time, and
-            // use spaces between parts to break them into different
-            // lines. Spaces at beginning of line will be stripped
-            // by printing mechanism. Line terminator is treated
-            // no different than other text part.
-            while ( length-- > 0 ) {
-                char ch = chars[start++];
-                if (!XMLChar.isValid(ch)) {
-                    // check if it is surrogate
-                    if ( length-- > 0 ) {
-                        surrogates(ch, chars[start++], true);
-                    } 
-                    else {
-                        fatalError("The character '"+ch+"' is an invalid XML character"); 
-                    }
-                    continue;
+            if ( start > runStart ) {
+                _printer.printText( chars, runStart, start - runStart );
+                if ( start == end ) {
+                    break;
                 }
-                if ( unescaped ) {
-                    _printer.printText( ch );
+            }
+            char ch = chars[start++];
+            if (!XMLChar.isValid(ch)) {
+                // check if it is surrogate
+                if ( start < end ) {
+                    surrogates(ch, chars[start++], true);
                 } 
                 else {
-                    printXMLChar( ch );
+                    fatalError("The character '"+ch+"' is an invalid XML character"); 
                 }
+                continue;
+            }
+            if ( unescaped ) {
+                _printer.printText( ch );
+            } 
+            else {
+                printXMLChar( ch );
             }
         }
     }
@@ -0,0 +1,817 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xml.serialize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+import org.apache.xerces.dom.DOMMessageFormatter;
+import org.apache.xerces.util.XMLChar;
+
+/**
+ * Writes an XML document as a stream of calls, without building a DOM
+ * and without the per-element state objects of {@link XMLSerializer}.
+ * The element stack and the namespace bindings in scope are kept in
+ * arrays which grow as needed, so that writing a document does not
+ * allocate once the arrays have reached the depth of the document.
+ * <p>
+ * Names are printed as they are given and are not checked; callers
+ * writing many elements are expected to pass the same (interned) name
+ * strings each time. Text and attribute values are escaped as needed;
+ * characters which the output encoding cannot express, and characters
+ * outside the Basic Multilingual Plane, are printed as character
+ * references. The output format controls the encoding, the XML
+ * declaration, the document type declaration, indentation and the line
+ * separator. When indenting, each element, comment and processing
+ * instruction which is not mixed with text starts on a new line; long
+ * lines are not wrapped.
+ * <p>
+ * A document is written like this:
+ * <pre>
+ * XMLStreamSerializer out = new XMLStreamSerializer(stream, format);
+ * out.startDocument();
+ * out.startElement("", "http://example.org/orders", "orders");
+ * out.startElement("order");
+ * out.attribute("id", id);
+ * out.text(description);
+ * out.endElement();
+ * out.endDocument();
+ * </pre>
+ * An instance is not thread safe and writes a single document.
+ *
+ * @see XMLSerializer
+ *
+ * @version $Id$
+ */
+public class XMLStreamSerializer {
+
+    //
+    // Constants
+    //
+
+    /** Initial depth of the element and namespace stacks. */
+    private static final int INITIAL_DEPTH = 16;
+
+    /** Hexadecimal digits of character references. */
+    private static final char[] HEX_DIGITS = {
+        '0', '1', '2', '3', '4', '5', '6', '7',
+        '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    /** Spaces printed for indentation. */
+    private static final char[] SPACES = new char[64];
+
+    static {
+        for (int i = 0; i < SPACES.length; ++i) {
+            SPACES[i] = ' ';
+        }
+    }
+
+    /** The namespace bound to the prefix "xml". */
+    private static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+
+    //
+    // Data
+    //
+
+    /** The output format. */
+    private final OutputFormat fFormat;
+
+    /** The output encoding. */
+    private final EncodingInfo fEncodingInfo;
+
+    /** The escape table of the output encoding. */
+    private final byte[] fEscapeTable;
+
+    /** The printer, which buffers the output. */
+    private final Printer fPrinter;
+
+    /** True if the output is indented. */
+    private final boolean fIndenting;
+
+    /** Number of spaces per level of indentation. */
+    private final int fIndent;
+
+    /** The line separator. */
+    private final String fLineSeparator;
+
+    /** Prefixes of the open elements; empty if an element has no prefix. */
+    private String[] fElementPrefixes = new String[INITIAL_DEPTH];
+
+    /** Local names (or raw names) of the open elements. */
+    private String[] fElementNames = new String[INITIAL_DEPTH];
+
+    /** Number of namespace bindings in scope when each element was opened. */
+    private int[] fNamespaceContext = new int[INITIAL_DEPTH];
+
+    /** Number of open elements. */
+    private int fDepth = 0;
+
+    /** Prefixes of the namespace bindings in scope. */
+    private String[] fPrefixes = new String[INITIAL_DEPTH];
+
+    /** Namespace URIs of the namespace bindings in scope. */
+    private String[] fURIs = new String[INITIAL_DEPTH];
+
+    /** Number of namespace bindings in scope. */
+    private int fBindingCount = 0;
+
+    /** True if the start tag of the current element is not closed yet. */
+    private boolean fStartTagOpen = false;
+
+    /**
+     * True if the last thing printed in the current element (or at the
+     * top level) was markup other than text, which means that the next
+     * tag starts on a new line when indenting.
+     */
+    private boolean fAfterMarkup = false;
+
+    /** True once anything has been printed. */
+    private boolean fStarted = false;
+
+    /** True once the root element has been started. */
+    private boolean fRootStarted = false;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a serializer which writes to an output stream in the
+     * encoding of the output format.
+     *
+     * @param output The output stream
+     * @param format The output format
+     * @throws UnsupportedEncodingException The encoding is not supported
+     */
+    public XMLStreamSerializer(OutputStream output, OutputFormat format)
+        throws UnsupportedEncodingException {
+        this(format, format.getEncodingInfo().getWriter(output));
+    }
+
+    /**
+     * Constructs a serializer which writes to a writer. The encoding of
+     * the output format is only used to decide which characters must be
+     * printed as character references.
+     *
+     * @param writer The writer
+     * @param format The output format
+     * @throws UnsupportedEncodingException The encoding is not supported
+     */
+    public XMLStreamSerializer(Writer writer, OutputFormat format)
+        throws UnsupportedEncodingException {
+        this(format, writer);
+    }
+
+    private XMLStreamSerializer(OutputFormat format, Writer writer)
+        throws UnsupportedEncodingException {
+        fFormat = format;
+        fEncodingInfo = format.getEncodingInfo();
+        fEscapeTable = fEncodingInfo.getEscapeTable();
+        fIndenting = format.getIndenting();
+        fIndent = fIndenting ? format.getIndent() : 0;
+        fLineSeparator = format.getLineSeparator();
+        fPrinter = new Printer(writer, format);
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Starts the document, printing the XML declaration unless the output
+     * format omits it. Calling this method is optional when there is no
+     * XML declaration to print.
+     */
+    public void startDocument() throws IOException {
+        if (fStarted) {
+            throw new IllegalStateException(getMessage("DocumentStarted"));
+        }
+        fStarted = true;
+        if (!fFormat.getOmitXMLDeclaration()) {
+            fPrinter.printText("<?xml version=\"");
+            fPrinter.printText(fFormat.getVersion() != null ? fFormat.getVersion() : "1.0");
+            fPrinter.printText('"');
+            if (fFormat.getEncoding() != null) {
+                fPrinter.printText(" encoding=\"");
+                fPrinter.printText(fFormat.getEncoding());
+                fPrinter.printText('"');
+            }
+            if (fFormat.getStandalone() && fFormat.getDoctypeSystem() == null &&
+                fFormat.getDoctypePublic() == null) {
+                fPrinter.printText(" standalone=\"yes\"");
+            }
+            fPrinter.printText("?>");
+            fPrinter.printText(fLineSeparator);
+        }
+    }
+
+    /**
+     * Closes all open elements and flushes the output.
+     */
+    public void endDocument() throws IOException {
+        while (fDepth > 0) {
+            endElement();
+        }
+        if (fIndenting && fAfterMarkup) {
+            fPrinter.printText(fLineSeparator);
+        }
+        fPrinter.flush();
+    }
+
+    /**
+     * Starts an element which does not belong to any namespace, or whose
+     * prefix has been declared with {@link #namespace}. The name is
+     * printed as it is.
+     *
+     * @param name The raw name of the element
+     */
+    public void startElement(String name) throws IOException {
+        startElement(null, name);
+    }
+
+    /**
+     * Starts an element in a namespace. The prefix is declared on the
+     * element unless it is already bound to the namespace.
+     *
+     * @param prefix The prefix, or the empty string for the default namespace
+     * @param namespaceURI The namespace URI, or the empty string for none
+     * @param localName The local name of the element
+     */
+    public void startElement(String prefix, String namespaceURI, String localName)
+        throws IOException {
+        if (prefix == null) {
+            prefix = "";
+        }
+        startElement(prefix, localName);
+        if (!namespaceURI.equals(getNamespaceURI(prefix))) {
+            declareNamespace(prefix, namespaceURI);
+        }
+    }
+
+    /**
+     * Ends the current element. An element without content is closed
+     * as an empty element tag.
+     */
+    public void endElement() throws IOException {
+        if (fDepth == 0) {
+            throw new IllegalStateException(getMessage("NoElementOpen"));
+        }
+        --fDepth;
+        if (fStartTagOpen) {
+            fPrinter.printText("/>");
+            fStartTagOpen = false;
+        }
+        else {
+            if (fIndenting && fAfterMarkup) {
+                breakLine();
+            }
+            fPrinter.printText("</");
+            printName(fElementPrefixes[fDepth], fElementNames[fDepth]);
+            fPrinter.printText('>');
+        }
+        fBindingCount = fNamespaceContext[fDepth];
+        fAfterMarkup = true;
+    }
+
+    /**
+     * Prints an attribute of the current element. The name is printed
+     * as it is.
+     *
+     * @param name The raw name of the attribute
+     * @param value The attribute value
+     */
+    public void attribute(String name, String value) throws IOException {
+        checkStartTag();
+        fPrinter.printText(' ');
+        fPrinter.printText(name);
+        printAttributeValue(value);
+    }
+
+    /**
+     * Prints an attribute of the current element which belongs to a
+     * namespace. The prefix is declared on the element unless it is
+     * already bound to the namespace. If the prefix is already bound to
+     * a different namespace on the current element, another prefix
+     * bound to the namespace is used, or a new one is declared.
+     *
+     * @param prefix The prefix, which must not be empty
+     * @param namespaceURI The namespace URI
+     * @param localName The local name of the attribute
+     * @param value The attribute value
+     */
+    public void attribute(String prefix, String namespaceURI, String localName,
+                          String value) throws IOException {
+        checkStartTag();
+        if (!namespaceURI.equals(getNamespaceURI(prefix))) {
+            if (isDeclared(prefix)) {
+                prefix = getPrefix(namespaceURI);
+            }
+            if (prefix == null) {
+                prefix = generatePrefix();
+            }
+            if (!namespaceURI.equals(getNamespaceURI(prefix))) {
+                declareNamespace(prefix, namespaceURI);
+            }
+        }
+        fPrinter.printText(' ');
+        printName(prefix, localName);
+        printAttributeValue(value);
+    }
+
+    /**
+     * Declares a namespace on the current element, unless the prefix is
+     * already bound to the namespace.
+     *
+     * @param prefix The prefix, or the empty string for the default namespace
+     * @param namespaceURI The namespace URI
+     * @throws IllegalStateException if the prefix has already been bound
+     *         to a different namespace on the current element
+     */
+    public void namespace(String prefix, String namespaceURI) throws IOException {
+        checkStartTag();
+        if (prefix == null) {
+            prefix = "";
+        }
+        if (!namespaceURI.equals(getNamespaceURI(prefix))) {
+            if (isDeclared(prefix)) {
+                throw new IllegalStateException(getMessage("PrefixDeclared", prefix));
+            }
+            declareNamespace(prefix, namespaceURI);
+        }
+    }
+
+    /**
+     * Returns the namespace URI bound to a prefix, the empty string for
+     * the default namespace if none is declared, or null if the prefix
+     * is not bound.
+     *
+     * @param prefix The prefix, or the empty string for the default namespace
+     */
+    public String getNamespaceURI(String prefix) {
+        for (int i = fBindingCount - 1; i >= 0; --i) {
+            if (prefix.equals(fPrefixes[i])) {
+                return fURIs[i];
+            }
+        }
+        if (prefix.length() == 0) {
+            return "";
+        }
+        if (prefix.equals("xml")) {
+            return XML_NAMESPACE;
+        }
+        return null;
+    }
+
+    /**
+     * Prints text content of the current element.
+     *
+     * @param text The text
+     */
+    public void text(String text) throws IOException {
+        startContent();
+        final byte[] table = fEscapeTable;
+        int length = text.length();
+        int index = 0;
+        while (index < length) {
+            int start = index;
+            char ch;
+            while (index < length && (ch = text.charAt(index)) < table.length &&
+                   (table[ch] & EncodingInfo.CLEAN_TEXT) != 0) {
+                ++index;
+            }
+            if (index > start) {
+                fPrinter.printText(text, start, index - start);
+                if (index == length) {
+                    break;
+                }
+            }
+            ch = text.charAt(index++);
+            if (XMLChar.isHighSurrogate(ch) && index < length) {
+                printSurrogates(ch, text.charAt(index++));
+            }
+            else {
+                printEscaped(ch, false);
+            }
+        }
+        fAfterMarkup = false;
+    }
+
+    /**
+     * Prints text content of the current element.
+     *
+     * @param chars The characters of the text
+     * @param start The offset of the first character
+     * @param length The number of characters
+     */
+    public void text(char[] chars, int start, int length) throws IOException {
+        startContent();
+        final byte[] table = fEscapeTable;
+        int end = start + length;
+        while (start < end) {
+            int runStart = start;
+            char ch;
+            while (start < end && (ch = chars[start]) < table.length &&
+                   (table[ch] & EncodingInfo.CLEAN_TEXT) != 0) {
+                ++start;
+            }
+            if (start > runStart) {
+                fPrinter.printText(chars, runStart, start - runStart);
+                if (start == end) {
+                    break;
+                }
+            }
+            ch = chars[start++];
+            if (XMLChar.isHighSurrogate(ch) && start < end) {
+                printSurrogates(ch, chars[start++]);
+            }
+            else {
+                printEscaped(ch, false);
+            }
+        }
+        fAfterMarkup = false;
+    }
+
+    /**
+     * Prints a CDATA section. The section is split where the text contains
+     * "]]&gt;" or a character which the output encoding cannot express.
+     *
+     * @param text The text of the CDATA section
+     */
+    public void cdata(String text) throws IOException {
+        startContent();
+        final byte[] table = fEscapeTable;
+        int length = text.length();
+        fPrinter.printText("<![CDATA[");
+        for (int index = 0; index < length; ++index) {
+            int start = index;
+            char ch;
+            while (index < length && (ch = text.charAt(index)) < table.length &&
+                   (table[ch] & EncodingInfo.CLEAN_CDATA) != 0) {
+                ++index;
+            }
+            if (index > start) {
+                fPrinter.printText(text, start, index - start);
+                if (index == length) {
+                    break;
+                }
+            }
+            ch = text.charAt(index);
+            if (ch == ']') {
+                fPrinter.printText(ch);
+                if (index + 2 < length && text.charAt(index + 1) == ']' &&
+                    text.charAt(index + 2) == '>') {
+                    fPrinter.printText("]]]><![CDATA[>");
+                    index += 2;
+                }
+            }
+            else if (XMLChar.isHighSurrogate(ch) && index + 1 < length) {
+                int supplemental = checkSurrogates(ch, text.charAt(++index));
+                fPrinter.printText("]]>");
+                printHex(supplemental);
+                fPrinter.printText("<![CDATA[");
+            }
+            else if (!XMLChar.isValid(ch)) {
+                invalidChar(ch);
+            }
+            else if (ch != 0x7F && fEncodingInfo.isPrintable(ch)) {
+                fPrinter.printText(ch);
+            }
+            else {
+                fPrinter.printText("]]>");
+                printHex(ch);
+                fPrinter.printText("<![CDATA[");
+            }
+        }
+        fPrinter.printText("]]>");
+        fAfterMarkup = false;
+    }
+
+    /**
+     * Prints a comment. The text is printed as it is and must not
+     * contain "--".
+     *
+     * @param text The text of the comment
+     */
+    public void comment(String text) throws IOException {
+        startMarkup();
+        fPrinter.printText("<!--");
+        fPrinter.printText(text);
+        fPrinter.printText("-->");
+        fAfterMarkup = true;
+    }
+
+    /**
+     * Prints a processing instruction. The target and data are printed
+     * as they are.
+     *
+     * @param target The target of the processing instruction
+     * @param data The data of the processing instruction, or null
+     */
+    public void processingInstruction(String target, String data) throws IOException {
+        startMarkup();
+        fPrinter.printText("<?");
+        fPrinter.printText(target);
+        if (data != null && data.length() > 0) {
+            fPrinter.printText(' ');
+            fPrinter.printText(data);
+        }
+        fPrinter.printText("?>");
+        fAfterMarkup = true;
+    }
+
+    /**
+     * Flushes the output. Open elements are left open.
+     */
+    public void flush() throws IOException {
+        fPrinter.flush();
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Starts an element named by a prefix (possibly null) and a name. */
+    private void startElement(String prefix, String name) throws IOException {
+        if (!fRootStarted) {
+            fRootStarted = true;
+            if (!fFormat.getOmitDocumentType() && fFormat.getDoctypeSystem() != null) {
+                startMarkup();
+                printDoctype(prefix, name);
+            }
+        }
+        startMarkup();
+        if (fDepth == fElementNames.length) {
+            int depth = fDepth << 1;
+            String[] prefixes = new String[depth];
+            System.arraycopy(fElementPrefixes, 0, prefixes, 0, fDepth);
+            fElementPrefixes = prefixes;
+            String[] names = new String[depth];
+            System.arraycopy(fElementNames, 0, names, 0, fDepth);
+            fElementNames = names;
+            int[] context = new int[depth];
+            System.arraycopy(fNamespaceContext, 0, context, 0, fDepth);
+            fNamespaceContext = context;
+        }
+        fElementPrefixes[fDepth] = prefix;
+        fElementNames[fDepth] = name;
+        fNamespaceContext[fDepth] = fBindingCount;
+        ++fDepth;
+        fPrinter.printText('<');
+        printName(prefix, name);
+        fStartTagOpen = true;
+        fAfterMarkup = false;
+    }
+
+    /** Prints the document type declaration of the output format. */
+    private void printDoctype(String prefix, String name) throws IOException {
+        fPrinter.printText("<!DOCTYPE ");
+        printName(prefix, name);
+        if (fFormat.getDoctypePublic() != null) {
+            fPrinter.printText(" PUBLIC \"");
+            fPrinter.printText(fFormat.getDoctypePublic());
+            fPrinter.printText("\" \"");
+        }
+        else {
+            fPrinter.printText(" SYSTEM \"");
+        }
+        fPrinter.printText(fFormat.getDoctypeSystem());
+        fPrinter.printText("\">");
+        fPrinter.printText(fLineSeparator);
+        fAfterMarkup = false;
+    }
+
+    /** Closes the start tag of the current element before its content. */
+    private void startContent() throws IOException {
+        if (fDepth == 0) {
+            throw new IllegalStateException(getMessage("NoElementOpen"));
+        }
+        if (fStartTagOpen) {
+            fPrinter.printText('>');
+            fStartTagOpen = false;
+        }
+    }
+
+    /**
+     * Closes the start tag of the current element, if any, and starts a
+     * new line before markup when indenting.
+     */
+    private void startMarkup() throws IOException {
+        fStarted = true;
+        if (fStartTagOpen) {
+            fPrinter.printText('>');
+            fStartTagOpen = false;
+            if (fIndenting) {
+                breakLine();
+            }
+        }
+        else if (fIndenting && fAfterMarkup) {
+            breakLine();
+        }
+    }
+
+    /** Starts a new line indented to the current depth. */
+    private void breakLine() throws IOException {
+        fPrinter.printText(fLineSeparator);
+        for (int count = fDepth * fIndent; count > 0; count -= SPACES.length) {
+            fPrinter.printText(SPACES, 0, Math.min(count, SPACES.length));
+        }
+    }
+
+    /** Throws if attributes can no longer be added to the current element. */
+    private void checkStartTag() {
+        if (!fStartTagOpen) {
+            throw new IllegalStateException(getMessage("StartTagClosed"));
+        }
+    }
+
+    /** Returns true if the prefix is declared on the current element. */
+    private boolean isDeclared(String prefix) {
+        for (int i = fBindingCount - 1; i >= fNamespaceContext[fDepth - 1]; --i) {
+            if (prefix.equals(fPrefixes[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 
+     * Returns a non-empty prefix which is bound to the namespace and not
+     * hidden by a closer declaration, or null if there is none.
+     */
+    private String getPrefix(String namespaceURI) {
+        for (int i = fBindingCount - 1; i >= 0; --i) {
+            if (namespaceURI.equals(fURIs[i]) && fPrefixes[i].length() > 0 &&
+                namespaceURI.equals(getNamespaceURI(fPrefixes[i]))) {
+                return fPrefixes[i];
+            }
+        }
+        return null;
+    }
+
+    /** Returns a prefix of the form NS<i>n</i> which is not bound. */
+    private String generatePrefix() {
+        for (int i = 1; ; ++i) {
+            String prefix = "NS" + i;
+            if (getNamespaceURI(prefix) == null) {
+                return prefix;
+            }
+        }
+    }
+
+    /** Binds a prefix on the current element and prints the declaration. */
+    private void declareNamespace(String prefix, String namespaceURI) throws IOException {
+        if (fBindingCount == fPrefixes.length) {
+            String[] prefixes = new String[fBindingCount << 1];
+            System.arraycopy(fPrefixes, 0, prefixes, 0, fBindingCount);
+            fPrefixes = prefixes;
+            String[] uris = new String[fBindingCount << 1];
+            System.arraycopy(fURIs, 0, uris, 0, fBindingCount);
+            fURIs = uris;
+        }
+        fPrefixes[fBindingCount] = prefix;
+        fURIs[fBindingCount] = namespaceURI;
+        ++fBindingCount;
+        fPrinter.printText(' ');
+        if (prefix.length() == 0) {
+            fPrinter.printText("xmlns");
+        }
+        else {
+            fPrinter.printText("xmlns:");
+            fPrinter.printText(prefix);
+        }
+        printAttributeValue(namespaceURI);
+    }
+
+    /** Prints a name with an optional prefix. */
+    private void printName(String prefix, String name) throws IOException {
+        if (prefix != null && prefix.length() > 0) {
+            fPrinter.printText(prefix);
+            fPrinter.printText(':');
+        }
+        fPrinter.printText(name);
+    }
+
+    /** Prints ="value" with the value escaped. */
+    private void printAttributeValue(String value) throws IOException {
+        final byte[] table = fEscapeTable;
+        int length = value.length();
+        fPrinter.printText("=\"");
+        int index = 0;
+        while (index < length) {
+            int start = index;
+            char ch;
+            while (index < length && (ch = value.charAt(index)) < table.length &&
+                   (table[ch] & EncodingInfo.CLEAN_ATTR) != 0) {
+                ++index;
+            }
+            if (index > start) {
+                fPrinter.printText(value, start, index - start);
+                if (index == length) {
+                    break;
+                }
+            }
+            ch = value.charAt(index++);
+            if (XMLChar.isHighSurrogate(ch) && index < length) {
+                printSurrogates(ch, value.charAt(index++));
+            }
+            else {
+                printEscaped(ch, true);
+            }
+        }
+        fPrinter.printText('"');
+    }
+
+    /**
+     * Prints a character which is not printed unchanged in text content
+     * or attribute values.
+     */
+    private void printEscaped(char ch, boolean attribute) throws IOException {
+        if (ch == '<') {
+            fPrinter.printText("&lt;");
+        }
+        else if (ch == '&') {
+            fPrinter.printText("&amp;");
+        }
+        else if (ch == '>' && !attribute) {
+            fPrinter.printText("&gt;");
+        }
+        else if (ch == '"' && attribute) {
+            fPrinter.printText("&quot;");
+        }
+        else if (!XMLChar.isValid(ch)) {
+            invalidChar(ch);
+        }
+        else if (ch >= ' ' && fEncodingInfo.isPrintable(ch)) {
+            fPrinter.printText(ch);
+        }
+        else {
+            printHex(ch);
+        }
+    }
+
+    /** Prints a surrogate pair as a character reference. */
+    private void printSurrogates(char high, char low) throws IOException {
+        printHex(checkSurrogates(high, low));
+    }
+
+    /** Returns the character of a surrogate pair, or throws if it is invalid. */
+    private int checkSurrogates(char high, char low) throws IOException {
+        if (!XMLChar.isLowSurrogate(low)) {
+            invalidChar(low);
+        }
+        int supplemental = XMLChar.supplemental(high, low);
+        if (!XMLChar.isValid(supplemental)) {
+            invalidChar(supplemental);
+        }
+        return supplemental;
+    }
+
+    /** Prints a character reference without allocating. */
+    private void printHex(int ch) throws IOException {
+        fPrinter.printText("&#x");
+        int shift = 20;
+        while (shift > 0 && (ch >> shift) == 0) {
+            shift -= 4;
+        }
+        for (; shift >= 0; shift -= 4) {
+            fPrinter.printText(HEX_DIGITS[(ch >> shift) & 0xF]);
+        }
+        fPrinter.printText(';');
+    }
+
+    /** Reports a character which may not appear in an XML document. */
+    private void invalidChar(int ch) throws IOException {
+        throw new IOException(getMessage("InvalidXMLChar", Integer.toHexString(ch)));
+    }
+
+    /** Returns a localized serializer message. */
+    private static String getMessage(String key) {
+        return DOMMessageFormatter.formatMessage(
+            DOMMessageFormatter.SERIALIZER_DOMAIN, key, null);
+    }
+
+    /** Returns a localized serializer message with one argument. */
+    private static String getMessage(String key, String arg) {
+        return DOMMessageFormatter.formatMessage(
+            DOMMessageFormatter.SERIALIZER_DOMAIN, key, new Object[] {arg});
+    }
+
+} // class XMLStreamSerializer
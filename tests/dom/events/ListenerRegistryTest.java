@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.events;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.dom.DocumentImpl;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+import org.w3c.dom.ranges.Range;
+import org.w3c.dom.traversal.NodeFilter;
+import org.w3c.dom.traversal.NodeIterator;
+
+/**
+ * Tests the listener counts kept by each document, the dispatch of
+ * events to listeners which are removed while an event is dispatched,
+ * and the ranges and node iterators which have been garbage collected.
+ * 
+ * @version $Id$
+ */
+public class ListenerRegistryTest extends TestCase {
+    
+    private static final String INSERTED = "DOMNodeInserted";
+    private static final String REMOVED = "DOMNodeRemoved";
+    
+    private TestDocument fDocument;
+    private Element fRoot;
+    private Element fChild;
+    
+    protected void setUp() {
+        fDocument = new TestDocument();
+        fRoot = fDocument.createElement("root");
+        fDocument.appendChild(fRoot);
+        fChild = fDocument.createElement("child");
+        fRoot.appendChild(fChild);
+    }
+    
+    public void testAddAndRemove() throws Exception {
+        Recorder listener = new Recorder("l");
+        EventTarget root = (EventTarget) fRoot;
+        EventTarget child = (EventTarget) fChild;
+        assertNull(fDocument.getListenerCounts());
+        
+        root.addEventListener(INSERTED, listener, false);
+        assertCount(INSERTED, 0, 1);
+        // a second registration in the same phase is ignored
+        root.addEventListener(INSERTED, listener, false);
+        assertCount(INSERTED, 0, 1);
+        root.addEventListener(INSERTED, listener, true);
+        child.addEventListener(INSERTED, listener, false);
+        child.addEventListener(REMOVED, listener, false);
+        assertCount(INSERTED, 1, 2);
+        assertCount(REMOVED, 0, 1);
+        
+        fChild.appendChild(fDocument.createTextNode("text"));
+        assertEquals("l:DOMNodeInserted l:DOMNodeInserted l:DOMNodeInserted", 
+                     listener.toString());
+        
+        // removing a listener which is not registered changes nothing
+        child.removeEventListener(INSERTED, listener, true);
+        root.removeEventListener(REMOVED, listener, false);
+        assertCount(INSERTED, 1, 2);
+        assertCount(REMOVED, 0, 1);
+        
+        root.removeEventListener(INSERTED, listener, true);
+        root.removeEventListener(INSERTED, listener, false);
+        assertCount(INSERTED, 0, 1);
+        child.removeEventListener(INSERTED, listener, false);
+        assertCount(INSERTED, 0, 0);
+        child.removeEventListener(REMOVED, listener, false);
+        assertNull(fDocument.getListenerCounts());
+        
+        listener.clear();
+        fChild.appendChild(fDocument.createTextNode("text"));
+        fChild.removeChild(fChild.getFirstChild());
+        assertEquals("", listener.toString());
+    }
+    
+    public void testCountsPerDocument() throws Exception {
+        TestDocument other = new TestDocument();
+        Element otherRoot = other.createElement("root");
+        other.appendChild(otherRoot);
+        Recorder listener = new Recorder("l");
+        Recorder otherListener = new Recorder("o");
+        ((EventTarget) fRoot).addEventListener(INSERTED, listener, false);
+        ((EventTarget) otherRoot).addEventListener(INSERTED, otherListener, false);
+        assertCount(INSERTED, 0, 1);
+        assertEquals(1, count(other, INSERTED, false));
+        
+        // removing the listener of one document leaves the other alone
+        ((EventTarget) fRoot).removeEventListener(INSERTED, listener, false);
+        assertNull(fDocument.getListenerCounts());
+        assertEquals(1, count(other, INSERTED, false));
+        otherRoot.appendChild(other.createElement("child"));
+        assertEquals("o:DOMNodeInserted", otherListener.toString());
+    }
+    
+    public void testRenameNode() throws Exception {
+        Recorder listener = new Recorder("l");
+        ((EventTarget) fChild).addEventListener(INSERTED, listener, false);
+        ((EventTarget) fChild).addEventListener(REMOVED, listener, true);
+        
+        // a node without a namespace is replaced by a new node, which
+        // gets copies of the listeners
+        Node renamed = fDocument.renameNode(fChild, "urn:test", "p:renamed");
+        assertNotSame(fChild, renamed);
+        assertCount(INSERTED, 0, 2);
+        assertCount(REMOVED, 2, 0);
+        listener.clear();
+        renamed.appendChild(fDocument.createTextNode("text"));
+        assertEquals("l:DOMNodeInserted", listener.toString());
+        
+        ((EventTarget) renamed).removeEventListener(INSERTED, listener, false);
+        ((EventTarget) renamed).removeEventListener(REMOVED, listener, true);
+        assertCount(INSERTED, 0, 1);
+        assertCount(REMOVED, 1, 0);
+        ((EventTarget) fChild).removeEventListener(INSERTED, listener, false);
+        ((EventTarget) fChild).removeEventListener(REMOVED, listener, true);
+        assertNull(fDocument.getListenerCounts());
+        
+        // a node with a namespace is renamed in place and keeps its listeners
+        ((EventTarget) renamed).addEventListener(INSERTED, listener, false);
+        assertSame(renamed, fDocument.renameNode(renamed, "urn:test", "p:again"));
+        assertCount(INSERTED, 0, 1);
+    }
+    
+    public void testRemoveDuringDispatch() throws Exception {
+        final EventTarget child = (EventTarget) fChild;
+        final ArrayList calls = new ArrayList();
+        final Recorder second = new Recorder("second");
+        final Recorder added = new Recorder("added");
+        EventListener first = new EventListener() {
+            public void handleEvent(Event evt) {
+                calls.add("first");
+                // neither change applies to the event being dispatched
+                if (calls.size() == 1) {
+                    child.removeEventListener(INSERTED, second, false);
+                    child.addEventListener(INSERTED, added, false);
+                }
+            }
+        };
+        Recorder third = new Recorder("third");
+        child.addEventListener(INSERTED, first, false);
+        child.addEventListener(INSERTED, second, false);
+        child.addEventListener(INSERTED, third, false);
+        assertCount(INSERTED, 0, 3);
+        
+        fChild.appendChild(fDocument.createTextNode("text"));
+        assertEquals("[first]", calls.toString());
+        assertEquals("", second.toString());
+        assertEquals("third:DOMNodeInserted", third.toString());
+        assertEquals("", added.toString());
+        assertCount(INSERTED, 0, 3);
+        
+        fChild.appendChild(fDocument.createTextNode("text"));
+        assertEquals("[first, first]", calls.toString());
+        assertEquals("", second.toString());
+        assertEquals("added:DOMNodeInserted", added.toString());
+    }
+    
+    public void testRemoveSelfDuringDispatch() throws Exception {
+        final EventTarget root = (EventTarget) fRoot;
+        final Recorder bubbling = new Recorder("bubbling");
+        EventListener once = new EventListener() {
+            public void handleEvent(Event evt) {
+                root.removeEventListener(INSERTED, this, true);
+                root.removeEventListener(INSERTED, bubbling, false);
+            }
+        };
+        root.addEventListener(INSERTED, once, true);
+        root.addEventListener(INSERTED, bubbling, false);
+        // the capturing listener removes itself and the bubbling listener 
+        // of the same node before the event bubbles up to it
+        fChild.appendChild(fDocument.createTextNode("text"));
+        assertEquals("", bubbling.toString());
+        assertNull(fDocument.getListenerCounts());
+    }
+    
+    public void testClearedRanges() throws Exception {
+        Text text = fDocument.createTextNode("0123456789");
+        fChild.appendChild(text);
+        Range range = fDocument.createRange();
+        range.setStart(text, 4);
+        range.setEnd(text, 8);
+        for (int i = 0; i < 100; ++i) {
+            fDocument.createRange().selectNode(fChild);
+        }
+        assertEquals(101, fDocument.getRangeCount());
+        
+        // each mutation drops the references which have been cleared
+        for (int i = 0; i < 50 && fDocument.getRangeCount() > 1; ++i) {
+            System.gc();
+            Thread.sleep(10);
+            text.insertData(0, "x");
+        }
+        assertEquals(1, fDocument.getRangeCount());
+        text.deleteData(0, text.getLength() - 10);
+        assertEquals(4, range.getStartOffset());
+        assertEquals(8, range.getEndOffset());
+        text.deleteData(0, 2);
+        assertEquals(2, range.getStartOffset());
+        assertEquals(6, range.getEndOffset());
+        range.detach();
+        assertEquals(0, fDocument.getRangeCount());
+    }
+    
+    public void testClearedIterators() throws Exception {
+        for (int i = 0; i < 10; ++i) {
+            fChild.appendChild(fDocument.createElement("e" + i));
+        }
+        NodeIterator iterator = fDocument.createNodeIterator(fChild, 
+            NodeFilter.SHOW_ELEMENT, null, true);
+        for (int i = 0; i < 100; ++i) {
+            fDocument.createNodeIterator(fRoot, NodeFilter.SHOW_ALL, null, true).nextNode();
+        }
+        assertEquals(101, fDocument.getIteratorCount());
+        assertSame(fChild, iterator.nextNode());
+        assertEquals("e0", iterator.nextNode().getNodeName());
+        
+        // each removal drops the references which have been cleared
+        for (int i = 0; i < 50 && fDocument.getIteratorCount() > 1; ++i) {
+            System.gc();
+            Thread.sleep(10);
+            fChild.appendChild(fDocument.createElement("x"));
+            fChild.removeChild(fChild.getLastChild());
+        }
+        assertEquals(1, fDocument.getIteratorCount());
+        // the live iterator still follows the removal of its reference node
+        fChild.removeChild(fChild.getFirstChild());
+        assertEquals("e1", iterator.nextNode().getNodeName());
+        iterator.detach();
+        assertEquals(0, fDocument.getIteratorCount());
+    }
+    
+    private void assertCount(String type, int captures, int bubbles) throws Exception {
+        assertEquals(type + " captures", captures, count(fDocument, type, true));
+        assertEquals(type + " bubbles", bubbles, count(fDocument, type, false));
+    }
+    
+    /** 
+     * Returns the number of capturing or bubbling listeners of the given
+     * type counted by a document.
+     */
+    private static int count(TestDocument document, String type, boolean useCapture) 
+        throws Exception {
+        if (document.getListenerCounts() == null) {
+            return 0;
+        }
+        Object count = document.getListenerCounts().get(type);
+        if (count == null) {
+            return 0;
+        }
+        Field field = count.getClass().getField(useCapture ? "captures" : "bubbles");
+        field.setAccessible(true);
+        return field.getInt(count);
+    }
+    
+    /** A document exposing its listener counts, ranges and iterators. */
+    private static class TestDocument extends DocumentImpl {
+        
+        private static final long serialVersionUID = 1L;
+        
+        Map getListenerCounts() {
+            return listenerCounts;
+        }
+        
+        int getRangeCount() {
+            return ranges != null ? ranges.size() : 0;
+        }
+        
+        int getIteratorCount() {
+            return iterators != null ? iterators.size() : 0;
+        }
+    }
+    
+    /** Records the types of the events it receives. */
+    private static class Recorder implements EventListener {
+        
+        private final String fName;
+        private final StringBuffer fEvents = new StringBuffer();
+        
+        Recorder(String name) {
+            fName = name;
+        }
+        
+        public void handleEvent(Event evt) {
+            if (fEvents.length() > 0) {
+                fEvents.append(' ');
+            }
+            fEvents.append(fName).append(':').append(evt.getType());
+        }
+        
+        void clear() {
+            fEvents.setLength(0);
+        }
+        
+        public String toString() {
+            return fEvents.toString();
+        }
+    }
+
+}
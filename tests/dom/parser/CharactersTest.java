@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.parser;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.dom.DeferredDocumentImpl;
+import org.apache.xerces.dom.DeferredNode;
+import org.apache.xerces.parsers.DOMParser;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests that the character chunks reported by the scanner are stored
+ * in a single DOM node, with and without deferred node expansion.
+ * 
+ * @version $Id$
+ */
+public class CharactersTest extends TestCase {
+    
+    private static final String DEFER_NODE_EXPANSION = 
+        "http://apache.org/xml/features/dom/defer-node-expansion";
+    private static final String CREATE_ENTITY_REF_NODES = 
+        "http://apache.org/xml/features/dom/create-entity-ref-nodes";
+    private static final String CREATE_CDATA_NODES = 
+        "http://apache.org/xml/features/create-cdata-nodes";
+    
+    /** Longer than the buffer of the scanner, so read in several chunks. */
+    private static final String TEXT = text(100000);
+    
+    private static final String DTD = 
+        "<!DOCTYPE root [<!ENTITY e '" + text(5000) + "'>]>";
+    
+    private boolean fDefer;
+    
+    public void testLargeText() throws Exception {
+        checkText("<root>" + TEXT + "</root>", TEXT);
+    }
+    
+    public void testLargeTextDeferred() throws Exception {
+        fDefer = true;
+        testLargeText();
+    }
+    
+    public void testReferences() throws Exception {
+        checkText("<root>" + TEXT + "&amp;&#x41;&lt;" + TEXT + "</root>", 
+                  TEXT + "&A<" + TEXT);
+    }
+    
+    public void testReferencesDeferred() throws Exception {
+        fDefer = true;
+        testReferences();
+    }
+    
+    public void testCDATABoundaries() throws Exception {
+        Element root = parse("<root>" + TEXT + "<![CDATA[" + TEXT + "]]>" + TEXT + 
+                             "<![CDATA[y]]><![CDATA[x]]></root>", true, true);
+        assertChildren(root, 5);
+        NodeList children = root.getChildNodes();
+        assertNode(children.item(0), Node.TEXT_NODE, TEXT);
+        assertNode(children.item(1), Node.CDATA_SECTION_NODE, TEXT);
+        assertNode(children.item(2), Node.TEXT_NODE, TEXT);
+        assertNode(children.item(3), Node.CDATA_SECTION_NODE, "y");
+        assertNode(children.item(4), Node.CDATA_SECTION_NODE, "x");
+    }
+    
+    public void testCDATABoundariesDeferred() throws Exception {
+        fDefer = true;
+        testCDATABoundaries();
+    }
+    
+    public void testCDATAAsText() throws Exception {
+        Element root = parse("<root>" + TEXT + "<![CDATA[" + TEXT + "]]>" + TEXT + "</root>", 
+                             true, false);
+        assertChildren(root, 1);
+        assertNode(root.getFirstChild(), Node.TEXT_NODE, TEXT + TEXT + TEXT);
+    }
+    
+    public void testCDATAAsTextDeferred() throws Exception {
+        fDefer = true;
+        testCDATAAsText();
+    }
+    
+    public void testEntityBoundaries() throws Exception {
+        Element root = parse(DTD + "<root>" + TEXT + "&e;" + TEXT + "</root>", true, true);
+        assertChildren(root, 3);
+        NodeList children = root.getChildNodes();
+        assertNode(children.item(0), Node.TEXT_NODE, TEXT);
+        assertEquals(Node.ENTITY_REFERENCE_NODE, children.item(1).getNodeType());
+        assertChildren(children.item(1), 1);
+        assertNode(children.item(1).getFirstChild(), Node.TEXT_NODE, text(5000));
+        assertNode(children.item(2), Node.TEXT_NODE, TEXT);
+    }
+    
+    public void testEntityBoundariesDeferred() throws Exception {
+        fDefer = true;
+        testEntityBoundaries();
+    }
+    
+    public void testEntityExpanded() throws Exception {
+        Element root = parse(DTD + "<root>" + TEXT + "&e;&e;" + TEXT + "</root>", false, true);
+        assertChildren(root, 1);
+        assertNode(root.getFirstChild(), Node.TEXT_NODE, 
+                   TEXT + text(5000) + text(5000) + TEXT);
+    }
+    
+    public void testEntityExpandedDeferred() throws Exception {
+        fDefer = true;
+        testEntityExpanded();
+    }
+    
+    private void checkText(String document, String expected) throws Exception {
+        Element root = parse(document, true, true);
+        assertChildren(root, 1);
+        assertNode(root.getFirstChild(), Node.TEXT_NODE, expected);
+    }
+    
+    /** 
+     * Asserts the number of children of the node, checking the deferred
+     * nodes before they are expanded. 
+     */
+    private void assertChildren(Node node, int count) {
+        if (node instanceof DeferredNode) {
+            DeferredDocumentImpl document = (DeferredDocumentImpl) node.getOwnerDocument();
+            int deferred = 0;
+            int child = document.getLastChild(((DeferredNode) node).getNodeIndex(), false);
+            while (child != -1) {
+                deferred++;
+                child = document.getPrevSibling(child, false);
+            }
+            assertEquals(count, deferred);
+        }
+        assertEquals(count, node.getChildNodes().getLength());
+    }
+    
+    private void assertNode(Node node, short type, String value) {
+        assertEquals(type, node.getNodeType());
+        assertEquals(value, node.getNodeValue());
+    }
+    
+    private Element parse(String document, boolean entityRefNodes, 
+            boolean cdataNodes) throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.setFeature(DEFER_NODE_EXPANSION, fDefer);
+        parser.setFeature(CREATE_ENTITY_REF_NODES, entityRefNodes);
+        parser.setFeature(CREATE_CDATA_NODES, cdataNodes);
+        parser.parse(new InputSource(new StringReader(document)));
+        Document doc = parser.getDocument();
+        assertEquals(fDefer, doc instanceof DeferredDocumentImpl);
+        return doc.getDocumentElement();
+    }
+    
+    private static String text(int length) {
+        StringBuffer buffer = new StringBuffer(length);
+        for (int i = 0; i < length; i++) {
+            buffer.append((char) ('a' + i % 26));
+        }
+        return buffer.toString();
+    }
+
+} // class CharactersTest
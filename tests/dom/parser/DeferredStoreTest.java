@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.dom.DeferredDocumentImpl;
+import org.apache.xerces.dom.DeferredDocumentStore;
+import org.apache.xerces.impl.xs.XMLSchemaLoader;
+import org.apache.xerces.parsers.DOMParser;
+import org.apache.xerces.xs.XSModel;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.TypeInfo;
+import org.w3c.dom.ls.DOMImplementationLS;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests writing deferred documents to an image and reading them back.
+ * 
+ * @version $Id$
+ */
+public class DeferredStoreTest extends TestCase {
+    
+    private static final String DOCUMENT = 
+        "<?xml version='1.0' encoding='UTF-8'?>\n" +
+        "<!DOCTYPE p:root [\n" +
+        "<!ATTLIST p:item id ID #IMPLIED>\n" +
+        "]>\n" +
+        "<p:root xmlns:p='urn:p' xmlns='urn:default'>\n" +
+        "  <!-- comment -->\n" +
+        "  <p:item id='a' p:att='1' att='2'>text &amp; more<![CDATA[<cdata>]]></p:item>\n" +
+        "  <item id='b'><?pi data?><empty/></item>\n" +
+        "</p:root>";
+    
+    private static final String SCHEMA = 
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n" +
+        "  <xs:element name='root'>\n" +
+        "    <xs:complexType>\n" +
+        "      <xs:sequence>\n" +
+        "        <xs:element name='number' type='xs:int'/>\n" +
+        "        <xs:element name='code' type='code'/>\n" +
+        "      </xs:sequence>\n" +
+        "      <xs:attribute name='date' type='xs:date'/>\n" +
+        "    </xs:complexType>\n" +
+        "  </xs:element>\n" +
+        "  <xs:simpleType name='code'>\n" +
+        "    <xs:restriction base='xs:string'/>\n" +
+        "  </xs:simpleType>\n" +
+        "</xs:schema>";
+    
+    private File fFile;
+    private File fSchema;
+    
+    protected void setUp() throws Exception {
+        fFile = File.createTempFile("xdom", ".img");
+        fSchema = File.createTempFile("xdom", ".xsd");
+        FileOutputStream out = new FileOutputStream(fSchema);
+        out.write(SCHEMA.getBytes("UTF-8"));
+        out.close();
+    }
+    
+    protected void tearDown() {
+        fFile.delete();
+        fSchema.delete();
+    }
+    
+    public void testRoundTrip() throws Exception {
+        DeferredDocumentImpl stored = store(parse(DOCUMENT));
+        Document original = parse(DOCUMENT);
+        assertEquals(serialize(original), serialize(stored));
+        assertEquals("1.0", stored.getXmlVersion());
+        assertEquals("UTF-8", stored.getXmlEncoding());
+        Element item = stored.getElementById("a");
+        assertNotNull(item);
+        assertEquals("p:item", item.getNodeName());
+        assertEquals("b", ((Element) item.getNextSibling().getNextSibling()).getAttribute("id"));
+    }
+    
+    public void testXML11() throws Exception {
+        DeferredDocumentImpl stored = 
+            store(parse("<?xml version='1.1'?><root>\u2C00&#x1;</root>"));
+        assertEquals("1.1", stored.getXmlVersion());
+        assertEquals("\u2C00\u0001", stored.getDocumentElement().getTextContent());
+        // a name which is only allowed by XML 1.1
+        assertEquals("\u2C00", stored.createElement("\u2C00").getNodeName());
+        
+        stored = store(parse("<root/>"));
+        assertEquals("1.0", stored.getXmlVersion());
+        try {
+            stored.createElement("\u2C00");
+            fail("XML 1.1 name accepted in an XML 1.0 document.");
+        }
+        catch (DOMException e) {
+            assertEquals(DOMException.INVALID_CHARACTER_ERR, e.code);
+        }
+    }
+    
+    public void testTypeAnnotations() throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", true);
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        parser.setFeature("http://apache.org/xml/features/validation/schema", true);
+        InputSource source = new InputSource(new StringReader(
+            "<root xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'" +
+            " xsi:noNamespaceSchemaLocation='" + fSchema.toURI() + "'" +
+            " date='2001-01-01'><number>1</number><code>x</code></root>"));
+        parser.parse(source);
+        DeferredDocumentImpl document = (DeferredDocumentImpl) parser.getDocument();
+        FileOutputStream out = new FileOutputStream(fFile);
+        try {
+            DeferredDocumentStore.write(document, out);
+        }
+        finally {
+            out.close();
+        }
+        
+        XSModel model = new XMLSchemaLoader().loadURI(fSchema.toURI().toString());
+        DeferredDocumentImpl stored = DeferredDocumentStore.read(fFile, model);
+        Element root = stored.getDocumentElement();
+        // the type of the root element is anonymous
+        assertNull(root.getSchemaTypeInfo().getTypeName());
+        checkType(root.getAttributeNode("date").getSchemaTypeInfo(), 
+                  "http://www.w3.org/2001/XMLSchema", "date");
+        Element number = (Element) root.getFirstChild();
+        checkType(number.getSchemaTypeInfo(), "http://www.w3.org/2001/XMLSchema", "int");
+        checkType(((Element) number.getNextSibling()).getSchemaTypeInfo(), null, "code");
+        
+        // without a schema the annotations are dropped
+        stored = DeferredDocumentStore.read(fFile);
+        assertNull(((Element) stored.getDocumentElement().getFirstChild()).getSchemaTypeInfo().getTypeName());
+    }
+    
+    public void testTruncatedImage() throws Exception {
+        store(parse(DOCUMENT));
+        RandomAccessFile file = new RandomAccessFile(fFile, "rw");
+        file.setLength(file.length() - 6);
+        file.close();
+        try {
+            DeferredDocumentStore.read(fFile);
+            fail("Truncated image read.");
+        }
+        catch (IOException e) {
+        }
+    }
+    
+    public void testNamesInterned() throws Exception {
+        DeferredDocumentImpl stored = store(parse(DOCUMENT));
+        checkInterned(stored.getDocumentElement());
+        Element root = stored.getDocumentElement();
+        assertSame("urn:p", root.getNamespaceURI());
+        assertSame("p:root", root.getNodeName());
+    }
+    
+    public void testExpandedDocument() throws Exception {
+        DeferredDocumentImpl document = parse(DOCUMENT);
+        document.getDocumentElement().getFirstChild();
+        try {
+            DeferredDocumentStore.write(document, new FileOutputStream(fFile));
+            fail("Expanded document written.");
+        }
+        catch (IllegalStateException e) {
+        }
+    }
+    
+    private void checkType(TypeInfo type, String namespace, String name) {
+        assertEquals(namespace, type.getTypeNamespace());
+        assertEquals(name, type.getTypeName());
+    }
+    
+    private void checkInterned(Node node) {
+        assertSame(node.getNodeName(), node.getNodeName().intern());
+        if (node.getNamespaceURI() != null) {
+            assertSame(node.getNamespaceURI(), node.getNamespaceURI().intern());
+        }
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Attr attr = (Attr) attributes.item(i);
+                assertSame(attr.getName(), attr.getName().intern());
+                checkInterned(attr);
+            }
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                checkInterned(child);
+            }
+        }
+    }
+    
+    private DeferredDocumentImpl store(DeferredDocumentImpl document) throws Exception {
+        FileOutputStream out = new FileOutputStream(fFile);
+        try {
+            DeferredDocumentStore.write(document, out);
+        }
+        finally {
+            out.close();
+        }
+        return DeferredDocumentStore.read(fFile);
+    }
+    
+    private DeferredDocumentImpl parse(String xml) throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", true);
+        parser.parse(new InputSource(new StringReader(xml)));
+        return (DeferredDocumentImpl) parser.getDocument();
+    }
+    
+    private String serialize(Document document) {
+        DOMImplementationLS impl = (DOMImplementationLS) document.getImplementation();
+        return impl.createLSSerializer().writeToString(document);
+    }
+
+}
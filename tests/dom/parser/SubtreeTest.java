@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.parser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.DOMParser;
+import org.apache.xerces.parsers.DOMSubtreeHandler;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests the streaming of element subtrees from the DOM parser to a
+ * DOMSubtreeHandler.
+ * 
+ * @version $Id$
+ */
+public class SubtreeTest extends TestCase {
+    
+    private static final String SUBTREE_HANDLER = 
+        "http://apache.org/xml/properties/dom/subtree-handler";
+    private static final String SUBTREE_PATHS = 
+        "http://apache.org/xml/properties/dom/subtree-paths";
+    private static final String DISCARD_SUBTREE_SIBLINGS = 
+        "http://apache.org/xml/features/dom/discard-subtree-siblings";
+    
+    private final ArrayList fSubtrees = new ArrayList();
+    private boolean fDiscardSiblings;
+    
+    protected void setUp() {
+        fDiscardSiblings = false;
+    }
+    
+    public void testRecords() throws Exception {
+        Document doc = parse("<records>\n" +
+                             "  <record id='1'><a>x</a><record id='nested'/></record>\n" +
+                             "  <record id='2'/>\n" +
+                             "</records>", "/records/record");
+        assertEquals(2, fSubtrees.size());
+        assertEquals("1", ((Element) fSubtrees.get(0)).getAttribute("id"));
+        assertEquals("x", ((Element) fSubtrees.get(0)).getFirstChild().getTextContent());
+        assertEquals(2, ((Element) fSubtrees.get(0)).getChildNodes().getLength());
+        assertEquals("2", ((Element) fSubtrees.get(1)).getAttribute("id"));
+        assertEquals(doc, ((Node) fSubtrees.get(1)).getOwnerDocument());
+        assertNull(((Node) fSubtrees.get(1)).getParentNode());
+        assertEquals(1, doc.getDocumentElement().getChildNodes().getLength());
+        assertEquals("\n  \n  \n", doc.getDocumentElement().getTextContent());
+    }
+    
+    public void testRecordsDiscardingSiblings() throws Exception {
+        fDiscardSiblings = true;
+        Document doc = parse("<records>\n" +
+                             "  <record id='1'/>\n" +
+                             "  <record id='2'/>\n" +
+                             "</records>", "/records/record");
+        assertEquals(2, fSubtrees.size());
+        assertEquals(1, doc.getDocumentElement().getChildNodes().getLength());
+        assertEquals("\n", doc.getDocumentElement().getTextContent());
+    }
+    
+    public void testRelativePath() throws Exception {
+        parse("<a><b><record/></b><record><record/></record></a>", "record");
+        assertEquals(2, fSubtrees.size());
+        assertEquals(0, ((Node) fSubtrees.get(0)).getChildNodes().getLength());
+        assertEquals(1, ((Node) fSubtrees.get(1)).getChildNodes().getLength());
+    }
+    
+    public void testMixedContent() throws Exception {
+        Document doc = parse("<p>Hello <record>there</record> world</p>", "record");
+        assertEquals(1, fSubtrees.size());
+        assertEquals("there", ((Node) fSubtrees.get(0)).getTextContent());
+        assertEquals("Hello  world", doc.getDocumentElement().getTextContent());
+    }
+    
+    public void testMixedContentBetweenRecords() throws Exception {
+        fDiscardSiblings = true;
+        Document doc = parse("<p>one <r/> <r/>two<!-- c --> <r/> three</p>", "r");
+        assertEquals(3, fSubtrees.size());
+        assertEquals("one  two three", doc.getDocumentElement().getTextContent()); 
+    }
+    
+    public void testCommentsKept() throws Exception {
+        Document doc = parse("<records><!-- 1 --><?pi 1?><record/> <!-- 2 --> <record/></records>", 
+                             "record");
+        assertEquals(2, fSubtrees.size());
+        Node child = doc.getDocumentElement().getFirstChild();
+        assertEquals(Node.COMMENT_NODE, child.getNodeType());
+        assertEquals(" 1 ", child.getNodeValue());
+        child = child.getNextSibling();
+        assertEquals(Node.PROCESSING_INSTRUCTION_NODE, child.getNodeType());
+        child = child.getNextSibling();
+        assertEquals(" ", child.getNodeValue());
+        child = child.getNextSibling();
+        assertEquals(" 2 ", child.getNodeValue());
+        child = child.getNextSibling();
+        assertEquals(" ", child.getNodeValue());
+        assertNull(child.getNextSibling());
+    }
+    
+    public void testIdentifiersRemoved() throws Exception {
+        Document doc = parse("<!DOCTYPE records [\n" +
+                             "<!ATTLIST records id ID #IMPLIED>\n" +
+                             "<!ATTLIST record id ID #IMPLIED>\n" +
+                             "<!ATTLIST item id ID #IMPLIED>\n" +
+                             "]>\n" +
+                             "<records id='all'>" +
+                             "<record id='r1'><item id='i1'/></record>" +
+                             "<record id='r2'><item id='i2'/></record>" +
+                             "</records>", "record");
+        assertEquals(2, fSubtrees.size());
+        assertNull(doc.getElementById("r1"));
+        assertNull(doc.getElementById("i1"));
+        assertNull(doc.getElementById("r2"));
+        assertNull(doc.getElementById("i2"));
+        assertSame(doc.getDocumentElement(), doc.getElementById("all"));
+        // the attributes of the detached subtrees are still IDs
+        assertTrue(((Element) fSubtrees.get(0)).getAttributeNode("id").isId());
+    }
+    
+    public void testCommentsBetweenRecords() throws Exception {
+        fDiscardSiblings = true;
+        StringBuffer buffer = new StringBuffer("<records>");
+        for (int i = 0; i < 1000; i++) {
+            buffer.append("\n  <!-- record ").append(i).append(" -->");
+            buffer.append("\n  <?record ").append(i).append("?>");
+            buffer.append("\n  <record/>");
+        }
+        buffer.append("\n  <!-- end -->\n</records>");
+        Document doc = parse(buffer.toString(), "record");
+        assertEquals(1000, fSubtrees.size());
+        // only the content following the last record is left
+        Node child = doc.getDocumentElement().getFirstChild();
+        assertEquals(Node.TEXT_NODE, child.getNodeType());
+        child = child.getNextSibling();
+        assertEquals(Node.COMMENT_NODE, child.getNodeType());
+        assertEquals(" end ", child.getNodeValue());
+        child = child.getNextSibling();
+        assertEquals(Node.TEXT_NODE, child.getNodeType());
+        assertNull(child.getNextSibling());
+    }
+    
+    private Document parse(String document, String path) throws Exception {
+        fSubtrees.clear();
+        DOMParser parser = new DOMParser();
+        parser.setProperty(SUBTREE_HANDLER, new DOMSubtreeHandler() {
+            public void subtreeParsed(Element element) {
+                fSubtrees.add(element);
+            }
+        });
+        parser.setProperty(SUBTREE_PATHS, new String[] {path});
+        parser.setFeature(DISCARD_SUBTREE_SIBLINGS, fDiscardSiblings);
+        parser.parse(new InputSource(new StringReader(document)));
+        return parser.getDocument();
+    }
+
+} // class SubtreeTest
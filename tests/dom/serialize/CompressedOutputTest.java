@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.serialize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.dom.DOMOutputImpl;
+import org.apache.xerces.parsers.DOMParser;
+import org.apache.xml.serialize.DOMSerializerImpl;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests writing compressed output with LSSerializer.
+ * 
+ * @version $Id$
+ */
+public class CompressedOutputTest extends TestCase {
+    
+    private static final String DOCUMENT = 
+        "<root><item a='1'>text é 中</item><!-- comment --></root>";
+    
+    public void testByteStream() throws Exception {
+        Document document = parse(DOCUMENT);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        DOMOutputImpl output = new DOMOutputImpl();
+        output.setByteStream(expected);
+        new DOMSerializerImpl().write(document, output);
+        
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        output = new DOMOutputImpl();
+        output.setByteStream(compressed);
+        output.setCompressed(true);
+        assertTrue(new DOMSerializerImpl().write(document, output));
+        byte[] bytes = compressed.toByteArray();
+        assertEquals((byte) 0x1f, bytes[0]);
+        assertEquals((byte) 0x8b, bytes[1]);
+        assertEquals(expected.toString("UTF-8"), 
+                     inflate(new ByteArrayInputStream(bytes)));
+    }
+    
+    public void testSystemId() throws Exception {
+        File file = File.createTempFile("output", ".xml.gz");
+        try {
+            DOMOutputImpl output = new DOMOutputImpl();
+            output.setSystemId(file.toURL().toString());
+            output.setCompressed(true);
+            assertTrue(new DOMSerializerImpl().write(parse(DOCUMENT), output));
+            String result = inflate(new FileInputStream(file));
+            assertEquals(DOCUMENT.replace('\'', '"'), 
+                         result.substring(result.indexOf("<root>")).trim());
+        }
+        finally {
+            file.delete();
+        }
+    }
+    
+    private String inflate(InputStream in) throws Exception {
+        in = new GZIPInputStream(in);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toString("UTF-8");
+    }
+    
+    private Document parse(String xml) throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.parse(new InputSource(new StringReader(xml)));
+        return parser.getDocument();
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.serialize;
+
+import java.io.OutputStream;
+
+import org.apache.xerces.dom.DocumentImpl;
+import org.apache.xml.serialize.OutputFormat;
+import org.apache.xml.serialize.XMLSerializer;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * This program times the serialization of a document whose text
+ * content and attribute values are generated from a small pool of
+ * characters, so that the cost of escaping can be compared for
+ * text which needs little or a lot of escaping in several output
+ * encodings.
+ *
+ * @version $Id$
+ */
+public class EscapeBench {
+
+    //
+    // Constants
+    //
+
+    /** Character pools: plain ASCII, markup, non-ASCII and a mix. */
+    private static final String[] POOLS = {
+        "abcdefgh ", "abc<&>\" ", "\u00e9\u00fc\u00e0\u0100\u20ac ", "abc<&\u00e9\u20ac ",
+    };
+
+    /** Output encodings. */
+    private static final String[] ENCODINGS = {
+        "UTF-8", "ISO-8859-1", "US-ASCII",
+    };
+
+    /** Number of elements in the generated document. */
+    private static final int ELEMENTS = 20000;
+
+    /** Length of each text node and attribute value. */
+    private static final int LENGTH = 100;
+
+    /** Number of times each document is serialized. */
+    private static final int REPETITIONS = 10;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        for (int i = 0; i < POOLS.length; i++) {
+            Document document = createDocument(POOLS[i]);
+            System.err.println("#");
+            System.err.println("# Pool \""+POOLS[i]+"\"");
+            System.err.println("#");
+            for (int j = 0; j < ENCODINGS.length; j++) {
+                System.err.print(ENCODINGS[j]+": ");
+                try {
+                    long time = serialize(document, ENCODINGS[j]);
+                    System.err.println("PASS ("+time+" ms)");
+                }
+                catch (Exception e) {
+                    System.err.println("FAIL: "+e.getMessage());
+                }
+            }
+        }
+
+    } // main(String[])
+
+    //
+    // Public static methods
+    //
+
+    /**
+     * Creates a document with text content and attribute values
+     * built from the characters of the given pool.
+     */
+    public static Document createDocument(String pool) {
+
+        Document document = new DocumentImpl();
+        Element root = document.createElement("root");
+        document.appendChild(root);
+        StringBuffer str = new StringBuffer(LENGTH);
+        int seed = 1;
+        for (int i = 0; i < ELEMENTS; i++) {
+            str.setLength(0);
+            for (int j = 0; j < LENGTH; j++) {
+                seed = seed * 1103515245 + 12345;
+                str.append(pool.charAt(((seed >>> 16) & 0x7FFF) % pool.length()));
+            }
+            Element element = document.createElement("e");
+            element.setAttribute("a", str.toString());
+            element.appendChild(document.createTextNode(str.toString()));
+            root.appendChild(element);
+        }
+        return document;
+
+    } // createDocument(String):Document
+
+    /**
+     * Serializes the document repeatedly in the given encoding and
+     * returns the best time of a single pass.
+     */
+    public static long serialize(Document document, String encoding)
+        throws Exception {
+
+        OutputFormat format = new OutputFormat(document, encoding, false);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < REPETITIONS; i++) {
+            long before = System.currentTimeMillis();
+            XMLSerializer serializer = new XMLSerializer(new NullOutputStream(), format);
+            serializer.serialize(document);
+            long time = System.currentTimeMillis() - before;
+            if (time < best) {
+                best = time;
+            }
+        }
+        return best;
+
+    } // serialize(Document,String):long
+
+    //
+    // Classes
+    //
+
+    /** An output stream which discards everything written to it. */
+    static class NullOutputStream extends OutputStream {
+
+        public void write(int b) {
+        }
+
+        public void write(byte[] b, int off, int len) {
+        }
+
+    } // class NullOutputStream
+
+} // class EscapeBench
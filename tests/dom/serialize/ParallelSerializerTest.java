@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.serialize;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.DOMParser;
+import org.apache.xml.serialize.DOMSerializerImpl;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.Document;
+import org.w3c.dom.ls.LSSerializer;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests that serializing the children of the document element on
+ * several threads gives the same output as serializing them on one.
+ * 
+ * @version $Id$
+ */
+public class ParallelSerializerTest extends TestCase {
+    
+    private static final String SERIALIZATION_THREADS = 
+        "http://apache.org/xml/properties/dom/serialization-threads";
+    
+    private static final String WORKER_NAME = "Xerces serializer worker";
+    
+    public void testDeferredDocument() throws Exception {
+        checkParallel(parse(createDocument(), true));
+    }
+    
+    public void testDocument() throws Exception {
+        checkParallel(parse(createDocument(), false));
+    }
+    
+    public void testFewChildren() throws Exception {
+        checkParallel(parse("<root><a/></root>", false));
+        checkParallel(parse("<!-- before --><root>text</root><?after?>", false));
+    }
+    
+    public void testThreadsReused() throws Exception {
+        Document document = parse(createDocument(), false);
+        // threads of other serializers may still be waiting for work
+        int workers = countWorkers();
+        LSSerializer serializer = createSerializer(document, 3);
+        String expected = serializer.writeToString(document);
+        assertTrue(countWorkers() > workers);
+        for (int i = 0; i < 20; ++i) {
+            assertEquals(expected, serializer.writeToString(document));
+            assertTrue(countWorkers() <= workers + 3);
+        }
+    }
+    
+    private void checkParallel(Document document) throws Exception {
+        String serial = createSerializer(document, 0).writeToString(document);
+        for (int threads = 2; threads <= 5; ++threads) {
+            LSSerializer serializer = createSerializer(document, threads);
+            assertEquals(threads + " threads", serial, serializer.writeToString(document));
+        }
+    }
+    
+    private LSSerializer createSerializer(Document document, int threads) {
+        // the parameter is only recognized by the serializer of Xerces
+        LSSerializer serializer = new DOMSerializerImpl();
+        DOMConfiguration config = serializer.getDomConfig();
+        config.setParameter(SERIALIZATION_THREADS, new Integer(threads));
+        return serializer;
+    }
+    
+    private Document parse(String xml, boolean deferred) throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", deferred);
+        parser.parse(new InputSource(new StringReader(xml)));
+        return parser.getDocument();
+    }
+    
+    private String createDocument() {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("<?xml version='1.0'?>\n<!DOCTYPE root [<!ENTITY e 'entity &amp; text'>]>\n");
+        buffer.append("<!-- prolog --><root xmlns='urn:default' xmlns:p='urn:p' p:a='1'>");
+        for (int i = 0; i < 1000; ++i) {
+            switch (i % 7) {
+                case 0:
+                    buffer.append("<p:item id='" + i + "' xmlns:q='urn:q' q:b='&lt;'>" + 
+                                  "<q:child>text &amp; more</q:child></p:item>");
+                    break;
+                case 1:
+                    buffer.append("text " + i + " &gt; &e;");
+                    break;
+                case 2:
+                    buffer.append("<!-- comment " + i + " -->");
+                    break;
+                case 3:
+                    buffer.append("<?pi " + i + "?>");
+                    break;
+                case 4:
+                    buffer.append("<![CDATA[<cdata " + i + ">]]>");
+                    break;
+                case 5:
+                    buffer.append("<item xmlns='' attr=\"'quoted'\"/>");
+                    break;
+                default:
+                    buffer.append("<item>é中</item>\n");
+            }
+        }
+        buffer.append("</root><!-- epilog -->");
+        return buffer.toString();
+    }
+    
+    private static int countWorkers() {
+        Thread[] threads = new Thread[Thread.activeCount() + 10];
+        int count = Thread.currentThread().getThreadGroup().enumerate(threads);
+        int workers = 0;
+        for (int i = 0; i < count; ++i) {
+            if (WORKER_NAME.equals(threads[i].getName())) {
+                ++workers;
+            }
+        }
+        return workers;
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.serialize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+
+import org.apache.xerces.parsers.DOMParser;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xml.serialize.CanonicalSerializer;
+import org.apache.xml.serialize.DOMSerializerImpl;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.ls.LSSerializer;
+import org.w3c.dom.ls.LSSerializerFilter;
+import org.w3c.dom.traversal.NodeFilter;
+import org.xml.sax.InputSource;
+
+/**
+ * Checks the output of CanonicalSerializer against examples of the
+ * Canonical XML and Exclusive XML Canonicalization specifications, from
+ * SAX events and from DOM trees.
+ *
+ * @version $Id$
+ */
+public class TestCanonical {
+
+    /**
+     * Example 3.1 of Canonical XML: PIs, comments, and outside of the
+     * document element. The document type declaration has an internal
+     * subset with a PI and a comment instead of an external subset.
+     */
+    private static final String PIS =
+        "<?xml version=\"1.0\"?>\n" +
+        "\n" +
+        "<?xml-stylesheet   href=\"doc.xsl\"\n" +
+        "   type=\"text/xsl\"   ?>\n" +
+        "\n" +
+        "<!DOCTYPE doc [<?pi-in-dtd data?><!-- Comment in DTD -->]>\n" +
+        "\n" +
+        "<doc>Hello, world!<!-- Comment 1 --></doc>\n" +
+        "\n" +
+        "<?pi-without-data     ?>\n" +
+        "\n" +
+        "<!-- Comment 2 -->\n" +
+        "\n" +
+        "<!-- Comment 3 -->";
+
+    private static final String PIS_CANONICAL =
+        "<?xml-stylesheet href=\"doc.xsl\"\n" +
+        "   type=\"text/xsl\"   ?>\n" +
+        "<doc>Hello, world!</doc>\n" +
+        "<?pi-without-data?>";
+
+    private static final String PIS_CANONICAL_WITH_COMMENTS =
+        "<?xml-stylesheet href=\"doc.xsl\"\n" +
+        "   type=\"text/xsl\"   ?>\n" +
+        "<doc>Hello, world!<!-- Comment 1 --></doc>\n" +
+        "<?pi-without-data?>\n" +
+        "<!-- Comment 2 -->\n" +
+        "<!-- Comment 3 -->";
+
+    /** Example 3.3 of Canonical XML: start and end tags. */
+    private static final String TAGS =
+        "<!DOCTYPE doc [<!ATTLIST e9 attr CDATA \"default\">]>\n" +
+        "<doc>\n" +
+        "   <e1   />\n" +
+        "   <e2   ></e2>\n" +
+        "   <e3   name = \"elem3\"   id=\"elem3\"   />\n" +
+        "   <e4   name=\"elem4\"   id=\"elem4\"   ></e4>\n" +
+        "   <e5 a:attr=\"out\" b:attr=\"sorted\" attr2=\"all\" attr=\"I'm\"\n" +
+        "      xmlns:b=\"http://www.ietf.org\"\n" +
+        "      xmlns:a=\"http://www.w3.org\"\n" +
+        "      xmlns=\"http://example.org\"/>\n" +
+        "   <e6 xmlns=\"\" xmlns:a=\"http://www.w3.org\">\n" +
+        "      <e7 xmlns=\"http://www.ietf.org\">\n" +
+        "         <e8 xmlns=\"\" xmlns:a=\"http://www.w3.org\">\n" +
+        "            <e9 xmlns=\"\" xmlns:a=\"http://www.ietf.org\"/>\n" +
+        "         </e8>\n" +
+        "      </e7>\n" +
+        "   </e6>\n" +
+        "</doc>";
+
+    private static final String TAGS_CANONICAL =
+        "<doc>\n" +
+        "   <e1></e1>\n" +
+        "   <e2></e2>\n" +
+        "   <e3 id=\"elem3\" name=\"elem3\"></e3>\n" +
+        "   <e4 id=\"elem4\" name=\"elem4\"></e4>\n" +
+        "   <e5 xmlns=\"http://example.org\" xmlns:a=\"http://www.w3.org\" xmlns:b=\"http://www.ietf.org\" attr=\"I'm\" attr2=\"all\" b:attr=\"sorted\" a:attr=\"out\"></e5>\n" +
+        "   <e6 xmlns:a=\"http://www.w3.org\">\n" +
+        "      <e7 xmlns=\"http://www.ietf.org\">\n" +
+        "         <e8 xmlns=\"\">\n" +
+        "            <e9 xmlns:a=\"http://www.ietf.org\" attr=\"default\"></e9>\n" +
+        "         </e8>\n" +
+        "      </e7>\n" +
+        "   </e6>\n" +
+        "</doc>";
+
+    /** Example 3.4 of Canonical XML: character modifications. */
+    private static final String CHARACTERS =
+        "<!DOCTYPE doc [\n" +
+        "<!ATTLIST normId id ID #IMPLIED>\n" +
+        "<!ATTLIST normNames attr NMTOKENS #IMPLIED>\n" +
+        "]>\n" +
+        "<doc>\n" +
+        "   <text>First line&#x0d;&#10;Second line</text>\n" +
+        "   <value>&#x32;</value>\n" +
+        "   <compute><![CDATA[value>\"0\" && value<\"10\" ?\"valid\":\"error\"]]></compute>\n" +
+        "   <compute expr='value>\"0\" &amp;&amp; value&lt;\"10\" ?\"valid\":\"error\"'>valid</compute>\n" +
+        "   <norm attr=' &apos;   &#x20;&#13;&#xa;&#9;   &apos; '/>\n" +
+        "   <normNames attr='   A   &#x20;&#13;&#xa;&#9;   B   '/>\n" +
+        "   <normId id=' &apos;   &#x20;&#13;&#xa;&#9;   &apos; '/>\n" +
+        "</doc>";
+
+    private static final String CHARACTERS_CANONICAL =
+        "<doc>\n" +
+        "   <text>First line&#xD;\n" +
+        "Second line</text>\n" +
+        "   <value>2</value>\n" +
+        "   <compute>value&gt;\"0\" &amp;&amp; value&lt;\"10\" ?\"valid\":\"error\"</compute>\n" +
+        "   <compute expr=\"value>&quot;0&quot; &amp;&amp; value&lt;&quot;10&quot; ?&quot;valid&quot;:&quot;error&quot;\">valid</compute>\n" +
+        "   <norm attr=\" '    &#xD;&#xA;&#x9;   ' \"></norm>\n" +
+        "   <normNames attr=\"A &#xD;&#xA;&#x9; B\"></normNames>\n" +
+        "   <normId id=\"' &#xD;&#xA;&#x9; '\"></normId>\n" +
+        "</doc>";
+
+    /** Example of section 2.2 of Exclusive XML Canonicalization. */
+    private static final String SUBSET =
+        "<n0:local xmlns:n0=\"foo:bar\" xmlns:n3=\"ftp://example.org\">\n" +
+        "   <n1:elem2 xmlns:n1=\"http://example.net\" xml:lang=\"en\">\n" +
+        "       <n3:stuff xmlns:n3=\"ftp://example.org\"/>\n" +
+        "   </n1:elem2>\n" +
+        "</n0:local>";
+
+    private static final String SUBSET_EXCLUSIVE =
+        "<n1:elem2 xmlns:n1=\"http://example.net\" xml:lang=\"en\">\n" +
+        "       <n3:stuff xmlns:n3=\"ftp://example.org\"></n3:stuff>\n" +
+        "   </n1:elem2>";
+
+    private static final String SUBSET_INCLUSIVE =
+        "<n1:elem2 xmlns:n0=\"foo:bar\" xmlns:n1=\"http://example.net\" xmlns:n3=\"ftp://example.org\" xml:lang=\"en\">\n" +
+        "       <n3:stuff></n3:stuff>\n" +
+        "   </n1:elem2>";
+
+    /** A document for the filter, which drops and skips some of its nodes. */
+    private static final String FILTERED =
+        "<doc xmlns:a='urn:a'><!--c--><a:e x='1' y='2'>t<?pi?>" +
+        "<skip><k/></skip><drop>gone</drop></a:e></doc>";
+
+    private static final String FILTERED_CANONICAL =
+        "<doc xmlns:a=\"urn:a\"><!--c--><a:e x=\"1\">t<k></k></a:e></doc>";
+
+    private static final String FILTERED_APEX_CANONICAL = 
+        "t<k xmlns:a=\"urn:a\"></k>";
+
+    /** Rejects drop, y and PIs; skips skip, and a:e when it is an apex. */
+    private static class Filter implements LSSerializerFilter {
+        private final boolean fSkipApex;
+        Filter(boolean skipApex) {
+            fSkipApex = skipApex;
+        }
+        public short acceptNode(Node node) {
+            String name = node.getNodeName();
+            if (name.equals("drop") || name.equals("y") ||
+                node.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE) {
+                return FILTER_REJECT;
+            }
+            if (name.equals("skip") || (fSkipApex && name.equals("a:e"))) {
+                return FILTER_SKIP;
+            }
+            return FILTER_ACCEPT;
+        }
+        public int getWhatToShow() {
+            return NodeFilter.SHOW_ELEMENT | NodeFilter.SHOW_ATTRIBUTE |
+                NodeFilter.SHOW_PROCESSING_INSTRUCTION;
+        }
+    }
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        for (int method = CanonicalSerializer.CANONICAL_XML_10;
+             method <= CanonicalSerializer.CANONICAL_XML_11; ++method) {
+            check("PIs, SAX", fromSAX(PIS, method, false), PIS_CANONICAL);
+            check("PIs with comments, SAX", fromSAX(PIS, method, true),
+                  PIS_CANONICAL_WITH_COMMENTS);
+            check("PIs, DOM", fromDOM(parse(PIS), method, false), PIS_CANONICAL);
+            check("PIs with comments, DOM", fromDOM(parse(PIS), method, true),
+                  PIS_CANONICAL_WITH_COMMENTS);
+            check("tags, SAX", fromSAX(TAGS, method), TAGS_CANONICAL);
+            check("tags, DOM", fromDOM(parse(TAGS).getDocumentElement(), method), TAGS_CANONICAL);
+            check("characters, SAX", fromSAX(CHARACTERS, method), CHARACTERS_CANONICAL);
+            check("characters, DOM", fromDOM(parse(CHARACTERS).getDocumentElement(), method),
+                  CHARACTERS_CANONICAL);
+        }
+        Element apex = (Element) parse(SUBSET).getElementsByTagName("n1:elem2").item(0);
+        check("subset, exclusive", fromDOM(apex, CanonicalSerializer.EXCLUSIVE), SUBSET_EXCLUSIVE);
+        check("subset, inclusive", fromDOM(apex, CanonicalSerializer.CANONICAL_XML_10),
+              SUBSET_INCLUSIVE);
+        
+        LSSerializer serializer = new DOMSerializerImpl();
+        serializer.getDomConfig().setParameter("canonical-form", Boolean.TRUE);
+        serializer.setFilter(new Filter(false));
+        check("filter, LSSerializer", serializer.writeToString(parse(FILTERED)), 
+              FILTERED_CANONICAL);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CanonicalSerializer canonical = 
+            new CanonicalSerializer(out, CanonicalSerializer.CANONICAL_XML_10, false);
+        canonical.setFilter(new Filter(true));
+        canonical.serialize((Element) parse(FILTERED).getElementsByTagName("a:e").item(0));
+        check("filter, skipped apex", out.toString("UTF-8"), FILTERED_APEX_CANONICAL);
+        System.out.println(failures == 0 ? "PASS" : "FAIL (" + failures + ")");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String fromSAX(String document, int method) throws Exception {
+        return fromSAX(document, method, false);
+    }
+
+    private static String fromSAX(String document, int method, boolean comments)
+        throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CanonicalSerializer canonical = new CanonicalSerializer(out, method, comments);
+        SAXParser parser = new SAXParser();
+        parser.setContentHandler(canonical);
+        parser.setProperty("http://xml.org/sax/properties/lexical-handler", canonical);
+        parser.parse(new InputSource(new StringReader(document)));
+        return out.toString("UTF-8");
+    }
+
+    private static String fromDOM(Element element, int method) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (element.getParentNode() == element.getOwnerDocument()) {
+            new CanonicalSerializer(out, method, false).serialize(element.getOwnerDocument());
+        }
+        else {
+            new CanonicalSerializer(out, method, false).serialize(element);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private static String fromDOM(Document document, int method, boolean comments)
+        throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CanonicalSerializer(out, method, comments).serialize(document);
+        return out.toString("UTF-8");
+    }
+
+    private static Document parse(String document) throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.parse(new InputSource(new StringReader(document)));
+        return parser.getDocument();
+    }
+
+    private static void check(String name, String actual, String expected) {
+        if (!actual.equals(expected)) {
+            ++failures;
+            System.out.println("FAIL " + name + ":");
+            System.out.println(actual);
+        }
+    }
+
+} // class TestCanonical
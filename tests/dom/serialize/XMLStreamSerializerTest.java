@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dom.serialize;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.apache.xml.serialize.OutputFormat;
+import org.apache.xml.serialize.XMLStreamSerializer;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests the output of XMLStreamSerializer.
+ * 
+ * @version $Id$
+ */
+public class XMLStreamSerializerTest extends TestCase {
+    
+    private StringWriter fWriter;
+    private XMLStreamSerializer fSerializer;
+    
+    protected void setUp() throws Exception {
+        OutputFormat format = new OutputFormat("xml", "UTF-8", false);
+        format.setOmitXMLDeclaration(true);
+        fWriter = new StringWriter();
+        fSerializer = new XMLStreamSerializer(fWriter, format);
+        fSerializer.startDocument();
+    }
+    
+    public void testElements() throws Exception {
+        fSerializer.startElement("", "urn:a", "root");
+        fSerializer.startElement("item");
+        fSerializer.attribute("id", "<&\"1\">");
+        fSerializer.text("a < b & c > d");
+        fSerializer.endElement();
+        fSerializer.startElement("empty");
+        fSerializer.endElement();
+        fSerializer.comment(" comment ");
+        fSerializer.processingInstruction("pi", "data");
+        fSerializer.cdata("<cdata>");
+        fSerializer.endElement();
+        fSerializer.endDocument();
+        assertEquals("<root xmlns=\"urn:a\"><item id=\"&lt;&amp;&quot;1&quot;>\">" +
+                     "a &lt; b &amp; c &gt; d</item><empty/><!-- comment -->" +
+                     "<?pi data?><![CDATA[<cdata>]]></root>", fWriter.toString());
+    }
+    
+    public void testCDATAEscapes() throws Exception {
+        fSerializer.startElement("root");
+        fSerializer.cdata("a\u007Fb]]>c");
+        fSerializer.text("d\u007Fe");
+        fSerializer.endElement();
+        fSerializer.endDocument();
+        // DEL is escaped in CDATA sections only, like XMLSerializer does
+        assertEquals("<root><![CDATA[a]]>&#x7f;<![CDATA[b]]]]><![CDATA[>c]]>d\u007Fe</root>", 
+                     fWriter.toString());
+    }
+    
+    public void testNamespaceScope() throws Exception {
+        fSerializer.startElement("p", "urn:a", "root");
+        fSerializer.startElement("p", "urn:a", "child");
+        fSerializer.endElement();
+        fSerializer.startElement("p", "urn:b", "child");
+        fSerializer.attribute("p", "urn:b", "att", "1");
+        fSerializer.endElement();
+        fSerializer.startElement("p", "urn:a", "child");
+        fSerializer.endElement();
+        fSerializer.endElement();
+        fSerializer.endDocument();
+        assertEquals("<p:root xmlns:p=\"urn:a\"><p:child/>" +
+                     "<p:child xmlns:p=\"urn:b\" p:att=\"1\"/><p:child/></p:root>", 
+                     fWriter.toString());
+    }
+    
+    public void testAttributePrefixConflict() throws Exception {
+        fSerializer.startElement("p", "urn:a", "root");
+        fSerializer.attribute("p", "urn:b", "x", "1");
+        fSerializer.attribute("p", "urn:b", "y", "2");
+        fSerializer.attribute("p", "urn:c", "z", "3");
+        fSerializer.attribute("p", "urn:a", "w", "4");
+        fSerializer.endElement();
+        fSerializer.endDocument();
+        String output = fWriter.toString();
+        assertEquals("<p:root xmlns:p=\"urn:a\" xmlns:NS1=\"urn:b\" NS1:x=\"1\" " +
+                     "NS1:y=\"2\" xmlns:NS2=\"urn:c\" NS2:z=\"3\" p:w=\"4\"/>", output);
+        Element root = parse(output);
+        assertEquals("1", root.getAttributeNS("urn:b", "x"));
+        assertEquals("2", root.getAttributeNS("urn:b", "y"));
+        assertEquals("3", root.getAttributeNS("urn:c", "z"));
+        assertEquals("4", root.getAttributeNS("urn:a", "w"));
+    }
+    
+    public void testAttributeReusesPrefix() throws Exception {
+        fSerializer.startElement("q", "urn:b", "root");
+        fSerializer.startElement("p", "urn:a", "child");
+        fSerializer.attribute("p", "urn:b", "x", "1");
+        fSerializer.endElement();
+        fSerializer.endElement();
+        fSerializer.endDocument();
+        assertEquals("<q:root xmlns:q=\"urn:b\"><p:child xmlns:p=\"urn:a\" q:x=\"1\"/>" +
+                     "</q:root>", fWriter.toString());
+    }
+    
+    public void testNamespaceRedeclared() throws Exception {
+        fSerializer.startElement("p", "urn:a", "root");
+        fSerializer.namespace("p", "urn:a");
+        try {
+            fSerializer.namespace("p", "urn:b");
+            fail("Prefix declared twice on one element.");
+        }
+        catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().indexOf("'p'") >= 0);
+        }
+        fSerializer.startElement("p", "urn:a", "child");
+        fSerializer.namespace("p", "urn:b");
+        fSerializer.endElement();
+        fSerializer.endElement();
+        fSerializer.endDocument();
+        assertEquals("<p:root xmlns:p=\"urn:a\"><p:child xmlns:p=\"urn:b\"/></p:root>", 
+                     fWriter.toString());
+    }
+    
+    public void testInvalidCharacter() throws Exception {
+        fSerializer.startElement("root");
+        try {
+            fSerializer.text("\u0001");
+            fail("Invalid character written.");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage(),
+                e.getMessage().endsWith("The character '1' is an invalid XML character."));
+        }
+    }
+    
+    public void testStateErrors() throws Exception {
+        try {
+            fSerializer.endElement();
+            fail("Element ended without being started.");
+        }
+        catch (IllegalStateException e) {
+        }
+        fSerializer.startElement("root");
+        fSerializer.text("text");
+        try {
+            fSerializer.attribute("a", "1");
+            fail("Attribute written after content.");
+        }
+        catch (IllegalStateException e) {
+        }
+    }
+    
+    private Element parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(
+            new InputSource(new StringReader(xml))).getDocumentElement();
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dtd;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.Attributes2;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the attributes added and checked by DTD validation: attributes
+ * declared by several ATTLISTs, duplicate declarations, and #FIXED,
+ * #REQUIRED and default values, for elements with few and many 
+ * attributes.
+ * 
+ * @version $Id$
+ */
+public class AttributeDeclTest extends TestCase {
+    
+    private static final String WARN_ON_DUPLICATE_ATTDEF = 
+        "http://apache.org/xml/features/validation/warn-on-duplicate-attdef";
+    
+    /** The number of attributes of the wide element. */
+    private static final int WIDE = 60;
+    
+    private static final String DTD = 
+        "<!ELEMENT root (e|w)*>\n" +
+        "<!ELEMENT e EMPTY>\n" +
+        "<!ATTLIST e a CDATA 'first' b CDATA #IMPLIED>\n" +
+        "<!ATTLIST e a CDATA 'second' c CDATA #FIXED 'fixed'>\n" +
+        "<!ATTLIST e b CDATA 'ignored' r CDATA #REQUIRED t NMTOKEN ' tok '>\n" +
+        "<!ATTLIST e a CDATA 'third' id ID #IMPLIED>\n" +
+        "<!ELEMENT w EMPTY>\n" +
+        wideAttlists();
+    
+    private SAXParser fParser;
+    private Recorder fRecorder;
+    
+    protected void setUp() throws Exception {
+        fRecorder = new Recorder();
+        fParser = new SAXParser();
+        fParser.setFeature("http://xml.org/sax/features/validation", true);
+        fParser.setContentHandler(fRecorder);
+        fParser.setErrorHandler(fRecorder);
+    }
+    
+    public void testDefaults() throws Exception {
+        parse("<e r='1'/>");
+        assertEquals("e r=1! a=first c=fixed t=tok", fRecorder.fElements.get(1));
+        assertEquals(0, fRecorder.fErrors.size());
+    }
+    
+    public void testSpecified() throws Exception {
+        parse("<e t='x' a='mine' r='1' c='fixed' b='2'/>");
+        assertEquals("e t=x! a=mine! r=1! c=fixed! b=2!", fRecorder.fElements.get(1));
+        assertEquals(0, fRecorder.fErrors.size());
+    }
+    
+    public void testRequired() throws Exception {
+        parse("<e a='x'/>");
+        assertEquals("e a=x! c=fixed t=tok", fRecorder.fElements.get(1));
+        assertErrors(new String [] { "\"r\"" });
+    }
+    
+    public void testFixed() throws Exception {
+        parse("<e r='1' c='other'/>");
+        assertEquals("e r=1! c=other! a=first t=tok", fRecorder.fElements.get(1));
+        assertErrors(new String [] { "\"c\"" });
+    }
+    
+    public void testUndeclared() throws Exception {
+        parse("<e r='1' d='x' id='i'/>");
+        assertEquals("e r=1! d=x! id=i! a=first c=fixed t=tok", fRecorder.fElements.get(1));
+        assertErrors(new String [] { "\"d\"" });
+    }
+    
+    public void testDuplicateWarnings() throws Exception {
+        fParser.setFeature(WARN_ON_DUPLICATE_ATTDEF, true);
+        parse("<e r='1'/>");
+        // a is declared again twice, b once, and every third wide attribute once
+        assertEquals(3 + WIDE / 3, fRecorder.fWarnings.size());
+        assertEquals("e r=1! a=first c=fixed t=tok", fRecorder.fElements.get(1));
+    }
+    
+    public void testWideDefaults() throws Exception {
+        StringBuffer document = new StringBuffer("<w");
+        StringBuffer expected = new StringBuffer("w");
+        for (int i = 0; i < WIDE; i += 3) {
+            document.append(" a").append(i).append("='s").append(i).append('\'');
+            expected.append(" a").append(i).append("=s").append(i).append('!');
+        }
+        document.append("/>");
+        for (int i = 0; i < WIDE; ++i) {
+            if (i % 3 == 1) {
+                expected.append(" a").append(i).append("=d").append(i);
+            }
+            else if (i % 3 == 2) {
+                expected.append(" a").append(i).append("=f").append(i);
+            }
+        }
+        parse(document.toString());
+        assertEquals(expected.toString(), fRecorder.fElements.get(1));
+        assertEquals(0, fRecorder.fErrors.size());
+    }
+    
+    public void testWideErrors() throws Exception {
+        // specify every attribute except the last required one, with a 
+        // wrong value for the first fixed one, and one undeclared attribute
+        StringBuffer document = new StringBuffer("<w");
+        for (int i = WIDE - 1; i >= 0; --i) {
+            if (i == WIDE - 3) {
+                continue;
+            }
+            String value = (i == 2) ? "wrong" : (i % 3 == 2) ? "f" + i : "v" + i;
+            document.append(" a").append(i).append("='").append(value).append('\'');
+        }
+        document.append(" z='z'/>");
+        parse(document.toString());
+        // missing attributes are reported first
+        assertErrors(new String [] { "\"a" + (WIDE - 3) + "\"", "\"a2\"", "\"z\"" });
+        // every declared attribute is present once
+        String element = (String) fRecorder.fElements.get(1);
+        for (int i = 0; i < WIDE; ++i) {
+            int index = element.indexOf(" a" + i + "=");
+            assertTrue(element, (index != -1) == (i != WIDE - 3));
+            assertEquals(element, index, element.lastIndexOf(" a" + i + "="));
+        }
+    }
+    
+    /** 
+     * Returns the ATTLISTs of the wide element. Attribute i is required
+     * if i % 3 is 0, has a default value if i % 3 is 1, and is fixed
+     * otherwise. The attributes are spread over several ATTLISTs, and
+     * every third one is declared again.
+     */
+    private static String wideAttlists() {
+        StringBuffer attlists = new StringBuffer();
+        for (int i = 0; i < WIDE; ++i) {
+            if (i % 10 == 0) {
+                attlists.append("<!ATTLIST w");
+            }
+            attlists.append(" a").append(i).append(" CDATA ");
+            if (i % 3 == 0) {
+                attlists.append("#REQUIRED");
+            }
+            else if (i % 3 == 1) {
+                attlists.append("'d").append(i).append('\'');
+            }
+            else {
+                attlists.append("#FIXED 'f").append(i).append('\'');
+            }
+            if (i % 10 == 9) {
+                attlists.append(">\n");
+            }
+        }
+        attlists.append("<!ATTLIST w");
+        for (int i = 0; i < WIDE; i += 3) {
+            attlists.append(" a").append(i).append(" CDATA 'duplicate'");
+        }
+        attlists.append(">\n");
+        return attlists.toString();
+    }
+    
+    private void parse(String content) throws Exception {
+        InputSource source = new InputSource(new StringReader(
+            "<!DOCTYPE root [\n" + DTD + "]>\n<root>" + content + "</root>"));
+        fParser.parse(source);
+    }
+    
+    private void assertErrors(String [] names) {
+        assertEquals(fRecorder.fErrors.toString(), names.length, fRecorder.fErrors.size());
+        for (int i = 0; i < names.length; ++i) {
+            String message = (String) fRecorder.fErrors.get(i);
+            assertTrue(message, message.indexOf(names[i]) != -1);
+        }
+    }
+    
+    /** 
+     * Records each element with its attributes, marking the specified 
+     * ones with '!', and the errors and warnings.
+     */
+    private static class Recorder extends DefaultHandler {
+        
+        final ArrayList fElements = new ArrayList();
+        final ArrayList fErrors = new ArrayList();
+        final ArrayList fWarnings = new ArrayList();
+        
+        public void startDocument() {
+            fElements.clear();
+            fErrors.clear();
+            fWarnings.clear();
+        }
+        
+        public void startElement(String uri, String localName, String qName, 
+                Attributes attributes) {
+            StringBuffer element = new StringBuffer(qName);
+            for (int i = 0; i < attributes.getLength(); ++i) {
+                element.append(' ').append(attributes.getQName(i));
+                element.append('=').append(attributes.getValue(i));
+                if (((Attributes2) attributes).isSpecified(i)) {
+                    element.append('!');
+                }
+            }
+            fElements.add(element.toString());
+        }
+        
+        public void error(SAXParseException e) {
+            fErrors.add(e.getMessage());
+        }
+        
+        public void warning(SAXParseException e) {
+            fWarnings.add(e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dtd;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the validation of element content against wide mixed and 
+ * children content models, and against a grammar shared by parsers 
+ * running on several threads through a grammar pool.
+ * 
+ * @version $Id$
+ */
+public class ContentModelTest extends TestCase {
+    
+    private static final String GRAMMAR_POOL = 
+        "http://apache.org/xml/properties/internal/grammar-pool";
+    
+    /** The number of elements in the wide content models. */
+    private static final int WIDE = 50;
+    
+    private static final String DTD = 
+        "<!ELEMENT root (mixed|choice|seq)*>\n" +
+        "<!ELEMENT mixed (#PCDATA|" + names("|") + ")*>\n" +
+        "<!ELEMENT choice (" + names("|") + ")+>\n" +
+        "<!ELEMENT seq (n0, n1?, (n2|n3)*, (" + names(",") + "))>\n" +
+        "<!ELEMENT x EMPTY>\n" +
+        elements();
+    
+    /** Documents with the number of errors each one has. */
+    private static final Object[][] DOCUMENTS = {
+        { "<mixed/>", new Integer(0) },
+        { "<mixed>text<n0/>text<n49/><n25/><n0/>text</mixed>", new Integer(0) },
+        { "<mixed>text<n7/><x/>text</mixed>", new Integer(1) },
+        { "<mixed><n0><n1/></n0></mixed>", new Integer(1) },
+        { "<choice><n0/></choice>", new Integer(0) },
+        { "<choice><n49/><n0/><n49/><n13/></choice>", new Integer(0) },
+        { "<choice/>", new Integer(1) },
+        { "<choice>text<n1/></choice>", new Integer(1) },
+        { "<choice><n1/><x/></choice>", new Integer(1) },
+        { "<seq><n0/>" + sequence() + "</seq>", new Integer(0) },
+        { "<seq><n0/><n1/><n3/><n2/><n3/>" + sequence() + "</seq>", new Integer(0) },
+        { "<seq><n0/><n1/><n1/>" + sequence() + "</seq>", new Integer(1) },
+        { "<seq><n0/><n2/><n1/>" + sequence() + "</seq>", new Integer(1) },
+        { "<seq><n0/>" + sequence().substring(5) + "</seq>", new Integer(1) },
+        { "<seq><n0/>" + sequence() + "<n0/></seq>", new Integer(1) },
+    };
+    
+    private File fDirectory;
+    private String fSystemId;
+    
+    protected void setUp() throws Exception {
+        fDirectory = File.createTempFile("models", "");
+        fDirectory.delete();
+        fDirectory.mkdir();
+        File dtd = new File(fDirectory, "models.dtd");
+        OutputStream out = new FileOutputStream(dtd);
+        out.write(DTD.getBytes("UTF-8"));
+        out.close();
+        fSystemId = new File(fDirectory, "models.xml").toURL().toString();
+    }
+    
+    protected void tearDown() {
+        File[] files = fDirectory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        fDirectory.delete();
+    }
+    
+    public void testContentModels() throws Exception {
+        SAXParser parser = newParser();
+        for (int i = 0; i < DOCUMENTS.length; ++i) {
+            ArrayList errors = parse(parser, (String) DOCUMENTS[i][0]);
+            assertEquals(DOCUMENTS[i][0] + " " + errors, DOCUMENTS[i][1], 
+                         new Integer(errors.size()));
+        }
+    }
+    
+    public void testErrorMessages() throws Exception {
+        SAXParser parser = newParser();
+        ArrayList errors = parse(parser, "<mixed><n1/><x/></mixed>");
+        assertTrue(errors.toString(), ((String) errors.get(0)).indexOf("\"mixed\"") != -1);
+        errors = parse(parser, "<choice><x/></choice>");
+        assertTrue(errors.toString(), ((String) errors.get(0)).indexOf("\"choice\"") != -1);
+    }
+    
+    public void testPooledGrammar() throws Exception {
+        final XMLGrammarPoolImpl pool = new XMLGrammarPoolImpl();
+        SAXParser parser = newParser();
+        parser.setProperty(GRAMMAR_POOL, pool);
+        parse(parser, "<mixed/>");
+        assertEquals(1, pool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_DTD).length);
+        
+        // validate all the documents at the same time against the grammar
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; ++t) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        SAXParser parser = newParser();
+                        parser.setProperty(GRAMMAR_POOL, pool);
+                        for (int n = 0; n < 20 * DOCUMENTS.length; ++n) {
+                            Object[] document = DOCUMENTS[(n + offset) % DOCUMENTS.length];
+                            ArrayList errors = parse(parser, (String) document[0]);
+                            assertEquals(document[0] + " " + errors, document[1], 
+                                         new Integer(errors.size()));
+                        }
+                    }
+                    catch (Throwable e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    }
+                }
+            };
+        }
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t].join();
+        }
+        if (failure[0] != null) {
+            fail(failure[0].toString());
+        }
+        assertEquals(1, pool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_DTD).length);
+    }
+    
+    private SAXParser newParser() throws Exception {
+        SAXParser parser = new SAXParser();
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        return parser;
+    }
+    
+    /** Parses a root element holding the given content, returning the errors. */
+    private ArrayList parse(SAXParser parser, String content) throws Exception {
+        final ArrayList errors = new ArrayList();
+        parser.setErrorHandler(new DefaultHandler() {
+            public void error(SAXParseException e) {
+                errors.add(e.getMessage());
+            }
+        });
+        InputSource source = new InputSource(new StringReader(
+            "<!DOCTYPE root SYSTEM 'models.dtd'>\n<root>" + content + "</root>"));
+        source.setSystemId(fSystemId);
+        parser.parse(source);
+        return errors;
+    }
+    
+    /** Returns the names of the wide content models, separated. */
+    private static String names(String separator) {
+        StringBuffer names = new StringBuffer();
+        for (int i = 0; i < WIDE; ++i) {
+            if (i > 0) {
+                names.append(separator);
+            }
+            names.append('n').append(i);
+        }
+        return names.toString();
+    }
+    
+    /** Returns the declarations of the elements of the wide content models. */
+    private static String elements() {
+        StringBuffer elements = new StringBuffer();
+        for (int i = 0; i < WIDE; ++i) {
+            elements.append("<!ELEMENT n").append(i).append(" EMPTY>\n");
+        }
+        return elements.toString();
+    }
+    
+    /** Returns the elements of the wide sequence. */
+    private static String sequence() {
+        StringBuffer sequence = new StringBuffer();
+        for (int i = 0; i < WIDE; ++i) {
+            sequence.append("<n").append(i).append("/>");
+        }
+        return sequence.toString();
+    }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jaxp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.SAXParser;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.jaxp.DocumentBuilderFactoryImpl;
+import org.apache.xerces.jaxp.DocumentBuilderPool;
+import org.apache.xerces.jaxp.SAXParserFactoryImpl;
+import org.apache.xerces.jaxp.SAXParserPool;
+import org.apache.xerces.jaxp.ValidatorPool;
+import org.apache.xerces.jaxp.validation.XMLSchemaFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.Attributes;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.DefaultHandler2;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests that the instances lent by the JAXP parser pools are reset
+ * between uses, and that the pools keep count of them.
+ * 
+ * @version $Id$
+ */
+public class ParserPoolTest extends TestCase {
+    
+    private static final String CONTINUE_AFTER_FATAL_ERROR = 
+        "http://apache.org/xml/features/continue-after-fatal-error";
+    
+    private static final String LEXICAL_HANDLER = 
+        "http://xml.org/sax/properties/lexical-handler";
+    
+    private static final String NS_DOCUMENT = 
+        "<p:root xmlns:p='urn:pool'><p:item/></p:root>";
+    
+    private static final String DTD_DOCUMENT = 
+        "<!DOCTYPE root SYSTEM 'pool.dtd'><root/>";
+    
+    private static final String SCHEMA = 
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>" +
+        "<xs:element name='root' type='xs:int'/></xs:schema>";
+    
+    private File fDirectory;
+    
+    protected void setUp() throws Exception {
+        fDirectory = File.createTempFile("pool", "");
+        fDirectory.delete();
+        fDirectory.mkdir();
+        OutputStream out = new FileOutputStream(new File(fDirectory, "pool.dtd"));
+        out.write("<!ELEMENT root EMPTY>".getBytes("UTF-8"));
+        out.close();
+    }
+    
+    protected void tearDown() {
+        File[] files = fDirectory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        fDirectory.delete();
+    }
+    
+    public void testSAXParserReset() throws Exception {
+        SAXParserFactoryImpl factory = new SAXParserFactoryImpl();
+        factory.setNamespaceAware(true);
+        SAXParserPool pool = factory.newSAXParserPool(2);
+        
+        SAXParser parser = pool.borrow();
+        XMLReader reader = parser.getXMLReader();
+        reader.setFeature(CONTINUE_AFTER_FATAL_ERROR, true);
+        reader.setProperty(LEXICAL_HANDLER, new DefaultHandler2());
+        reader.setErrorHandler(new DefaultHandler());
+        reader.setEntityResolver(new Resolver());
+        reader.setContentHandler(new DefaultHandler());
+        parser.parse(input(DTD_DOCUMENT), new DefaultHandler());
+        pool.release(parser);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getBorrowedCount());
+        
+        SAXParser again = pool.borrow();
+        assertSame(parser, again);
+        assertFalse(reader.getFeature(CONTINUE_AFTER_FATAL_ERROR));
+        assertNull(reader.getProperty(LEXICAL_HANDLER));
+        assertNull(reader.getErrorHandler());
+        assertNull(reader.getEntityResolver());
+        assertNull(reader.getContentHandler());
+        // the settings of the factory are kept
+        assertTrue(again.isNamespaceAware());
+        final String[] uri = new String[1];
+        again.parse(input(NS_DOCUMENT), new DefaultHandler() {
+            public void startElement(String namespaceURI, String localName, 
+                    String qName, Attributes atts) {
+                uri[0] = namespaceURI;
+            }
+        });
+        assertEquals("urn:pool", uri[0]);
+        pool.release(again);
+    }
+    
+    public void testDocumentBuilderReset() throws Exception {
+        DocumentBuilderFactoryImpl factory = new DocumentBuilderFactoryImpl();
+        factory.setNamespaceAware(true);
+        DocumentBuilderPool pool = factory.newDocumentBuilderPool(2);
+        
+        DocumentBuilder builder = pool.borrow();
+        Resolver resolver = new Resolver();
+        builder.setEntityResolver(resolver);
+        builder.setErrorHandler(new Fatal());
+        builder.parse(input(DTD_DOCUMENT));
+        assertEquals(1, resolver.fCount);
+        pool.release(builder);
+        
+        DocumentBuilder again = pool.borrow();
+        assertSame(builder, again);
+        // neither the resolver nor the error handler is used again
+        again.parse(input(DTD_DOCUMENT));
+        assertEquals(1, resolver.fCount);
+        Document document = again.parse(input(NS_DOCUMENT));
+        assertEquals("urn:pool", document.getDocumentElement().getNamespaceURI());
+        pool.release(again);
+    }
+    
+    public void testValidatorReset() throws Exception {
+        SchemaFactory factory = new XMLSchemaFactory();
+        Schema schema = factory.newSchema(new StreamSource(new StringReader(SCHEMA)));
+        ValidatorPool pool = new ValidatorPool(schema, 2);
+        
+        Validator validator = pool.borrow();
+        validator.setErrorHandler(new Fatal());
+        validator.setResourceResolver(null);
+        validator.validate(new StreamSource(new StringReader("<root>1</root>")));
+        pool.release(validator);
+        
+        Validator again = pool.borrow();
+        assertSame(validator, again);
+        assertNull(again.getErrorHandler());
+        try {
+            again.validate(new StreamSource(new StringReader("<root>one</root>")));
+            fail("invalid document accepted");
+        }
+        catch (SAXParseException e) {
+            // expected: the default error handler throws on errors
+        }
+        pool.release(again);
+    }
+    
+    public void testFactoryChanges() throws Exception {
+        SAXParserFactoryImpl factory = new SAXParserFactoryImpl();
+        factory.setNamespaceAware(true);
+        SAXParserPool pool = factory.newSAXParserPool(1);
+        factory.setNamespaceAware(false);
+        factory.setValidating(true);
+        SAXParser parser = pool.borrow();
+        assertTrue(parser.isNamespaceAware());
+        assertFalse(parser.isValidating());
+        pool.release(parser);
+    }
+    
+    public void testCapacity() throws Exception {
+        SAXParserPool pool = new SAXParserFactoryImpl().newSAXParserPool(1);
+        SAXParser first = pool.borrow();
+        SAXParser second = pool.borrow();
+        assertNotSame(first, second);
+        assertEquals(2, pool.getBorrowedCount());
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getBorrowedCount());
+        assertSame(first, pool.borrow());
+        pool.clear();
+        assertEquals(0, pool.getIdleCount());
+    }
+    
+    public void testInvalidRelease() throws Exception {
+        SAXParserFactoryImpl factory = new SAXParserFactoryImpl();
+        SAXParserPool pool = factory.newSAXParserPool(1);
+        SAXParser parser = pool.borrow();
+        pool.release(parser);
+        try {
+            pool.release(parser);
+            fail("parser returned twice");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            pool.release(factory.newSAXParser());
+            fail("parser not borrowed from the pool accepted");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+    
+    public void testLeakDetection() throws Exception {
+        SAXParserPool pool = new SAXParserFactoryImpl().newSAXParserPool(1);
+        SAXParser parser = pool.borrow();
+        pool.borrow();
+        assertEquals(2, pool.getBorrowedCount());
+        for (int i = 0; i < 50 && pool.getLeakedCount() == 0; ++i) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, pool.getLeakedCount());
+        assertEquals(1, pool.getBorrowedCount());
+        pool.release(parser);
+        assertEquals(0, pool.getBorrowedCount());
+        assertEquals(1, pool.getLeakedCount());
+    }
+    
+    private InputSource input(String document) throws Exception {
+        InputSource source = new InputSource(new StringReader(document));
+        source.setSystemId(new File(fDirectory, "document.xml").toURL().toString());
+        return source;
+    }
+    
+    /** Counts the entities it is asked to resolve. */
+    static class Resolver extends DefaultHandler {
+        int fCount;
+        public InputSource resolveEntity(String publicId, String systemId) {
+            ++fCount;
+            return null;
+        }
+    }
+    
+    /** Throws on every error and warning. */
+    static class Fatal implements ErrorHandler {
+        public void warning(SAXParseException e) throws SAXException {
+            throw e;
+        }
+        public void error(SAXParseException e) throws SAXException {
+            throw e;
+        }
+        public void fatalError(SAXParseException e) throws SAXException {
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parser;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+/**
+ * All tests of the parser features and properties.
+ * 
+ * @version $Id$
+ */
+public class AllTests {
+    
+    public static void main(String[] args) {
+        TestRunner.run(AllTests.suite());
+    }
+    
+    public static Test suite() {
+        TestSuite suite = new TestSuite("Tests of the parser features and properties.");
+        suite.addTestSuite(CompressedEntitiesTest.class);
+        suite.addTestSuite(CoalesceCharactersTest.class);
+        suite.addTestSuite(ParserMetricsTest.class);
+        suite.addTestSuite(ParserEventListenerTest.class);
+        suite.addTestSuite(ConfigurationTemplateTest.class);
+        suite.addTestSuite(NamespaceFastPathTest.class);
+        suite.addTestSuite(EntityCacheTest.class);
+        suite.addTestSuite(CacheExternalDTDTest.class);
+        suite.addTestSuite(SettingsVersionTest.class);
+        return suite;
+    }
+
+}
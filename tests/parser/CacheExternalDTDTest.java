@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.util.ParserMetrics;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the reuse of external DTD subsets turned on by the feature
+ * http://apache.org/xml/features/validation/cache-external-dtd.
+ * 
+ * @version $Id$
+ */
+public class CacheExternalDTDTest extends TestCase {
+    
+    private static final String CACHE_EXTERNAL_DTD = 
+        "http://apache.org/xml/features/validation/cache-external-dtd";
+    
+    private static final String PARSER_METRICS = 
+        "http://apache.org/xml/properties/parser-metrics";
+    
+    private static final long MODIFIED = 1000000000000L;
+    
+    private static final String DTD = 
+        "<!ELEMENT root (#PCDATA)>\n" +
+        "<!ATTLIST root a CDATA 'dtd'>\n" +
+        "<!ENTITY text 'external'>\n" +
+        "<!ENTITY % module SYSTEM 'module.ent'>\n" +
+        "%module;\n";
+    
+    private static final String MODULE = 
+        "<!ATTLIST root b CDATA 'module'>\n";
+    
+    private static final String DOCUMENT = 
+        "<!DOCTYPE root SYSTEM 'cache.dtd'>\n" +
+        "<root>&text;</root>";
+    
+    private static final String INTERNAL_DOCUMENT = 
+        "<!DOCTYPE root SYSTEM 'cache.dtd' [\n" +
+        " <!ATTLIST root a CDATA 'internal'>\n" +
+        "]>\n" +
+        "<root>&text;</root>";
+    
+    private File fDirectory;
+    private SAXParser fParser;
+    private ParserMetrics fMetrics;
+    private StringBuffer fResult;
+    
+    protected void setUp() throws Exception {
+        fDirectory = File.createTempFile("dtdcache", "");
+        fDirectory.delete();
+        fDirectory.mkdir();
+        write("cache.dtd", DTD);
+        write("module.ent", MODULE);
+        write("cache.xml", DOCUMENT);
+        write("internal.xml", INTERNAL_DOCUMENT);
+        fResult = new StringBuffer();
+        fMetrics = new ParserMetrics();
+        fParser = new SAXParser();
+        fParser.setFeature("http://xml.org/sax/features/validation", true);
+        fParser.setProperty(PARSER_METRICS, fMetrics);
+        DefaultHandler handler = new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, 
+                    Attributes attributes) {
+                fResult.append(attributes.getValue("a")).append(' ');
+                fResult.append(attributes.getValue("b")).append(' ');
+            }
+            public void characters(char[] ch, int start, int length) {
+                fResult.append(ch, start, length);
+            }
+            public void error(SAXParseException e) throws SAXParseException {
+                throw e;
+            }
+        };
+        fParser.setContentHandler(handler);
+        fParser.setErrorHandler(handler);
+    }
+    
+    protected void tearDown() {
+        File[] files = fDirectory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        fDirectory.delete();
+    }
+    
+    public void testCacheHit() throws Exception {
+        assertEquals("dtd module external", parse("cache.xml"));
+        assertEquals(DOCUMENT.length() + DTD.length() + MODULE.length(), 
+                     fMetrics.getBytesRead());
+        // the external subset and the module are not read again
+        assertEquals("dtd module external", parse("cache.xml"));
+        assertEquals(DOCUMENT.length(), fMetrics.getBytesRead());
+        assertEquals("dtd module external", parse("cache.xml"));
+        assertEquals(DOCUMENT.length(), fMetrics.getBytesRead());
+    }
+    
+    public void testInternalSubsetMismatch() throws Exception {
+        assertEquals("dtd module external", parse("cache.xml"));
+        // the same external subset after another internal subset is read
+        assertEquals("internal module external", parse("internal.xml"));
+        assertEquals(INTERNAL_DOCUMENT.length() + DTD.length() + MODULE.length(), 
+                     fMetrics.getBytesRead());
+        // both DTDs are now cached
+        assertEquals("internal module external", parse("internal.xml"));
+        assertEquals(INTERNAL_DOCUMENT.length(), fMetrics.getBytesRead());
+        assertEquals("dtd module external", parse("cache.xml"));
+        assertEquals(DOCUMENT.length(), fMetrics.getBytesRead());
+    }
+    
+    public void testChangedExternalSubset() throws Exception {
+        File dtd = new File(fDirectory, "cache.dtd");
+        dtd.setLastModified(MODIFIED);
+        assertEquals("dtd module external", parse("cache.xml"));
+        String changed = DTD.replaceAll("'dtd'", "'new'");
+        write("cache.dtd", changed);
+        dtd.setLastModified(MODIFIED + 60000);
+        assertEquals("new module external", parse("cache.xml"));
+        assertEquals(DOCUMENT.length() + changed.length() + MODULE.length(), 
+                     fMetrics.getBytesRead());
+        assertEquals("new module external", parse("cache.xml"));
+        assertEquals(DOCUMENT.length(), fMetrics.getBytesRead());
+    }
+    
+    public void testChangedParameterEntity() throws Exception {
+        File module = new File(fDirectory, "module.ent");
+        module.setLastModified(MODIFIED);
+        assertEquals("dtd module external", parse("cache.xml"));
+        String changed = MODULE.replaceAll("'module'", "'changed'");
+        write("module.ent", changed);
+        module.setLastModified(MODIFIED + 60000);
+        assertEquals("dtd changed external", parse("cache.xml"));
+        assertEquals(DOCUMENT.length() + DTD.length() + changed.length(), 
+                     fMetrics.getBytesRead());
+    }
+    
+    public void testDeletedExternalSubset() throws Exception {
+        assertEquals("dtd module external", parse("cache.xml"));
+        new File(fDirectory, "cache.dtd").delete();
+        try {
+            parse("cache.xml");
+            fail("reused a deleted external subset");
+        }
+        catch (FileNotFoundException e) {
+        }
+    }
+    
+    public void testFeatureOff() throws Exception {
+        assertTrue(fParser.getFeature(CACHE_EXTERNAL_DTD));
+        fParser.setFeature(CACHE_EXTERNAL_DTD, false);
+        for (int i = 0; i < 2; ++i) {
+            assertEquals("dtd module external", parse("cache.xml"));
+            assertEquals(DOCUMENT.length() + DTD.length() + MODULE.length(), 
+                         fMetrics.getBytesRead());
+        }
+    }
+    
+    /** Parses a document, returning what the content handler received. */
+    private String parse(String name) throws Exception {
+        fResult.setLength(0);
+        fMetrics.reset();
+        fParser.parse(new File(fDirectory, name).toURL().toString());
+        return fResult.toString();
+    }
+    
+    private void write(String name, String content) throws Exception {
+        OutputStream out = new FileOutputStream(new File(fDirectory, name));
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.xml.sax.InputSource;
+import org.xml.sax.ext.DefaultHandler2;
+
+/**
+ * Tests coalescing character content into a single characters call.
+ * 
+ * @version $Id$
+ */
+public class CoalesceCharactersTest extends TestCase {
+    
+    private static final String COALESCE_CHARACTERS = 
+        "http://apache.org/xml/features/scanner/coalesce-characters";
+    
+    private static final String COALESCE_CHARACTERS_LIMIT = 
+        "http://apache.org/xml/properties/scanner/coalesce-characters-limit";
+    
+    private static final String NOTIFY_BUILTIN_REFS = 
+        "http://apache.org/xml/features/scanner/notify-builtin-refs";
+    
+    private static final String LEXICAL_HANDLER = 
+        "http://xml.org/sax/properties/lexical-handler";
+    
+    private static final String DOCUMENT = 
+        "<!DOCTYPE root [<!ENTITY e 'entity'>]>\n" +
+        "<root>a &amp; b &lt; c &#x41;\nd]e<![CDATA[f]]>g&e;h<x/>i &gt; j</root>";
+    
+    private SAXParser fParser;
+    private Handler fHandler;
+    
+    protected void setUp() throws Exception {
+        fParser = new SAXParser();
+        fHandler = new Handler();
+        fParser.setContentHandler(fHandler);
+    }
+    
+    public void testWithoutLexicalHandler() throws Exception {
+        fParser.setFeature(COALESCE_CHARACTERS, true);
+        parse(DOCUMENT);
+        // CDATA sections, entities and elements still separate the content
+        assertEquals("[a & b < c A\nd]e, f, g, entity, h, i > j]", 
+                     fHandler.fCharacters.toString());
+        // the parser still reports built-in references to a lexical handler
+        assertTrue(fParser.getFeature(NOTIFY_BUILTIN_REFS));
+    }
+    
+    public void testWithLexicalHandler() throws Exception {
+        fParser.setFeature(COALESCE_CHARACTERS, true);
+        fParser.setProperty(LEXICAL_HANDLER, fHandler);
+        parse(DOCUMENT);
+        assertEquals("[a , &,  b , <,  c A\nd]e, f, g, entity, h, i , >,  j]", 
+                     fHandler.fCharacters.toString());
+        assertEquals("[amp, lt, e, gt]", fHandler.fEntities.toString());
+        // and coalesces again once the lexical handler is removed
+        fParser.setProperty(LEXICAL_HANDLER, null);
+        fHandler.fCharacters.clear();
+        parse(DOCUMENT);
+        assertEquals(6, fHandler.fCharacters.size());
+    }
+    
+    public void testNotificationRequested() throws Exception {
+        fParser.setFeature(COALESCE_CHARACTERS, true);
+        fParser.setFeature(NOTIFY_BUILTIN_REFS, true);
+        parse("<root>a &amp; b</root>");
+        assertEquals("[a , &,  b]", fHandler.fCharacters.toString());
+    }
+    
+    public void testFeatureOff() throws Exception {
+        parse("<root>a &amp; b &lt; c</root>");
+        assertEquals(5, fHandler.fCharacters.size());
+        assertEquals("a & b < c", fHandler.getText());
+    }
+    
+    public void testLimit() throws Exception {
+        fParser.setFeature(COALESCE_CHARACTERS, true);
+        fParser.setProperty(COALESCE_CHARACTERS_LIMIT, new Integer(4));
+        parse("<root>a &amp; b &lt; c</root>");
+        assertEquals("a & b < c", fHandler.getText());
+        for (int i = 0; i < fHandler.fCharacters.size(); i++) {
+            assertTrue(((String) fHandler.fCharacters.get(i)).length() <= 4);
+        }
+        assertTrue(fHandler.fCharacters.size() < 5);
+    }
+    
+    public void testLongContent() throws Exception {
+        // longer than the buffer of the scanner
+        StringBuffer text = new StringBuffer();
+        for (int i = 0; i < 10000; i++) {
+            text.append("line ").append(i).append(" &amp; ]]\n");
+        }
+        fParser.setFeature(COALESCE_CHARACTERS, true);
+        parse("<root>" + text + "</root>");
+        assertEquals(1, fHandler.fCharacters.size());
+        assertEquals(text.toString().replaceAll("&amp;", "&"), fHandler.getText());
+    }
+    
+    private void parse(String xml) throws Exception {
+        fParser.parse(new InputSource(new StringReader(xml)));
+    }
+    
+    /** Records the characters calls and the entities. */
+    private static class Handler extends DefaultHandler2 {
+        
+        final ArrayList fCharacters = new ArrayList();
+        final ArrayList fEntities = new ArrayList();
+        
+        public void characters(char[] ch, int start, int length) {
+            fCharacters.add(new String(ch, start, length));
+        }
+        
+        public void startEntity(String name) {
+            fEntities.add(name);
+        }
+        
+        String getText() {
+            StringBuffer text = new StringBuffer();
+            for (int i = 0; i < fCharacters.size(); i++) {
+                text.append(fCharacters.get(i));
+            }
+            return text.toString();
+        }
+        
+    }
+
+}
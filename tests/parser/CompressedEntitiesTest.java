@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.DOMParser;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Tests reading entities compressed in the gzip format.
+ * 
+ * @version $Id$
+ */
+public class CompressedEntitiesTest extends TestCase {
+    
+    private static final String COMPRESSED_ENTITIES = 
+        "http://apache.org/xml/features/compressed-entities";
+    
+    private static final String DOCUMENT = 
+        "<?xml version='1.0' encoding='UTF-8'?>\n" +
+        "<!DOCTYPE root [\n" +
+        "<!ENTITY plain SYSTEM 'plain.xml'>\n" +
+        "<!ENTITY compressed SYSTEM 'compressed.xml.gz'>\n" +
+        "]>\n" +
+        "<root>é &plain; &compressed;</root>";
+    
+    private File fDirectory;
+    
+    protected void setUp() throws Exception {
+        fDirectory = File.createTempFile("gzip", "");
+        fDirectory.delete();
+        fDirectory.mkdir();
+        write("document.xml.gz", DOCUMENT.getBytes("UTF-8"), true);
+        write("document.xml", DOCUMENT.getBytes("UTF-8"), false);
+        write("plain.xml", "<plain>plain</plain>".getBytes("UTF-8"), false);
+        // the encoding is detected from the inflated bytes
+        write("compressed.xml.gz", 
+              "<?xml version='1.0' encoding='UTF-16'?><c>中</c>".getBytes("UTF-16"), true);
+    }
+    
+    protected void tearDown() {
+        File[] files = fDirectory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        fDirectory.delete();
+    }
+    
+    public void testCompressedDocument() throws Exception {
+        Document document = parse("document.xml.gz", true);
+        assertEquals("é plain 中", document.getDocumentElement().getTextContent());
+    }
+    
+    public void testUncompressedDocument() throws Exception {
+        Document document = parse("document.xml", true);
+        assertEquals("é plain 中", document.getDocumentElement().getTextContent());
+    }
+    
+    public void testCompressedByteStream() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new GZIPOutputStream(bytes);
+        out.write("<root>text</root>".getBytes("UTF-8"));
+        out.close();
+        DOMParser parser = new DOMParser();
+        parser.setFeature(COMPRESSED_ENTITIES, true);
+        parser.parse(new InputSource(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals("text", parser.getDocument().getDocumentElement().getTextContent());
+    }
+    
+    public void testFeatureOff() throws Exception {
+        try {
+            parse("document.xml.gz", false);
+            fail("Compressed document parsed without the feature.");
+        }
+        catch (SAXParseException e) {
+        }
+        try {
+            parse("document.xml", false);
+            fail("Compressed entity parsed without the feature.");
+        }
+        catch (SAXParseException e) {
+        }
+    }
+    
+    private Document parse(String name, boolean compressed) throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.setFeature(COMPRESSED_ENTITIES, compressed);
+        parser.setErrorHandler(null);
+        parser.parse(new File(fDirectory, name).toURL().toString());
+        return parser.getDocument();
+    }
+    
+    private void write(String name, byte[] data, boolean compressed) throws Exception {
+        OutputStream out = new FileOutputStream(new File(fDirectory, name));
+        if (compressed) {
+            out = new GZIPOutputStream(out);
+        }
+        out.write(data);
+        out.close();
+    }
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.ParserConfigurationTemplate;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XIncludeAwareParserConfiguration;
+import org.apache.xerces.parsers.XML11Configuration;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.parser.XMLParserConfiguration;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.DefaultHandler2;
+
+/**
+ * Tests that parsers whose configuration is constructed from a 
+ * ParserConfigurationTemplate behave as parsers configured one feature
+ * and property at a time.
+ * 
+ * @version $Id$
+ */
+public class ConfigurationTemplateTest extends TestCase {
+    
+    private static final String VALIDATION = 
+        "http://xml.org/sax/features/validation";
+    
+    private static final String SCHEMA_VALIDATION = 
+        "http://apache.org/xml/features/validation/schema";
+    
+    private static final String XINCLUDE = 
+        "http://apache.org/xml/features/xinclude";
+    
+    private static final String CONTINUE_AFTER_FATAL_ERROR = 
+        "http://apache.org/xml/features/continue-after-fatal-error";
+    
+    private static final String GRAMMAR_POOL = 
+        "http://apache.org/xml/properties/internal/grammar-pool";
+    
+    private static final String SYMBOL_TABLE = 
+        "http://apache.org/xml/properties/internal/symbol-table";
+    
+    private static final String LEXICAL_HANDLER = 
+        "http://xml.org/sax/properties/lexical-handler";
+    
+    private static final String DTD = 
+        "<!ELEMENT root (item*)>\n" +
+        "<!ELEMENT item (#PCDATA)>\n" +
+        "<!ATTLIST item id ID #REQUIRED kind CDATA 'plain'>\n" +
+        "<!ENTITY greeting 'hello &amp; welcome'>\n";
+    
+    private static final String DTD_DOCUMENT = 
+        "<!DOCTYPE root SYSTEM 'template.dtd'>\n" +
+        "<root><item id='a'>&greeting;</item><item id='b' kind='x'>2</item></root>";
+    
+    private static final String INVALID_DOCUMENT = 
+        "<!DOCTYPE root SYSTEM 'template.dtd'>\n" +
+        "<root><item>1</item><other/><item id='a'>2</item><item id='a'>3</item></root>";
+    
+    private static final String SCHEMA = 
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:t'" +
+        " xmlns:t='urn:t' elementFormDefault='qualified'>\n" +
+        " <xs:element name='root'><xs:complexType><xs:sequence>\n" +
+        "  <xs:element name='item' maxOccurs='unbounded'><xs:complexType>\n" +
+        "   <xs:simpleContent><xs:extension base='xs:int'>\n" +
+        "    <xs:attribute name='unit' default='mm'/>\n" +
+        "   </xs:extension></xs:simpleContent></xs:complexType></xs:element>\n" +
+        " </xs:sequence></xs:complexType></xs:element>\n" +
+        "</xs:schema>";
+    
+    private static final String SCHEMA_DOCUMENT = 
+        "<t:root xmlns:t='urn:t' xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'" +
+        " xsi:schemaLocation='urn:t template.xsd'><t:item>1</t:item>" +
+        "<t:item unit='cm'>x</t:item></t:root>";
+    
+    private static final String XINCLUDE_DOCUMENT = 
+        "<doc xmlns:xi='http://www.w3.org/2001/XInclude'>" +
+        "<xi:include href='schema.xml'/><xi:include href='template.dtd' parse='text'/></doc>";
+    
+    private static final String MALFORMED_DOCUMENT = 
+        "<root><a></b><c attr='1' attr='2'/></root>";
+    
+    private static final String[] DOCUMENTS = {
+        "dtd.xml", "invalid.xml", "schema.xml", "xinclude.xml", "malformed.xml",
+    };
+    
+    private File fDirectory;
+    
+    protected void setUp() throws Exception {
+        fDirectory = File.createTempFile("template", "");
+        fDirectory.delete();
+        fDirectory.mkdir();
+        write("template.dtd", DTD);
+        write("dtd.xml", DTD_DOCUMENT);
+        write("invalid.xml", INVALID_DOCUMENT);
+        write("template.xsd", SCHEMA);
+        write("schema.xml", SCHEMA_DOCUMENT);
+        write("xinclude.xml", XINCLUDE_DOCUMENT);
+        write("malformed.xml", MALFORMED_DOCUMENT);
+    }
+    
+    protected void tearDown() {
+        File[] files = fDirectory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        fDirectory.delete();
+    }
+    
+    public void testDefaultSettings() throws Exception {
+        compare(new XIncludeAwareParserConfiguration());
+        compare(new XML11Configuration());
+    }
+    
+    public void testDTDValidation() throws Exception {
+        XMLParserConfiguration config = new XIncludeAwareParserConfiguration();
+        config.setFeature(VALIDATION, true);
+        compare(config);
+    }
+    
+    public void testSchemaValidation() throws Exception {
+        XMLParserConfiguration config = new XIncludeAwareParserConfiguration();
+        config.setFeature(VALIDATION, true);
+        config.setFeature(SCHEMA_VALIDATION, true);
+        config.setProperty(GRAMMAR_POOL, new XMLGrammarPoolImpl());
+        compare(config);
+    }
+    
+    public void testXInclude() throws Exception {
+        XMLParserConfiguration config = new XIncludeAwareParserConfiguration();
+        config.setFeature(XINCLUDE, true);
+        config.setFeature(SCHEMA_VALIDATION, true);
+        compare(config);
+    }
+    
+    public void testContinueAfterFatalError() throws Exception {
+        XMLParserConfiguration config = new XIncludeAwareParserConfiguration();
+        config.setFeature(CONTINUE_AFTER_FATAL_ERROR, true);
+        compare(config);
+    }
+    
+    public void testSettingsCopied() throws Exception {
+        XIncludeAwareParserConfiguration config = new XIncludeAwareParserConfiguration();
+        config.setFeature(VALIDATION, true);
+        config.setFeature(XINCLUDE, true);
+        config.setProperty(GRAMMAR_POOL, new XMLGrammarPoolImpl());
+        ParserConfigurationTemplate template = config.newTemplate();
+        
+        XMLParserConfiguration first = template.newConfiguration();
+        XMLParserConfiguration second = template.newConfiguration();
+        assertTrue(first instanceof XIncludeAwareParserConfiguration);
+        assertTrue(first.getFeature(VALIDATION));
+        assertTrue(first.getFeature(XINCLUDE));
+        assertSame(config.getProperty(GRAMMAR_POOL), first.getProperty(GRAMMAR_POOL));
+        // each configuration has a symbol table of its own
+        assertNotNull(first.getProperty(SYMBOL_TABLE));
+        assertNotSame(config.getProperty(SYMBOL_TABLE), first.getProperty(SYMBOL_TABLE));
+        assertNotSame(first.getProperty(SYMBOL_TABLE), second.getProperty(SYMBOL_TABLE));
+        
+        // the template does not change with the configuration, nor with 
+        // the configurations constructed from it
+        config.setFeature(VALIDATION, false);
+        first.setFeature(XINCLUDE, false);
+        assertTrue(template.newConfiguration().getFeature(VALIDATION));
+        assertTrue(second.getFeature(XINCLUDE));
+        assertTrue(template.newConfiguration().getFeature(XINCLUDE));
+        
+        assertFalse(new XML11Configuration().newTemplate().newConfiguration() 
+                instanceof XIncludeAwareParserConfiguration);
+    }
+    
+    /** 
+     * Parses each document with a parser using the configuration, and
+     * with parsers using configurations constructed from a template of
+     * it, and compares the events received.
+     */
+    private void compare(XMLParserConfiguration config) throws Exception {
+        ParserConfigurationTemplate template = ((XML11Configuration) config).newTemplate();
+        SAXParser expected = new SAXParser(config);
+        SAXParser actual = new SAXParser(template.newConfiguration());
+        for (int i = 0; i < DOCUMENTS.length; ++i) {
+            // grammars cached in a pool by the first parse are not 
+            // reported again
+            parse(expected, DOCUMENTS[i]);
+            String events = parse(expected, DOCUMENTS[i]);
+            assertEquals(DOCUMENTS[i], events, parse(actual, DOCUMENTS[i]));
+            // the parser is reset for the next document
+            assertEquals(DOCUMENTS[i], events, parse(actual, DOCUMENTS[i]));
+            assertEquals(DOCUMENTS[i], events, 
+                    parse(new SAXParser(template.newConfiguration()), DOCUMENTS[i]));
+        }
+    }
+    
+    private String parse(SAXParser parser, String name) throws Exception {
+        Recorder recorder = new Recorder();
+        parser.setContentHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.setProperty(LEXICAL_HANDLER, recorder);
+        try {
+            parser.parse(new File(fDirectory, name).toURL().toString());
+        }
+        catch (SAXParseException e) {
+            recorder.fEvents.append("stopped\n");
+        }
+        return recorder.fEvents.toString();
+    }
+    
+    private void write(String name, String content) throws Exception {
+        OutputStream out = new FileOutputStream(new File(fDirectory, name));
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+    
+    /** Records the events it receives as text. */
+    static class Recorder extends DefaultHandler2 {
+        final StringBuffer fEvents = new StringBuffer();
+        public void startDocument() {
+            fEvents.append("startDocument\n");
+        }
+        public void endDocument() {
+            fEvents.append("endDocument\n");
+        }
+        public void startPrefixMapping(String prefix, String uri) {
+            fEvents.append("startPrefixMapping ").append(prefix).append('=').append(uri).append('\n');
+        }
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            fEvents.append("startElement {").append(uri).append('}').append(localName);
+            fEvents.append(' ').append(qName);
+            for (int i = 0; i < atts.getLength(); ++i) {
+                fEvents.append(' ').append(atts.getQName(i)).append("='");
+                fEvents.append(atts.getValue(i)).append("' ").append(atts.getType(i));
+            }
+            fEvents.append('\n');
+        }
+        public void endElement(String uri, String localName, String qName) {
+            fEvents.append("endElement ").append(qName).append('\n');
+        }
+        public void characters(char[] ch, int start, int length) {
+            fEvents.append("characters ").append(ch, start, length).append('\n');
+        }
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            fEvents.append("ignorableWhitespace ").append(length).append('\n');
+        }
+        public void startDTD(String name, String publicId, String systemId) {
+            fEvents.append("startDTD ").append(name).append('\n');
+        }
+        public void startEntity(String name) {
+            fEvents.append("startEntity ").append(name).append('\n');
+        }
+        public void endEntity(String name) {
+            fEvents.append("endEntity ").append(name).append('\n');
+        }
+        public void warning(SAXParseException e) {
+            fEvents.append("warning ").append(e.getMessage()).append('\n');
+        }
+        public void error(SAXParseException e) {
+            fEvents.append("error ").append(e.getMessage()).append('\n');
+        }
+        public void fatalError(SAXParseException e) throws SAXException {
+            fEvents.append("fatalError ").append(e.getMessage()).append('\n');
+            throw e;
+        }
+    }
+
+}
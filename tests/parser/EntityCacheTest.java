@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.XMLEntityManager;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.util.EntityCacheImpl;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the entity cache set with the property 
+ * http://apache.org/xml/properties/entity-cache.
+ * 
+ * @version $Id$
+ */
+public class EntityCacheTest extends TestCase {
+    
+    private static final String ENTITY_CACHE = 
+        "http://apache.org/xml/properties/entity-cache";
+    
+    private static final String CACHE_EXTERNAL_DTD = 
+        "http://apache.org/xml/features/validation/cache-external-dtd";
+    
+    private static final long MODIFIED = 1000000000000L;
+    
+    private static final String DTD = 
+        "<!ELEMENT root (#PCDATA)>\n" +
+        "<!ENTITY greeting 'hello'>\n";
+    
+    private static final String CHANGED_DTD = 
+        "<!ELEMENT root (#PCDATA)>\n" +
+        "<!ENTITY greeting 'bye'>\n";
+    
+    private static final String DOCUMENT = 
+        "<!DOCTYPE root SYSTEM 'cache.dtd'>\n" +
+        "<root>&greeting;</root>";
+    
+    private File fDirectory;
+    private SAXParser fParser;
+    private StringBuffer fText;
+    
+    protected void setUp() throws Exception {
+        fDirectory = File.createTempFile("cache", "");
+        fDirectory.delete();
+        fDirectory.mkdir();
+        write("cache.dtd", DTD);
+        write("cache.xml", DOCUMENT);
+        fText = new StringBuffer();
+        fParser = new SAXParser();
+        // read the DTD through the entity manager on every parse
+        fParser.setFeature(CACHE_EXTERNAL_DTD, false);
+        fParser.setContentHandler(new DefaultHandler() {
+            public void characters(char[] ch, int start, int length) {
+                fText.append(ch, start, length);
+            }
+        });
+    }
+    
+    protected void tearDown() {
+        File[] files = fDirectory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        fDirectory.delete();
+    }
+    
+    public void testCacheHit() throws Exception {
+        EntityCacheImpl cache = new EntityCacheImpl();
+        fParser.setProperty(ENTITY_CACHE, cache);
+        assertEquals("hello", parse("cache.xml"));
+        assertEquals(DTD, content(cache, "cache.dtd"));
+        assertEquals(DOCUMENT, content(cache, "cache.xml"));
+        assertEquals(DTD.length() + DOCUMENT.length(), cache.getSize());
+        // the entities are read from the cache, not from the files
+        new File(fDirectory, "cache.dtd").delete();
+        new File(fDirectory, "cache.xml").delete();
+        assertEquals("hello", parse("cache.xml"));
+        fParser.setProperty(ENTITY_CACHE, null);
+        try {
+            parse("cache.xml");
+            fail("parsed a deleted document");
+        }
+        catch (IOException e) {
+        }
+    }
+    
+    public void testEntitySizeLimit() throws Exception {
+        EntityCacheImpl cache = new EntityCacheImpl(1024, DOCUMENT.length(), -1);
+        fParser.setProperty(ENTITY_CACHE, cache);
+        // the DTD is larger than the largest entity kept
+        write("cache.dtd", DTD + "<!-- " + DOCUMENT + " -->");
+        assertEquals("hello", parse("cache.xml"));
+        assertNull(cache.getEntity(systemId("cache.dtd")));
+        assertEquals(DOCUMENT, content(cache, "cache.xml"));
+        assertEquals(DOCUMENT.length(), cache.getSize());
+    }
+    
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        write("a.txt", "aaaa");
+        write("b.txt", "bbbb");
+        write("c.txt", "cccc");
+        EntityCacheImpl cache = new EntityCacheImpl(8, 8, -1);
+        put(cache, "a.txt", "aaaa");
+        put(cache, "b.txt", "bbbb");
+        assertEquals(8, cache.getSize());
+        // using a makes b the least recently used entity
+        assertEquals("aaaa", content(cache, "a.txt"));
+        put(cache, "c.txt", "cccc");
+        assertEquals(8, cache.getSize());
+        assertEquals("aaaa", content(cache, "a.txt"));
+        assertNull(cache.getEntity(systemId("b.txt")));
+        assertEquals("cccc", content(cache, "c.txt"));
+        // replacing an entity does not count its old content
+        put(cache, "c.txt", "cc");
+        assertEquals(6, cache.getSize());
+        cache.removeEntity(systemId("a.txt"));
+        assertEquals(2, cache.getSize());
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertNull(cache.getEntity(systemId("c.txt")));
+    }
+    
+    public void testTimeToLive() throws Exception {
+        File dtd = new File(fDirectory, "cache.dtd");
+        dtd.setLastModified(MODIFIED);
+        EntityCacheImpl cache = new EntityCacheImpl(1024, 1024, 0);
+        fParser.setProperty(ENTITY_CACHE, cache);
+        assertEquals("hello", parse("cache.xml"));
+        sleep(10);
+        // the DTD has changed but its date has not, so the entity is
+        // still valid once the time to live has passed
+        write("cache.dtd", CHANGED_DTD);
+        dtd.setLastModified(MODIFIED);
+        assertEquals("hello", parse("cache.xml"));
+        assertEquals(DTD, content(cache, "cache.dtd"));
+        sleep(10);
+        // a new date makes the cache drop the entity and read it again
+        dtd.setLastModified(MODIFIED + 60000);
+        assertEquals("bye", parse("cache.xml"));
+        assertEquals(CHANGED_DTD, content(cache, "cache.dtd"));
+    }
+    
+    public void testNoTimeToLive() throws Exception {
+        File dtd = new File(fDirectory, "cache.dtd");
+        dtd.setLastModified(MODIFIED);
+        EntityCacheImpl cache = new EntityCacheImpl(1024, 1024, -1);
+        fParser.setProperty(ENTITY_CACHE, cache);
+        assertEquals("hello", parse("cache.xml"));
+        write("cache.dtd", CHANGED_DTD);
+        dtd.setLastModified(MODIFIED + 60000);
+        sleep(10);
+        // entities are never validated
+        assertEquals("hello", parse("cache.xml"));
+    }
+    
+    public void testIncompleteEntityNotCached() throws Exception {
+        StringBuffer document = new StringBuffer(DOCUMENT.length() + 65536);
+        document.append("<!DOCTYPE root SYSTEM 'cache.dtd'>\n<root>&greeting;");
+        while (document.length() < 65536) {
+            document.append("<!-- comment -->\n");
+        }
+        document.append("</root>");
+        write("large.xml", document.toString());
+        EntityCacheImpl cache = new EntityCacheImpl();
+        fParser.setProperty(ENTITY_CACHE, cache);
+        fParser.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, 
+                    Attributes attributes) throws SAXException {
+                throw new SAXException("stop");
+            }
+        });
+        try {
+            parse("large.xml");
+            fail("the content handler did not stop the parse");
+        }
+        catch (SAXException e) {
+            assertEquals("stop", e.getMessage());
+        }
+        // the DTD was read to its end before the root element
+        assertEquals(DTD, content(cache, "cache.dtd"));
+        assertNull(cache.getEntity(systemId("large.xml")));
+        assertEquals(DTD.length(), cache.getSize());
+    }
+    
+    private String parse(String name) throws Exception {
+        fText.setLength(0);
+        fParser.parse(new File(fDirectory, name).toURL().toString());
+        return fText.toString();
+    }
+    
+    private String systemId(String name) throws Exception {
+        return XMLEntityManager.expandSystemId(
+                new File(fDirectory, name).toURL().toString(), null, false);
+    }
+    
+    private String content(EntityCacheImpl cache, String name) throws Exception {
+        byte[] content = cache.getEntity(systemId(name));
+        assertNotNull(name + " is not cached", content);
+        return new String(content, "UTF-8");
+    }
+    
+    private void put(EntityCacheImpl cache, String name, String content) throws Exception {
+        String systemId = systemId(name);
+        cache.putEntity(systemId, new URL(systemId).openConnection(), 
+                content.getBytes("UTF-8"));
+    }
+    
+    private void write(String name, String content) throws Exception {
+        OutputStream out = new FileOutputStream(new File(fDirectory, name));
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
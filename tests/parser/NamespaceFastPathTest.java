@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parser;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the scanning of start tags of documents which have no DOCTYPE
+ * and are not validated. The namespace scanner scans them on a fast
+ * path, whose results are compared with those of the regular path,
+ * which the scanner takes when dynamic validation is turned on.
+ * 
+ * @version $Id$
+ */
+public class NamespaceFastPathTest extends TestCase {
+    
+    private static final String CONTINUE_AFTER_FATAL_ERROR = 
+        "http://apache.org/xml/features/continue-after-fatal-error";
+    
+    private static final String NAMESPACE_PREFIXES = 
+        "http://xml.org/sax/features/namespace-prefixes";
+    
+    private static final String BUFFER_SIZE = 
+        "http://apache.org/xml/properties/input-buffer-size";
+    
+    public void testDuplicateAttributes() throws Exception {
+        String document = "<a x='1' x='2'/>";
+        assertTrue(compare(document).indexOf("fatalError Attribute \"x\" was already specified") != -1);
+    }
+    
+    public void testDuplicateExpandedNames() throws Exception {
+        String document = 
+            "<a xmlns:p='urn:u' xmlns:q='urn:u'><b p:x='1' q:x='2'/></a>";
+        String events = compare(document);
+        assertTrue(events, events.indexOf("fatalError Attribute \"x\" bound to namespace \"urn:u\" was already specified") != -1);
+        // an unprefixed attribute is in no namespace
+        events = compare("<a xmlns='urn:u' xmlns:p='urn:u' x='1' p:x='2'/>");
+        assertEquals(-1, events.indexOf("fatalError"));
+        assertTrue(events, events.indexOf("{}x=1 (x CDATA) {urn:u}x=2") != -1);
+    }
+    
+    public void testPrefixDeclaredAfterAttribute() throws Exception {
+        String events = compare("<a p:x='1' xmlns:p='urn:u' y='2'/>");
+        assertEquals(-1, events.indexOf("fatalError"));
+        assertTrue(events, events.indexOf("{urn:u}x=1") != -1);
+        assertTrue(events, events.indexOf("{}y=2") != -1);
+    }
+    
+    public void testUnboundPrefixes() throws Exception {
+        String events = compare("<a p:x='1'/>");
+        assertTrue(events, events.indexOf("fatalError The prefix \"p\" for attribute \"p:x\"") != -1);
+        events = compare("<p:a/>");
+        assertTrue(events, events.indexOf("fatalError The prefix \"p\" for element \"p:a\" is not bound.") != -1);
+        compare("<xmlns:a xmlns:p='urn:u'/>");
+        compare("<a xmlns:xml='urn:wrong'/>");
+        compare("<a xmlns:p=''/>");
+    }
+    
+    public void testDefaultNamespaceRedeclaration() throws Exception {
+        String document = 
+            "<a xmlns='urn:1'><b xmlns='urn:2'><c/></b><d/>" +
+            "<e xmlns=''><f/></e><g/></a>";
+        String events = compare(document);
+        assertTrue(events, events.indexOf("startElement {urn:2}c c") != -1);
+        assertTrue(events, events.indexOf("startElement {urn:1}d d") != -1);
+        assertTrue(events, events.indexOf("startElement {}f f") != -1);
+        assertTrue(events, events.indexOf("startElement {urn:1}g g") != -1);
+    }
+    
+    public void testPrefixRedeclaration() throws Exception {
+        // the same qualified names are bound to different namespaces
+        String document = 
+            "<p:a xmlns:p='urn:1' p:x='1'><p:b xmlns:p='urn:2' p:x='2'><p:c p:x='3'/></p:b>" +
+            "<p:b p:x='4'/><q:b xmlns:q='urn:2' q:x='5' xmlns:p='urn:2' p:x='6'/></p:a>";
+        String events = compare(document);
+        assertTrue(events, events.indexOf("startElement {urn:2}c p:c {urn:2}x=3") != -1);
+        assertTrue(events, events.indexOf("startElement {urn:1}b p:b {urn:1}x=4") != -1);
+        assertTrue(events, events.indexOf("fatalError Attribute \"x\" bound to namespace \"urn:2\" was already specified") != -1);
+    }
+    
+    public void testRepeatedDeclarations() throws Exception {
+        // declarations of the namespace a prefix is already bound to
+        String document = 
+            "<feed xmlns='urn:f' xmlns:p='urn:p'>" +
+            "<p:r xmlns='urn:f' xmlns:p='urn:p' p:id='1'/>" +
+            "<p:r p:id='2' xmlns:p='urn:p' xmlns='urn:f'><e xmlns=''/></p:r>" +
+            "<r xmlns:p='urn:q' p:id='3'/><p:r xmlns:p='urn:p' xmlns:p2='urn:p' p2:id='4' p:n='5'/>" +
+            "<r xmlns:xml='http://www.w3.org/XML/1998/namespace' xml:lang='en'/></feed>";
+        String events = compare(document);
+        assertEquals(-1, events.indexOf("fatalError"));
+        // the prefix mappings are still reported
+        assertEquals(4, count(events, "startPrefixMapping p=urn:p"));
+        assertEquals(3, count(events, "startPrefixMapping =urn:f"));
+        assertTrue(events, events.indexOf("startElement {urn:p}r p:r {urn:p}id=2") != -1);
+        assertTrue(events, events.indexOf("startElement {}e e") != -1);
+        assertTrue(events, events.indexOf("startElement {urn:f}r r {urn:q}id=3") != -1);
+        // a redundant declaration does not hide a duplicate attribute
+        events = compare("<a xmlns:p='urn:p'><b xmlns:p='urn:p' xmlns:q='urn:p' p:x='1' q:x='2'/></a>");
+        assertTrue(events, events.indexOf("fatalError Attribute \"x\" bound to namespace \"urn:p\" was already specified") != -1);
+        // nor does it make a redeclaration of xmlns acceptable
+        events = compare("<a xmlns:xmlns='http://www.w3.org/2000/xmlns/'/>");
+        assertTrue(events, events.indexOf("fatalError") != -1);
+    }
+    
+    public void testManyAttributes() throws Exception {
+        StringBuffer document = new StringBuffer("<root xmlns:p='urn:p'>");
+        for (int i = 0; i < 100; ++i) {
+            document.append("<e").append(i % 7).append(" xmlns:q").append(i % 3).append("='urn:").append(i).append('\'');
+            for (int j = 0; j < 12; ++j) {
+                document.append(" a").append(j).append("='").append(i).append('\'');
+                document.append(" p:b").append(j).append("='").append(j).append('\'');
+            }
+            document.append(" q").append(i % 3).append(":c='x'/>");
+        }
+        document.append("</root>");
+        compare(document.toString());
+        document.insert(document.length() - 7, "<e a1='1' p:b0='1' a1='2'/>");
+        compare(document.toString());
+    }
+    
+    /**
+     * Parses a document on the fast path and on the regular path, with 
+     * and without the namespace-prefixes feature, and after and with
+     * a fatal error, with a small input buffer so that names cross its
+     * end, and checks that the events are the same. Returns the events 
+     * reported on the fast path.
+     */
+    private String compare(String document) throws Exception {
+        String events = parse(document, false, false, false, -1);
+        for (int i = 0; i < 8; ++i) {
+            boolean prefixes = (i & 1) != 0;
+            boolean continueAfterFatal = (i & 2) != 0;
+            int bufferSize = (i & 4) != 0 ? 64 : -1;
+            String fast = parse(document, false, prefixes, continueAfterFatal, bufferSize);
+            String regular = parse(document, true, prefixes, continueAfterFatal, bufferSize);
+            assertEquals(document, regular, fast);
+        }
+        return events;
+    }
+    
+    private String parse(String document, boolean regular, boolean prefixes, 
+            boolean continueAfterFatal, int bufferSize) throws Exception {
+        SAXParser parser = new SAXParser();
+        if (regular) {
+            parser.setFeature("http://xml.org/sax/features/validation", true);
+            parser.setFeature("http://apache.org/xml/features/validation/dynamic", true);
+        }
+        parser.setFeature(NAMESPACE_PREFIXES, prefixes);
+        parser.setFeature(CONTINUE_AFTER_FATAL_ERROR, continueAfterFatal);
+        if (bufferSize != -1) {
+            parser.setProperty(BUFFER_SIZE, new Integer(bufferSize));
+        }
+        Recorder recorder = new Recorder();
+        parser.setContentHandler(recorder);
+        parser.setErrorHandler(recorder);
+        try {
+            parser.parse(new InputSource(new StringReader(document)));
+        }
+        catch (SAXParseException e) {
+            recorder.fEvents.append("stopped\n");
+        }
+        return recorder.fEvents.toString();
+    }
+    
+    private static int count(String events, String event) {
+        int count = 0;
+        for (int i = events.indexOf(event); i != -1; i = events.indexOf(event, i + 1)) {
+            ++count;
+        }
+        return count;
+    }
+    
+    /** Records the events it receives as text. */
+    static class Recorder extends DefaultHandler {
+        final StringBuffer fEvents = new StringBuffer();
+        Locator fLocator;
+        public void setDocumentLocator(Locator locator) {
+            fLocator = locator;
+        }
+        public void startPrefixMapping(String prefix, String uri) {
+            fEvents.append("startPrefixMapping ").append(prefix).append('=').append(uri).append('\n');
+        }
+        public void endPrefixMapping(String prefix) {
+            fEvents.append("endPrefixMapping ").append(prefix).append('\n');
+        }
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            fEvents.append("startElement {").append(uri).append('}').append(localName);
+            fEvents.append(' ').append(qName);
+            for (int i = 0; i < atts.getLength(); ++i) {
+                fEvents.append(" {").append(atts.getURI(i)).append('}').append(atts.getLocalName(i));
+                fEvents.append('=').append(atts.getValue(i));
+                fEvents.append(" (").append(atts.getQName(i)).append(' ').append(atts.getType(i)).append(')');
+            }
+            location();
+        }
+        public void endElement(String uri, String localName, String qName) {
+            fEvents.append("endElement {").append(uri).append('}').append(localName);
+            fEvents.append(' ').append(qName);
+            location();
+        }
+        public void characters(char[] ch, int start, int length) {
+            fEvents.append("characters ").append(ch, start, length).append('\n');
+        }
+        public void error(SAXParseException e) {
+            fEvents.append("error ").append(e.getMessage());
+            location();
+        }
+        public void fatalError(SAXParseException e) throws SAXException {
+            fEvents.append("fatalError ").append(e.getMessage());
+            location();
+            throw e;
+        }
+        private void location() {
+            fEvents.append(" @").append(fLocator.getLineNumber());
+            fEvents.append(':').append(fLocator.getColumnNumber()).append('\n');
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.util.ParserEventListener;
+import org.apache.xerces.util.ParserMetrics;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the events sent to a ParserEventListener.
+ * 
+ * @version $Id$
+ */
+public class ParserEventListenerTest extends TestCase {
+    
+    private static final String PARSER_EVENT_LISTENER = 
+        "http://apache.org/xml/properties/parser-event-listener";
+    
+    private static final String PARSER_METRICS = 
+        "http://apache.org/xml/properties/parser-metrics";
+    
+    private static final long MILLISECOND = 1000000;
+    
+    private static final String DTD = 
+        "<!ELEMENT root (item*)>\n" +
+        "<!ELEMENT item (#PCDATA)>\n";
+    
+    private static final String DTD_DOCUMENT = 
+        "<!DOCTYPE root PUBLIC '-//Test//DTD Events//EN' 'events.dtd'>\n" +
+        "<root><item>1</item><item>2</item></root>";
+    
+    private static final String SCHEMA = 
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n" +
+        " <xs:element name='root'><xs:complexType><xs:sequence>\n" +
+        "  <xs:element name='item' type='xs:int' maxOccurs='unbounded'/>\n" +
+        " </xs:sequence></xs:complexType></xs:element>\n" +
+        "</xs:schema>";
+    
+    private static final String SCHEMA_DOCUMENT = 
+        "<root xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'" +
+        " xsi:noNamespaceSchemaLocation='events.xsd'><item>1</item><item>2</item></root>";
+    
+    private File fDirectory;
+    private Listener fListener;
+    private SAXParser fParser;
+    
+    protected void setUp() throws Exception {
+        fDirectory = File.createTempFile("events", "");
+        fDirectory.delete();
+        fDirectory.mkdir();
+        write("events.dtd", DTD);
+        write("other.dtd", DTD);
+        write("dtd.xml", DTD_DOCUMENT);
+        write("events.xsd", SCHEMA);
+        write("schema.xml", SCHEMA_DOCUMENT);
+        fListener = new Listener();
+        fParser = new SAXParser();
+        fParser.setProperty(PARSER_EVENT_LISTENER, fListener);
+        fParser.setErrorHandler(new DefaultHandler() {
+            public void error(SAXParseException e) throws SAXParseException {
+                throw e;
+            }
+        });
+    }
+    
+    protected void tearDown() {
+        File[] files = fDirectory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        fDirectory.delete();
+    }
+    
+    public void testDocumentParsed() throws Exception {
+        // read the external subset for each document
+        fParser.setFeature("http://apache.org/xml/features/validation/cache-external-dtd", false);
+        parse("dtd.xml");
+        assertEquals(1, fListener.fEvents.size());
+        Event event = fListener.getEvent(0);
+        assertEquals("documentParsed", event.fType);
+        assertEquals(toURL("dtd.xml"), event.fSystemId);
+        // the external subset is read even without validation
+        assertEquals(DTD.length() + DTD_DOCUMENT.length(), event.fBytesRead);
+        assertTrue(event.fDuration > 0);
+        
+        // the byte count is not carried over to the next document
+        parse("dtd.xml");
+        assertEquals(2, fListener.fEvents.size());
+        assertEquals(DTD.length() + DTD_DOCUMENT.length(), fListener.getEvent(1).fBytesRead);
+    }
+    
+    public void testDocumentValidated() throws Exception {
+        fParser.setFeature("http://xml.org/sax/features/validation", true);
+        fParser.setContentHandler(new DefaultHandler() {
+            public void endDocument() {
+                sleep(20);
+            }
+        });
+        parse("dtd.xml");
+        assertEquals(2, fListener.fEvents.size());
+        Event parsed = fListener.getEvent(0);
+        Event validated = fListener.getEvent(1);
+        assertEquals("documentParsed", parsed.fType);
+        assertEquals("documentValidated", validated.fType);
+        assertEquals(toURL("dtd.xml"), validated.fSystemId);
+        assertTrue(validated.fDuration > 0);
+        // time spent in the content handler is not validation time
+        assertTrue(parsed.fDuration >= 20 * MILLISECOND);
+        assertTrue(validated.fDuration <= parsed.fDuration - 20 * MILLISECOND);
+    }
+    
+    public void testDocumentValidatedWithMetrics() throws Exception {
+        ParserMetrics metrics = new ParserMetrics();
+        fParser.setProperty(PARSER_METRICS, metrics);
+        fParser.setFeature("http://xml.org/sax/features/validation", true);
+        parse("dtd.xml");
+        parse("dtd.xml");
+        assertEquals(4, fListener.fEvents.size());
+        // each event covers one document only
+        long validation = fListener.getEvent(1).fDuration + fListener.getEvent(3).fDuration;
+        assertEquals(metrics.getDTDValidationTime() + metrics.getSchemaValidationTime(), validation);
+    }
+    
+    public void testEntityResolved() throws Exception {
+        final String other = toURL("other.dtd");
+        fParser.setEntityResolver(new DefaultHandler() {
+            public InputSource resolveEntity(String publicId, String systemId) {
+                sleep(20);
+                return new InputSource(other);
+            }
+        });
+        parse("dtd.xml");
+        assertEquals(2, fListener.fEvents.size());
+        Event event = fListener.getEvent(0);
+        assertEquals("entityResolved", event.fType);
+        assertEquals("-//Test//DTD Events//EN", event.fPublicId);
+        assertEquals(toURL("events.dtd"), event.fSystemId);
+        assertEquals(other, event.fResolvedSystemId);
+        assertTrue(event.fDuration >= 20 * MILLISECOND);
+        assertEquals("documentParsed", fListener.getEvent(1).fType);
+    }
+    
+    public void testSchemaLoaded() throws Exception {
+        fParser.setFeature("http://xml.org/sax/features/namespaces", true);
+        fParser.setFeature("http://xml.org/sax/features/validation", true);
+        fParser.setFeature("http://apache.org/xml/features/validation/schema", true);
+        parse("schema.xml");
+        Event event = fListener.getEvent(0);
+        assertEquals("grammarLoaded", event.fType);
+        assertEquals(XMLGrammarDescription.XML_SCHEMA, event.fGrammarType);
+        assertEquals(toURL("events.xsd"), event.fSystemId);
+        assertTrue(event.fDuration > 0);
+        assertEquals("documentParsed", fListener.getEvent(1).fType);
+        assertEquals("documentValidated", fListener.getEvent(2).fType);
+        // the time spent loading the schema is validation time
+        assertTrue(fListener.getEvent(2).fDuration >= event.fDuration);
+        assertEquals(3, fListener.fEvents.size());
+    }
+    
+    public void testGrammarPreparser() throws Exception {
+        XMLGrammarPreparser preparser = new XMLGrammarPreparser();
+        preparser.registerPreparser(XMLGrammarDescription.XML_DTD, null);
+        preparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+        preparser.setProperty(PARSER_EVENT_LISTENER, fListener);
+        preparser.preparseGrammar(XMLGrammarDescription.XML_DTD, 
+                new XMLInputSource(null, toURL("events.dtd"), null));
+        preparser.preparseGrammar(XMLGrammarDescription.XML_SCHEMA, 
+                new XMLInputSource(null, toURL("events.xsd"), null));
+        assertEquals(2, fListener.fEvents.size());
+        Event dtd = fListener.getEvent(0);
+        assertEquals("grammarLoaded", dtd.fType);
+        assertEquals(XMLGrammarDescription.XML_DTD, dtd.fGrammarType);
+        assertEquals(toURL("events.dtd"), dtd.fSystemId);
+        Event schema = fListener.getEvent(1);
+        assertEquals("grammarLoaded", schema.fType);
+        assertEquals(XMLGrammarDescription.XML_SCHEMA, schema.fGrammarType);
+        assertEquals(toURL("events.xsd"), schema.fSystemId);
+    }
+    
+    public void testNoListener() throws Exception {
+        fParser.setProperty(PARSER_EVENT_LISTENER, null);
+        fParser.setFeature("http://xml.org/sax/features/validation", true);
+        parse("dtd.xml");
+        assertEquals(0, fListener.fEvents.size());
+    }
+    
+    private void parse(String name) throws Exception {
+        fParser.parse(toURL(name));
+    }
+    
+    private String toURL(String name) throws Exception {
+        return new File(fDirectory, name).toURL().toString();
+    }
+    
+    private void write(String name, String content) throws Exception {
+        OutputStream out = new FileOutputStream(new File(fDirectory, name));
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /** An event received by the listener. */
+    static class Event {
+        String fType;
+        String fGrammarType;
+        String fPublicId;
+        String fSystemId;
+        String fResolvedSystemId;
+        long fBytesRead;
+        long fDuration;
+        Event(String type, String systemId, long duration) {
+            fType = type;
+            fSystemId = systemId;
+            fDuration = duration;
+        }
+    }
+    
+    /** Records the events it receives. */
+    static class Listener implements ParserEventListener {
+        final Vector fEvents = new Vector();
+        Event getEvent(int index) {
+            return (Event) fEvents.elementAt(index);
+        }
+        public void documentParsed(String systemId, long bytesRead, long duration) {
+            Event event = new Event("documentParsed", systemId, duration);
+            event.fBytesRead = bytesRead;
+            fEvents.addElement(event);
+        }
+        public void documentValidated(String systemId, long duration) {
+            fEvents.addElement(new Event("documentValidated", systemId, duration));
+        }
+        public void grammarLoaded(String grammarType, String systemId, long duration) {
+            Event event = new Event("grammarLoaded", systemId, duration);
+            event.fGrammarType = grammarType;
+            fEvents.addElement(event);
+        }
+        public void entityResolved(String publicId, String systemId, 
+                String resolvedSystemId, long duration) {
+            Event event = new Event("entityResolved", systemId, duration);
+            event.fPublicId = publicId;
+            event.fResolvedSystemId = resolvedSystemId;
+            fEvents.addElement(event);
+        }
+    }
+
+}
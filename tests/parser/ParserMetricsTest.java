@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.util.ParserMetrics;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the timings and counters recorded in ParserMetrics.
+ * 
+ * @version $Id$
+ */
+public class ParserMetricsTest extends TestCase {
+    
+    private static final String PARSER_METRICS = 
+        "http://apache.org/xml/properties/parser-metrics";
+    
+    private static final String GRAMMAR_POOL = 
+        "http://apache.org/xml/properties/internal/grammar-pool";
+    
+    private static final long MILLISECOND = 1000000;
+    
+    private static final String DTD = 
+        "<!ELEMENT root (item*)>\n" +
+        "<!ELEMENT item (#PCDATA)>\n" +
+        "<!ATTLIST item id ID #REQUIRED>\n";
+    
+    private static final String DTD_DOCUMENT = 
+        "<!DOCTYPE root SYSTEM 'metrics.dtd'>\n" +
+        "<root><item id='a'>1</item><item id='b'>2</item><item id='c'>3</item>" +
+        "<item id='d'>4</item><item id='e'>5</item></root>";
+    
+    private static final String SCHEMA = 
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n" +
+        " <xs:element name='root'><xs:complexType><xs:sequence>\n" +
+        "  <xs:element name='item' type='xs:int' maxOccurs='unbounded'/>\n" +
+        " </xs:sequence></xs:complexType></xs:element>\n" +
+        "</xs:schema>";
+    
+    private static final String SCHEMA_DOCUMENT = 
+        "<root xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'" +
+        " xsi:noNamespaceSchemaLocation='metrics.xsd'><item>1</item><item>2</item></root>";
+    
+    private File fDirectory;
+    private ParserMetrics fMetrics;
+    private SAXParser fParser;
+    
+    protected void setUp() throws Exception {
+        fDirectory = File.createTempFile("metrics", "");
+        fDirectory.delete();
+        fDirectory.mkdir();
+        write("metrics.dtd", DTD);
+        write("dtd.xml", DTD_DOCUMENT);
+        write("metrics.xsd", SCHEMA);
+        write("schema.xml", SCHEMA_DOCUMENT);
+        fMetrics = new ParserMetrics();
+        fParser = new SAXParser();
+        fParser.setProperty(PARSER_METRICS, fMetrics);
+        fParser.setErrorHandler(new DefaultHandler() {
+            public void error(SAXParseException e) throws SAXParseException {
+                throw e;
+            }
+        });
+    }
+    
+    protected void tearDown() {
+        File[] files = fDirectory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        fDirectory.delete();
+    }
+    
+    public void testStageTotals() throws Exception {
+        fParser.setFeature("http://xml.org/sax/features/validation", true);
+        fParser.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, 
+                    Attributes attributes) {
+                sleep(5);
+            }
+        });
+        fParser.setEntityResolver(new DefaultHandler() {
+            public InputSource resolveEntity(String publicId, String systemId) {
+                sleep(30);
+                return null;
+            }
+        });
+        parse("dtd.xml");
+        assertEquals(1, fMetrics.getDocumentCount());
+        assertEquals(fMetrics.getParseTime(), 
+                     fMetrics.getScanningTime() + fMetrics.getEntityResolutionTime() + 
+                     fMetrics.getDTDValidationTime() + fMetrics.getSchemaValidationTime() + 
+                     fMetrics.getDocumentHandlerTime());
+        assertTrue(fMetrics.toString(), fMetrics.getDocumentHandlerTime() >= 30 * MILLISECOND);
+        assertTrue(fMetrics.toString(), fMetrics.getEntityResolutionTime() >= 30 * MILLISECOND);
+        assertTrue(fMetrics.toString(), fMetrics.getScanningTime() < 30 * MILLISECOND);
+        assertEquals(0, fMetrics.getSchemaValidationTime());
+        assertEquals(DTD.length() + DTD_DOCUMENT.length(), fMetrics.getBytesRead());
+        assertTrue(fMetrics.getBufferRefills() >= 2);
+        assertTrue(fMetrics.getSymbolTableHits() > 0);
+        assertTrue(fMetrics.getSymbolTableMisses() > 0);
+        assertTrue(fMetrics.getContentModelTransitions() >= 5);
+    }
+    
+    public void testSchemaValidation() throws Exception {
+        fParser.setFeature("http://xml.org/sax/features/validation", true);
+        fParser.setFeature("http://apache.org/xml/features/validation/schema", true);
+        fParser.setProperty(GRAMMAR_POOL, new XMLGrammarPoolImpl());
+        parse("schema.xml");
+        assertEquals(0, fMetrics.getGrammarPoolHits());
+        assertTrue(fMetrics.getGrammarPoolMisses() > 0);
+        assertTrue(fMetrics.getSchemaValidationTime() > 0);
+        long misses = fMetrics.getGrammarPoolMisses();
+        // the grammar is now in the initial grammar set of the pool
+        parse("schema.xml");
+        assertEquals(misses, fMetrics.getGrammarPoolMisses());
+        assertEquals(2, fMetrics.getDocumentCount());
+    }
+    
+    public void testDTDGrammarPool() throws Exception {
+        fParser.setFeature("http://xml.org/sax/features/validation", true);
+        fParser.setFeature("http://apache.org/xml/features/validation/cache-external-dtd", false);
+        fParser.setProperty(GRAMMAR_POOL, new XMLGrammarPoolImpl());
+        parse("dtd.xml");
+        assertEquals(0, fMetrics.getGrammarPoolHits());
+        assertEquals(1, fMetrics.getGrammarPoolMisses());
+        parse("dtd.xml");
+        assertEquals(1, fMetrics.getGrammarPoolHits());
+        assertEquals(1, fMetrics.getGrammarPoolMisses());
+        // the DTD is not read again
+        assertEquals(DTD.length() + 2 * DTD_DOCUMENT.length(), fMetrics.getBytesRead());
+    }
+    
+    public void testAccumulateAndReset() throws Exception {
+        // read the external subset for each document
+        fParser.setFeature("http://apache.org/xml/features/validation/cache-external-dtd", false);
+        parse("dtd.xml");
+        long bytes = fMetrics.getBytesRead();
+        parse("dtd.xml");
+        assertEquals(2, fMetrics.getDocumentCount());
+        assertEquals(2 * bytes, fMetrics.getBytesRead());
+        fMetrics.reset();
+        assertEquals(0, fMetrics.getDocumentCount());
+        assertEquals(0, fMetrics.getBytesRead());
+        assertEquals(0, fMetrics.getParseTime());
+        fParser.setProperty(PARSER_METRICS, null);
+        parse("dtd.xml");
+        assertEquals(0, fMetrics.getDocumentCount());
+    }
+    
+    public void testNestedStages() throws Exception {
+        ParserMetrics metrics = new ParserMetrics();
+        int scanning = metrics.startStage(ParserMetrics.SCANNING);
+        sleep(10);
+        int handler = metrics.startStage(ParserMetrics.DOCUMENT_HANDLER);
+        sleep(20);
+        int resolution = metrics.startStage(ParserMetrics.ENTITY_RESOLUTION);
+        sleep(10);
+        // leaving the handler also leaves the stage entered after it
+        metrics.endStage(handler);
+        sleep(10);
+        metrics.endStage(scanning);
+        assertEquals(0, scanning);
+        assertEquals(2, resolution);
+        assertTrue(metrics.getScanningTime() >= 20 * MILLISECOND);
+        assertTrue(metrics.getDocumentHandlerTime() >= 20 * MILLISECOND);
+        assertTrue(metrics.getEntityResolutionTime() >= 10 * MILLISECOND);
+        assertEquals(metrics.getParseTime(), metrics.getScanningTime() + 
+                     metrics.getDocumentHandlerTime() + metrics.getEntityResolutionTime());
+    }
+    
+    private void parse(String name) throws Exception {
+        fParser.parse(new File(fDirectory, name).toURL().toString());
+    }
+    
+    private void write(String name, String content) throws Exception {
+        OutputStream out = new FileOutputStream(new File(fDirectory, name));
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
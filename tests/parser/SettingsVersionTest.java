@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parser;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XML11Configuration;
+import org.apache.xerces.util.ParserConfigurationSettings;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests that the settings version of a parser configuration only changes
+ * when a setting does, and that the components of the parser are only
+ * asked to read their settings again after such a change.
+ * 
+ * @version $Id$
+ */
+public class SettingsVersionTest extends TestCase {
+    
+    private static final String PARSER_SETTINGS = 
+        "http://apache.org/xml/features/internal/parser-settings";
+    
+    private static final String NAMESPACES = 
+        "http://xml.org/sax/features/namespaces";
+    
+    private static final String VALIDATION = 
+        "http://xml.org/sax/features/validation";
+    
+    private static final String SYMBOL_TABLE = 
+        "http://apache.org/xml/properties/internal/symbol-table";
+    
+    public void testVersion() throws Exception {
+        ParserConfigurationSettings settings = new ParserConfigurationSettings();
+        settings.addRecognizedFeatures(new String[] {NAMESPACES});
+        settings.addRecognizedProperties(new String[] {SYMBOL_TABLE});
+        int version = settings.getSettingsVersion();
+        
+        settings.setFeature(NAMESPACES, true);
+        assertTrue(settings.getSettingsVersion() != version);
+        version = settings.getSettingsVersion();
+        settings.setFeature(NAMESPACES, true);
+        assertEquals(version, settings.getSettingsVersion());
+        settings.setFeature(NAMESPACES, false);
+        assertTrue(settings.getSettingsVersion() != version);
+        
+        Object value = new Object();
+        settings.setProperty(SYMBOL_TABLE, value);
+        version = settings.getSettingsVersion();
+        settings.setProperty(SYMBOL_TABLE, value);
+        assertEquals(version, settings.getSettingsVersion());
+        settings.setProperty(SYMBOL_TABLE, new Object());
+        assertTrue(settings.getSettingsVersion() != version);
+        version = settings.getSettingsVersion();
+        settings.setProperty(SYMBOL_TABLE, null);
+        assertTrue(settings.getSettingsVersion() != version);
+        version = settings.getSettingsVersion();
+        settings.setProperty(SYMBOL_TABLE, null);
+        assertEquals(version, settings.getSettingsVersion());
+    }
+    
+    public void testComponentsReset() throws Exception {
+        XML11Configuration config = new XML11Configuration();
+        SAXParser parser = new SAXParser(config);
+        Counter counter = new Counter();
+        parser.setContentHandler(counter);
+        parser.setErrorHandler(null);
+        parse(parser, "<root/>");
+        assertFalse(config.getFeature(PARSER_SETTINGS));
+        
+        // setting a feature to its current value changes nothing
+        parser.setFeature(VALIDATION, false);
+        parser.setErrorHandler(null);
+        assertFalse(config.getFeature(PARSER_SETTINGS));
+        
+        // but the components are told about an actual change
+        parser.setFeature(VALIDATION, true);
+        assertTrue(config.getFeature(PARSER_SETTINGS));
+        parse(parser, "<!DOCTYPE root [<!ELEMENT root EMPTY>]><root/>");
+        assertFalse(config.getFeature(PARSER_SETTINGS));
+        
+        // the XML 1.1 components are reset on their first use
+        parser.setFeature(VALIDATION, true);
+        parse(parser, "<?xml version='1.1'?><!DOCTYPE root [<!ELEMENT root EMPTY>]><root/>");
+        parse(parser, "<root/>");
+        assertEquals(4, counter.fElements);
+    }
+    
+    private void parse(SAXParser parser, String document) throws Exception {
+        parser.parse(new InputSource(new StringReader(document)));
+    }
+    
+    private static class Counter extends DefaultHandler {
+        int fElements;
+        public void startElement(String uri, String localName, String qName, 
+                Attributes attributes) {
+            fElements++;
+        }
+    }
+
+} // class SettingsVersionTest
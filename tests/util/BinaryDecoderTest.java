@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.dom.DocumentImpl;
+import org.apache.xerces.dom.TextImpl;
+import org.apache.xerces.impl.dv.util.Base64;
+import org.apache.xerces.impl.dv.util.Base64Decoder;
+import org.apache.xerces.impl.dv.util.BinaryDecoder;
+import org.apache.xerces.impl.dv.util.HexBin;
+import org.apache.xerces.impl.dv.util.HexBinDecoder;
+import org.apache.xerces.util.BinaryContentFilter;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the incremental binary decoders against the results of
+ * <code>Base64.decode</code> and <code>HexBin.decode</code>.
+ * 
+ * @version $Id$
+ */
+public class BinaryDecoderTest extends TestCase {
+    
+    private static final String[] INVALID_BASE64 = {
+        "A", "AB", "ABC", "ABCDE", "AB=C", "A===", "AB==CD==", "AB=", 
+        "ABC=D", "AB*D", "ABCD=", "AB C =", "QQ==QQ==", "QR==", "QUF=",
+    };
+    
+    private static final String[] VALID_BASE64 = {
+        "", "QQ==", "QUI=", "QUJD", "QU JD", " QUJD ", "QUJDRA==", "Q U I =",
+        "QUJD\nRA==", 
+    };
+    
+    private static final String[] INVALID_HEX = {
+        "0", "abc", "0g", "0 1", "zz", "0x",
+    };
+    
+    private static final String[] VALID_HEX = {
+        "", "00", "0aFF", "DEADbeef", " 0a ", "\t0102\n",
+    };
+    
+    private final ByteArrayOutputStream fOutput = new ByteArrayOutputStream();
+    private final Base64Decoder fBase64 = new Base64Decoder(fOutput);
+    private final HexBinDecoder fHexBin = new HexBinDecoder(fOutput);
+    
+    public void testBase64Valid() throws Exception {
+        for (int i = 0; i < VALID_BASE64.length; i++) {
+            checkBase64(VALID_BASE64[i]);
+        }
+        Random random = new Random(1);
+        for (int length = 0; length < 100; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertTrue(checkBase64(Base64.encode(data)));
+        }
+    }
+    
+    public void testBase64Invalid() throws Exception {
+        for (int i = 0; i < INVALID_BASE64.length; i++) {
+            assertFalse(INVALID_BASE64[i], checkBase64(INVALID_BASE64[i]));
+        }
+    }
+    
+    public void testHexBinValid() throws Exception {
+        for (int i = 0; i < VALID_HEX.length; i++) {
+            assertTrue(VALID_HEX[i], checkHexBin(VALID_HEX[i]));
+        }
+        Random random = new Random(2);
+        for (int length = 0; length < 100; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertTrue(checkHexBin(HexBin.encode(data)));
+        }
+    }
+    
+    public void testHexBinInvalid() throws Exception {
+        for (int i = 0; i < INVALID_HEX.length; i++) {
+            assertFalse(INVALID_HEX[i], checkHexBin(INVALID_HEX[i]));
+        }
+    }
+    
+    public void testLongValues() throws Exception {
+        // Longer than the decoders' internal buffers.
+        byte[] data = new byte[10000];
+        new Random(3).nextBytes(data);
+        String base64 = Base64.encode(data);
+        assertTrue(fBase64.decode(base64));
+        assertTrue(fBase64.end());
+        assertTrue(Arrays.equals(data, fOutput.toByteArray()));
+        assertEquals(data.length, fBase64.getLength());
+        fOutput.reset();
+        fBase64.reset();
+        assertTrue(checkChunks(fBase64, base64.toCharArray(), 4093));
+        assertTrue(Arrays.equals(data, fOutput.toByteArray()));
+    }
+    
+    public void testMaxLength() throws Exception {
+        fBase64.setMaxLength(3);
+        assertTrue(fBase64.decode("QUJD"));
+        assertTrue(fBase64.end());
+        fBase64.reset();
+        assertFalse(fBase64.decode("QUJDRA=="));
+        assertFalse(fBase64.end());
+        fHexBin.setMaxLength(1);
+        assertFalse(fHexBin.decode("0102"));
+        fHexBin.reset();
+        fHexBin.setMaxLength(-1);
+        assertTrue(fHexBin.decode("0102"));
+        assertTrue(fHexBin.end());
+    }
+    
+    public void testTextNode() throws Exception {
+        DocumentImpl doc = new DocumentImpl();
+        TextImpl text = (TextImpl) doc.createTextNode("QUJD\nRA==");
+        assertTrue(text.decodeBinaryData(fBase64));
+        assertTrue(fBase64.end());
+        assertEquals("ABCD", new String(fOutput.toByteArray(), "ASCII"));
+    }
+    
+    public void testContentFilter() throws Exception {
+        byte[] data = new byte[50000];
+        new Random(4).nextBytes(data);
+        String doc = "<root><b64>" + Base64.encode(data) + "</b64>" +
+                     "<hex>" + HexBin.encode(data) + "</hex>" +
+                     "<b64>QUJD<child/></b64><text>ABCD</text></root>";
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        final ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[3];
+        final boolean[] valid = new boolean[3];
+        final int[] count = new int[1];
+        BinaryContentFilter filter = new BinaryContentFilter(reader) {
+            protected BinaryDecoder startBinaryContent(String uri, String localName,
+                    String qName, Attributes atts) {
+                if (localName.equals("b64") || localName.equals("hex")) {
+                    outputs[count[0]] = new ByteArrayOutputStream();
+                    return localName.equals("b64") 
+                        ? (BinaryDecoder) new Base64Decoder(outputs[count[0]]) 
+                        : new HexBinDecoder(outputs[count[0]]);
+                }
+                return null;
+            }
+            protected void endBinaryContent(String uri, String localName, 
+                    String qName, BinaryDecoder decoder, boolean isValid) {
+                valid[count[0]++] = isValid;
+            }
+        };
+        final StringBuffer text = new StringBuffer();
+        filter.setContentHandler(new DefaultHandler() {
+            public void characters(char[] ch, int start, int length) {
+                text.append(ch, start, length);
+            }
+        });
+        filter.parse(new InputSource(new StringReader(doc)));
+        assertEquals(3, count[0]);
+        assertTrue(valid[0]);
+        assertTrue(Arrays.equals(data, outputs[0].toByteArray()));
+        assertTrue(valid[1]);
+        assertTrue(Arrays.equals(data, outputs[1].toByteArray()));
+        assertFalse(valid[2]);
+        assertEquals("ABCD", text.toString());
+    }
+    
+    /** 
+     * Decodes the string whole and in chunks of every size, and checks 
+     * the results against <code>Base64.decode</code>. Returns whether the 
+     * value is valid.
+     */
+    private boolean checkBase64(String s) throws Exception {
+        return check(fBase64, s, Base64.decode(s));
+    }
+    
+    private boolean checkHexBin(String s) throws Exception {
+        // HexBin.decode does not collapse white space.
+        return check(fHexBin, s, HexBin.decode(s.trim()));
+    }
+    
+    private boolean check(BinaryDecoder decoder, String s, byte[] expected) throws Exception {
+        char[] chars = s.toCharArray();
+        for (int chunk = 1; chunk <= Math.max(1, chars.length); chunk++) {
+            fOutput.reset();
+            decoder.reset();
+            boolean valid = checkChunks(decoder, chars, chunk);
+            assertEquals("'" + s + "' in chunks of " + chunk, expected != null, valid);
+            if (valid) {
+                assertTrue(s, Arrays.equals(expected, fOutput.toByteArray()));
+                assertEquals(expected.length, decoder.getLength());
+            }
+        }
+        return expected != null;
+    }
+    
+    private boolean checkChunks(BinaryDecoder decoder, char[] chars, int chunk) throws Exception {
+        boolean valid = true;
+        for (int i = 0; i < chars.length; i += chunk) {
+            valid = decoder.decode(chars, i, Math.min(chunk, chars.length - i)) && valid;
+        }
+        return decoder.end() && valid;
+    }
+
+}
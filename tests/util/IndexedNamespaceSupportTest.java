@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.util.IndexedNamespaceSupport;
+import org.apache.xerces.util.NamespaceSupport;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLSymbols;
+import org.apache.xerces.xni.NamespaceContext;
+
+/**
+ * Tests that IndexedNamespaceSupport keeps the same bindings as
+ * NamespaceSupport, in particular when prefixes are redeclared.
+ * 
+ * @version $Id$
+ */
+public class IndexedNamespaceSupportTest extends TestCase {
+    
+    private final SymbolTable fSymbolTable = new SymbolTable();
+    
+    public void testRedeclaration() {
+        IndexedNamespaceSupport context = new IndexedNamespaceSupport();
+        context.reset();
+        String p = fSymbolTable.addSymbol("p");
+        String u1 = fSymbolTable.addSymbol("urn:1");
+        String u2 = fSymbolTable.addSymbol("urn:2");
+        String empty = XMLSymbols.EMPTY_STRING;
+        
+        context.pushContext();
+        context.declarePrefix(p, u1);
+        context.declarePrefix(empty, u1);
+        assertSame(u1, context.getURI(p));
+        assertSame(u1, context.getURI(empty));
+        
+        // redeclared in the same context: the later declaration wins
+        context.declarePrefix(p, u2);
+        assertSame(u2, context.getURI(p));
+        assertEquals(2, context.getDeclaredPrefixCount());
+        
+        // redeclared in a nested context, to the same and another namespace
+        context.pushContext();
+        context.declarePrefix(p, u2);
+        context.declarePrefix(empty, u2);
+        assertSame(u2, context.getURI(p));
+        assertSame(u2, context.getURI(empty));
+        context.pushContext();
+        // the default namespace is undeclared
+        context.declarePrefix(empty, null);
+        assertNull(context.getURI(empty));
+        assertTrue(context.containsPrefix(empty));
+        context.popContext();
+        assertSame(u2, context.getURI(empty));
+        context.popContext();
+        assertSame(u2, context.getURI(p));
+        assertSame(u1, context.getURI(empty));
+        context.popContext();
+        assertNull(context.getURI(p));
+        assertFalse(context.containsPrefix(p));
+        
+        // the xml and xmlns prefixes cannot be redeclared
+        context.pushContext();
+        assertFalse(context.declarePrefix(XMLSymbols.PREFIX_XML, u1));
+        assertFalse(context.declarePrefix(XMLSymbols.PREFIX_XMLNS, u1));
+        assertSame(NamespaceContext.XML_URI, context.getURI(XMLSymbols.PREFIX_XML));
+        assertSame(NamespaceContext.XMLNS_URI, context.getURI(XMLSymbols.PREFIX_XMLNS));
+    }
+    
+    public void testReset() {
+        IndexedNamespaceSupport context = new IndexedNamespaceSupport();
+        // more prefixes than the table keeps across documents
+        for (int document = 0; document < 3; ++document) {
+            context.reset();
+            assertSame(NamespaceContext.XML_URI, context.getURI(XMLSymbols.PREFIX_XML));
+            for (int i = 0; i < 100; ++i) {
+                context.pushContext();
+                context.declarePrefix(prefix(i), uri(document * 1000 + i));
+            }
+            for (int i = 0; i < 100; ++i) {
+                assertSame(uri(document * 1000 + i), context.getURI(prefix(i)));
+            }
+            context.popContext();
+            assertNull(context.getURI(prefix(99)));
+            assertSame(uri(document * 1000 + 98), context.getURI(prefix(98)));
+        }
+        context.reset();
+        assertNull(context.getURI(prefix(0)));
+        assertFalse(context.containsPrefix(prefix(0)));
+    }
+    
+    public void testRandomOperations() {
+        Random random = new Random(45);
+        NamespaceSupport expected = new NamespaceSupport();
+        IndexedNamespaceSupport actual = new IndexedNamespaceSupport();
+        expected.reset();
+        actual.reset();
+        int depth = 0;
+        for (int round = 0; round < 20000; ++round) {
+            int operation = random.nextInt(20);
+            if (operation == 0) {
+                expected.reset();
+                actual.reset();
+                depth = 0;
+            }
+            else if (operation < 6) {
+                expected.pushContext();
+                actual.pushContext();
+                ++depth;
+            }
+            else if (operation < 11 && depth > 0) {
+                expected.popContext();
+                actual.popContext();
+                --depth;
+            }
+            else {
+                // a few prefixes, often redeclared, and many rare ones
+                int n = random.nextInt(4) != 0 ? random.nextInt(4) : random.nextInt(200);
+                String prefix = n == 0 ? XMLSymbols.EMPTY_STRING : prefix(n);
+                String uri = random.nextInt(10) == 0 ? null : uri(random.nextInt(5));
+                assertEquals(expected.declarePrefix(prefix, uri), actual.declarePrefix(prefix, uri));
+            }
+            compare(round, expected, actual);
+        }
+    }
+    
+    private void compare(int round, NamespaceSupport expected, NamespaceSupport actual) {
+        assertEquals(round + "", prefixes(expected.getAllPrefixes()), prefixes(actual.getAllPrefixes()));
+        assertEquals(round + "", expected.getDeclaredPrefixCount(), actual.getDeclaredPrefixCount());
+        for (int i = 0; i < expected.getDeclaredPrefixCount(); ++i) {
+            assertSame(expected.getDeclaredPrefixAt(i), actual.getDeclaredPrefixAt(i));
+        }
+        for (int n = 0; n < 200; n += (n < 4 ? 1 : 17)) {
+            String prefix = n == 0 ? XMLSymbols.EMPTY_STRING : prefix(n);
+            assertSame(round + " " + prefix, expected.getURI(prefix), actual.getURI(prefix));
+            assertEquals(round + " " + prefix, expected.containsPrefix(prefix), actual.containsPrefix(prefix));
+        }
+        for (int u = 0; u < 5; ++u) {
+            assertSame(round + " " + uri(u), expected.getPrefix(uri(u)), actual.getPrefix(uri(u)));
+        }
+    }
+    
+    private String prefix(int n) {
+        return fSymbolTable.addSymbol("p" + n);
+    }
+    
+    private String uri(int n) {
+        return fSymbolTable.addSymbol("urn:" + n);
+    }
+    
+    private static Vector prefixes(Enumeration e) {
+        Vector prefixes = new Vector();
+        while (e.hasMoreElements()) {
+            prefixes.addElement(e.nextElement());
+        }
+        return prefixes;
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLAttributesImpl;
+import org.apache.xerces.util.XMLSymbols;
+import org.apache.xerces.xni.QName;
+
+/**
+ * Tests the lookups and duplicate checks of XMLAttributesImpl on small
+ * attribute lists and on large ones, which are indexed in a hash table.
+ * 
+ * @version $Id$
+ */
+public class XMLAttributesImplTest extends TestCase {
+    
+    private static final String[] URIS = { null, "urn:a", "urn:b" };
+    
+    private static final String[] PREFIXES = { null, "a", "b" };
+    
+    private final SymbolTable fSymbolTable = new SymbolTable();
+    
+    public void testLookups() {
+        int[] sizes = { 1, 5, 20, 21, 50, 300 };
+        XMLAttributesImpl attributes = new XMLAttributesImpl();
+        for (int s = 0; s < sizes.length; ++s) {
+            attributes.removeAllAttributes();
+            for (int i = 0; i < sizes[s]; ++i) {
+                attributes.addAttribute(name(i % 3, "n" + i), XMLSymbols.fCDATASymbol, "v" + i);
+            }
+            assertEquals(sizes[s], attributes.getLength());
+            for (int i = 0; i < sizes[s]; ++i) {
+                String local = "n" + i;
+                String rawname = PREFIXES[i % 3] != null ? PREFIXES[i % 3] + ':' + local : local;
+                assertEquals(i, attributes.getIndex(rawname));
+                assertEquals(i, attributes.getIndex(URIS[i % 3], local));
+                // the lookup does not depend on the identity of the strings
+                assertEquals(i, attributes.getIndex(copy(URIS[i % 3]), copy(local)));
+                assertEquals(i, attributes.getIndexFast(URIS[i % 3], fSymbolTable.addSymbol(local)));
+                assertEquals("v" + i, attributes.getValue(URIS[i % 3], local));
+                assertEquals(-1, attributes.getIndex(URIS[(i + 1) % 3], local));
+            }
+            assertEquals(-1, attributes.getIndex("urn:a", "missing"));
+            assertEquals(-1, attributes.getIndex(null, "missing"));
+            assertEquals(-1, attributes.getIndex("missing"));
+            // an empty namespace name is not the absence of a namespace
+            assertEquals(-1, attributes.getIndex("", "n0"));
+        }
+    }
+    
+    public void testReplace() {
+        XMLAttributesImpl attributes = new XMLAttributesImpl();
+        for (int length = 5; length <= 30; length += 25) {
+            attributes.removeAllAttributes();
+            for (int i = 0; i < length; ++i) {
+                attributes.addAttribute(name(i % 3, "n" + i), XMLSymbols.fCDATASymbol, "v" + i);
+            }
+            // the same raw name replaces the attribute
+            assertEquals(3, attributes.addAttribute(name(0, "n3"), XMLSymbols.fCDATASymbol, "new"));
+            // the same namespace name with another prefix replaces it too
+            QName other = new QName(fSymbolTable.addSymbol("c"), fSymbolTable.addSymbol("n4"), 
+                    fSymbolTable.addSymbol("c:n4"), "urn:a");
+            assertEquals(4, attributes.addAttribute(other, XMLSymbols.fCDATASymbol, "other"));
+            assertEquals(length, attributes.getLength());
+            assertEquals("new", attributes.getValue(3));
+            assertEquals("other", attributes.getValue("urn:a", "n4"));
+            assertEquals("c:n4", attributes.getQName(4));
+            assertEquals(-1, attributes.getIndex("a:n4"));
+        }
+    }
+    
+    public void testDuplicates() {
+        XMLAttributesImpl attributes = new XMLAttributesImpl();
+        for (int length = 5; length <= 300; length += 295) {
+            attributes.removeAllAttributes();
+            for (int i = 0; i < length; ++i) {
+                attributes.addAttributeNS(name(i % 3, "n" + i), XMLSymbols.fCDATASymbol, "v" + i);
+            }
+            assertNull(attributes.checkDuplicatesNS());
+            // the names can be looked up after the check
+            assertEquals(length - 1, attributes.getIndex(URIS[(length - 1) % 3], "n" + (length - 1)));
+            
+            // the later of two attributes with the same namespace name 
+            // is reported, whatever their prefixes
+            QName duplicate = new QName(fSymbolTable.addSymbol("c"), fSymbolTable.addSymbol("n1"), 
+                    fSymbolTable.addSymbol("c:n1"), "urn:a");
+            attributes.addAttributeNS(duplicate, XMLSymbols.fCDATASymbol, "duplicate");
+            attributes.addAttributeNS(name(0, "n2"), XMLSymbols.fCDATASymbol, "unique");
+            QName found = attributes.checkDuplicatesNS();
+            assertNotNull(found);
+            assertEquals("c:n1", found.rawname);
+            
+            // binding the attribute to another namespace resolves it
+            attributes.setURI(length, "urn:c");
+            assertNull(attributes.checkDuplicatesNS());
+            assertEquals(length, attributes.getIndex("urn:c", "n1"));
+            assertEquals(1, attributes.getIndex("urn:a", "n1"));
+            assertEquals(length + 1, attributes.getIndex(null, "n2"));
+        }
+    }
+    
+    public void testRemoveAndRename() {
+        XMLAttributesImpl attributes = new XMLAttributesImpl();
+        for (int i = 0; i < 40; ++i) {
+            attributes.addAttribute(name(i % 3, "n" + i), XMLSymbols.fCDATASymbol, "v" + i);
+        }
+        assertEquals(10, attributes.getIndex(URIS[1], "n10"));
+        attributes.removeAttributeAt(5);
+        assertEquals(39, attributes.getLength());
+        assertEquals(-1, attributes.getIndex(URIS[2], "n5"));
+        assertEquals(9, attributes.getIndex(URIS[1], "n10"));
+        assertEquals(9, attributes.getIndex("a:n10"));
+        
+        attributes.setName(9, name(0, "renamed"));
+        assertEquals(-1, attributes.getIndex(URIS[1], "n10"));
+        assertEquals(9, attributes.getIndex(null, "renamed"));
+        assertEquals(9, attributes.getIndex("renamed"));
+        
+        // attributes added after the removal are found
+        assertEquals(39, attributes.addAttribute(name(1, "added"), XMLSymbols.fCDATASymbol, "x"));
+        assertEquals(39, attributes.getIndex(URIS[1], "added"));
+        assertEquals(9, attributes.addAttribute(name(0, "renamed"), XMLSymbols.fCDATASymbol, "y"));
+        assertEquals("y", attributes.getValue(9));
+        assertEquals(40, attributes.getLength());
+    }
+    
+    public void testReuse() {
+        // names of earlier elements are not found in later ones
+        XMLAttributesImpl attributes = new XMLAttributesImpl(7);
+        for (int element = 0; element < 500; ++element) {
+            attributes.removeAllAttributes();
+            int length = 21 + element % 13;
+            for (int i = 0; i < length; ++i) {
+                attributes.addAttributeNS(name(i % 3, "e" + element + "n" + i), 
+                        XMLSymbols.fCDATASymbol, "v");
+            }
+            assertNull(attributes.checkDuplicatesNS());
+            assertEquals(-1, attributes.getIndex(URIS[0], "e" + (element - 1) + "n0"));
+            assertEquals(-1, attributes.getIndexFast(URIS[0], 
+                    fSymbolTable.addSymbol("e" + (element - 1) + "n0")));
+            assertEquals(length - 1, attributes.getIndex(URIS[(length - 1) % 3], 
+                    "e" + element + "n" + (length - 1)));
+        }
+    }
+    
+    public void testAddAfterLookup() {
+        // attributes added after a lookup are entered in the table 
+        // view rather than having it built again
+        final int[] builds = new int[1];
+        XMLAttributesImpl attributes = new XMLAttributesImpl() {
+            protected void prepareTableView() {
+                ++builds[0];
+                super.prepareTableView();
+            }
+        };
+        for (int i = 0; i < 30; ++i) {
+            attributes.addAttributeNS(name(i % 3, "n" + i), XMLSymbols.fCDATASymbol, "v" + i);
+        }
+        assertNull(attributes.checkDuplicatesNS());
+        for (int i = 30; i < 60; ++i) {
+            assertNull(attributes.getValue(URIS[i % 3], "n" + i));
+            attributes.addAttributeNS(name(i % 3, "n" + i), XMLSymbols.fCDATASymbol, "v" + i);
+            assertEquals("v" + i, attributes.getValue(URIS[i % 3], "n" + i));
+        }
+        // renaming an attribute to its own name changes nothing
+        attributes.setURI(10, URIS[1]);
+        attributes.setName(11, name(2, "n11"));
+        assertEquals(11, attributes.addAttribute(name(2, "n11"), XMLSymbols.fCDATASymbol, "x"));
+        assertEquals(1, builds[0]);
+        for (int i = 0; i < 60; ++i) {
+            assertEquals(i, attributes.getIndex(URIS[i % 3], "n" + i));
+        }
+        
+        // the first of two attributes with the same name is found
+        attributes.addAttributeNS(name(1, "n1"), XMLSymbols.fCDATASymbol, "later");
+        assertEquals(1, attributes.getIndex(URIS[1], "n1"));
+        assertEquals(1, builds[0]);
+    }
+    
+    public void testRandomOperations() {
+        Random random = new Random(44);
+        XMLAttributesImpl attributes = new XMLAttributesImpl();
+        for (int round = 0; round < 2000; ++round) {
+            int operation = random.nextInt(12);
+            int length = attributes.getLength();
+            if (operation == 0) {
+                attributes.removeAllAttributes();
+            }
+            else if (operation == 1 && length > 0) {
+                attributes.removeAttributeAt(random.nextInt(length));
+            }
+            else if (operation == 2 && length > 0) {
+                int index = random.nextInt(length);
+                attributes.setURI(index, URIS[random.nextInt(3)]);
+            }
+            else if (operation == 3) {
+                attributes.checkDuplicatesNS();
+            }
+            else if (operation == 4 && length > 0) {
+                int n = random.nextInt(60);
+                attributes.setName(random.nextInt(length), name(n % 3, "n" + n));
+            }
+            else if (operation == 5) {
+                int n = random.nextInt(60);
+                attributes.addAttributeNS(name(n % 3, "n" + n), XMLSymbols.fCDATASymbol, "v" + round);
+            }
+            else {
+                int n = random.nextInt(60);
+                attributes.addAttribute(name(n % 3, "n" + n), XMLSymbols.fCDATASymbol, "v" + round);
+            }
+            for (int n = 0; n < 60; ++n) {
+                for (int u = 0; u < URIS.length; ++u) {
+                    String local = "n" + n;
+                    int index = linearIndex(attributes, URIS[u], local);
+                    assertEquals(round + " " + local, index, attributes.getIndex(URIS[u], local));
+                    assertEquals(round + " " + local, index, 
+                            attributes.getIndexFast(URIS[u], fSymbolTable.addSymbol(local)));
+                }
+            }
+        }
+    }
+    
+    private QName name(int namespace, String local) {
+        String localpart = fSymbolTable.addSymbol(local);
+        String prefix = PREFIXES[namespace];
+        String rawname = prefix != null ? fSymbolTable.addSymbol(prefix + ':' + local) : localpart;
+        return new QName(prefix != null ? fSymbolTable.addSymbol(prefix) : null, 
+                localpart, rawname, URIS[namespace]);
+    }
+    
+    private static String copy(String s) {
+        return s != null ? new String(s) : null;
+    }
+    
+    /** Returns the index of the first attribute with the given name. */
+    private static int linearIndex(XMLAttributesImpl attributes, String uri, String localName) {
+        for (int i = 0; i < attributes.getLength(); ++i) {
+            String attrURI = attributes.getURI(i);
+            if (localName.equals(attributes.getLocalName(i)) && 
+                (uri == null ? attrURI == null : uri.equals(attrURI))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.util.XMLCatalogResolver;
+import org.apache.xml.resolver.Catalog;
+import org.apache.xml.resolver.CatalogManager;
+
+/**
+ * Tests that XMLCatalogResolver, which resolves through indexes of the
+ * catalog entries, resolves identifiers the same way as the Catalog of
+ * the resolver library.
+ * 
+ * @version $Id$
+ */
+public class XMLCatalogResolverTest extends TestCase {
+    
+    private static final String CATALOG_START = 
+        "<catalog xmlns='urn:oasis:names:tc:entity:xmlns:xml:catalog' prefer='public'>\n";
+    
+    private static final String CATALOG_END = "</catalog>\n";
+    
+    private static final String MAIN = CATALOG_START +
+        " <system systemId='http://example.org/a.dtd' uri='a1.dtd'/>\n" +
+        " <system systemId='http://example.org/a.dtd' uri='a2.dtd'/>\n" +
+        " <public publicId='-//EX//A//EN' uri='pa1.dtd'/>\n" +
+        " <public publicId='-//EX//A//EN' uri='pa2.dtd'/>\n" +
+        " <public publicId='-//EX//BOTH//EN' uri='pboth.dtd'/>\n" +
+        " <system systemId='http://example.org/both.dtd' uri='sboth.dtd'/>\n" +
+        " <rewriteSystem systemIdStartString='http://example.org/rw/' rewritePrefix='rw/'/>\n" +
+        " <rewriteSystem systemIdStartString='http://example.org/rw/deep/' rewritePrefix='deep/'/>\n" +
+        " <systemSuffix systemIdSuffix='/s.dtd' uri='s1.dtd'/>\n" +
+        " <systemSuffix systemIdSuffix='x/s.dtd' uri='s2.dtd'/>\n" +
+        " <uri name='urn:ex:u' uri='u1.xsd'/>\n" +
+        " <uri name='urn:ex:u' uri='u2.xsd'/>\n" +
+        " <rewriteURI uriStartString='http://example.org/ns/' rewritePrefix='ns/'/>\n" +
+        " <rewriteURI uriStartString='http://example.org/ns/deep/' rewritePrefix='nsdeep/'/>\n" +
+        " <uriSuffix uriSuffix='.xsd' uri='any.xsd'/>\n" +
+        " <uriSuffix uriSuffix='/b.xsd' uri='b.xsd'/>\n" +
+        " <group prefer='system'>\n" +
+        "  <public publicId='-//EX//SYS//EN' uri='psys.dtd'/>\n" +
+        " </group>\n" +
+        " <delegateSystem systemIdStartString='http://delegate.org/' catalog='delegate.xml'/>\n" +
+        " <delegatePublic publicIdStartString='-//DEL//' catalog='delegate.xml'/>\n" +
+        " <delegateURI uriStartString='urn:del:' catalog='delegate.xml'/>\n" +
+        " <nextCatalog catalog='next.xml'/>\n" +
+        CATALOG_END;
+    
+    private static final String DELEGATE = CATALOG_START +
+        " <system systemId='http://delegate.org/d.dtd' uri='d.dtd'/>\n" +
+        " <public publicId='-//DEL//D//EN' uri='pd.dtd'/>\n" +
+        " <uri name='urn:del:x' uri='dx.xsd'/>\n" +
+        CATALOG_END;
+    
+    private static final String NEXT = CATALOG_START +
+        " <system systemId='http://example.org/next.dtd' uri='next.dtd'/>\n" +
+        " <system systemId='http://example.org/a.dtd' uri='next-a.dtd'/>\n" +
+        " <public publicId='-//EX//NEXT//EN' uri='pnext.dtd'/>\n" +
+        " <uri name='urn:ex:next' uri='next.xsd'/>\n" +
+        " <nextCatalog catalog='last.xml'/>\n" +
+        CATALOG_END;
+    
+    private static final String LAST = CATALOG_START +
+        " <system systemId='http://example.org/last.dtd' uri='last.dtd'/>\n" +
+        CATALOG_END;
+    
+    private static final String EXTRA = CATALOG_START +
+        " <system systemId='http://example.org/extra.dtd' uri='extra.dtd'/>\n" +
+        " <system systemId='http://example.org/next.dtd' uri='extra-next.dtd'/>\n" +
+        " <uri name='urn:ex:extra' uri='extra.xsd'/>\n" +
+        CATALOG_END;
+    
+    private static final String [] SYSTEM_IDS = {
+        "http://example.org/a.dtd",
+        "http://example.org/both.dtd",
+        "http://example.org/rw/r.dtd",
+        "http://example.org/rw/deep/r.dtd",
+        "http://example.org/rw/",
+        "http://example.org/y/s.dtd",
+        "http://example.org/x/s.dtd",
+        "http://delegate.org/d.dtd",
+        "http://delegate.org/none.dtd",
+        "http://example.org/next.dtd",
+        "http://example.org/last.dtd",
+        "http://example.org/extra.dtd",
+        "http://example.org/none.dtd",
+    };
+    
+    private static final String [] PUBLIC_IDS = {
+        "-//EX//A//EN",
+        "  -//EX//A//EN ",
+        "urn:publicid:-:EX:A:EN",
+        "-//EX//BOTH//EN",
+        "-//EX//SYS//EN",
+        "-//DEL//D//EN",
+        "-//DEL//NONE//EN",
+        "-//EX//NEXT//EN",
+        "-//EX//NONE//EN",
+    };
+    
+    private static final String [] URIS = {
+        "urn:ex:u",
+        "http://example.org/ns/n.xml",
+        "http://example.org/ns/deep/n.xml",
+        "http://example.org/other/n.xsd",
+        "http://example.org/other/b.xsd",
+        "urn:del:x",
+        "urn:del:none",
+        "urn:ex:next",
+        "urn:ex:extra",
+        "urn:ex:none",
+    };
+    
+    private File fDirectory;
+    private String [] fCatalogs;
+    
+    protected void setUp() throws Exception {
+        fDirectory = File.createTempFile("catalog", "");
+        fDirectory.delete();
+        fDirectory.mkdir();
+        fCatalogs = new String [] { write("main.xml", MAIN), write("extra.xml", EXTRA) };
+        write("delegate.xml", DELEGATE);
+        write("next.xml", NEXT);
+        write("last.xml", LAST);
+    }
+    
+    protected void tearDown() {
+        File[] files = fDirectory.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        fDirectory.delete();
+    }
+    
+    public void testSystem() throws Exception {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(fCatalogs);
+        assertResolved("a1.dtd", resolver.resolveSystem("http://example.org/a.dtd"));
+        assertResolved("rw/r.dtd", resolver.resolveSystem("http://example.org/rw/r.dtd"));
+        assertResolved("deep/r.dtd", resolver.resolveSystem("http://example.org/rw/deep/r.dtd"));
+        assertResolved("s1.dtd", resolver.resolveSystem("http://example.org/y/s.dtd"));
+        assertResolved("s2.dtd", resolver.resolveSystem("http://example.org/x/s.dtd"));
+        assertResolved("d.dtd", resolver.resolveSystem("http://delegate.org/d.dtd"));
+        assertNull(resolver.resolveSystem("http://delegate.org/none.dtd"));
+        assertResolved("next.dtd", resolver.resolveSystem("http://example.org/next.dtd"));
+        assertResolved("last.dtd", resolver.resolveSystem("http://example.org/last.dtd"));
+        assertResolved("extra.dtd", resolver.resolveSystem("http://example.org/extra.dtd"));
+        assertNull(resolver.resolveSystem("http://example.org/none.dtd"));
+    }
+    
+    public void testPublic() throws Exception {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(fCatalogs);
+        assertResolved("pa1.dtd", resolver.resolvePublic("-//EX//A//EN", null));
+        assertResolved("pa1.dtd", resolver.resolvePublic("  -//EX//A//EN ", null));
+        assertResolved("pa1.dtd", resolver.resolvePublic("urn:publicid:-:EX:A:EN", null));
+        // a system entry matching the system identifier comes first
+        assertResolved("sboth.dtd", 
+            resolver.resolvePublic("-//EX//BOTH//EN", "http://example.org/both.dtd"));
+        assertResolved("pboth.dtd", 
+            resolver.resolvePublic("-//EX//BOTH//EN", "http://example.org/none.dtd"));
+        // public entries in a group preferring system identifiers are
+        // only used when there is no system identifier
+        assertResolved("psys.dtd", resolver.resolvePublic("-//EX//SYS//EN", null));
+        assertNull(resolver.resolvePublic("-//EX//SYS//EN", "http://example.org/none.dtd"));
+        assertResolved("pd.dtd", resolver.resolvePublic("-//DEL//D//EN", null));
+        assertNull(resolver.resolvePublic("-//DEL//NONE//EN", null));
+        assertResolved("pnext.dtd", resolver.resolvePublic("-//EX//NEXT//EN", null));
+    }
+    
+    public void testURI() throws Exception {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(fCatalogs);
+        assertResolved("u1.xsd", resolver.resolveURI("urn:ex:u"));
+        assertResolved("ns/n.xml", resolver.resolveURI("http://example.org/ns/n.xml"));
+        assertResolved("nsdeep/n.xml", resolver.resolveURI("http://example.org/ns/deep/n.xml"));
+        assertResolved("any.xsd", resolver.resolveURI("http://example.org/other/n.xsd"));
+        assertResolved("b.xsd", resolver.resolveURI("http://example.org/other/b.xsd"));
+        assertResolved("dx.xsd", resolver.resolveURI("urn:del:x"));
+        assertNull(resolver.resolveURI("urn:del:none"));
+        assertResolved("next.xsd", resolver.resolveURI("urn:ex:next"));
+        assertResolved("extra.xsd", resolver.resolveURI("urn:ex:extra"));
+        assertNull(resolver.resolveURI("urn:ex:none"));
+    }
+    
+    public void testSameAsCatalog() throws Exception {
+        compare(true);
+        compare(false);
+    }
+    
+    public void testCatalogListChange() throws Exception {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(fCatalogs);
+        assertResolved("extra.dtd", resolver.resolveSystem("http://example.org/extra.dtd"));
+        resolver.setCatalogList(new String [] { fCatalogs[1] });
+        assertNull(resolver.resolveSystem("http://example.org/a.dtd"));
+        assertResolved("extra-next.dtd", resolver.resolveSystem("http://example.org/next.dtd"));
+        resolver.setCatalogList(null);
+        assertNull(resolver.resolveSystem("http://example.org/extra.dtd"));
+    }
+    
+    public void testConcurrentResolution() throws Exception {
+        final XMLCatalogResolver resolver = new XMLCatalogResolver(fCatalogs);
+        final Catalog catalog = newCatalog(true);
+        final String [] expected = new String[SYSTEM_IDS.length];
+        for (int i = 0; i < SYSTEM_IDS.length; ++i) {
+            expected[i] = catalog.resolveSystem(SYSTEM_IDS[i]);
+        }
+        final Throwable [] failure = new Throwable[1];
+        Thread [] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int n = 0; n < 500; ++n) {
+                            int i = (n + offset) % SYSTEM_IDS.length;
+                            assertEquals(SYSTEM_IDS[i], expected[i], 
+                                resolver.resolveSystem(SYSTEM_IDS[i]));
+                        }
+                    }
+                    catch (Throwable e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t].join();
+        }
+        if (failure[0] != null) {
+            fail(failure[0].toString());
+        }
+    }
+    
+    /** 
+     * Checks that the resolver and the Catalog of the resolver library
+     * resolve all the identifiers the same way.
+     */
+    private void compare(boolean preferPublic) throws Exception {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(fCatalogs, preferPublic);
+        Catalog catalog = newCatalog(preferPublic);
+        for (int i = 0; i < SYSTEM_IDS.length; ++i) {
+            assertEquals(SYSTEM_IDS[i], catalog.resolveSystem(SYSTEM_IDS[i]), 
+                resolver.resolveSystem(SYSTEM_IDS[i]));
+        }
+        for (int i = 0; i < PUBLIC_IDS.length; ++i) {
+            assertEquals(PUBLIC_IDS[i], catalog.resolvePublic(PUBLIC_IDS[i], null), 
+                resolver.resolvePublic(PUBLIC_IDS[i], null));
+            for (int j = 0; j < SYSTEM_IDS.length; ++j) {
+                assertEquals(PUBLIC_IDS[i] + " " + SYSTEM_IDS[j], 
+                    catalog.resolvePublic(PUBLIC_IDS[i], SYSTEM_IDS[j]), 
+                    resolver.resolvePublic(PUBLIC_IDS[i], SYSTEM_IDS[j]));
+            }
+        }
+        for (int i = 0; i < URIS.length; ++i) {
+            assertEquals(URIS[i], catalog.resolveURI(URIS[i]), resolver.resolveURI(URIS[i]));
+        }
+    }
+    
+    /** Returns a Catalog of the resolver library reading the catalogs. */
+    private Catalog newCatalog(boolean preferPublic) throws Exception {
+        CatalogManager manager = new CatalogManager();
+        manager.setAllowOasisXMLCatalogPI(false);
+        manager.setCatalogFiles("");
+        manager.setIgnoreMissingProperties(true);
+        manager.setPreferPublic(preferPublic);
+        manager.setRelativeCatalogs(false);
+        manager.setUseStaticCatalog(false);
+        manager.setVerbosity(0);
+        Catalog catalog = new Catalog(manager);
+        catalog.setupReaders();
+        for (int i = 0; i < fCatalogs.length; ++i) {
+            catalog.parseCatalog(fCatalogs[i]);
+        }
+        return catalog;
+    }
+    
+    private void assertResolved(String name, String resolved) throws Exception {
+        assertEquals(new File(fDirectory, name).toURL().toString(), resolved);
+    }
+    
+    private String write(String name, String content) throws Exception {
+        File file = new File(fDirectory, name);
+        OutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return file.toURL().toString();
+    }
+
+}